@@ -0,0 +1,54 @@
+/**
+ * 形式概念解析やハッセ図の計算の途中経過を受け取るインタフェース.
+ * 各解析クラスやハッセ図のクラスに設定すると, 計算の途中で呼ばれる.
+ * 設定していなければ何も呼ばれず, 計算の速度はほとんど変わらない.
+ *
+ * 数を知らせるメソッドは, 1回ごとではなく分岐や形式概念ごとにまとめて呼ばれる.
+ * FormalConceptParallelAnalyzer や FCACoverCalculator からは複数のスレッドが
+ * 同時に呼ぶので, 実装はスレッドセーフであること.
+ *
+ * @author  uehashu
+ * @version 1.0
+ */
+public interface AnalysisListener{
+
+    /**
+     * 計算の段階が始まったときに呼ばれるメソッド.
+     * 段階の名前は "enumerate" (形式概念の列挙), "collect" (結果の整列),
+     * "dedup" (重複の除去), "covers" (被覆関係の計算) など.
+     * @param phase 段階の名前
+     */
+    void phaseStarted(String phase);
+
+    /**
+     * 計算の段階が終わったときに呼ばれるメソッド.
+     * @param phase 段階の名前
+     */
+    void phaseFinished(String phase);
+
+    /**
+     * 閉包(極作用素)を計算したときに呼ばれるメソッド.
+     * @param count 計算した閉包の数
+     */
+    void closuresComputed(int count);
+
+    /**
+     * 正準性判定で候補を捨てたときに呼ばれるメソッド.
+     * 親で失敗した閉包から, 閉包を計算せずに捨てたものも含む.
+     * @param count 捨てた候補の数
+     */
+    void canonicityRejected(int count);
+
+    /**
+     * 形式概念を見つけたときに呼ばれるメソッド.
+     * @param count 見つけた形式概念の数
+     */
+    void conceptsEmitted(int count);
+
+    /**
+     * 探索している深さを知らせるメソッド.
+     * 探索木を使う解析では分岐の深さ, NextClosure では内包の要素数.
+     * @param depth 深さ
+     */
+    void depthReached(int depth);
+}
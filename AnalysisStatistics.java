@@ -0,0 +1,336 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * 解析の途中経過を数えておく AnalysisListener.
+ * 閉包の数, 正準性判定で捨てた候補の数, 見つけた形式概念の数, 探索の深さと,
+ * 段階ごとの経過時間と確保されたバイト数を記録する.
+ * register() すると JMX の MXBean として公開されるので, 長い解析の途中でも
+ * JConsole などから何に時間がかかっているかを見られる.
+ *
+ * 1秒あたりの形式概念の数は, どれかの段階が実行中だった時間で割る. 全ての段階が終われば時計も止まる.
+ *
+ * 確保されたバイト数は, 段階の始めと終わりに JVM の全スレッドの確保量を足し合わせて, その差で測る.
+ * 解析のスレッドだけでなく, 同じ時間に動いていた他のスレッドが確保した分も含む.
+ * 終わったスレッドは最後に見たときの確保量を使うので, 最後に見てから終わるまでの分は数えられない.
+ *
+ * @author  uehashu
+ * @version 1.0
+ */
+public class AnalysisStatistics implements AnalysisListener, AnalysisStatisticsMXBean{
+
+    LongAdder closures = new LongAdder(); // 計算した閉包の数.
+    LongAdder rejections = new LongAdder(); // 正準性判定で捨てた候補の数.
+    LongAdder concepts = new LongAdder(); // 見つけた形式概念の数.
+    volatile int currentDepth = 0; // 最後に知らされた探索の深さ.
+    AtomicInteger maxDepth = new AtomicInteger(); // 探索の深さの最大値.
+    int activePhases = 0; // 実行中の段階の数の合計. phases のロックを持って触る.
+    long runningNanos = 0; // どれかの段階が実行中だった時間のうち, 終わった分. phases のロックを持って触る.
+    long runningSince = -1; // どれかの段階が実行中ならば, そうなった時刻. phases のロックを持って触る.
+    LinkedHashMap<String,Phase> phases = new LinkedHashMap<>(); // 段階ごとの記録.
+    HashMap<Long,Long> threadBytes = new HashMap<>(); // 生きているスレッドごとに最後に見た確保量.
+    long retiredBytes = 0; // 終わったスレッドが確保した量の合計. threadBytes のロックを持って触る.
+    ObjectName objectName; // 登録した名前. 登録していなければ null.
+
+
+    /////////////
+    // Methods //
+    /////////////
+
+    // @Override
+    public void phaseStarted(String phase){
+        long now = System.nanoTime();
+        long bytes = allocatedBytes();
+        synchronized(phases){
+            if(activePhases++ == 0){
+                runningSince = now;
+            }
+            Phase record = phases.get(phase);
+            if(record == null){
+                record = new Phase();
+                phases.put(phase,record);
+            }
+            if(record.active++ == 0){
+                record.startNanos = now;
+                record.startBytes = bytes;
+            }
+        }
+    }
+
+    // @Override
+    public void phaseFinished(String phase){
+        long now = System.nanoTime();
+        long bytes = allocatedBytes();
+        synchronized(phases){
+            Phase record = phases.get(phase);
+            if(record == null || record.active == 0){
+                return;
+            }
+            if(--activePhases == 0){
+                runningNanos += now - runningSince;
+                runningSince = -1;
+            }
+            if(--record.active == 0){
+                record.totalNanos += now - record.startNanos;
+                if(bytes >= 0 && record.startBytes >= 0){
+                    record.totalBytes += bytes - record.startBytes;
+                }
+            }
+        }
+    }
+
+    // @Override
+    public void closuresComputed(int count){
+        closures.add(count);
+    }
+
+    // @Override
+    public void canonicityRejected(int count){
+        rejections.add(count);
+    }
+
+    // @Override
+    public void conceptsEmitted(int count){
+        concepts.add(count);
+    }
+
+    // @Override
+    public void depthReached(int depth){
+        currentDepth = depth;
+        int max = maxDepth.get();
+        while(depth > max && !maxDepth.compareAndSet(max,depth)){
+            max = maxDepth.get();
+        }
+    }
+
+    // @Override
+    public long getClosureCount(){
+        return closures.sum();
+    }
+
+    // @Override
+    public long getCanonicityRejectionCount(){
+        return rejections.sum();
+    }
+
+    // @Override
+    public long getConceptCount(){
+        return concepts.sum();
+    }
+
+    // @Override
+    public double getConceptsPerSecond(){
+        long elapsed;
+        synchronized(phases){
+            elapsed = runningNanos + (runningSince >= 0 ? System.nanoTime() - runningSince : 0);
+        }
+        return elapsed <= 0 ? 0.0 : concepts.sum() * 1e9 / elapsed;
+    }
+
+    // @Override
+    public int getCurrentDepth(){
+        return currentDepth;
+    }
+
+    // @Override
+    public int getMaxDepth(){
+        return maxDepth.get();
+    }
+
+    // @Override
+    public String[] getActivePhases(){
+        ArrayList<String> active = new ArrayList<>();
+        synchronized(phases){
+            for(Map.Entry<String,Phase> entry : phases.entrySet()){
+                if(entry.getValue().active > 0){
+                    active.add(entry.getKey());
+                }
+            }
+        }
+        return active.toArray(new String[active.size()]);
+    }
+
+    // @Override
+    public Map<String,Long> getPhaseWallTimes(){
+        long now = System.nanoTime();
+        LinkedHashMap<String,Long> times = new LinkedHashMap<>();
+        synchronized(phases){
+            for(Map.Entry<String,Phase> entry : phases.entrySet()){
+                Phase record = entry.getValue();
+                long nanos = record.totalNanos + (record.active > 0 ? now - record.startNanos : 0);
+                times.put(entry.getKey(),nanos / 1000000);
+            }
+        }
+        return times;
+    }
+
+    // @Override
+    public Map<String,Long> getPhaseAllocatedBytes(){
+        LinkedHashMap<String,Long> bytes = new LinkedHashMap<>();
+        if(allocatedBytes() < 0){
+            return bytes;
+        }
+        synchronized(phases){
+            for(Map.Entry<String,Phase> entry : phases.entrySet()){
+                bytes.put(entry.getKey(),entry.getValue().totalBytes);
+            }
+        }
+        return bytes;
+    }
+
+    // @Override
+    public void reset(){
+        closures.reset();
+        rejections.reset();
+        concepts.reset();
+        currentDepth = 0;
+        maxDepth.set(0);
+        synchronized(phases){
+            phases.clear();
+            activePhases = 0;
+            runningNanos = 0;
+            runningSince = -1;
+        }
+    }
+
+
+    /**
+     * プラットフォームの MBeanServer に登録するメソッド.
+     * 名前は "FormalConceptAnalysis:type=AnalysisStatistics,name=(name)" になる.
+     * @param name 同じ JVM の中で区別するための名前
+     * @exception JMException 登録に失敗した場合(同じ名前が既にある場合など)
+     */
+    public synchronized void register(String name) throws JMException{
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName objectName = new ObjectName("FormalConceptAnalysis:type=AnalysisStatistics,name="
+                                               + ObjectName.quote(name));
+        server.registerMBean(this,objectName);
+        this.objectName = objectName;
+    }
+
+
+    /**
+     * MBeanServer から登録を外すメソッド. 登録していなければ何もしない.
+     * @exception JMException 登録を外すのに失敗した場合
+     */
+    public synchronized void unregister() throws JMException{
+        if(objectName != null){
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            objectName = null;
+        }
+    }
+
+
+    /**
+     * 統計を文字列で返すメソッド.
+     * @return 統計
+     */
+    // @Override
+    public String toString(){
+        return "AnalysisStatistics[closures=" + getClosureCount()
+            + ", rejections=" + getCanonicityRejectionCount()
+            + ", concepts=" + getConceptCount()
+            + ", maxDepth=" + getMaxDepth()
+            + ", phaseMillis=" + getPhaseWallTimes()
+            + ", phaseBytes=" + getPhaseAllocatedBytes() + "]";
+    }
+
+
+
+    /////////////////////
+    // Private Methods //
+    /////////////////////
+
+    /**
+     * これまでに見た全スレッドが確保したバイト数の合計を返すメソッド.
+     * 終わったスレッドは最後に見たときの値を retiredBytes に移して表から消すので,
+     * 合計は減らず, 表はスレッドが入れ替わり続けても生きているスレッドの分しか持たない.
+     * @return バイト数. 測れない JVM では -1.
+     */
+    private long allocatedBytes(){
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if(!(threads instanceof com.sun.management.ThreadMXBean)){
+            return -1;
+        }
+        com.sun.management.ThreadMXBean sunThreads = (com.sun.management.ThreadMXBean)threads;
+        if(!sunThreads.isThreadAllocatedMemorySupported() || !sunThreads.isThreadAllocatedMemoryEnabled()){
+            return -1;
+        }
+        long[] ids = sunThreads.getAllThreadIds();
+        long[] allocated = sunThreads.getThreadAllocatedBytes(ids);
+        synchronized(threadBytes){
+            HashSet<Long> alive = new HashSet<>();
+            long total = 0;
+            for(int i=0;i<ids.length;i++){
+                if(allocated[i] > 0){
+                    threadBytes.put(ids[i],allocated[i]);
+                    alive.add(ids[i]);
+                    total += allocated[i];
+                }
+            }
+            for(Iterator<Map.Entry<Long,Long>> it=threadBytes.entrySet().iterator();it.hasNext();){
+                Map.Entry<Long,Long> entry = it.next();
+                if(!alive.contains(entry.getKey())){
+                    retiredBytes += entry.getValue();
+                    it.remove();
+                }
+            }
+            return retiredBytes + total;
+        }
+    }
+
+
+
+    ///////////////////
+    // Inner Classes //
+    ///////////////////
+
+    /**
+     * 1つの段階の記録.
+     */
+    private static final class Phase{
+
+        int active; // 実行中の数. 入れ子や並列に始まった分を数える.
+        long startNanos; // 実行中ならば始まった時刻.
+        long startBytes; // 実行中ならば始まったときの確保量.
+        long totalNanos; // 終わった分の経過時間の合計.
+        long totalBytes; // 終わった分の確保量の合計.
+    }
+
+
+
+    //////////
+    // Test //
+    //////////
+
+    public static void main(String args[]) throws Exception{
+
+        // 乱数でコンテクスト表を作る.
+        boolean[][] contextTable = FormalContext.randomTable(200,30,0.3,1);
+
+        // 統計を JMX に登録して, 解析とハッセ図の計算を行なう.
+        AnalysisStatistics statistics = new AnalysisStatistics();
+        statistics.register("main");
+
+        FormalContext context = new FormalContext(contextTable);
+        FormalConceptParallelAnalyzer analyzer = new FormalConceptParallelAnalyzer(context);
+        analyzer.setAnalysisListener(statistics);
+        ArrayList<Tupple> concepts = analyzer.analize();
+        new LatticeGraph(concepts,context,statistics);
+
+        System.out.println(concepts.size() + " concepts");
+        System.out.println(statistics);
+        statistics.unregister();
+    }
+}
@@ -0,0 +1,61 @@
+import java.util.Map;
+
+/**
+ * AnalysisStatistics を JMX で見せるためのインタフェース.
+ * JConsole などから解析の途中経過を見られる.
+ *
+ * @author  uehashu
+ * @version 1.0
+ */
+public interface AnalysisStatisticsMXBean{
+
+    /**
+     * @return 計算した閉包の数
+     */
+    long getClosureCount();
+
+    /**
+     * @return 正準性判定で捨てた候補の数
+     */
+    long getCanonicityRejectionCount();
+
+    /**
+     * @return 見つけた形式概念の数
+     */
+    long getConceptCount();
+
+    /**
+     * @return どれかの段階が実行中だった時間の, 1秒あたりに見つけた形式概念の数
+     */
+    double getConceptsPerSecond();
+
+    /**
+     * @return 最後に知らされた探索の深さ
+     */
+    int getCurrentDepth();
+
+    /**
+     * @return 知らされた探索の深さの最大値
+     */
+    int getMaxDepth();
+
+    /**
+     * @return 実行中の段階の名前
+     */
+    String[] getActivePhases();
+
+    /**
+     * @return 段階ごとの経過時間(ミリ秒). 実行中の段階は今までの時間.
+     */
+    Map<String,Long> getPhaseWallTimes();
+
+    /**
+     * @return 段階ごとに JVM の全スレッドが確保したバイト数. 測れない JVM では空.
+     */
+    Map<String,Long> getPhaseAllocatedBytes();
+
+    /**
+     * 全ての統計を0に戻すメソッド.
+     */
+    void reset();
+}
@@ -0,0 +1,275 @@
+/**
+ * long[] に詰め込んだビット列(ビットベクトル)を扱うためのユーティリティクラス.
+ * i 番目の要素は words[i/64] の (i%64) ビット目に対応する.
+ * 長さの揃ったビットベクトル同士の演算は全てワード単位で行なう.
+ *
+ * @author  uehashu
+ * @version 1.0
+ */
+final class BitVectors{
+
+    //////////////////
+    // Constructors //
+    //////////////////
+
+    private BitVectors(){
+    }
+
+
+
+    /////////////
+    // Methods //
+    /////////////
+
+    /**
+     * 要素数 size のビットベクトルに必要なワード数を返すメソッド.
+     * @param size 要素数
+     * @return     ワード数
+     */
+    static int words(int size){
+        return (size + 63) >>> 6;
+    }
+
+
+    /**
+     * 空のビットベクトルを作るメソッド.
+     * @param size 要素数
+     * @return     全てのビットが0のビットベクトル
+     */
+    static long[] create(int size){
+        return new long[words(size)];
+    }
+
+
+    /**
+     * 0 から size-1 までの全てのビットが立ったビットベクトルを作るメソッド.
+     * @param size 要素数
+     * @return     全てのビットが1のビットベクトル
+     */
+    static long[] full(int size){
+        long[] vector = new long[words(size)];
+        fill(vector,size);
+        return vector;
+    }
+
+
+    /**
+     * 0 から size-1 までの全てのビットを立てるメソッド.
+     * @param vector 対象のビットベクトル
+     * @param size   要素数
+     */
+    static void fill(long[] vector, int size){
+        int fullWords = size >>> 6;
+        for(int i=0;i<fullWords;i++){
+            vector[i] = -1L;
+        }
+        if((size & 63) != 0){
+            vector[fullWords] = (1L << size) - 1;
+        }
+        for(int i=words(size);i<vector.length;i++){
+            vector[i] = 0L;
+        }
+    }
+
+
+    /**
+     * i 番目のビットを立てるメソッド.
+     * @param vector 対象のビットベクトル
+     * @param i      要素番号
+     */
+    static void set(long[] vector, int i){
+        vector[i >>> 6] |= 1L << i;
+    }
+
+
+    /**
+     * i 番目のビットを落とすメソッド.
+     * @param vector 対象のビットベクトル
+     * @param i      要素番号
+     */
+    static void clear(long[] vector, int i){
+        vector[i >>> 6] &= ~(1L << i);
+    }
+
+
+    /**
+     * i 番目のビットが立っているかを返すメソッド.
+     * @param vector 対象のビットベクトル
+     * @param i      要素番号
+     * @return       立っていれば真
+     */
+    static boolean get(long[] vector, int i){
+        return (vector[i >>> 6] & (1L << i)) != 0;
+    }
+
+
+    /**
+     * i 番目以降のビットを全て落とすメソッド.
+     * @param vector 対象のビットベクトル
+     * @param i      要素番号
+     */
+    static void clearFrom(long[] vector, int i){
+        int word = i >>> 6;
+        if(word >= vector.length){
+            return;
+        }
+        vector[word] &= (1L << i) - 1;
+        for(int w=word+1;w<vector.length;w++){
+            vector[w] = 0L;
+        }
+    }
+
+
+    /**
+     * dst に src との共通部分を格納するメソッド.
+     * @param dst 結果を格納するビットベクトル
+     * @param src 共通部分をとる相手
+     */
+    static void and(long[] dst, long[] src){
+        for(int i=0;i<dst.length;i++){
+            dst[i] &= src[i];
+        }
+    }
+
+
+    /**
+     * a と b の共通部分を dst に格納するメソッド.
+     * @param a,b 対象のビットベクトル
+     * @param dst 結果を格納するビットベクトル
+     */
+    static void and(long[] a, long[] b, long[] dst){
+        for(int i=0;i<dst.length;i++){
+            dst[i] = a[i] & b[i];
+        }
+    }
+
+
+    /**
+     * a が b の部分集合であるかを返すメソッド.
+     * @param a,b 対象のビットベクトル
+     * @return    a ⊆ b ならば真
+     */
+    static boolean isSubset(long[] a, long[] b){
+        for(int i=0;i<a.length;i++){
+            if((a[i] & ~b[i]) != 0){
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * a と b が index 未満の要素について一致しているかを返すメソッド.
+     * NextClosure や Close-by-One の正準性判定に用いる.
+     * @param a,b   対象のビットベクトル
+     * @param index この番号未満の要素だけを比較する
+     * @return      一致していれば真
+     */
+    static boolean equalsBelow(long[] a, long[] b, int index){
+        int word = index >>> 6;
+        for(int i=0;i<word;i++){
+            if(a[i] != b[i]){
+                return false;
+            }
+        }
+        if((index & 63) != 0){
+            long mask = (1L << index) - 1;
+            if(((a[word] ^ b[word]) & mask) != 0){
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * index 未満の要素について a が b の部分集合であるかを返すメソッド.
+     * Close-by-One 系の手法で, 正準性判定が失敗すると分かっている分岐を省くのに用いる.
+     * @param a,b   対象のビットベクトル
+     * @param index この番号未満の要素だけを比較する
+     * @return      a ∩ {0,...,index-1} ⊆ b ならば真
+     */
+    static boolean isSubsetBelow(long[] a, long[] b, int index){
+        int word = index >>> 6;
+        for(int i=0;i<word;i++){
+            if((a[i] & ~b[i]) != 0){
+                return false;
+            }
+        }
+        if((index & 63) != 0){
+            long mask = (1L << index) - 1;
+            if((a[word] & ~b[word] & mask) != 0){
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * 立っているビットの数を返すメソッド.
+     * @param vector 対象のビットベクトル
+     * @return       要素数
+     */
+    static int cardinality(long[] vector){
+        int count = 0;
+        for(int i=0;i<vector.length;i++){
+            count += Long.bitCount(vector[i]);
+        }
+        return count;
+    }
+
+
+    /**
+     * from 番目以降で最初に立っているビットの番号を返すメソッド.
+     * @param vector 対象のビットベクトル
+     * @param from   探索を始める番号
+     * @return       見つからなければ -1
+     */
+    static int nextSetBit(long[] vector, int from){
+        int word = from >>> 6;
+        if(word >= vector.length){
+            return -1;
+        }
+        long bits = vector[word] & (-1L << from);
+        while(true){
+            if(bits != 0){
+                return (word << 6) + Long.numberOfTrailingZeros(bits);
+            }
+            if(++word == vector.length){
+                return -1;
+            }
+            bits = vector[word];
+        }
+    }
+
+
+    /**
+     * 何もビットが立っていないかを返すメソッド.
+     * @param vector 対象のビットベクトル
+     * @return       空集合ならば真
+     */
+    static boolean isEmpty(long[] vector){
+        for(int i=0;i<vector.length;i++){
+            if(vector[i] != 0){
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * ビットベクトルのハッシュ値を返すメソッド. 途中でオブジェクトを生成しない.
+     * @param vector 対象のビットベクトル
+     * @return       ハッシュ値
+     */
+    static int hash(long[] vector){
+        long h = 1234;
+        for(int i=vector.length;--i>=0;){
+            h ^= vector[i] * (i + 1);
+        }
+        return (int)((h >> 32) ^ h);
+    }
+}
@@ -0,0 +1,310 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 極作用素の計算結果を覚えておくキャッシュクラス.
+ * オブジェクト部分集合のビット列をキーにして, X' と X'' を保持する.
+ * X'' は closeExtent() で初めて求められたときに, 覚えておいた X' から計算する.
+ * 列挙, 対話的な探索, 被覆関係の計算などで同じ閉包を何度も求めるときに,
+ * FormalContext の前に置いて使う.
+ *
+ * 使用メモリの上限を指定でき, 上限を超えると最も長く使われていない閉包から捨てる(LRU).
+ * キーのハッシュ値でいくつかのセグメントに分け, セグメントごとにロックするので,
+ * 並列に列挙するスレッドの間で共有してもよい.
+ *
+ * @author  uehashu
+ * @version 1.0
+ */
+public class ClosureCache{
+
+    FormalContext context; // 閉包を計算するコンテクスト表.
+    Segment[] segments; // ハッシュ値で分けたセグメント.
+    long entryBytes; // 1つの閉包を覚えておくのに必要なおおよそのバイト数.
+    AtomicLong hits = new AtomicLong(); // キャッシュにあった回数.
+    AtomicLong misses = new AtomicLong(); // キャッシュになかった回数.
+    AtomicLong evictions = new AtomicLong(); // 上限を超えて捨てた回数.
+
+
+    //////////////////
+    // Constructors //
+    //////////////////
+
+    /**
+     * セグメント数は利用可能なプロセッサ数から決める.
+     * @param context  閉包を計算するコンテクスト表
+     * @param maxBytes 使用メモリの上限(バイト)
+     */
+    public ClosureCache(FormalContext context, long maxBytes){
+        this(context,maxBytes,4 * Runtime.getRuntime().availableProcessors());
+    }
+
+
+    /**
+     * @param context     閉包を計算するコンテクスト表
+     * @param maxBytes    使用メモリの上限(バイト)
+     * @param concurrency 同時にアクセスするスレッド数の目安. セグメント数になる.
+     */
+    public ClosureCache(FormalContext context, long maxBytes, int concurrency){
+        this.context = context;
+
+        // キー, X', X'' の配列と, それぞれのオブジェクトヘッダやマップのエントリの分.
+        entryBytes = 8L * (2 * context.getObjectWords() + context.getAttributeWords()) + 160;
+
+        int segmentLength = Integer.highestOneBit(Math.max(1,concurrency) * 2 - 1);
+        long capacity = Math.max(1,maxBytes / entryBytes / segmentLength);
+        segments = new Segment[segmentLength];
+        for(int i=0;i<segmentLength;i++){
+            segments[i] = new Segment((int)Math.min(Integer.MAX_VALUE,capacity));
+        }
+    }
+
+
+
+    /////////////
+    // Methods //
+    /////////////
+
+    /**
+     * オブジェクト部分集合に極作用素を適用させるメソッド. X' を計算する.
+     * @param extent オブジェクト部分集合
+     * @param intent 結果の属性部分集合を書き込むビット列
+     */
+    public void objectPolar(long[] extent, long[] intent){
+        Closure closure = lookup(extent);
+        System.arraycopy(closure.intent,0,intent,0,intent.length);
+    }
+
+
+    /**
+     * オブジェクト部分集合の閉包 X'' を計算するメソッド.
+     * extent と closure は同じ配列でもよい.
+     * @param extent  オブジェクト部分集合
+     * @param intent  X' を書き込むビット列
+     * @param closure X'' を書き込むビット列
+     */
+    public void closeExtent(long[] extent, long[] intent, long[] closure){
+        Closure cached = lookup(extent);
+        long[] cachedClosure = cached.closure;
+        if(cachedClosure == null){
+            cachedClosure = context.newExtent();
+            context.attributePolar(cached.intent,cachedClosure);
+            cached.closure = cachedClosure;
+        }
+        System.arraycopy(cached.intent,0,intent,0,intent.length);
+        System.arraycopy(cachedClosure,0,closure,0,closure.length);
+    }
+
+
+    /**
+     * キャッシュにあった回数を返すメソッド.
+     * @return ヒット数
+     */
+    public long getHitCount(){
+        return hits.get();
+    }
+
+
+    /**
+     * キャッシュになかった回数を返すメソッド.
+     * @return ミス数
+     */
+    public long getMissCount(){
+        return misses.get();
+    }
+
+
+    /**
+     * 上限を超えて捨てた回数を返すメソッド.
+     * @return 追い出した数
+     */
+    public long getEvictionCount(){
+        return evictions.get();
+    }
+
+
+    /**
+     * ヒット率を返すメソッド.
+     * @return ヒット率. まだ一度も引いていなければ 0.
+     */
+    public double getHitRate(){
+        long hit = hits.get();
+        long total = hit + misses.get();
+        return total == 0 ? 0.0 : (double)hit / total;
+    }
+
+
+    /**
+     * 覚えている閉包の数を返すメソッド.
+     * @return 閉包の数
+     */
+    public int size(){
+        int size = 0;
+        for(Segment segment : segments){
+            synchronized(segment){
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+
+    /**
+     * おおよその使用メモリを返すメソッド.
+     * @return バイト数
+     */
+    public long getByteSize(){
+        return size() * entryBytes;
+    }
+
+
+    /**
+     * 覚えている閉包を全て捨てるメソッド. 統計はそのまま残る.
+     */
+    public void clear(){
+        for(Segment segment : segments){
+            synchronized(segment){
+                segment.clear();
+            }
+        }
+    }
+
+
+    /**
+     * 統計を文字列で返すメソッド.
+     * @return 統計
+     */
+    // @Override
+    public String toString(){
+        return "ClosureCache[size=" + size() + ", bytes=" + getByteSize()
+            + ", hits=" + getHitCount() + ", misses=" + getMissCount()
+            + ", evictions=" + getEvictionCount() + "]";
+    }
+
+
+
+    /////////////////////
+    // Private Methods //
+    /////////////////////
+
+    /**
+     * 閉包をキャッシュから引き, なければ X' だけを計算して覚えるメソッド.
+     * 計算はロックの外で行なうので, 同じ閉包を複数のスレッドが同時に計算することはある.
+     * @param extent オブジェクト部分集合
+     * @return       閉包
+     */
+    private Closure lookup(long[] extent){
+        Key probe = new Key(extent);
+        Segment segment = segments[probe.hash & (segments.length - 1)];
+
+        Closure closure;
+        synchronized(segment){
+            closure = segment.get(probe);
+        }
+        if(closure != null){
+            hits.incrementAndGet();
+            return closure;
+        }
+        misses.incrementAndGet();
+
+        closure = new Closure(context.newIntent());
+        context.objectPolar(extent,closure.intent);
+        Key key = new Key(extent.clone(),probe.hash);
+        synchronized(segment){
+            segment.put(key,closure);
+        }
+        return closure;
+    }
+
+
+
+    ///////////////////
+    // Inner Classes //
+    ///////////////////
+
+    /**
+     * オブジェクト部分集合のビット列を包んだキー. ハッシュ値は一度だけ計算する.
+     */
+    private static final class Key{
+
+        final long[] words;
+        final int hash;
+
+        Key(long[] words){
+            this(words,spread(BitVectors.hash(words)));
+        }
+
+        Key(long[] words, int hash){
+            this.words = words;
+            this.hash = hash;
+        }
+
+        private static int spread(int h){
+            h ^= h >>> 16;
+            h *= 0x85ebca6b;
+            return h ^ (h >>> 13);
+        }
+
+        // @Override
+        public int hashCode(){
+            return hash;
+        }
+
+        // @Override
+        public boolean equals(Object o){
+            if(!(o instanceof Key)){
+                return false;
+            }
+            Key other = (Key)o;
+            if(hash != other.hash){
+                return false;
+            }
+            for(int i=0;i<words.length;i++){
+                if(words[i] != other.words[i]){
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+
+    /**
+     * X' と X'' の組. X'' は求めるまで null.
+     * 複数のスレッドが同時に X'' を求めて書いても, どれも同じ値になる.
+     */
+    private static final class Closure{
+
+        final long[] intent;
+        volatile long[] closure;
+
+        Closure(long[] intent){
+            this.intent = intent;
+        }
+    }
+
+
+    /**
+     * アクセス順の LinkedHashMap による LRU のセグメント.
+     */
+    private final class Segment extends LinkedHashMap<Key,Closure>{
+
+        private static final long serialVersionUID = 1L;
+
+        final int capacity; // このセグメントが覚えておける閉包の数.
+
+        Segment(int capacity){
+            super(16,0.75f,true);
+            this.capacity = capacity;
+        }
+
+        // @Override
+        protected boolean removeEldestEntry(Map.Entry<Key,Closure> eldest){
+            if(size() > capacity){
+                evictions.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    }
+}
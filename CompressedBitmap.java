@@ -0,0 +1,1062 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * 非負整数の集合を Roaring ビットマップと同じ形で圧縮して表すクラス.
+ * 整数の上位16ビットごとにコンテナを1つ持ち, 下位16ビットの集合を
+ * 要素数に応じて次の3種類のどれかで表す.
+ * <ul>
+ * <li>配列コンテナ. 要素を昇順に並べた char[]. 要素数が ARRAY_MAX 以下のとき.</li>
+ * <li>ビットマップコンテナ. 65536 ビットの long[1024]. 要素数が ARRAY_MAX を超えるとき.</li>
+ * <li>ランコンテナ. 連続する要素を (始め, 長さ-1) の組で並べたもの. runOptimize() で小さくなるとき.</li>
+ * </ul>
+ * 共通部分や部分集合判定はコンテナの種類の組ごとに, 配列どうしならマージ,
+ * ビットマップどうしならワード単位, ランどうしなら区間の重なりで計算する.
+ *
+ * オブジェクト数が多く, 各属性を持つオブジェクトが少ないコンテクスト表の外延に使う.
+ * 全オブジェクト分の long[] に比べて, 要素1つあたり2バイト程度で済む.
+ * 要素を加えるとき以外は変更しないので, 作った後は複数のスレッドから読んでよい.
+ *
+ * @author  uehashu
+ * @version 1.0
+ */
+public class CompressedBitmap{
+
+    static final int ARRAY_MAX = 4096; // 配列コンテナの要素数の上限.
+
+    char[] keys; // 各コンテナの上位16ビット. 昇順.
+    Container[] containers; // コンテナ.
+    int size; // コンテナの数.
+
+
+    //////////////////
+    // Constructors //
+    //////////////////
+
+    public CompressedBitmap(){
+        this(4);
+    }
+
+
+    /**
+     * @param capacity 最初から格納できるようにしておくコンテナの数
+     */
+    CompressedBitmap(int capacity){
+        keys = new char[Math.max(1,capacity)];
+        containers = new Container[Math.max(1,capacity)];
+    }
+
+
+    /**
+     * from 以上 to 未満の全ての整数を要素に持つ集合を作るメソッド. ランコンテナで表す.
+     * @param from 始め
+     * @param to   終わり(これを含まない)
+     * @return     集合
+     */
+    public static CompressedBitmap range(int from, int to){
+        CompressedBitmap bitmap = new CompressedBitmap();
+        for(int start=from;start<to;){
+            int key = start >>> 16;
+            int end = Math.min(to,(key + 1) << 16);
+            bitmap.append(key,new RunContainer(new char[]{(char)start,(char)(end - start - 1)},1));
+            start = end;
+        }
+        return bitmap;
+    }
+
+
+    /**
+     * ビット列から作るメソッド.
+     * @param words ビット列. 整数 i は words[i/64] の (i%64) ビット目.
+     * @return      集合
+     */
+    public static CompressedBitmap fromWords(long[] words){
+        CompressedBitmap bitmap = new CompressedBitmap();
+        for(int base=0;base<words.length;base+=1024){
+            int end = Math.min(words.length,base + 1024);
+            int cardinality = 0;
+            for(int w=base;w<end;w++){
+                cardinality += Long.bitCount(words[w]);
+            }
+            if(cardinality == 0){
+                continue;
+            }
+            if(cardinality > ARRAY_MAX){
+                long[] block = new long[1024];
+                System.arraycopy(words,base,block,0,end - base);
+                bitmap.append(base >>> 10,new BitmapContainer(block,cardinality));
+            }else{
+                char[] values = new char[cardinality];
+                int length = 0;
+                for(int w=base;w<end;w++){
+                    long bits = words[w];
+                    while(bits != 0){
+                        values[length++] = (char)(((w - base) << 6) + Long.numberOfTrailingZeros(bits));
+                        bits &= bits - 1;
+                    }
+                }
+                bitmap.append(base >>> 10,new ArrayContainer(values,cardinality));
+            }
+        }
+        return bitmap;
+    }
+
+
+
+    /////////////
+    // Methods //
+    /////////////
+
+    /**
+     * 要素を追加するメソッド. 昇順に追加する場合が一番速い.
+     * @param i 追加する整数. 非負であること.
+     * @return  要素が増えたならば真
+     */
+    public boolean add(int i){
+        if(i < 0){
+            throw new IndexOutOfBoundsException("i < 0: " + i);
+        }
+        int key = i >>> 16;
+        int index = size > 0 && keys[size-1] == key ? size-1 : indexOf(key);
+        if(index < 0){
+            index = -index - 1;
+            insert(index,key,new ArrayContainer(new char[4],0));
+        }
+        Container container = containers[index];
+        int before = container.cardinality();
+        containers[index] = container.add(i & 0xFFFF);
+        return containers[index].cardinality() != before;
+    }
+
+
+    /**
+     * 要素が含まれているかを返すメソッド.
+     * @param i 整数
+     * @return  含まれていれば真
+     */
+    public boolean contains(int i){
+        if(i < 0){
+            return false;
+        }
+        int index = indexOf(i >>> 16);
+        return index >= 0 && containers[index].contains(i & 0xFFFF);
+    }
+
+
+    /**
+     * 要素数を返すメソッド.
+     * @return 要素数
+     */
+    public int cardinality(){
+        int cardinality = 0;
+        for(int k=0;k<size;k++){
+            cardinality += containers[k].cardinality();
+        }
+        return cardinality;
+    }
+
+
+    /**
+     * 空集合であるかを返すメソッド.
+     * @return 空集合ならば真
+     */
+    public boolean isEmpty(){
+        return size == 0;
+    }
+
+
+    /**
+     * from 以降で最初の要素を返すメソッド.
+     * @param from 探索を始める整数
+     * @return     見つからなければ -1
+     */
+    public int nextSetBit(int from){
+        if(from < 0){
+            throw new IndexOutOfBoundsException("from < 0: " + from);
+        }
+        int key = from >>> 16;
+        int index = indexOf(key);
+        if(index >= 0){
+            int low = containers[index].next(from & 0xFFFF);
+            if(low >= 0){
+                return (key << 16) | low;
+            }
+            index++;
+        }else{
+            index = -index - 1;
+        }
+        return index < size ? (keys[index] << 16) | containers[index].next(0) : -1;
+    }
+
+
+    /**
+     * 共通部分を新しく作るメソッド. この集合と other は変わらない.
+     * @param other 相手の集合
+     * @return      共通部分
+     */
+    public CompressedBitmap and(CompressedBitmap other){
+        CompressedBitmap result = new CompressedBitmap(Math.min(size,other.size));
+        int i = 0;
+        int j = 0;
+        while(i < size && j < other.size){
+            if(keys[i] == other.keys[j]){
+                Container container = containers[i].and(other.containers[j]);
+                if(container.cardinality() > 0){
+                    result.append(keys[i],container);
+                }
+                i++;
+                j++;
+            }else if(keys[i] < other.keys[j]){
+                i++;
+            }else{
+                j++;
+            }
+        }
+        return result;
+    }
+
+
+    /**
+     * 共通部分の要素数を, 共通部分を作らずに返すメソッド.
+     * @param other 相手の集合
+     * @return      共通部分の要素数
+     */
+    public int andCardinality(CompressedBitmap other){
+        int cardinality = 0;
+        int i = 0;
+        int j = 0;
+        while(i < size && j < other.size){
+            if(keys[i] == other.keys[j]){
+                cardinality += containers[i++].andCardinality(other.containers[j++]);
+            }else if(keys[i] < other.keys[j]){
+                i++;
+            }else{
+                j++;
+            }
+        }
+        return cardinality;
+    }
+
+
+    /**
+     * この集合が other の部分集合であるかを返すメソッド.
+     * @param other 相手の集合
+     * @return      部分集合ならば真
+     */
+    public boolean isSubsetOf(CompressedBitmap other){
+        if(size > other.size){
+            return false;
+        }
+        int j = 0;
+        for(int i=0;i<size;i++){
+            while(j < other.size && other.keys[j] < keys[i]){
+                j++;
+            }
+            if(j == other.size || other.keys[j] != keys[i]
+               || !containers[i].isSubsetOf(other.containers[j])){
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * ビット列に書き出すメソッド. ビット列は先に0で埋める.
+     * @param words 書き込むビット列. 最大の要素が入る長さであること.
+     */
+    public void toWords(long[] words){
+        Arrays.fill(words,0L);
+        for(int k=0;k<size;k++){
+            containers[k].toWords(words,keys[k] << 10);
+        }
+    }
+
+
+    /**
+     * 連続する要素が多いコンテナをランコンテナに置き換えるメソッド.
+     * @return この集合
+     */
+    public CompressedBitmap runOptimize(){
+        for(int k=0;k<size;k++){
+            containers[k] = containers[k].runOptimize();
+        }
+        return this;
+    }
+
+
+    /**
+     * おおよその使用メモリを返すメソッド.
+     * @return バイト数
+     */
+    public long getByteSize(){
+        long bytes = 32 + 2L * keys.length + 8L * containers.length;
+        for(int k=0;k<size;k++){
+            bytes += containers[k].byteSize();
+        }
+        return bytes;
+    }
+
+
+    /**
+     * 比較用. コンテナの種類によらず, 同じ要素を持てば等しい.
+     * @param o 比較対象
+     * @return  同じ要素を持つとき, 真を返す.
+     */
+    // @Override
+    public boolean equals(Object o){
+        if(this == o){
+            return true;
+        }
+        if(!(o instanceof CompressedBitmap)){
+            return false;
+        }
+        CompressedBitmap other = (CompressedBitmap)o;
+        if(size != other.size){
+            return false;
+        }
+        for(int k=0;k<size;k++){
+            if(keys[k] != other.keys[k]
+               || containers[k].cardinality() != other.containers[k].cardinality()
+               || !containers[k].isSubsetOf(other.containers[k])){
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * 比較用. コンテナの種類によらず, 要素だけから決まる.
+     * @return ハッシュ
+     */
+    // @Override
+    public int hashCode(){
+        int hash = 1;
+        for(int i=nextSetBit(0);i>=0;i=nextSetBit(i+1)){
+            hash = 31 * hash + i;
+        }
+        return hash;
+    }
+
+
+    /**
+     * HashSet と同じ形式の文字列を返すメソッド.
+     * @return "[1, 2, 3]" のような文字列
+     */
+    // @Override
+    public String toString(){
+        StringBuilder builder = new StringBuilder("[");
+        for(int i=nextSetBit(0);i>=0;i=nextSetBit(i+1)){
+            if(builder.length() > 1){
+                builder.append(", ");
+            }
+            builder.append(i);
+        }
+        return builder.append(']').toString();
+    }
+
+
+
+    /////////////////////
+    // Private Methods //
+    /////////////////////
+
+    /**
+     * 上位16ビットからコンテナの位置を探すメソッド.
+     * @param key 上位16ビット
+     * @return    位置. 無ければ (-(入るべき位置) - 1).
+     */
+    private int indexOf(int key){
+        return Arrays.binarySearch(keys,0,size,(char)key);
+    }
+
+
+    /**
+     * 末尾にコンテナを加えるメソッド. key は今のどのコンテナよりも大きいこと.
+     * @param key       上位16ビット
+     * @param container コンテナ
+     */
+    private void append(int key, Container container){
+        insert(size,key,container);
+    }
+
+
+    /**
+     * 位置を指定してコンテナを挿入するメソッド.
+     * @param index     位置
+     * @param key       上位16ビット
+     * @param container コンテナ
+     */
+    private void insert(int index, int key, Container container){
+        if(size == keys.length){
+            keys = Arrays.copyOf(keys,size*2);
+            containers = Arrays.copyOf(containers,size*2);
+        }
+        System.arraycopy(keys,index,keys,index+1,size-index);
+        System.arraycopy(containers,index,containers,index+1,size-index);
+        keys[index] = (char)key;
+        containers[index] = container;
+        size++;
+    }
+
+
+    /**
+     * ビット列の from から to まで(両端を含む)のビットを立てるメソッド.
+     * @param words  ビット列
+     * @param offset 0番目のビットに当たるワード
+     * @param from   始め
+     * @param to     終わり(これを含む)
+     */
+    private static void setRange(long[] words, int offset, int from, int to){
+        int first = from >>> 6;
+        int last = to >>> 6;
+        long firstMask = -1L << from;
+        long lastMask = -1L >>> (63 - (to & 63));
+        if(first == last){
+            words[offset+first] |= firstMask & lastMask;
+            return;
+        }
+        words[offset+first] |= firstMask;
+        for(int w=first+1;w<last;w++){
+            words[offset+w] = -1L;
+        }
+        words[offset+last] |= lastMask;
+    }
+
+
+    /**
+     * ビット列の from から to まで(両端を含む)の立っているビットを数えるメソッド.
+     * @param words ビット列
+     * @param from  始め
+     * @param to    終わり(これを含む)
+     * @return      ビットの数
+     */
+    private static int countRange(long[] words, int from, int to){
+        int first = from >>> 6;
+        int last = to >>> 6;
+        long firstMask = -1L << from;
+        long lastMask = -1L >>> (63 - (to & 63));
+        if(first == last){
+            return Long.bitCount(words[first] & firstMask & lastMask);
+        }
+        int count = Long.bitCount(words[first] & firstMask);
+        for(int w=first+1;w<last;w++){
+            count += Long.bitCount(words[w]);
+        }
+        return count + Long.bitCount(words[last] & lastMask);
+    }
+
+
+
+    ///////////////////
+    // Inner Classes //
+    ///////////////////
+
+    /**
+     * 下位16ビットの集合を表すコンテナ.
+     * 要素を加えたり共通部分を取ったりした結果, 別の種類のコンテナになることがある.
+     */
+    abstract static class Container{
+
+        /** 要素数を返す. */
+        abstract int cardinality();
+
+        /** 要素が含まれているかを返す. */
+        abstract boolean contains(int low);
+
+        /** 要素を加えたコンテナを返す. this を書き換えることがある. */
+        abstract Container add(int low);
+
+        /** 共通部分を新しく作る. */
+        abstract Container and(Container other);
+
+        /** 共通部分の要素数を返す. */
+        abstract int andCardinality(Container other);
+
+        /** この集合が other の部分集合であるかを返す. */
+        abstract boolean isSubsetOf(Container other);
+
+        /** from 以降で最初の要素を返す. 無ければ -1. */
+        abstract int next(int from);
+
+        /** offset 番目のワードから始まるビット列に書き出す. */
+        abstract void toWords(long[] words, int offset);
+
+        /** ランコンテナの方が小さければ置き換えたものを返す. */
+        abstract Container runOptimize();
+
+        /** おおよその使用メモリを返す. */
+        abstract int byteSize();
+
+        /**
+         * 要素を1つずつ確かめて部分集合判定をするメソッド. 種類の組に専用の方法が無い場合に使う.
+         * @param other 相手のコンテナ
+         * @return      部分集合ならば真
+         */
+        boolean containsAllOf(Container other){
+            if(other.cardinality() > cardinality()){
+                return false;
+            }
+            for(int v=other.next(0);v>=0;v=v<0xFFFF ? other.next(v+1) : -1){
+                if(!contains(v)){
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * 要素の少ないコンテナを配列コンテナに, 多いものをビットマップコンテナにするメソッド.
+         * @param words       65536 ビットのビット列
+         * @param cardinality 要素数
+         * @return            コンテナ
+         */
+        static Container fromBlock(long[] words, int cardinality){
+            if(cardinality > ARRAY_MAX){
+                return new BitmapContainer(words,cardinality);
+            }
+            char[] values = new char[cardinality];
+            int length = 0;
+            for(int w=0;w<words.length;w++){
+                long bits = words[w];
+                while(bits != 0){
+                    values[length++] = (char)((w << 6) + Long.numberOfTrailingZeros(bits));
+                    bits &= bits - 1;
+                }
+            }
+            return new ArrayContainer(values,cardinality);
+        }
+    }
+
+
+    /**
+     * 要素を昇順に並べた配列コンテナ.
+     */
+    static final class ArrayContainer extends Container{
+
+        char[] values; // 要素. 昇順.
+        int cardinality; // 要素数.
+
+        ArrayContainer(char[] values, int cardinality){
+            this.values = values;
+            this.cardinality = cardinality;
+        }
+
+        // @Override
+        int cardinality(){
+            return cardinality;
+        }
+
+        // @Override
+        boolean contains(int low){
+            return Arrays.binarySearch(values,0,cardinality,(char)low) >= 0;
+        }
+
+        // @Override
+        Container add(int low){
+            int index = cardinality > 0 && values[cardinality-1] < low
+                ? -cardinality - 1 : Arrays.binarySearch(values,0,cardinality,(char)low);
+            if(index >= 0){
+                return this;
+            }
+            if(cardinality == ARRAY_MAX){
+                long[] words = new long[1024];
+                toWords(words,0);
+                return new BitmapContainer(words,cardinality).add(low);
+            }
+            index = -index - 1;
+            if(cardinality == values.length){
+                values = Arrays.copyOf(values,Math.min(ARRAY_MAX,Math.max(4,cardinality*2)));
+            }
+            System.arraycopy(values,index,values,index+1,cardinality-index);
+            values[index] = (char)low;
+            cardinality++;
+            return this;
+        }
+
+        // @Override
+        Container and(Container other){
+            char[] result = new char[Math.min(cardinality,other.cardinality())];
+            int length = 0;
+            if(other instanceof ArrayContainer){
+                ArrayContainer array = (ArrayContainer)other;
+                int i = 0;
+                int j = 0;
+                while(i < cardinality && j < array.cardinality){
+                    if(values[i] == array.values[j]){
+                        result[length++] = values[i];
+                        i++;
+                        j++;
+                    }else if(values[i] < array.values[j]){
+                        i++;
+                    }else{
+                        j++;
+                    }
+                }
+            }else{
+                for(int i=0;i<cardinality;i++){
+                    if(other.contains(values[i])){
+                        result[length++] = values[i];
+                    }
+                }
+            }
+            return new ArrayContainer(result,length);
+        }
+
+        // @Override
+        int andCardinality(Container other){
+            int count = 0;
+            if(other instanceof ArrayContainer){
+                ArrayContainer array = (ArrayContainer)other;
+                int i = 0;
+                int j = 0;
+                while(i < cardinality && j < array.cardinality){
+                    if(values[i] == array.values[j]){
+                        count++;
+                        i++;
+                        j++;
+                    }else if(values[i] < array.values[j]){
+                        i++;
+                    }else{
+                        j++;
+                    }
+                }
+            }else{
+                for(int i=0;i<cardinality;i++){
+                    if(other.contains(values[i])){
+                        count++;
+                    }
+                }
+            }
+            return count;
+        }
+
+        // @Override
+        boolean isSubsetOf(Container other){
+            if(cardinality > other.cardinality()){
+                return false;
+            }
+            if(other instanceof ArrayContainer){
+                ArrayContainer array = (ArrayContainer)other;
+                int j = 0;
+                for(int i=0;i<cardinality;i++){
+                    while(j < array.cardinality && array.values[j] < values[i]){
+                        j++;
+                    }
+                    if(j == array.cardinality || array.values[j] != values[i]){
+                        return false;
+                    }
+                }
+                return true;
+            }
+            for(int i=0;i<cardinality;i++){
+                if(!other.contains(values[i])){
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // @Override
+        int next(int from){
+            int index = Arrays.binarySearch(values,0,cardinality,(char)from);
+            if(index < 0){
+                index = -index - 1;
+            }
+            return index < cardinality ? values[index] : -1;
+        }
+
+        // @Override
+        void toWords(long[] words, int offset){
+            for(int i=0;i<cardinality;i++){
+                words[offset + (values[i] >>> 6)] |= 1L << values[i];
+            }
+        }
+
+        // @Override
+        Container runOptimize(){
+            int runs = 0;
+            for(int i=0;i<cardinality;i++){
+                if(i == 0 || values[i] != values[i-1] + 1){
+                    runs++;
+                }
+            }
+            if(4 * runs >= 2 * cardinality){
+                return this;
+            }
+            char[] pairs = new char[2 * runs];
+            int r = -1;
+            for(int i=0;i<cardinality;i++){
+                if(i == 0 || values[i] != values[i-1] + 1){
+                    r++;
+                    pairs[2*r] = values[i];
+                    pairs[2*r+1] = 0;
+                }else{
+                    pairs[2*r+1]++;
+                }
+            }
+            return new RunContainer(pairs,runs);
+        }
+
+        // @Override
+        int byteSize(){
+            return 24 + 2 * values.length;
+        }
+    }
+
+
+    /**
+     * 65536 ビットのビットマップコンテナ.
+     */
+    static final class BitmapContainer extends Container{
+
+        long[] words; // ビット列. 長さは 1024.
+        int cardinality; // 要素数.
+
+        BitmapContainer(long[] words, int cardinality){
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        // @Override
+        int cardinality(){
+            return cardinality;
+        }
+
+        // @Override
+        boolean contains(int low){
+            return (words[low >>> 6] & (1L << low)) != 0;
+        }
+
+        // @Override
+        Container add(int low){
+            long mask = 1L << low;
+            if((words[low >>> 6] & mask) == 0){
+                words[low >>> 6] |= mask;
+                cardinality++;
+            }
+            return this;
+        }
+
+        // @Override
+        Container and(Container other){
+            if(other instanceof ArrayContainer){
+                return other.and(this);
+            }
+            long[] result = new long[1024];
+            int count = 0;
+            if(other instanceof BitmapContainer){
+                long[] otherWords = ((BitmapContainer)other).words;
+                for(int w=0;w<1024;w++){
+                    result[w] = words[w] & otherWords[w];
+                    count += Long.bitCount(result[w]);
+                }
+            }else{
+                RunContainer run = (RunContainer)other;
+                for(int r=0;r<run.runCount;r++){
+                    setRange(result,0,run.start(r),run.end(r));
+                }
+                for(int w=0;w<1024;w++){
+                    result[w] &= words[w];
+                    count += Long.bitCount(result[w]);
+                }
+            }
+            return fromBlock(result,count);
+        }
+
+        // @Override
+        int andCardinality(Container other){
+            if(other instanceof ArrayContainer){
+                return other.andCardinality(this);
+            }
+            int count = 0;
+            if(other instanceof BitmapContainer){
+                long[] otherWords = ((BitmapContainer)other).words;
+                for(int w=0;w<1024;w++){
+                    count += Long.bitCount(words[w] & otherWords[w]);
+                }
+            }else{
+                RunContainer run = (RunContainer)other;
+                for(int r=0;r<run.runCount;r++){
+                    count += countRange(words,run.start(r),run.end(r));
+                }
+            }
+            return count;
+        }
+
+        // @Override
+        boolean isSubsetOf(Container other){
+            if(cardinality > other.cardinality()){
+                return false;
+            }
+            if(other instanceof BitmapContainer){
+                long[] otherWords = ((BitmapContainer)other).words;
+                for(int w=0;w<1024;w++){
+                    if((words[w] & ~otherWords[w]) != 0){
+                        return false;
+                    }
+                }
+                return true;
+            }
+            return other.containsAllOf(this);
+        }
+
+        // @Override
+        int next(int from){
+            int w = from >>> 6;
+            long bits = words[w] & (-1L << from);
+            while(true){
+                if(bits != 0){
+                    return (w << 6) + Long.numberOfTrailingZeros(bits);
+                }
+                if(++w == 1024){
+                    return -1;
+                }
+                bits = words[w];
+            }
+        }
+
+        // @Override
+        void toWords(long[] words, int offset){
+            int length = Math.min(1024,words.length - offset);
+            for(int w=0;w<length;w++){
+                words[offset+w] |= this.words[w];
+            }
+        }
+
+        // @Override
+        Container runOptimize(){
+            int runs = 0;
+            long previous = 0;
+            for(int w=0;w<1024;w++){
+                long bits = words[w];
+                // 直前のビットが0で, そのビットが1になる位置の数がランの数.
+                runs += Long.bitCount(bits & ~((bits << 1) | (previous >>> 63)));
+                previous = bits;
+            }
+            if(4 * runs + 2 >= 8192){
+                return this;
+            }
+            char[] pairs = new char[2 * runs];
+            int r = 0;
+            for(int v=next(0);v>=0;){
+                int end = v;
+                while(end < 0xFFFF && contains(end+1)){
+                    end++;
+                }
+                pairs[2*r] = (char)v;
+                pairs[2*r+1] = (char)(end - v);
+                r++;
+                v = end < 0xFFFF ? next(end+1) : -1;
+            }
+            return new RunContainer(pairs,runs);
+        }
+
+        // @Override
+        int byteSize(){
+            return 24 + 8 * 1024;
+        }
+    }
+
+
+    /**
+     * 連続する要素を (始め, 長さ-1) の組で並べたランコンテナ.
+     */
+    static final class RunContainer extends Container{
+
+        char[] runs; // ランの始めと長さ-1 を交互に並べたもの. 始めの昇順.
+        int runCount; // ランの数.
+        int cardinality; // 要素数.
+
+        RunContainer(char[] runs, int runCount){
+            this.runs = runs;
+            this.runCount = runCount;
+            for(int r=0;r<runCount;r++){
+                cardinality += runs[2*r+1] + 1;
+            }
+        }
+
+        int start(int r){
+            return runs[2*r];
+        }
+
+        int end(int r){
+            return runs[2*r] + runs[2*r+1];
+        }
+
+        /**
+         * low を含むかもしれないラン(始めが low 以下で最後のもの)を探すメソッド.
+         * @param low 下位16ビット
+         * @return    ランの番号. 無ければ -1.
+         */
+        int find(int low){
+            int lo = 0;
+            int hi = runCount - 1;
+            while(lo <= hi){
+                int middle = (lo + hi) >>> 1;
+                if(start(middle) <= low){
+                    lo = middle + 1;
+                }else{
+                    hi = middle - 1;
+                }
+            }
+            return hi;
+        }
+
+        // @Override
+        int cardinality(){
+            return cardinality;
+        }
+
+        // @Override
+        boolean contains(int low){
+            int r = find(low);
+            return r >= 0 && low <= end(r);
+        }
+
+        // @Override
+        Container add(int low){
+            if(contains(low)){
+                return this;
+            }
+            long[] words = new long[1024];
+            toWords(words,0);
+            return fromBlock(words,cardinality).add(low);
+        }
+
+        // @Override
+        Container and(Container other){
+            if(!(other instanceof RunContainer)){
+                return other.and(this);
+            }
+            RunContainer run = (RunContainer)other;
+            char[] result = new char[2 * (runCount + run.runCount)];
+            int length = 0;
+            int i = 0;
+            int j = 0;
+            while(i < runCount && j < run.runCount){
+                int start = Math.max(start(i),run.start(j));
+                int end = Math.min(end(i),run.end(j));
+                if(start <= end){
+                    result[2*length] = (char)start;
+                    result[2*length+1] = (char)(end - start);
+                    length++;
+                }
+                if(end(i) < run.end(j)){
+                    i++;
+                }else{
+                    j++;
+                }
+            }
+            return new RunContainer(result,length);
+        }
+
+        // @Override
+        int andCardinality(Container other){
+            if(!(other instanceof RunContainer)){
+                return other.andCardinality(this);
+            }
+            RunContainer run = (RunContainer)other;
+            int count = 0;
+            int i = 0;
+            int j = 0;
+            while(i < runCount && j < run.runCount){
+                int start = Math.max(start(i),run.start(j));
+                int end = Math.min(end(i),run.end(j));
+                if(start <= end){
+                    count += end - start + 1;
+                }
+                if(end(i) < run.end(j)){
+                    i++;
+                }else{
+                    j++;
+                }
+            }
+            return count;
+        }
+
+        // @Override
+        boolean isSubsetOf(Container other){
+            if(cardinality > other.cardinality()){
+                return false;
+            }
+            if(other instanceof RunContainer){
+                RunContainer run = (RunContainer)other;
+                for(int r=0;r<runCount;r++){
+                    int s = run.find(start(r));
+                    if(s < 0 || run.end(s) < end(r)){
+                        return false;
+                    }
+                }
+                return true;
+            }
+            if(other instanceof BitmapContainer){
+                long[] words = ((BitmapContainer)other).words;
+                for(int r=0;r<runCount;r++){
+                    if(countRange(words,start(r),end(r)) != end(r) - start(r) + 1){
+                        return false;
+                    }
+                }
+                return true;
+            }
+            return other.containsAllOf(this);
+        }
+
+        // @Override
+        int next(int from){
+            int r = find(from);
+            if(r >= 0 && from <= end(r)){
+                return from;
+            }
+            return r + 1 < runCount ? start(r+1) : -1;
+        }
+
+        // @Override
+        void toWords(long[] words, int offset){
+            for(int r=0;r<runCount;r++){
+                setRange(words,offset,start(r),end(r));
+            }
+        }
+
+        // @Override
+        Container runOptimize(){
+            return this;
+        }
+
+        // @Override
+        int byteSize(){
+            return 24 + 2 * runs.length;
+        }
+    }
+
+
+
+    //////////
+    // Test //
+    //////////
+
+    public static void main(String args[]){
+
+        // 100万個のオブジェクトのうち, 数百個ずつを持つ属性の列を作って比べる.
+        Random random = new Random(1);
+        int objects = 1000000;
+        CompressedBitmap[] columns = new CompressedBitmap[8];
+        for(int m=0;m<columns.length;m++){
+            columns[m] = new CompressedBitmap();
+            for(int k=0;k<500;k++){
+                columns[m].add(random.nextInt(objects / 10));
+            }
+        }
+        CompressedBitmap all = CompressedBitmap.range(0,objects);
+
+        CompressedBitmap extent = all.and(columns[0]).and(columns[1]);
+        System.out.println("|A| = " + all.cardinality() + " (" + all.getByteSize() + " bytes), "
+                           + "|A ∩ m0 ∩ m1| = " + extent.cardinality()
+                           + " = " + columns[0].andCardinality(columns[1]));
+        System.out.println("m0 ∩ m1 ⊆ m0 : " + extent.isSubsetOf(columns[0])
+                           + ", m0 ⊆ m0 ∩ m1 : " + columns[0].isSubsetOf(extent));
+        System.out.println("column bytes " + columns[0].getByteSize()
+                           + " vs long[] " + 8 * BitVectors.words(objects));
+    }
+}
@@ -0,0 +1,409 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 概念束全体を列挙せずに, 指定した形式概念の上位近傍と下位近傍だけを
+ * コンテクスト表の極作用素から求めるクラス. 最大の形式概念から1段ずつ展開していく
+ * 対話的な探索で, 実際に訪れた形式概念の分だけ計算すればよいようにする.
+ *
+ * 近傍は FCACoverCalculator の Lindig のアルゴリズムで求め, 内包をキーにして覚えておく.
+ * 使用メモリの上限を指定でき, 上限を超えると最も長く使われていない形式概念の近傍から捨てる(LRU).
+ * まばらなコンテクスト表では外延を CompressedBitmap のまま扱い, 覚えておく外延も圧縮する.
+ * 全てのメソッドは複数のスレッドから呼んでよい. 近傍の計算はロックの外で行なう.
+ *
+ * @author  uehashu
+ * @version 1.0
+ */
+public class ConceptNeighbourhood{
+
+    FormalContext context; // 近傍を求めるコンテクスト表.
+    FCACoverCalculator calculator; // 近傍を計算するもの.
+    long maxBytes; // 使用メモリの上限(バイト).
+    long bytes = 0; // 覚えている近傍のおおよそのバイト数.
+    LinkedHashMap<Key,Entry> entries = new LinkedHashMap<>(16,0.75f,true); // アクセス順の近傍.
+    long hits = 0; // キャッシュにあった回数.
+    long misses = 0; // キャッシュになかった回数.
+    long evictions = 0; // 上限を超えて捨てた形式概念の数.
+
+
+    //////////////////
+    // Constructors //
+    //////////////////
+
+    /**
+     * @param context  近傍を求めるコンテクスト表
+     * @param maxBytes 使用メモリの上限(バイト). 上限より大きい近傍でも, 最後に求めた1つは覚えておく.
+     */
+    public ConceptNeighbourhood(FormalContext context, long maxBytes){
+        this.context = context;
+        this.calculator = new FCACoverCalculator(context);
+        this.maxBytes = maxBytes;
+    }
+
+
+
+    /////////////
+    // Methods //
+    /////////////
+
+    /**
+     * 最大の形式概念(外延が全てのオブジェクト)を返すメソッド. 探索の出発点になる.
+     * @return 最大の形式概念
+     */
+    public Tupple getTop(){
+        long[] extent = context.fullExtent();
+        long[] intent = context.newIntent();
+        context.objectPolar(extent,intent);
+        return context.toTupple(extent,intent);
+    }
+
+
+    /**
+     * 最小の形式概念(内包が全ての属性)を返すメソッド.
+     * @return 最小の形式概念
+     */
+    public Tupple getBottom(){
+        long[] intent = BitVectors.full(context.getAttributeLength());
+        if(context.isSparse()){
+            return context.toTupple(context.attributePolar(intent),intent);
+        }
+        long[] extent = context.newExtent();
+        context.attributePolar(intent,extent);
+        return context.toTupple(extent,intent);
+    }
+
+
+    /**
+     * 形式概念の上位近傍(上の被覆)を返すメソッド.
+     * 形式概念は内包で識別し, 外延は見ない.
+     * @param concept 形式概念
+     * @return        上位近傍. 最大の形式概念ならば空.
+     * @throws IllegalArgumentException 内包が閉じていない場合
+     */
+    public ArrayList<Tupple> getUpperNeighbours(Tupple concept){
+        return neighbours(concept,true);
+    }
+
+
+    /**
+     * 形式概念の下位近傍(下の被覆)を返すメソッド.
+     * 形式概念は内包で識別し, 外延は見ない.
+     * @param concept 形式概念
+     * @return        下位近傍. 最小の形式概念ならば空.
+     * @throws IllegalArgumentException 内包が閉じていない場合
+     */
+    public ArrayList<Tupple> getLowerNeighbours(Tupple concept){
+        return neighbours(concept,false);
+    }
+
+
+    /**
+     * キャッシュにあった回数を返すメソッド.
+     * @return ヒット数
+     */
+    public synchronized long getHitCount(){
+        return hits;
+    }
+
+
+    /**
+     * キャッシュになかった回数を返すメソッド.
+     * @return ミス数
+     */
+    public synchronized long getMissCount(){
+        return misses;
+    }
+
+
+    /**
+     * 上限を超えて捨てた形式概念の数を返すメソッド.
+     * @return 追い出した数
+     */
+    public synchronized long getEvictionCount(){
+        return evictions;
+    }
+
+
+    /**
+     * ヒット率を返すメソッド.
+     * @return ヒット率. まだ一度も引いていなければ 0.
+     */
+    public synchronized double getHitRate(){
+        long total = hits + misses;
+        return total == 0 ? 0.0 : (double)hits / total;
+    }
+
+
+    /**
+     * 近傍を覚えている形式概念の数を返すメソッド.
+     * @return 形式概念の数
+     */
+    public synchronized int size(){
+        return entries.size();
+    }
+
+
+    /**
+     * おおよその使用メモリを返すメソッド.
+     * @return バイト数
+     */
+    public synchronized long getByteSize(){
+        return bytes;
+    }
+
+
+    /**
+     * 覚えている近傍を全て捨てるメソッド. 統計はそのまま残る.
+     */
+    public synchronized void clear(){
+        entries.clear();
+        bytes = 0;
+    }
+
+
+    /**
+     * 統計を文字列で返すメソッド.
+     * @return 統計
+     */
+    // @Override
+    public synchronized String toString(){
+        return "ConceptNeighbourhood[size=" + entries.size() + ", bytes=" + bytes
+            + ", hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + "]";
+    }
+
+
+
+    /////////////////////
+    // Private Methods //
+    /////////////////////
+
+    /**
+     * 近傍をキャッシュから引き, なければ計算して覚えるメソッド.
+     * 計算はロックの外で行なうので, 同じ近傍を複数のスレッドが同時に計算することはある.
+     * @param concept 形式概念
+     * @param upper   上位近傍ならば真, 下位近傍ならば偽
+     * @return        近傍
+     */
+    private ArrayList<Tupple> neighbours(Tupple concept, boolean upper){
+        Key key = new Key(context.packAttributes(concept.getAttributeBits()));
+
+        Neighbours neighbours;
+        synchronized(this){
+            Entry entry = entries.get(key);
+            neighbours = entry == null ? null : upper ? entry.upper : entry.lower;
+            if(neighbours != null){
+                hits++;
+            }else{
+                misses++;
+            }
+        }
+
+        if(neighbours == null){
+            neighbours = calc(key.words,upper);
+            synchronized(this){
+                Entry entry = entries.get(key);
+                if(entry == null){
+                    entry = new Entry();
+                    entries.put(key,entry);
+                    bytes += 8L * key.words.length + 96;
+                }
+                if(upper && entry.upper == null){
+                    entry.upper = neighbours;
+                    bytes += neighbours.bytes;
+                }else if(!upper && entry.lower == null){
+                    entry.lower = neighbours;
+                    bytes += neighbours.bytes;
+                }
+                evict();
+            }
+        }
+
+        ArrayList<Tupple> result = new ArrayList<>(neighbours.intents.length);
+        for(int i=0;i<neighbours.intents.length;i++){
+            result.add(context.toTupple(neighbours.extents[i],neighbours.intents[i]));
+        }
+        return result;
+    }
+
+
+    /**
+     * 内包から外延を求め, 近傍を計算するメソッド.
+     * @param intent 内包
+     * @param upper  上位近傍ならば真, 下位近傍ならば偽
+     * @return       近傍
+     */
+    private Neighbours calc(long[] intent, boolean upper){
+        long[] closure = context.newIntent();
+        ArrayList<CompressedBitmap> compressedExtents = new ArrayList<>();
+        ArrayList<long[]> extents = new ArrayList<>();
+        ArrayList<long[]> intents = new ArrayList<>();
+
+        if(context.isSparse()){
+            CompressedBitmap extent = context.attributePolar(intent);
+            context.objectPolar(extent,closure);
+            checkClosed(intent,closure);
+            if(upper){
+                calculator.upperNeighbours(extent,intent,compressedExtents,intents);
+            }else{
+                calculator.lowerNeighbours(extent,intent,compressedExtents,intents);
+            }
+        }else{
+            long[] extent = context.newExtent();
+            context.attributePolar(intent,extent);
+            context.objectPolar(extent,closure);
+            checkClosed(intent,closure);
+            if(upper){
+                calculator.upperNeighbours(extent,intent,extents,intents);
+            }else{
+                calculator.lowerNeighbours(extent,intent,extents,intents);
+            }
+            for(long[] words : extents){
+                compressedExtents.add(CompressedBitmap.fromWords(words).runOptimize());
+            }
+        }
+
+        Neighbours neighbours = new Neighbours(compressedExtents.toArray(new CompressedBitmap[0]),
+                                               intents.toArray(new long[0][]));
+        neighbours.bytes = 16L * (neighbours.intents.length + 2);
+        for(int i=0;i<neighbours.intents.length;i++){
+            neighbours.bytes += neighbours.extents[i].getByteSize() + 8L * neighbours.intents[i].length + 16;
+        }
+        return neighbours;
+    }
+
+
+    /**
+     * 内包が閉じているかを確かめるメソッド.
+     * @param intent  内包
+     * @param closure 内包の閉包
+     * @throws IllegalArgumentException 閉じていない場合
+     */
+    private void checkClosed(long[] intent, long[] closure){
+        for(int w=0;w<intent.length;w++){
+            if(intent[w] != closure[w]){
+                throw new IllegalArgumentException("not a formal concept: "
+                                                   + context.unpackAttributes(intent));
+            }
+        }
+    }
+
+
+    /**
+     * 上限を超えた分だけ, 最も長く使われていない形式概念の近傍を捨てるメソッド.
+     * 最後に使った1つは残す. ロックを持って呼ぶこと.
+     */
+    private void evict(){
+        Iterator<Map.Entry<Key,Entry>> it = entries.entrySet().iterator();
+        while(bytes > maxBytes && entries.size() > 1){
+            Map.Entry<Key,Entry> eldest = it.next();
+            bytes -= 8L * eldest.getKey().words.length + 96;
+            if(eldest.getValue().upper != null){
+                bytes -= eldest.getValue().upper.bytes;
+            }
+            if(eldest.getValue().lower != null){
+                bytes -= eldest.getValue().lower.bytes;
+            }
+            it.remove();
+            evictions++;
+        }
+    }
+
+
+
+    ///////////////////
+    // Inner Classes //
+    ///////////////////
+
+    /**
+     * 内包のビット列を包んだキー. ハッシュ値は一度だけ計算する.
+     */
+    private static final class Key{
+
+        final long[] words;
+        final int hash;
+
+        Key(long[] words){
+            this.words = words;
+            this.hash = BitVectors.hash(words);
+        }
+
+        // @Override
+        public int hashCode(){
+            return hash;
+        }
+
+        // @Override
+        public boolean equals(Object o){
+            if(!(o instanceof Key)){
+                return false;
+            }
+            Key other = (Key)o;
+            if(hash != other.hash){
+                return false;
+            }
+            for(int i=0;i<words.length;i++){
+                if(words[i] != other.words[i]){
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+
+    /**
+     * 1つの形式概念について覚えている近傍. まだ求めていない向きは null.
+     */
+    private static final class Entry{
+
+        Neighbours upper; // 上位近傍.
+        Neighbours lower; // 下位近傍.
+    }
+
+
+    /**
+     * 近傍の外延と内包の組. 外延は圧縮して持つ.
+     */
+    private static final class Neighbours{
+
+        final CompressedBitmap[] extents;
+        final long[][] intents;
+        long bytes; // おおよそのバイト数.
+
+        Neighbours(CompressedBitmap[] extents, long[][] intents){
+            this.extents = extents;
+            this.intents = intents;
+        }
+    }
+
+
+
+    //////////
+    // Test //
+    //////////
+
+    public static void main(String args[]){
+
+        // 乱数でコンテクスト表を作る.
+        boolean[][] contextTable = FormalContext.randomTable(400,40,0.2,1);
+        FormalContext context = new FormalContext(contextTable);
+
+        // 最大の形式概念から2段下まで展開し, 1段戻って上位近傍も引く.
+        ConceptNeighbourhood neighbourhood = new ConceptNeighbourhood(context,1 << 20);
+        Tupple top = neighbourhood.getTop();
+        ArrayList<Tupple> level1 = neighbourhood.getLowerNeighbours(top);
+        int level2 = 0;
+        for(Tupple concept : level1){
+            level2 += neighbourhood.getLowerNeighbours(concept).size();
+        }
+        for(Tupple concept : level1){
+            neighbourhood.getUpperNeighbours(concept);
+            neighbourhood.getLowerNeighbours(concept);
+        }
+        System.out.println("top " + top.getAttributeBits() + ": " + level1.size() + " lower neighbours, "
+                           + level2 + " at the next level");
+        System.out.println(neighbourhood);
+    }
+}
@@ -0,0 +1,617 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 1つのコンテクスト表を読み込んだまま, 閉包や近傍の問い合わせにまとめて答えるサーバ.
+ * 列の索引, ClosureCache, ConceptNeighbourhood を温めたまま使い続けるので,
+ * 同じコンテクスト表を使う複数のプログラムがそれぞれ読み込んで解析し直さなくてよい.
+ *
+ * JDK の HttpServer でループバックアドレスにだけ待ち受ける. 問い合わせは POST で,
+ * 本文の1行が1つの問い合わせになり, 同じ順に1行ずつ答える. 行の中の番号は空白かカンマで区切り,
+ * FormalContext のオブジェクト番号と属性番号をそのまま使う.
+ * <pre>
+ * /closure            オブジェクト番号の集合 X     → X'' | X'
+ * /attribute-closure  属性番号の集合 Y             → Y' | Y''
+ * /upper              形式概念の内包               → 上位近傍をタブで区切ったもの
+ * /lower              形式概念の内包               → 下位近傍をタブで区切ったもの
+ * /stats (GET)        問い合わせごとの回数と応答時間の百分位数, キャッシュの統計
+ * </pre>
+ * 形式概念は "外延のオブジェクト番号 | 内包の属性番号" の形で書く.
+ * 1回の問い合わせの行は Fork/Join で並列に計算する.
+ * どれかの行が正しくなければ 400 を返し, 最初に見つかった行の番号と理由を本文に書く.
+ * 計算中にそれ以外の例外が起きれば 500 を返す.
+ *
+ * 応答時間は本文を読み始めてから答えを書き終えるまでを, 問い合わせの種類ごとに
+ * 2のべきを8つに分けた区間のヒストグラムで数える. 百分位数は区間の上端なので, 誤差は1/8以内.
+ * 400 や 500 で答えた問い合わせも数え, /stats ではその回数を rejected と failed に出す.
+ *
+ * @author  uehashu
+ * @version 1.0
+ */
+public class ConceptQueryServer{
+
+    private static final int THRESHOLD = 64; // これより少ない行は分割せずに計算する.
+    private static final String[] QUERIES = {"closure","attribute-closure","upper","lower"}; // 問い合わせの種類.
+
+    FormalContext context; // 問い合わせに答えるコンテクスト表.
+    ClosureCache closures; // オブジェクト部分集合の閉包のキャッシュ.
+    ConceptNeighbourhood neighbourhood; // 近傍のキャッシュ.
+    LinkedHashMap<String,Latency> latencies = new LinkedHashMap<>(); // 問い合わせの種類ごとの応答時間.
+    HttpServer server; // 待ち受けているサーバ. 止まっていれば null.
+    ExecutorService executor; // 接続を処理するスレッド.
+
+
+    //////////////////
+    // Constructors //
+    //////////////////
+
+    /**
+     * @param context    問い合わせに答えるコンテクスト表
+     * @param cacheBytes キャッシュの使用メモリの上限(バイト). 閉包と近傍で半分ずつ使う.
+     */
+    public ConceptQueryServer(FormalContext context, long cacheBytes){
+        this.context = context;
+        this.closures = new ClosureCache(context,cacheBytes / 2);
+        this.neighbourhood = new ConceptNeighbourhood(context,cacheBytes / 2);
+        for(String query : QUERIES){
+            latencies.put(query,new Latency());
+        }
+    }
+
+
+
+    /////////////
+    // Methods //
+    /////////////
+
+    /**
+     * ループバックアドレスで待ち受けを始めるメソッド.
+     * @param port ポート番号. 0 ならば空いているポートを使う.
+     * @return     待ち受けているポート番号
+     * @throws IOException 待ち受けられなかった場合
+     */
+    public synchronized int start(int port) throws IOException{
+        if(server != null){
+            throw new IllegalStateException("server is already running");
+        }
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(),port),0);
+        for(String query : QUERIES){
+            server.createContext("/" + query,new QueryHandler(query));
+        }
+        server.createContext("/stats",new StatsHandler());
+        executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        server.setExecutor(executor);
+        server.start();
+        return server.getAddress().getPort();
+    }
+
+
+    /**
+     * 待ち受けをやめるメソッド. 処理中の問い合わせは最大1秒待つ.
+     */
+    public synchronized void stop(){
+        if(server == null){
+            return;
+        }
+        server.stop(1);
+        executor.shutdown();
+        server = null;
+        executor = null;
+    }
+
+
+    /**
+     * 待ち受けているポート番号を返すメソッド.
+     * @return ポート番号
+     */
+    public synchronized int getPort(){
+        if(server == null){
+            throw new IllegalStateException("server is not running");
+        }
+        return server.getAddress().getPort();
+    }
+
+
+    /**
+     * 問い合わせをまとめて計算するメソッド. HTTP を通さずに同じ答えを返す.
+     * @param query 問い合わせの種類. "closure", "attribute-closure", "upper", "lower" のどれか.
+     * @param lines 問い合わせの行
+     * @return      答えの行
+     * @throws IllegalArgumentException 種類が違う場合や, 正しくない行があった場合
+     */
+    public String[] query(String query, String[] lines){
+        if(!latencies.containsKey(query)){
+            throw new IllegalArgumentException("unknown query: " + query);
+        }
+        String[] answers = new String[lines.length];
+        AtomicReference<String> error = new AtomicReference<>();
+        ForkJoinPool.commonPool().invoke(new BatchTask(query,lines,answers,error,0,lines.length));
+        if(error.get() != null){
+            throw new IllegalArgumentException(error.get());
+        }
+        return answers;
+    }
+
+
+    /**
+     * 応答時間の百分位数を返すメソッド.
+     * @param query      問い合わせの種類
+     * @param percentile 百分位(0 より大きく 100 以下)
+     * @return           応答時間(ナノ秒). まだ問い合わせが無ければ 0.
+     */
+    public long getLatencyPercentile(String query, double percentile){
+        if(!(percentile > 0 && percentile <= 100)){
+            throw new IllegalArgumentException("percentile must be in (0, 100]: " + percentile);
+        }
+        return latency(query).percentile(percentile);
+    }
+
+
+    /**
+     * 受け付けた問い合わせの回数を返すメソッド. 1回に何行あっても1回と数える.
+     * 400 や 500 で答えたものも含む. GET などで断ったものは含まない.
+     * @param query 問い合わせの種類
+     * @return      回数
+     */
+    public long getRequestCount(String query){
+        return latency(query).total();
+    }
+
+
+    /**
+     * 統計を /stats と同じ形の文字列で返すメソッド.
+     * @return 統計
+     */
+    public String getStatistics(){
+        StringBuilder builder = new StringBuilder();
+        for(Map.Entry<String,Latency> entry : latencies.entrySet()){
+            Latency latency = entry.getValue();
+            builder.append(entry.getKey())
+                .append(" requests=").append(latency.total())
+                .append(" lines=").append(latency.lines.sum())
+                .append(" rejected=").append(latency.rejected.sum())
+                .append(" failed=").append(latency.failed.sum());
+            if(latency.total() > 0){
+                builder.append(" p50=").append(latency.percentile(50) / 1000).append("us")
+                    .append(" p90=").append(latency.percentile(90) / 1000).append("us")
+                    .append(" p99=").append(latency.percentile(99) / 1000).append("us")
+                    .append(" max=").append(latency.percentile(100) / 1000).append("us");
+            }
+            builder.append('\n');
+        }
+        builder.append(closures).append('\n');
+        builder.append(neighbourhood).append('\n');
+        return builder.toString();
+    }
+
+
+
+    /////////////////////
+    // Private Methods //
+    /////////////////////
+
+    /**
+     * 1行の問い合わせに答えるメソッド.
+     * @param query 問い合わせの種類
+     * @param line  問い合わせの行
+     * @return      答えの行
+     */
+    private String answer(String query, String line){
+        StringBuilder builder = new StringBuilder();
+        if(query.equals("closure")){
+            long[] extent = packObjects(line);
+            long[] intent = context.newIntent();
+            closures.closeExtent(extent,intent,extent);
+            append(builder,context.unpackObjects(extent),context.unpackAttributes(intent));
+        }else if(query.equals("attribute-closure")){
+            long[] intent = packAttributes(line);
+            long[] extent = context.newExtent();
+            context.closeIntent(intent,extent,intent);
+            append(builder,context.unpackObjects(extent),context.unpackAttributes(intent));
+        }else{
+            Tupple concept = new Tupple(new PackedBitSet(),context.unpackAttributes(packAttributes(line)));
+            ArrayList<Tupple> neighbours = query.equals("upper")
+                ? neighbourhood.getUpperNeighbours(concept)
+                : neighbourhood.getLowerNeighbours(concept);
+            for(Tupple neighbour : neighbours){
+                if(builder.length() > 0){
+                    builder.append('\t');
+                }
+                append(builder,neighbour.getObjectBits(),neighbour.getAttributeBits());
+            }
+        }
+        return builder.toString();
+    }
+
+
+    /**
+     * 行をオブジェクト部分集合のビット列として読むメソッド.
+     * @param line 空白かカンマで区切ったオブジェクト番号
+     * @return     オブジェクト部分集合のビット列
+     */
+    private long[] packObjects(String line){
+        PackedBitSet bits = parse(line);
+        long[] extent = context.packObjects(bits);
+        if(BitVectors.cardinality(extent) != bits.cardinality()){
+            throw new IllegalArgumentException("unknown object in: " + line.trim());
+        }
+        return extent;
+    }
+
+
+    /**
+     * 行を属性部分集合のビット列として読むメソッド.
+     * @param line 空白かカンマで区切った属性番号
+     * @return     属性部分集合のビット列
+     */
+    private long[] packAttributes(String line){
+        PackedBitSet bits = parse(line);
+        long[] intent = context.packAttributes(bits);
+        if(BitVectors.cardinality(intent) != bits.cardinality()){
+            throw new IllegalArgumentException("unknown attribute in: " + line.trim());
+        }
+        return intent;
+    }
+
+
+    /**
+     * 行を番号の集合として読むメソッド.
+     * @param line 空白かカンマで区切った番号
+     * @return     番号の集合
+     */
+    private static PackedBitSet parse(String line){
+        PackedBitSet bits = new PackedBitSet();
+        for(String token : line.trim().split("[\\s,]+")){
+            if(token.isEmpty()){
+                continue;
+            }
+            int i;
+            try{
+                i = Integer.parseInt(token);
+            }catch(NumberFormatException e){
+                throw new IllegalArgumentException("not a number: " + token);
+            }
+            if(i < 0){
+                throw new IllegalArgumentException("negative number: " + i);
+            }
+            bits.add(i);
+        }
+        return bits;
+    }
+
+
+    /**
+     * 形式概念を "外延 | 内包" の形で書き足すメソッド.
+     * @param builder 書き足す先
+     * @param extent  外延のオブジェクト番号
+     * @param intent  内包の属性番号
+     */
+    private static void append(StringBuilder builder, PackedBitSet extent, PackedBitSet intent){
+        String separator = "";
+        for(int g=extent.nextSetBit(0);g>=0;g=extent.nextSetBit(g+1)){
+            builder.append(separator).append(g);
+            separator = " ";
+        }
+        builder.append(separator).append("| ");
+        separator = "";
+        for(int m=intent.nextSetBit(0);m>=0;m=intent.nextSetBit(m+1)){
+            builder.append(separator).append(m);
+            separator = " ";
+        }
+    }
+
+
+    /**
+     * 問い合わせの種類の応答時間を返すメソッド.
+     * @param query 問い合わせの種類
+     * @return      応答時間のヒストグラム
+     */
+    private Latency latency(String query){
+        Latency latency = latencies.get(query);
+        if(latency == null){
+            throw new IllegalArgumentException("unknown query: " + query);
+        }
+        return latency;
+    }
+
+
+    /**
+     * 本文を書いて応答を閉じるメソッド.
+     * @param exchange 応答
+     * @param status   HTTP のステータス
+     * @param body     本文
+     * @throws IOException 書き込めなかった場合
+     */
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException{
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type","text/plain; charset=UTF-8");
+        exchange.sendResponseHeaders(status,bytes.length);
+        try(OutputStream out = exchange.getResponseBody()){
+            out.write(bytes);
+        }
+    }
+
+
+
+    ///////////////////
+    // Inner Classes //
+    ///////////////////
+
+    /**
+     * 1種類の問い合わせを受け付けるハンドラ.
+     */
+    private class QueryHandler implements HttpHandler{
+
+        String query; // 問い合わせの種類.
+
+        QueryHandler(String query){
+            this.query = query;
+        }
+
+        // @Override
+        public void handle(HttpExchange exchange) throws IOException{
+            long start = System.nanoTime();
+            if(!exchange.getRequestMethod().equals("POST")){
+                try{
+                    exchange.getResponseHeaders().set("Allow","POST");
+                    respond(exchange,405,"use POST\n");
+                }finally{
+                    exchange.close();
+                }
+                return;
+            }
+
+            // 断った問い合わせも読み込みと計算の時間はかかるので, 応答時間に数える.
+            int status = 500;
+            int count = 0;
+            try{
+                ArrayList<String> lines = new ArrayList<>();
+                BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(exchange.getRequestBody(),StandardCharsets.UTF_8));
+                for(String line=reader.readLine();line!=null;line=reader.readLine()){
+                    lines.add(line);
+                }
+                count = lines.size();
+
+                String[] answers;
+                try{
+                    answers = query(query,lines.toArray(new String[0]));
+                }catch(IllegalArgumentException e){
+                    status = 400;
+                    respond(exchange,400,e.getMessage() + "\n");
+                    return;
+                }
+                StringBuilder body = new StringBuilder();
+                for(String answer : answers){
+                    body.append(answer).append('\n');
+                }
+                status = 200;
+                respond(exchange,200,body.toString());
+            }catch(RuntimeException e){
+                respond(exchange,500,"internal error: " + e + "\n");
+            }finally{
+                exchange.close();
+                Latency latency = latencies.get(query);
+                latency.record(System.nanoTime() - start);
+                latency.lines.add(count);
+                if(status == 400){
+                    latency.rejected.increment();
+                }else if(status == 500){
+                    latency.failed.increment();
+                }
+            }
+        }
+    }
+
+
+    /**
+     * 統計を返すハンドラ.
+     */
+    private class StatsHandler implements HttpHandler{
+
+        // @Override
+        public void handle(HttpExchange exchange) throws IOException{
+            try{
+                respond(exchange,200,getStatistics());
+            }finally{
+                exchange.close();
+            }
+        }
+    }
+
+
+    /**
+     * 一定範囲の行に答えるタスク. 範囲が大きければ半分に分ける.
+     */
+    private class BatchTask extends RecursiveAction{
+
+        private static final long serialVersionUID = 1L;
+
+        String query; // 問い合わせの種類.
+        String[] lines; // 問い合わせの行.
+        String[] answers; // 答えを書き込む配列.
+        AtomicReference<String> error; // 最初に見つかった正しくない行の理由.
+        int from; // 範囲の始め.
+        int to; // 範囲の終わり(これを含まない).
+
+        BatchTask(String query, String[] lines, String[] answers, AtomicReference<String> error, int from, int to){
+            this.query = query;
+            this.lines = lines;
+            this.answers = answers;
+            this.error = error;
+            this.from = from;
+            this.to = to;
+        }
+
+        // @Override
+        protected void compute(){
+            if(to - from > THRESHOLD){
+                int middle = (from + to) >>> 1;
+                invokeAll(new BatchTask(query,lines,answers,error,from,middle),
+                          new BatchTask(query,lines,answers,error,middle,to));
+                return;
+            }
+            for(int i=from;i<to && error.get()==null;i++){
+                try{
+                    answers[i] = answer(query,lines[i]);
+                }catch(IllegalArgumentException e){
+                    error.compareAndSet(null,"line " + (i+1) + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+
+    /**
+     * 応答時間のヒストグラム. 16ナノ秒未満は1ナノ秒ごと, それ以上は2のべきを8つに分けた区間で数える.
+     */
+    private static final class Latency{
+
+        private static final int SUB_BUCKETS = 8; // 2のべきごとの区間の数.
+
+        AtomicLongArray counts = new AtomicLongArray(16 + 60 * SUB_BUCKETS); // 区間ごとの回数.
+        LongAdder lines = new LongAdder(); // 受け付けた行の数.
+        LongAdder rejected = new LongAdder(); // 400 で断った回数.
+        LongAdder failed = new LongAdder(); // 500 で答えた回数.
+
+        /** 応答時間を1つ数える. */
+        void record(long nanos){
+            counts.incrementAndGet(bucket(Math.max(0,nanos)));
+        }
+
+        /** 数えた回数を返す. */
+        long total(){
+            long total = 0;
+            for(int i=0;i<counts.length();i++){
+                total += counts.get(i);
+            }
+            return total;
+        }
+
+        /** 百分位数を, その値が入る区間の上端で返す. */
+        long percentile(double percentile){
+            long total = total();
+            if(total == 0){
+                return 0;
+            }
+            long rank = Math.max(1,(long)Math.ceil(percentile / 100 * total));
+            long seen = 0;
+            for(int i=0;i<counts.length();i++){
+                seen += counts.get(i);
+                if(seen >= rank){
+                    return upperBound(i);
+                }
+            }
+            return upperBound(counts.length() - 1);
+        }
+
+        private static int bucket(long nanos){
+            if(nanos < 16){
+                return (int)nanos;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+            int mantissa = (int)(nanos >>> (exponent - 3)) & (SUB_BUCKETS - 1);
+            return 16 + (exponent - 4) * SUB_BUCKETS + mantissa;
+        }
+
+        private static long upperBound(int bucket){
+            if(bucket < 16){
+                return bucket;
+            }
+            int exponent = (bucket - 16) / SUB_BUCKETS + 4;
+            int mantissa = (bucket - 16) % SUB_BUCKETS;
+            return ((long)(SUB_BUCKETS + mantissa + 1) << (exponent - 3)) - 1;
+        }
+    }
+
+
+
+    //////////
+    // Test //
+    //////////
+
+    public static void main(String args[]) throws IOException{
+
+        // コンテクスト表のファイルを渡されたら, 止められるまで待ち受ける.
+        if(args.length > 0){
+            ConceptQueryServer server = new ConceptQueryServer(FormalContextReader.load(args[0]),256L << 20);
+            int port = server.start(args.length > 1 ? Integer.parseInt(args[1]) : 0);
+            System.out.println("listening on http://127.0.0.1:" + port + "/");
+            return;
+        }
+
+        // 乱数でコンテクスト表を作り, 閉包と近傍をまとめて問い合わせる.
+        boolean[][] contextTable = FormalContext.randomTable(2000,60,0.1,1);
+        Random random = new Random(1);
+        ConceptQueryServer server = new ConceptQueryServer(new FormalContext(contextTable),64L << 20);
+        int port = server.start(0);
+        try{
+            for(int round=0;round<5;round++){
+                StringBuilder body = new StringBuilder();
+                for(int i=0;i<10000;i++){
+                    body.append(random.nextInt(2000) + 1).append(' ').append(random.nextInt(2000) + 1).append('\n');
+                }
+                String answers = post(port,"closure",body.toString());
+                if(round == 0){
+                    System.out.println("closure of " + body.substring(0,body.indexOf("\n")) + " -> "
+                                       + answers.substring(0,answers.indexOf('\n')));
+                }
+            }
+            String top = server.query("attribute-closure",new String[]{""})[0];
+            String lower = post(port,"lower",top.substring(top.indexOf('|') + 1) + "\n");
+            System.out.println("top has " + lower.split("\t").length + " lower neighbours");
+            System.out.print(post(port,"stats",null));
+        }finally{
+            server.stop();
+        }
+    }
+
+
+    /**
+     * テスト用に問い合わせを送るメソッド.
+     * @param port  ポート番号
+     * @param query 問い合わせの種類
+     * @param body  本文. null ならば GET で送る.
+     * @return      答え
+     * @throws IOException 送れなかった場合
+     */
+    private static String post(int port, String query, String body) throws IOException{
+        HttpURLConnection connection = (HttpURLConnection)new URL("http://127.0.0.1:" + port + "/" + query).openConnection();
+        if(body != null){
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            try(OutputStream out = connection.getOutputStream()){
+                out.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        StringBuilder answer = new StringBuilder();
+        try(BufferedReader reader = new BufferedReader(
+                new InputStreamReader(connection.getInputStream(),StandardCharsets.UTF_8))){
+            for(String line=reader.readLine();line!=null;line=reader.readLine()){
+                answer.append(line).append('\n');
+            }
+        }
+        return answer.toString();
+    }
+}
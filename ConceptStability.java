@@ -0,0 +1,401 @@
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * 概念束の各形式概念の安定性指数(stability)を計算するクラス.
+ * 形式概念 (A,B) の安定性は, A の部分集合 C のうち C' = B となるものの割合.
+ *
+ * C' が B より大きくなるのは, C が下の被覆のどれかの外延に含まれるときに限るので,
+ * ハッセ図の下の被覆 D1, ..., Dk から次のように求める.
+ * <ul>
+ * <li>下の被覆が少なければ, 包除原理で 2^k 項の和として厳密に求める.
+ * <li>外延が小さければ, 各 Di の部分集合に印を付けて厳密に数える.
+ * <li>どちらでもなければ, A の部分集合を一様に選んで Monte Carlo 法で推定し,
+ *     Hoeffding の不等式による信頼区間を付ける.
+ * </ul>
+ * どの場合も, Δi = |A| - |Di| として 1 - Σ2^-Δi ≦ 安定性 ≦ 1 - max 2^-Δi が成り立つので,
+ * 推定の信頼区間はこの範囲に切り詰める.
+ *
+ * 下の被覆が全て揃っている必要があるので, LatticeGraph.iceberg() で作ったハッセ図には使えない.
+ * 形式概念ごとの計算は独立しているので, Fork/Join で並列に行なう.
+ * 乱数の種は形式概念ごとに決まるので, スレッド数によらず同じ結果になる.
+ *
+ * @author  uehashu
+ * @version 1.0
+ */
+public class ConceptStability{
+
+    private static final int THRESHOLD = 16; // これより少ない形式概念は分割せずに計算する.
+    private static final int MAX_EXACT_LIMIT = 24; // 厳密に計算する大きさの上限の上限.
+
+    LatticeGraph graph; // 対象のハッセ図.
+    int exactLimit = 16; // 下の被覆の数か外延の要素数がこれ以下ならば厳密に計算する.
+    int samples = 10000; // Monte Carlo 法で選ぶ部分集合の数.
+    double confidence = 0.95; // 信頼区間の信頼係数.
+    long seed = 1; // 乱数の種.
+    double[] stabilities; // 各形式概念の安定性. 推定ならば推定値.
+    double[] lowerBounds; // 各形式概念の安定性の下限.
+    double[] upperBounds; // 各形式概念の安定性の上限.
+    boolean[] exact; // 厳密に計算したならば真.
+
+
+    //////////////////
+    // Constructors //
+    //////////////////
+
+    /**
+     * @param graph ハッセ図
+     */
+    public ConceptStability(LatticeGraph graph){
+        this.graph = graph;
+    }
+
+
+    /**
+     * @param diagram ハッセ図
+     */
+    public ConceptStability(FCAHasseDiagram diagram){
+        this(diagram.getGraph());
+    }
+
+
+
+    /////////////
+    // Methods //
+    /////////////
+
+    /**
+     * 厳密に計算する大きさを設定するメソッド.
+     * 下の被覆の数か外延の要素数がこれ以下の形式概念は厳密に計算する.
+     * どちらも 2 のべき乗の時間がかかるので, 大きくしすぎないこと.
+     * @param exactLimit 大きさ. 0 から 24 まで.
+     */
+    public void setExactLimit(int exactLimit){
+        if(exactLimit < 0 || exactLimit > MAX_EXACT_LIMIT){
+            throw new IllegalArgumentException("exact limit out of range: " + exactLimit);
+        }
+        this.exactLimit = exactLimit;
+    }
+
+
+    /**
+     * Monte Carlo 法で選ぶ部分集合の数を設定するメソッド.
+     * 信頼区間の幅は数の平方根に反比例する.
+     * @param samples 部分集合の数
+     */
+    public void setSamples(int samples){
+        if(samples <= 0){
+            throw new IllegalArgumentException("samples must be positive: " + samples);
+        }
+        this.samples = samples;
+    }
+
+
+    /**
+     * 信頼区間の信頼係数を設定するメソッド.
+     * @param confidence 信頼係数. 0 より大きく 1 より小さい.
+     */
+    public void setConfidence(double confidence){
+        if(!(confidence > 0 && confidence < 1)){
+            throw new IllegalArgumentException("confidence out of range: " + confidence);
+        }
+        this.confidence = confidence;
+    }
+
+
+    /**
+     * 乱数の種を設定するメソッド.
+     * @param seed 乱数の種
+     */
+    public void setSeed(long seed){
+        this.seed = seed;
+    }
+
+
+    /**
+     * 全ての形式概念の安定性を計算するメソッド.
+     * 計算した結果は getStability() などで取り出す.
+     */
+    public void calc(){
+        int size = graph.size();
+        stabilities = new double[size];
+        lowerBounds = new double[size];
+        upperBounds = new double[size];
+        exact = new boolean[size];
+        ForkJoinPool.commonPool().invoke(new StabilityTask(0,size));
+    }
+
+
+    /**
+     * 安定性を返すメソッド. 厳密に計算していなければ推定値.
+     * @param concept 形式概念の番号
+     * @return        安定性
+     */
+    public double getStability(int concept){
+        return stabilities[concept];
+    }
+
+
+    /**
+     * タプルで与えた形式概念の安定性を返すメソッド.
+     * @param tupple 形式概念
+     * @return       安定性. ハッセ図に無ければ NaN.
+     */
+    public double getStability(Tupple tupple){
+        int concept = graph.indexOf(graph.getContext().packObjects(tupple.getObjectBits()));
+        return concept < 0 ? Double.NaN : stabilities[concept];
+    }
+
+
+    /**
+     * 安定性の下限を返すメソッド. 推定ならば信頼区間の下端.
+     * @param concept 形式概念の番号
+     * @return        下限
+     */
+    public double getLowerBound(int concept){
+        return lowerBounds[concept];
+    }
+
+
+    /**
+     * 安定性の上限を返すメソッド. 推定ならば信頼区間の上端.
+     * @param concept 形式概念の番号
+     * @return        上限
+     */
+    public double getUpperBound(int concept){
+        return upperBounds[concept];
+    }
+
+
+    /**
+     * 安定性を厳密に計算したかを返すメソッド.
+     * @param concept 形式概念の番号
+     * @return        厳密ならば真
+     */
+    public boolean isExact(int concept){
+        return exact[concept];
+    }
+
+
+
+    /////////////////////
+    // Private Methods //
+    /////////////////////
+
+    /**
+     * 1つの形式概念の安定性を計算して結果の配列に書き込むメソッド.
+     * @param concept 形式概念の番号
+     * @param extent  外延を書き込む作業用のビット列
+     */
+    private void calc(int concept, long[] extent){
+        graph.getExtent(concept,extent);
+        int size = BitVectors.cardinality(extent);
+        int k = graph.getLowerCoverCount(concept);
+        long[][] covers = new long[k][];
+        double sum = 0.0;
+        double max = 0.0;
+        for(int i=0;i<k;i++){
+            covers[i] = new long[extent.length];
+            graph.getExtent(graph.getLowerCover(concept,i),covers[i]);
+            double p = Math.scalb(1.0,BitVectors.cardinality(covers[i]) - size);
+            sum += p;
+            max = Math.max(max,p);
+        }
+        double lower = Math.max(0.0,1.0 - sum);
+        double upper = 1.0 - max;
+
+        double stability;
+        if(k <= exactLimit){
+            stability = 1.0 - union(covers,0,extent,1,size,new long[k][extent.length],0);
+        }else if(size <= exactLimit){
+            stability = 1.0 - (double)countSubsets(extent,size,covers) / (1L << size);
+        }else{
+
+            // A の部分集合を一様に選び, どの下の被覆にも含まれない割合を数える.
+            SplittableRandom random = new SplittableRandom(seed + concept * 0x9E3779B97F4A7C15L);
+            long[] subset = new long[extent.length];
+            int hits = 0;
+            for(int n=0;n<samples;n++){
+                for(int w=0;w<subset.length;w++){
+                    subset[w] = random.nextLong() & extent[w];
+                }
+                if(!containedInAny(subset,covers)){
+                    hits++;
+                }
+            }
+            double estimate = (double)hits / samples;
+            double epsilon = Math.sqrt(Math.log(2.0 / (1.0 - confidence)) / (2.0 * samples));
+            stabilities[concept] = clamp(estimate,lower,upper);
+            lowerBounds[concept] = clamp(estimate - epsilon,lower,upper);
+            upperBounds[concept] = clamp(estimate + epsilon,lower,upper);
+            return;
+        }
+
+        stability = clamp(stability,0.0,1.0);
+        stabilities[concept] = stability;
+        lowerBounds[concept] = stability;
+        upperBounds[concept] = stability;
+        exact[concept] = true;
+    }
+
+
+    /**
+     * 値を範囲に収めるメソッド.
+     * @param value 値
+     * @param lower 範囲の下端
+     * @param upper 範囲の上端
+     * @return      範囲に収めた値
+     */
+    private static double clamp(double value, double lower, double upper){
+        return Math.min(upper,Math.max(lower,value));
+    }
+
+
+    /**
+     * 下の被覆の外延の部分集合全体の和集合の大きさを, A の部分集合の数に対する割合で
+     * 包除原理により求めるメソッド. from 以降の被覆を加えた項の和を再帰的に足す.
+     * 共通部分が空になったら, それ以降の被覆を加えた項は打ち消し合うので再帰しない.
+     * @param covers       下の被覆の外延
+     * @param from         加える被覆の始め
+     * @param intersection ここまでに選んだ被覆の外延の共通部分
+     * @param sign         次の項の符号
+     * @param size         外延 A の要素数
+     * @param scratch      共通部分を書き込む作業用のビット列. 深さごと.
+     * @param depth        再帰の深さ
+     * @return             割合
+     */
+    private static double union(long[][] covers, int from, long[] intersection, int sign, int size,
+                                long[][] scratch, int depth){
+        double sum = 0.0;
+        for(int i=from;i<covers.length;i++){
+            long[] next = scratch[depth];
+            BitVectors.and(intersection,covers[i],next);
+            int cardinality = BitVectors.cardinality(next);
+            if(cardinality == 0){
+                if(i == covers.length - 1){
+                    sum += sign * Math.scalb(1.0,-size);
+                }
+                continue;
+            }
+            sum += sign * Math.scalb(1.0,cardinality - size);
+            sum += union(covers,i+1,next,-sign,size,scratch,depth+1);
+        }
+        return sum;
+    }
+
+
+    /**
+     * A の部分集合のうち, どれかの下の被覆の外延に含まれるものの数を数えるメソッド.
+     * A の要素を 0 から詰め直し, 各被覆の部分集合に印を付ける.
+     * @param extent 外延 A
+     * @param size   A の要素数
+     * @param covers 下の被覆の外延
+     * @return       部分集合の数
+     */
+    private static long countSubsets(long[] extent, int size, long[][] covers){
+        long[] marked = BitVectors.create(1 << size);
+        for(long[] cover : covers){
+            int mask = 0;
+            int position = 0;
+            for(int g=BitVectors.nextSetBit(extent,0);g>=0;g=BitVectors.nextSetBit(extent,g+1)){
+                if(BitVectors.get(cover,g)){
+                    mask |= 1 << position;
+                }
+                position++;
+            }
+            for(int subset=mask;;subset=(subset-1)&mask){
+                BitVectors.set(marked,subset);
+                if(subset == 0){
+                    break;
+                }
+            }
+        }
+        return BitVectors.cardinality(marked);
+    }
+
+
+    /**
+     * 部分集合がどれかの下の被覆の外延に含まれるかを返すメソッド.
+     * @param subset 部分集合
+     * @param covers 下の被覆の外延
+     * @return       含まれれば真
+     */
+    private static boolean containedInAny(long[] subset, long[][] covers){
+        for(long[] cover : covers){
+            if(BitVectors.isSubset(subset,cover)){
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+
+    ///////////////////
+    // Inner Classes //
+    ///////////////////
+
+    /**
+     * 一定範囲の形式概念の安定性を計算するタスク. 範囲が大きければ半分に分ける.
+     */
+    private class StabilityTask extends RecursiveAction{
+
+        private static final long serialVersionUID = 1L;
+
+        int from; // 範囲の始め.
+        int to; // 範囲の終わり(これを含まない).
+
+        StabilityTask(int from, int to){
+            this.from = from;
+            this.to = to;
+        }
+
+        // @Override
+        protected void compute(){
+            if(to - from > THRESHOLD){
+                int middle = (from + to) >>> 1;
+                invokeAll(new StabilityTask(from,middle),new StabilityTask(middle,to));
+                return;
+            }
+            long[] extent = graph.getContext().newExtent();
+            for(int c=from;c<to;c++){
+                calc(c,extent);
+            }
+        }
+    }
+
+
+
+    //////////
+    // Test //
+    //////////
+
+    public static void main(String args[]){
+
+        // 乱数でコンテクスト表を作る.
+        boolean[][] contextTable = FormalContext.randomTable(60,12,0.5,1);
+
+        FormalContext context = new FormalContext(contextTable);
+        FCAHasseDiagram diagram =
+            new FCAHasseDiagram(new FormalConceptParallelAnalyzer(context).analize(),context);
+
+        // 外延が大きい形式概念は推定になるように, 厳密に計算する大きさを小さくする.
+        ConceptStability stability = new ConceptStability(diagram);
+        stability.setExactLimit(4);
+        stability.calc();
+
+        LatticeGraph graph = diagram.getGraph();
+        System.out.println("stability [lower, upper]  :  {attributes}");
+        for(int c=0;c<graph.size();c++){
+            if(stability.getStability(c) >= 0.9){
+                System.out.printf("%.4f [%.4f, %.4f]%s  :  %s%n",
+                                  stability.getStability(c),
+                                  stability.getLowerBound(c),
+                                  stability.getUpperBound(c),
+                                  stability.isExact(c) ? " exact" : "",
+                                  graph.getTupple(c).getAttributeSubset());
+            }
+        }
+    }
+}
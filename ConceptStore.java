@@ -0,0 +1,850 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * 形式概念をヒープではなくディスクに置くための, 追記専用の形式概念の記録.
+ * ファイルはメモリマップして読み書きするので, 束の大きさはヒープではなくディスクで決まる.
+ *
+ * 各形式概念は外延と内包を FormalContext のビット位置で詰めたワード列のまま,
+ * 固定長のレコードとして追記する. レコードの長さが一定なので,
+ * 番号からファイル上の位置への索引は番号とレコード長の積で済む.
+ * 読むときもレコードを Tupple などに戻さず, マップしたバッファを直接読む.
+ *
+ * buildCovers() でハッセ図の被覆関係もファイルに作る.
+ * 内包から番号を引くオープンアドレス法のハッシュ表 (path.index) と,
+ * 上の被覆・下の被覆それぞれの CSR 形式の隣接リスト (path.upper, path.lower) を作る.
+ * 被覆は FCACoverCalculator と同じく Lindig のアルゴリズムで, 一定数の形式概念ごとに
+ * Fork/Join で並列に求めて追記し, 逆向きはファイル上で転置して作る.
+ *
+ * ファイルは 1GB ごとに区切ってマップするので, 2GB を超える記録も扱える.
+ * 追記は1つのスレッドから行なうこと. 読み出しは複数のスレッドから行なってよい.
+ *
+ * @author  uehashu
+ * @version 1.0
+ */
+public class ConceptStore implements AutoCloseable{
+
+    private static final long MAGIC = 0x4643414c4f473031L; // ファイルの先頭の印 "FCALOG01".
+    private static final int HEADER = 64; // 見出しのバイト数.
+    private static final int SEGMENT_SHIFT = 30; // マップする区切りの大きさ(2の冪).
+    private static final int BATCH = 1 << 16; // 被覆をまとめて求める形式概念の数.
+    private static final int THRESHOLD = 64; // これより少ない形式概念は分割せずに被覆を求める.
+
+    FormalContext context; // 解析に使ったコンテクスト表.
+    Path path; // 記録のファイル.
+    int objectWords; // 外延のワード数.
+    int attributeWords; // 内包のワード数.
+    long recordBytes; // 1つのレコードのバイト数.
+    int count; // 形式概念の数.
+    MappedFile log; // 記録.
+    MappedFile index; // 内包から番号を引くハッシュ表. 作っていなければ null.
+    MappedFile upper; // 上の被覆. 作っていなければ null.
+    MappedFile lower; // 下の被覆. 作っていなければ null.
+    long slots; // ハッシュ表の大きさ.
+
+
+    //////////////////
+    // Constructors //
+    //////////////////
+
+    /**
+     * @param path    記録のファイル
+     * @param context 解析に使ったコンテクスト表
+     * @param create  新しく作るならば真. 既にあれば空にする.
+     * @exception IOException 開けなかった場合や, コンテクスト表の大きさが合わない場合
+     */
+    private ConceptStore(Path path, FormalContext context, boolean create) throws IOException{
+        this.path = path;
+        this.context = context;
+        this.objectWords = context.getObjectWords();
+        this.attributeWords = context.getAttributeWords();
+        this.recordBytes = 8L * (objectWords + attributeWords);
+
+        if(create){
+            for(String suffix : new String[]{"",".index",".upper",".lower"}){
+                Files.deleteIfExists(sibling(suffix));
+            }
+            log = new MappedFile(path);
+            log.putLong(0,MAGIC);
+            log.putLong(8,context.getObjectLength());
+            log.putLong(16,context.getAttributeLength());
+            log.putLong(24,0);
+            return;
+        }
+
+        log = new MappedFile(path);
+        try{
+            if(log.size() < HEADER || log.getLong(0) != MAGIC){
+                throw new IOException("not a concept store: " + path);
+            }
+            long objectLength = log.getLong(8);
+            long attributeLength = log.getLong(16);
+            if(objectLength != context.getObjectLength() || attributeLength != context.getAttributeLength()){
+                throw new IOException("concept store " + path + " was written for a context of "
+                                      + objectLength + " objects and " + attributeLength + " attributes");
+            }
+            count = (int)log.getLong(24);
+
+            // 今の形式概念の数で作った索引と被覆だけを使う.
+            slots = slots(count);
+            index = openDerived(".index");
+            upper = openDerived(".upper");
+            lower = openDerived(".lower");
+            if(index == null || upper == null || lower == null){
+                for(MappedFile file : new MappedFile[]{upper,lower}){
+                    if(file != null){
+                        file.close(-1);
+                    }
+                }
+                upper = lower = null;
+            }
+        }catch(IOException | RuntimeException e){
+            // 開いたファイルは元の長さに戻して閉じる.
+            for(MappedFile file : new MappedFile[]{log,index,upper,lower}){
+                if(file != null){
+                    try{
+                        file.close(-1);
+                    }catch(IOException suppressed){
+                        e.addSuppressed(suppressed);
+                    }
+                }
+            }
+            log = index = upper = lower = null;
+            throw e;
+        }
+    }
+
+
+    /**
+     * 空の記録を作るメソッド. 同じ名前の記録があれば消す.
+     * @param path    記録のファイル
+     * @param context 解析に使ったコンテクスト表
+     * @return        記録
+     * @exception IOException 作れなかった場合
+     */
+    public static ConceptStore create(Path path, FormalContext context) throws IOException{
+        return new ConceptStore(path,context,true);
+    }
+
+
+    /**
+     * 既存の記録を開くメソッド. 追記もできる.
+     * @param path    記録のファイル
+     * @param context 解析に使ったコンテクスト表
+     * @return        記録
+     * @exception IOException 開けなかった場合や, コンテクスト表の大きさが合わない場合
+     */
+    public static ConceptStore open(Path path, FormalContext context) throws IOException{
+        return new ConceptStore(path,context,false);
+    }
+
+
+
+    /////////////
+    // Methods //
+    /////////////
+
+    /**
+     * 形式概念を追記するメソッド. 作ってあった索引と被覆は捨てる.
+     * @param extent 外延. FormalContext のビット位置で詰めたもの.
+     * @param intent 内包. FormalContext のビット位置で詰めたもの.
+     * @return       形式概念の番号
+     */
+    public int append(long[] extent, long[] intent){
+        if(extent.length != objectWords || intent.length != attributeWords){
+            throw new IllegalArgumentException("extent or intent does not match the context");
+        }
+        if(count == Integer.MAX_VALUE){
+            throw new IllegalStateException("concept store is full");
+        }
+        if(index != null || upper != null){
+            dropDerived();
+        }
+        long position = offset(count);
+        for(int w=0;w<objectWords;w++){
+            log.putLong(position,extent[w]);
+            position += 8;
+        }
+        for(int w=0;w<attributeWords;w++){
+            log.putLong(position,intent[w]);
+            position += 8;
+        }
+        log.putLong(24,count+1);
+        return count++;
+    }
+
+
+    /**
+     * 形式概念の数を返すメソッド.
+     * @return 形式概念の数
+     */
+    public int size(){
+        return count;
+    }
+
+
+    /**
+     * 解析に使ったコンテクスト表を返すメソッド.
+     * @return コンテクスト表
+     */
+    public FormalContext getContext(){
+        return context;
+    }
+
+
+    /**
+     * 外延のビット列を読むメソッド.
+     * @param id 形式概念の番号
+     * @return   外延. 新しく作った配列.
+     */
+    public long[] getExtent(int id){
+        return readWords(record(id),objectWords);
+    }
+
+
+    /**
+     * 内包のビット列を読むメソッド.
+     * @param id 形式概念の番号
+     * @return   内包. 新しく作った配列.
+     */
+    public long[] getIntent(int id){
+        return readWords(record(id) + 8L * objectWords,attributeWords);
+    }
+
+
+    /**
+     * 形式概念をタプルとして読むメソッド. オブジェクト番号と属性番号はコンテクスト表のもの.
+     * @param id 形式概念の番号
+     * @return   タプル
+     */
+    public Tupple getTupple(int id){
+        return context.toTupple(getExtent(id),getIntent(id));
+    }
+
+
+    /**
+     * 外延の要素数を返すメソッド.
+     * @param id 形式概念の番号
+     * @return   要素数
+     */
+    public int getExtentCardinality(int id){
+        return cardinality(record(id),objectWords);
+    }
+
+
+    /**
+     * 内包の要素数を返すメソッド.
+     * @param id 形式概念の番号
+     * @return   要素数
+     */
+    public int getIntentCardinality(int id){
+        return cardinality(record(id) + 8L * objectWords,attributeWords);
+    }
+
+
+    /**
+     * 外延がオブジェクトを含むかを返すメソッド.
+     * @param id 形式概念の番号
+     * @param g  オブジェクトのビット位置
+     * @return   含めば真
+     */
+    public boolean extentContains(int id, int g){
+        return (log.getLong(record(id) + 8L * (g >>> 6)) & (1L << g)) != 0;
+    }
+
+
+    /**
+     * 内包が属性を含むかを返すメソッド.
+     * @param id 形式概念の番号
+     * @param m  属性のビット位置
+     * @return   含めば真
+     */
+    public boolean intentContains(int id, int m){
+        return (log.getLong(record(id) + 8L * (objectWords + (m >>> 6))) & (1L << m)) != 0;
+    }
+
+
+    /**
+     * 形式概念 a が形式概念 b 以下(a の外延が b の外延に含まれる)かを返すメソッド.
+     * @param a 形式概念の番号
+     * @param b 形式概念の番号
+     * @return  a ≦ b ならば真
+     */
+    public boolean isSubconcept(int a, int b){
+        long positionA = record(a);
+        long positionB = record(b);
+        for(int w=0;w<objectWords;w++){
+            if((log.getLong(positionA + 8L * w) & ~log.getLong(positionB + 8L * w)) != 0){
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * 内包から形式概念の番号を引くメソッド. 索引がなければ作る.
+     * @param intent 内包. FormalContext のビット位置で詰めたもの.
+     * @return       番号. 無ければ -1.
+     * @exception IOException 索引を作れなかった場合
+     */
+    public int indexOf(long[] intent) throws IOException{
+        if(index == null){
+            buildIndex();
+        }
+        long slot = find(intent);
+        return (int)index.getLong(8 + 8 * slot) - 1;
+    }
+
+
+    /**
+     * ハッセ図の被覆関係を作るメソッド. 索引がなければ先に作る.
+     * 記録が束全体を含んでいない場合は IllegalStateException を投げる.
+     * @exception IOException ファイルを作れなかった場合
+     */
+    public void buildCovers() throws IOException{
+        if(index == null){
+            buildIndex();
+        }
+        if(upper != null){
+            return;
+        }
+
+        // 属性の方が少なければ, 内包から下の被覆を求めてから転置する.
+        boolean upward = context.getObjectLength() <= context.getAttributeLength();
+        MappedFile computed = createDerived(upward ? ".upper" : ".lower");
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        long position = 8 + 8L * (count + 1);
+        computed.putLong(8,position);
+        for(int from=0;from<count;from+=BATCH){
+            int to = (int)Math.min((long)from + BATCH,count);
+            int[][] covers = new int[to-from][];
+            pool.invoke(new CoverTask(upward,covers,from,from,to));
+            for(int i=0;i<covers.length;i++){
+                for(int neighbour : covers[i]){
+                    computed.putInt(position,neighbour);
+                    position += 4;
+                }
+                computed.putLong(8 + 8L * (from + i + 1),position);
+            }
+        }
+        computed.truncate(position);
+        MappedFile transposed = transpose(computed,upward ? ".lower" : ".upper");
+        computed.putLong(0,count);
+        transposed.putLong(0,count);
+        upper = upward ? computed : transposed;
+        lower = upward ? transposed : computed;
+    }
+
+
+    /**
+     * 上の被覆を返すメソッド. buildCovers() の後で使う.
+     * @param id 形式概念の番号
+     * @return   上の被覆の番号
+     */
+    public int[] getUpperCovers(int id){
+        return neighbours(upper,id);
+    }
+
+
+    /**
+     * 下の被覆を返すメソッド. buildCovers() の後で使う.
+     * @param id 形式概念の番号
+     * @return   下の被覆の番号
+     */
+    public int[] getLowerCovers(int id){
+        return neighbours(lower,id);
+    }
+
+
+    /**
+     * 書き込んだ内容をディスクに書き出すメソッド.
+     */
+    public void force(){
+        log.force();
+        for(MappedFile file : new MappedFile[]{index,upper,lower}){
+            if(file != null){
+                file.force();
+            }
+        }
+    }
+
+
+    /**
+     * ファイルを閉じるメソッド. 記録は実際の長さに切り詰める.
+     * @exception IOException 閉じられなかった場合
+     */
+    // @Override
+    public void close() throws IOException{
+        force();
+        log.close(offset(count));
+        for(MappedFile file : new MappedFile[]{index,upper,lower}){
+            if(file != null){
+                file.close(-1);
+            }
+        }
+        index = upper = lower = null;
+    }
+
+
+
+    /////////////////////
+    // Private Methods //
+    /////////////////////
+
+    /**
+     * 内包から番号を引くハッシュ表を作るメソッド.
+     * @exception IOException ファイルを作れなかった場合
+     */
+    private void buildIndex() throws IOException{
+        slots = slots(count);
+        MappedFile file = createDerived(".index");
+        file.truncate(8 + 8 * slots);
+        index = file;
+        long[] intent = new long[attributeWords];
+        for(int id=0;id<count;id++){
+            long position = offset(id) + 8L * objectWords;
+            for(int w=0;w<attributeWords;w++){
+                intent[w] = log.getLong(position + 8L * w);
+            }
+            long slot = find(intent);
+            if(index.getLong(8 + 8 * slot) != 0){
+                dropDerived();
+                throw new IllegalStateException("concept store holds the intent of concept "
+                                                + id + " twice");
+            }
+            index.putLong(8 + 8 * slot,id+1);
+        }
+        index.putLong(0,count);
+    }
+
+
+    /**
+     * ハッシュ表の大きさを返すメソッド. 形式概念の数の2倍以上の2の冪.
+     * @param count 形式概念の数
+     * @return      表の大きさ
+     */
+    private static long slots(int count){
+        return Long.highestOneBit(Math.max(1L,count) * 2 - 1) * 2;
+    }
+
+
+    /**
+     * 内包が入っている, もしくは入るべきハッシュ表の位置を返すメソッド.
+     * 表の中身と比べるときは記録のワードを直接読む.
+     * @param intent 内包
+     * @return       表の位置
+     */
+    private long find(long[] intent){
+        long mask = slots - 1;
+        // 線形探査で塊ができないよう, ハッシュ値を掛け算で混ぜて上位のビットを使う.
+        long h = BitVectors.hash(intent) * 0x9E3779B97F4A7C15L;
+        long slot = (h >>> (64 - Long.numberOfTrailingZeros(slots))) & mask;
+        while(true){
+            long entry = index.getLong(8 + 8 * slot);
+            if(entry == 0 || equalsIntent((int)(entry - 1),intent)){
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+
+    /**
+     * 記録の内包が与えられた内包と等しいかを返すメソッド.
+     * @param id     形式概念の番号
+     * @param intent 内包
+     * @return       等しければ真
+     */
+    private boolean equalsIntent(int id, long[] intent){
+        long position = offset(id) + 8L * objectWords;
+        for(int w=0;w<attributeWords;w++){
+            if(log.getLong(position + 8L * w) != intent[w]){
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * CSR 形式の隣接リストを転置するメソッド. 各形式概念の入次数を数えて終わりの位置を求め,
+     * 番号の大きい方から終わりの位置を詰めながら置くので, 各リストは番号の昇順になる.
+     * @param source 転置する隣接リスト
+     * @param suffix 作るファイルの接尾辞
+     * @return       転置した隣接リスト
+     * @exception IOException ファイルを作れなかった場合
+     */
+    private MappedFile transpose(MappedFile source, String suffix) throws IOException{
+        MappedFile target = createDerived(suffix);
+        long base = 8 + 8L * (count + 1);
+        long edges = (source.getLong(8 + 8L * count) - base) / 4;
+
+        // 入次数を数え, 累積して各リストの終わりの位置にする.
+        for(long e=0;e<edges;e++){
+            long slot = 8 + 8L * source.getInt(base + 4 * e);
+            target.putLong(slot,target.getLong(slot) + 1);
+        }
+        long end = base;
+        for(int id=0;id<count;id++){
+            end += 4 * target.getLong(8 + 8L * id);
+            target.putLong(8 + 8L * id,end);
+        }
+        target.putLong(8 + 8L * count,end);
+
+        // 終わりの位置を詰めながら置くと, 位置は各リストの始まりになる.
+        for(int id=count-1;id>=0;id--){
+            long from = source.getLong(8 + 8L * id);
+            long to = source.getLong(8 + 8L * (id + 1));
+            for(long p=from;p<to;p+=4){
+                long slot = 8 + 8L * source.getInt(p);
+                long position = target.getLong(slot) - 4;
+                target.putLong(slot,position);
+                target.putInt(position,id);
+            }
+        }
+        target.truncate(end);
+        return target;
+    }
+
+
+    /**
+     * 隣接リストを読むメソッド.
+     * @param file 隣接リスト
+     * @param id   形式概念の番号
+     * @return     隣接する形式概念の番号
+     */
+    private int[] neighbours(MappedFile file, int id){
+        if(file == null){
+            throw new IllegalStateException("covers have not been built");
+        }
+        long from = file.getLong(8 + 8L * id);
+        long to = file.getLong(8 + 8L * (id + 1));
+        int[] neighbours = new int[(int)((to - from) / 4)];
+        for(int i=0;i<neighbours.length;i++){
+            neighbours[i] = file.getInt(from + 4L * i);
+        }
+        return neighbours;
+    }
+
+
+    /**
+     * レコードの位置を返すメソッド.
+     * @param id 形式概念の番号
+     * @return   ファイル上の位置
+     */
+    private long offset(int id){
+        return HEADER + recordBytes * id;
+    }
+
+
+    /**
+     * 記録にある形式概念のレコードの位置を返すメソッド.
+     * @param id 形式概念の番号
+     * @return   ファイル上の位置
+     */
+    private long record(int id){
+        if(id < 0 || id >= count){
+            throw new IndexOutOfBoundsException("concept " + id + " of " + count);
+        }
+        return offset(id);
+    }
+
+
+    /**
+     * ワード列を読むメソッド.
+     * @param position ファイル上の位置
+     * @param words    ワード数
+     * @return         ワード列
+     */
+    private long[] readWords(long position, int words){
+        long[] vector = new long[words];
+        for(int w=0;w<words;w++){
+            vector[w] = log.getLong(position + 8L * w);
+        }
+        return vector;
+    }
+
+
+    /**
+     * ワード列の立っているビットの数を返すメソッド.
+     * @param position ファイル上の位置
+     * @param words    ワード数
+     * @return         ビットの数
+     */
+    private int cardinality(long position, int words){
+        int cardinality = 0;
+        for(int w=0;w<words;w++){
+            cardinality += Long.bitCount(log.getLong(position + 8L * w));
+        }
+        return cardinality;
+    }
+
+
+    /**
+     * 記録と同じ場所の, 接尾辞の付いたファイルを返すメソッド.
+     * @param suffix 接尾辞
+     * @return       ファイル
+     */
+    private Path sibling(String suffix){
+        return path.resolveSibling(path.getFileName() + suffix);
+    }
+
+
+    /**
+     * 索引や被覆のファイルを空で作るメソッド.
+     * @param suffix 接尾辞
+     * @return       ファイル
+     * @exception IOException 作れなかった場合
+     */
+    private MappedFile createDerived(String suffix) throws IOException{
+        Files.deleteIfExists(sibling(suffix));
+        return new MappedFile(sibling(suffix));
+    }
+
+
+    /**
+     * 今の形式概念の数で作った索引や被覆のファイルを開くメソッド.
+     * @param suffix 接尾辞
+     * @return       ファイル. 無いか古ければ null.
+     * @exception IOException 開けなかった場合
+     */
+    private MappedFile openDerived(String suffix) throws IOException{
+        Path file = sibling(suffix);
+        if(!Files.exists(file)){
+            return null;
+        }
+        MappedFile derived = new MappedFile(file);
+        if(derived.size() < 8 || derived.getLong(0) != count){
+            derived.close(-1);
+            Files.delete(file);
+            return null;
+        }
+        return derived;
+    }
+
+
+    /**
+     * 索引と被覆のファイルを捨てるメソッド.
+     */
+    private void dropDerived(){
+        try{
+            for(MappedFile file : new MappedFile[]{index,upper,lower}){
+                if(file != null){
+                    file.close(-1);
+                }
+            }
+            index = upper = lower = null;
+            for(String suffix : new String[]{".index",".upper",".lower"}){
+                Files.deleteIfExists(sibling(suffix));
+            }
+        }catch(IOException e){
+            throw new UncheckedIOException(e);
+        }
+    }
+
+
+
+    ///////////////////
+    // Inner Classes //
+    ///////////////////
+
+    /**
+     * 一定範囲の形式概念の被覆を計算するタスク. 範囲が大きければ半分に分ける.
+     */
+    private class CoverTask extends RecursiveAction{
+
+        private static final long serialVersionUID = 1L;
+
+        boolean upward; // 上の被覆を求めるならば真, 下の被覆ならば偽.
+        int[][] covers; // 結果を書き込む配列. base 番の形式概念が0番目.
+        int base; // covers の0番目の形式概念の番号.
+        int from; // 範囲の始め.
+        int to; // 範囲の終わり(これを含まない).
+
+        CoverTask(boolean upward, int[][] covers, int base, int from, int to){
+            this.upward = upward;
+            this.covers = covers;
+            this.base = base;
+            this.from = from;
+            this.to = to;
+        }
+
+        // @Override
+        protected void compute(){
+            if(to - from > THRESHOLD){
+                int middle = (from + to) >>> 1;
+                invokeAll(new CoverTask(upward,covers,base,from,middle),
+                          new CoverTask(upward,covers,base,middle,to));
+                return;
+            }
+
+            FCACoverCalculator calculator = new FCACoverCalculator(context);
+            ArrayList<long[]> neighbourExtents = new ArrayList<>();
+            ArrayList<long[]> neighbourIntents = new ArrayList<>();
+            for(int id=from;id<to;id++){
+                neighbourExtents.clear();
+                neighbourIntents.clear();
+                if(upward){
+                    calculator.upperNeighbours(getExtent(id),getIntent(id),neighbourExtents,neighbourIntents);
+                }else{
+                    calculator.lowerNeighbours(getExtent(id),getIntent(id),neighbourExtents,neighbourIntents);
+                }
+                int[] cover = new int[neighbourIntents.size()];
+                for(int k=0;k<cover.length;k++){
+                    long slot = find(neighbourIntents.get(k));
+                    cover[k] = (int)index.getLong(8 + 8 * slot) - 1;
+                    if(cover[k] < 0){
+                        throw new IllegalStateException("concept store does not hold the neighbours of concept " + id);
+                    }
+                }
+                Arrays.sort(cover);
+                covers[id-base] = cover;
+            }
+        }
+    }
+
+
+    /**
+     * 1GB ごとに区切ってマップしたファイル. 区切りは初めて触れたときにマップする.
+     * 書き込みで区切りをマップするとファイルはその区切りの終わりまで伸びるので,
+     * 閉じるときに実際の長さに切り詰める. 長さを設定しなければ, 開いたときの長さに戻す.
+     */
+    private static final class MappedFile{
+
+        FileChannel channel; // ファイル.
+        volatile MappedByteBuffer[] segments = new MappedByteBuffer[0]; // マップした区切り.
+        long length; // 切り詰める長さ. 初めは開いたときの長さ.
+
+        MappedFile(Path path) throws IOException{
+            channel = FileChannel.open(path,StandardOpenOption.CREATE,
+                                       StandardOpenOption.READ,StandardOpenOption.WRITE);
+            length = channel.size();
+        }
+
+        long size() throws IOException{
+            return channel.size();
+        }
+
+        long getLong(long position){
+            return segment(position).getLong((int)(position & ((1L << SEGMENT_SHIFT) - 1)));
+        }
+
+        void putLong(long position, long value){
+            segment(position).putLong((int)(position & ((1L << SEGMENT_SHIFT) - 1)),value);
+        }
+
+        int getInt(long position){
+            return segment(position).getInt((int)(position & ((1L << SEGMENT_SHIFT) - 1)));
+        }
+
+        void putInt(long position, int value){
+            segment(position).putInt((int)(position & ((1L << SEGMENT_SHIFT) - 1)),value);
+        }
+
+        /**
+         * 閉じるときに切り詰める長さを設定するメソッド.
+         * @param length 長さ
+         */
+        void truncate(long length){
+            this.length = length;
+        }
+
+        void force(){
+            for(MappedByteBuffer segment : segments){
+                if(segment != null){
+                    segment.force();
+                }
+            }
+        }
+
+        /**
+         * ファイルを閉じるメソッド.
+         * @param length 切り詰める長さ. 負ならば truncate() で設定した長さ.
+         */
+        void close(long length) throws IOException{
+            segments = new MappedByteBuffer[0];
+            long truncated = length >= 0 ? length : this.length;
+            if(truncated < channel.size()){
+                channel.truncate(truncated);
+            }
+            channel.close();
+        }
+
+        private MappedByteBuffer segment(long position){
+            int s = (int)(position >>> SEGMENT_SHIFT);
+            MappedByteBuffer[] segments = this.segments;
+            if(s < segments.length && segments[s] != null){
+                return segments[s];
+            }
+            return map(s);
+        }
+
+        private synchronized MappedByteBuffer map(int s){
+            MappedByteBuffer[] segments = this.segments;
+            if(s < segments.length && segments[s] != null){
+                return segments[s];
+            }
+            try{
+                MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_WRITE,
+                                                       (long)s << SEGMENT_SHIFT,1L << SEGMENT_SHIFT);
+                segment.order(ByteOrder.nativeOrder());
+                segments = Arrays.copyOf(segments,Math.max(segments.length,s+1));
+                segments[s] = segment;
+                this.segments = segments;
+                return segment;
+            }catch(IOException e){
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+
+
+    //////////
+    // Test //
+    //////////
+
+    public static void main(String args[]) throws IOException{
+
+        // 引数のファイルを読み込む. 引数が無ければ乱数でコンテクスト表を作る.
+        FormalContext context;
+        if(args.length > 0){
+            context = FormalContextReader.load(args[0]);
+        }else{
+            context = new FormalContext(FormalContext.randomTable(300,40,0.25,1));
+        }
+
+        // 形式概念を記録に流し込み, ハッセ図の被覆関係を作る.
+        Path path = Files.createTempFile("concepts",".log");
+        try(ConceptStore store = ConceptStore.create(path,context)){
+            long start = System.nanoTime();
+            new FormalConceptParallelAnalyzer(context).analize(store);
+            long enumerated = System.nanoTime();
+            store.buildCovers();
+            long built = System.nanoTime();
+            System.out.println(store.size() + " concepts in " + (enumerated - start) / 1000000 + " ms, covers in "
+                               + (built - enumerated) / 1000000 + " ms");
+
+            // 根の下の被覆を表示する.
+            System.out.println("{attributes}  :  number of objects");
+            for(int id : store.getLowerCovers(0)){
+                System.out.println(store.getTupple(id).getAttributeSubset() + "  :  " + store.getExtentCardinality(id));
+            }
+        }finally{
+            for(String suffix : new String[]{"",".index",".upper",".lower"}){
+                Files.deleteIfExists(path.resolveSibling(path.getFileName() + suffix));
+            }
+        }
+    }
+}
@@ -0,0 +1,286 @@
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * オブジェクトを追加しながら, 複数のスレッドから読める概念束.
+ * 更新は1つの書き手がまとめて行ない, 読み手は更新の途中を見ずに, ロックも取らずに読む.
+ *
+ * 書き手は IncrementalLattice に1回分のオブジェクトを全て追加してから,
+ * その時点の束を LatticeGraph(CSR 形式の配列だけのハッセ図)に写し,
+ * 版番号をつけた Snapshot として AtomicReference で差し替える(コピーオンライト).
+ * 公開した Snapshot は二度と書き換えないので, 読み手は snapshot() で受け取った版を
+ * 好きなだけたどってよく, その間に書き手が次の版を公開しても影響を受けない.
+ * 読み手どうしは配列を読むだけで何も共有して書き換えないので, 読む速さはコア数に比例して伸びる.
+ *
+ * 書き手の処理は synchronized で順に行なうので, 複数のスレッドから追加しても1つずつ反映される.
+ * 版を作るたびに束全体を写すので, 1回に追加するオブジェクトは多めにまとめるとよい.
+ *
+ * @author  uehashu
+ * @version 1.0
+ */
+public class ConcurrentLattice{
+
+    IncrementalLattice lattice; // 書き手だけが触る束.
+    AtomicReference<Snapshot> current = new AtomicReference<>(); // 最後に公開した版.
+
+
+    //////////////////
+    // Constructors //
+    //////////////////
+
+    /**
+     * 属性番号が1から attributeLength までの, オブジェクトの無い束を作る.
+     * @param attributeLength 属性数
+     */
+    public ConcurrentLattice(int attributeLength){
+        this(new IncrementalLattice(attributeLength));
+    }
+
+
+    /**
+     * @param universeOfAttribute 属性の全集合
+     */
+    public ConcurrentLattice(HashSet<Integer> universeOfAttribute){
+        this(new IncrementalLattice(universeOfAttribute));
+    }
+
+
+    /**
+     * @param lattice 最初の束. 以後はこのクラスだけが書き換える.
+     */
+    private ConcurrentLattice(IncrementalLattice lattice){
+        this.lattice = lattice;
+        current.set(new Snapshot(0,lattice.rows.size(),lattice.toLatticeGraph()));
+    }
+
+
+
+    /////////////
+    // Methods //
+    /////////////
+
+    /**
+     * 最後に公開した版を返すメソッド. ロックを取らない.
+     * @return 版
+     */
+    public Snapshot snapshot(){
+        return current.get();
+    }
+
+
+    /**
+     * コンテクスト表の行をまとめてオブジェクトとして追加し, 新しい版を公開するメソッド.
+     * オブジェクト番号はこれまでに追加したオブジェクト数+1 から順に, 属性番号は列番号+1 とする.
+     * @param rows オブジェクトが持つ属性. [オブジェクト][属性]
+     * @return     公開した版
+     */
+    public synchronized Snapshot addRows(List<boolean[]> rows){
+        int[] objects = new int[rows.size()];
+        PackedBitSet[] attributeBits = new PackedBitSet[rows.size()];
+        for(int i=0;i<objects.length;i++){
+            boolean[] row = rows.get(i);
+            objects[i] = lattice.rows.size() + i + 1;
+            attributeBits[i] = new PackedBitSet(row.length+1);
+            for(int m=0;m<row.length;m++){
+                if(row[m]){
+                    attributeBits[i].add(m+1);
+                }
+            }
+        }
+        return addObjects(objects,attributeBits);
+    }
+
+
+    /**
+     * オブジェクトをまとめて追加し, 新しい版を公開するメソッド.
+     * 1つでも追加できないオブジェクトがあれば, どれも追加せずに例外を投げる.
+     * @param objects       オブジェクト番号
+     * @param attributeBits 各オブジェクトが持つ属性
+     * @return              公開した版. 追加するオブジェクトが無ければ今の版.
+     * @throws IllegalArgumentException 番号が既にあるか重複している場合や, 知らない属性がある場合
+     */
+    public synchronized Snapshot addObjects(int[] objects, PackedBitSet[] attributeBits){
+        if(objects.length != attributeBits.length){
+            throw new IllegalArgumentException("objects and attributes differ in length: "
+                                               + objects.length + " != " + attributeBits.length);
+        }
+        if(objects.length == 0){
+            return current.get();
+        }
+
+        // 途中で失敗して半分だけ追加されないように, 先に全て確かめる.
+        HashSet<Integer> added = new HashSet<>();
+        for(int i=0;i<objects.length;i++){
+            if(lattice.rows.containsKey(objects[i]) || !added.add(objects[i])){
+                throw new IllegalArgumentException("object " + objects[i] + " is already in the lattice");
+            }
+            if(!attributeBits[i].isSubsetOf(lattice.universeOfAttribute)){
+                throw new IllegalArgumentException("unknown attributes: "
+                                                   + attributeBits[i].copy().andNot(lattice.universeOfAttribute));
+            }
+        }
+
+        for(int i=0;i<objects.length;i++){
+            lattice.addObject(objects[i],attributeBits[i]);
+        }
+        Snapshot snapshot = new Snapshot(current.get().version + 1,lattice.rows.size(),lattice.toLatticeGraph());
+        current.set(snapshot);
+        return snapshot;
+    }
+
+
+
+    ///////////////////
+    // Inner Classes //
+    ///////////////////
+
+    /**
+     * 束のある版. 作った後は書き換えないので, 何も同期せずに複数のスレッドから読める.
+     */
+    public static final class Snapshot{
+
+        final long version; // 版番号. 最初の空の束が 0 で, 公開するたびに1増える.
+        final int objectLength; // この版までに追加したオブジェクトの数.
+        final LatticeGraph graph; // この版のハッセ図.
+
+        Snapshot(long version, int objectLength, LatticeGraph graph){
+            this.version = version;
+            this.objectLength = objectLength;
+            this.graph = graph;
+        }
+
+        /**
+         * 版番号を返すメソッド.
+         * @return 版番号
+         */
+        public long getVersion(){
+            return version;
+        }
+
+        /**
+         * この版までに追加したオブジェクトの数を返すメソッド.
+         * @return オブジェクト数
+         */
+        public int getObjectLength(){
+            return objectLength;
+        }
+
+        /**
+         * この版のハッセ図を返すメソッド. 書き換えないこと.
+         * @return ハッセ図
+         */
+        public LatticeGraph getGraph(){
+            return graph;
+        }
+
+        /**
+         * この版の形式概念の数を返すメソッド.
+         * @return 形式概念の数
+         */
+        public int size(){
+            return graph.size();
+        }
+    }
+
+
+
+    //////////
+    // Test //
+    //////////
+
+    public static void main(String args[]) throws InterruptedException{
+
+        // 書き手が100行ずつ追加する間, 読み手は最大の形式概念から下の被覆をたどり,
+        // 受け取った版の全ての形式概念に届くことを確かめる.
+        final ConcurrentLattice lattice = new ConcurrentLattice(30);
+        final AtomicBoolean writing = new AtomicBoolean(true);
+        final LongAdder traversals = new LongAdder();
+        Thread reader = new Thread(new Runnable(){
+            // @Override
+            public void run(){
+                while(writing.get()){
+                    traverse(lattice.snapshot());
+                    traversals.increment();
+                }
+            }
+        });
+        reader.start();
+
+        Random random = new Random(1);
+        long start = System.nanoTime();
+        for(int b=0;b<20;b++){
+            ArrayList<boolean[]> rows = new ArrayList<>();
+            for(int i=0;i<100;i++){
+                boolean[] row = new boolean[30];
+                for(int m=0;m<row.length;m++){
+                    row[m] = random.nextDouble() < 0.2;
+                }
+                rows.add(row);
+            }
+            lattice.addRows(rows);
+        }
+        writing.set(false);
+        reader.join();
+        final Snapshot snapshot = lattice.snapshot();
+        System.out.println("version " + snapshot.getVersion() + ", " + snapshot.getObjectLength() + " objects, "
+                           + snapshot.size() + " concepts in " + (System.nanoTime() - start) / 1000000 + " ms, "
+                           + traversals.sum() + " consistent traversals meanwhile");
+
+        // 同じ版を読み手の数を変えてたどり, 1秒あたりにたどれる回数を比べる.
+        for(int readers=1;readers<=Runtime.getRuntime().availableProcessors();readers*=2){
+            final LongAdder count = new LongAdder();
+            final long deadline = System.nanoTime() + 500000000L;
+            Thread[] threads = new Thread[readers];
+            for(int t=0;t<readers;t++){
+                threads[t] = new Thread(new Runnable(){
+                    // @Override
+                    public void run(){
+                        while(System.nanoTime() < deadline){
+                            traverse(snapshot);
+                            count.increment();
+                        }
+                    }
+                });
+                threads[t].start();
+            }
+            for(Thread thread : threads){
+                thread.join();
+            }
+            System.out.println(readers + " readers: " + count.sum() * 2 + " traversals/s");
+        }
+    }
+
+
+    /**
+     * テスト用に, 最大の形式概念から下の被覆をたどって全ての形式概念に届くかを確かめるメソッド.
+     * @param snapshot 版
+     */
+    private static void traverse(Snapshot snapshot){
+        LatticeGraph graph = snapshot.getGraph();
+        boolean[] seen = new boolean[graph.size()];
+        int[] stack = new int[graph.size()];
+        int top = 0;
+        int reached = 1;
+        stack[top++] = graph.getTop();
+        seen[graph.getTop()] = true;
+        while(top > 0){
+            int c = stack[--top];
+            for(int k=0;k<graph.getLowerCoverCount(c);k++){
+                int lower = graph.getLowerCover(c,k);
+                if(!seen[lower]){
+                    seen[lower] = true;
+                    stack[top++] = lower;
+                    reached++;
+                }
+            }
+        }
+        if(reached != graph.size()){
+            throw new IllegalStateException("inconsistent snapshot: " + reached + " of " + graph.size());
+        }
+    }
+}
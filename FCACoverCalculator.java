@@ -0,0 +1,566 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * 形式概念の集合からハッセ図の被覆関係を計算するクラス.
+ * Lindig の上位近傍アルゴリズムを使い, 各形式概念の上の被覆を
+ * コンテクスト表の極作用素だけから直接求める.
+ * 全ての形式概念の組を比べる必要がないので, 形式概念1つあたりの計算量は
+ * オブジェクト数(または属性数)とコンテクスト表の大きさにしか依存しない.
+ *
+ * オブジェクト数より属性数の方が少ない場合は, 双対なコンテクスト表で
+ * 下の被覆を求めてから向きを入れ替える.
+ * 形式概念ごとの計算は独立しているので, Fork/Join で並列に行なう.
+ * 外延の要素数に下限を設けたアイスバーグ概念束のように, 上に閉じた一部の形式概念だけの
+ * 被覆関係も calcIcebergUpperCovers() で求められる.
+ * まばらなコンテクスト表では外延を CompressedBitmap で渡すことができ,
+ * 下の被覆を求めるときの外延の共通部分も圧縮したまま計算する.
+ *
+ * @author  uehashu
+ * @version 1.0
+ */
+public class FCACoverCalculator{
+
+    private static final int THRESHOLD = 64; // これより少ない形式概念は分割せずに計算する.
+
+    FormalContext context; // 解析に使ったコンテクスト表.
+    AnalysisListener listener; // 途中経過を受け取るリスナ. 無ければ null.
+
+
+    //////////////////
+    // Constructors //
+    //////////////////
+
+    /**
+     * @param context 解析に使ったコンテクスト表
+     */
+    public FCACoverCalculator(FormalContext context){
+        this.context = context;
+    }
+
+
+
+    /////////////
+    // Methods //
+    /////////////
+
+    /**
+     * 途中経過を受け取るリスナを設定するメソッド.
+     * calcUpperCovers() で, 計算した閉包の数が一定数の形式概念ごとにまとめて知らされる.
+     * @param listener リスナ. null ならば何も知らせない.
+     */
+    public void setAnalysisListener(AnalysisListener listener){
+        this.listener = listener;
+    }
+
+
+    /**
+     * 全ての形式概念について, 上の被覆(外延が大きい方の隣接する形式概念)を計算するメソッド.
+     * 形式概念の集合が, 上位近傍について閉じていない(全ての形式概念が揃っていない)場合や
+     * 同じ形式概念が重複している場合は null を返す.
+     * @param extents 各形式概念の外延. FormalContext のビット位置で詰めたもの.
+     * @param intents 各形式概念の内包. FormalContext のビット位置で詰めたもの.
+     * @return        各形式概念の上の被覆の番号. 見つからなければ null.
+     */
+    public int[][] calcUpperCovers(long[][] extents, long[][] intents){
+        return calcUpperCovers(extents,null,intents,false);
+    }
+
+
+    /**
+     * 外延を圧縮した集合で渡して, 全ての形式概念の上の被覆を計算するメソッド.
+     * オブジェクト数が属性数より多ければ, 外延を long[] に戻さずに計算する.
+     * @param extents 各形式概念の外延. FormalContext のビット位置の集合.
+     * @param intents 各形式概念の内包. FormalContext のビット位置で詰めたもの.
+     * @return        各形式概念の上の被覆の番号. 見つからなければ null.
+     */
+    public int[][] calcUpperCovers(CompressedBitmap[] extents, long[][] intents){
+        return calcUpperCovers(null,extents,intents,false);
+    }
+
+
+    /**
+     * 上に閉じた形式概念の集合(ある形式概念を含めば, それより上の形式概念も全て含む集合)について,
+     * 集合の中での上の被覆を計算するメソッド. アイスバーグ概念束のハッセ図に使う.
+     * 上に閉じた集合では, 上の被覆は概念束全体での上位近傍と同じで,
+     * 下の被覆は概念束全体での下位近傍のうち集合に含まれるものと同じになる.
+     * 上に閉じていない場合の結果は決まらない(上の被覆を求める向きならば null になる).
+     * @param extents 各形式概念の外延. FormalContext のビット位置で詰めたもの.
+     * @param intents 各形式概念の内包. FormalContext のビット位置で詰めたもの.
+     * @return        各形式概念の上の被覆の番号. 重複があれば null.
+     */
+    public int[][] calcIcebergUpperCovers(long[][] extents, long[][] intents){
+        return calcUpperCovers(extents,null,intents,true);
+    }
+
+
+    /**
+     * 外延を圧縮した集合で渡して, 上に閉じた形式概念の集合の上の被覆を計算するメソッド.
+     * @param extents 各形式概念の外延. FormalContext のビット位置の集合.
+     * @param intents 各形式概念の内包. FormalContext のビット位置で詰めたもの.
+     * @return        各形式概念の上の被覆の番号. 重複があれば null.
+     */
+    public int[][] calcIcebergUpperCovers(CompressedBitmap[] extents, long[][] intents){
+        return calcUpperCovers(null,extents,intents,true);
+    }
+
+
+    /**
+     * 形式概念の上位近傍(上の被覆)を計算するメソッド(Lindig のアルゴリズム).
+     * 各オブジェクト g について (外延 ∪ {g}) の閉包を求め,
+     * それより小さい閉包が他に無いものだけを残す.
+     * @param extent  外延
+     * @param intent  内包
+     * @param extents 上位近傍の外延を追加するリスト
+     * @param intents 上位近傍の内包を追加するリスト
+     */
+    public void upperNeighbours(long[] extent, long[] intent,
+                                ArrayList<long[]> extents, ArrayList<long[]> intents){
+        neighbours(extent,intent,context.getObjectLength(),
+                   context.objectRows,context.getAttributeColumns(),0,extents,intents);
+    }
+
+
+    /**
+     * 圧縮した外延を持つ形式概念の上位近傍(上の被覆)を計算するメソッド.
+     * 外延に含まれないオブジェクト g について 内包 ∩ {g}' は内包どうしの共通部分なので閉じており,
+     * 上位近傍の内包はそのうち包含関係で極大なものになる.
+     * オブジェクトごとに閉包を計算しないので, オブジェクトが多いまばらな表でも速い.
+     * 外延は極大な内包についてだけ, 圧縮した列の共通部分として求める.
+     * @param extent  外延
+     * @param intent  内包
+     * @param extents 上位近傍の外延を追加するリスト
+     * @param intents 上位近傍の内包を追加するリスト
+     */
+    public void upperNeighbours(CompressedBitmap extent, long[] intent,
+                                ArrayList<CompressedBitmap> extents, ArrayList<long[]> intents){
+        ArrayList<long[]> maximal = new ArrayList<>();
+        long[] candidate = new long[intent.length];
+        int next = extent.nextSetBit(0);
+        for(int g=0;g<context.getObjectLength();g++){
+            if(g == next){
+                next = extent.nextSetBit(g+1);
+                continue;
+            }
+
+            // 既にある極大な内包に含まれれば飛ばし, そうでなければ含まれるものを除いて加える.
+            BitVectors.and(intent,context.getObjectRow(g),candidate);
+            boolean covered = false;
+            for(long[] other : maximal){
+                if(BitVectors.isSubset(candidate,other)){
+                    covered = true;
+                    break;
+                }
+            }
+            if(covered){
+                continue;
+            }
+            for(int k=maximal.size()-1;k>=0;k--){
+                if(BitVectors.isSubset(maximal.get(k),candidate)){
+                    maximal.remove(k);
+                }
+            }
+            maximal.add(candidate.clone());
+        }
+
+        for(long[] neighbour : maximal){
+            extents.add(context.attributePolar(neighbour));
+            intents.add(neighbour);
+        }
+    }
+
+
+    /**
+     * 形式概念の下位近傍(下の被覆)を計算するメソッド.
+     * 双対なコンテクスト表での上位近傍として求める.
+     * @param extent  外延
+     * @param intent  内包
+     * @param extents 下位近傍の外延を追加するリスト
+     * @param intents 下位近傍の内包を追加するリスト
+     */
+    public void lowerNeighbours(long[] extent, long[] intent,
+                                ArrayList<long[]> extents, ArrayList<long[]> intents){
+        neighbours(intent,extent,context.getAttributeLength(),
+                   context.getAttributeColumns(),context.objectRows,0,intents,extents);
+    }
+
+
+    /**
+     * 圧縮した外延を持つ形式概念の下位近傍(下の被覆)を計算するメソッド.
+     * 候補の外延は外延と属性の列の共通部分として, 圧縮したまま求める.
+     * @param extent  外延
+     * @param intent  内包
+     * @param extents 下位近傍の外延を追加するリスト
+     * @param intents 下位近傍の内包を追加するリスト
+     */
+    public void lowerNeighbours(CompressedBitmap extent, long[] intent,
+                                ArrayList<CompressedBitmap> extents, ArrayList<long[]> intents){
+        neighbours(extent,intent,0,extents,intents);
+    }
+
+
+
+    /////////////////////
+    // Private Methods //
+    /////////////////////
+
+    /**
+     * 上の被覆を計算するメソッドの本体. 外延はビット列か圧縮した集合のどちらか一方で渡す.
+     * @param extents           各形式概念の外延. 圧縮した集合で渡すならば null.
+     * @param compressedExtents 各形式概念の圧縮した外延. ビット列で渡すならば null.
+     * @param intents           各形式概念の内包
+     * @param iceberg           上に閉じた一部の形式概念だけならば真
+     * @return                  各形式概念の上の被覆の番号. 見つからなければ null.
+     */
+    private int[][] calcUpperCovers(long[][] extents, CompressedBitmap[] compressedExtents,
+                                    long[][] intents, boolean iceberg){
+
+        // 属性の方が少なければ, 内包から下の被覆を求めて向きを入れ替える.
+        // 外延から上の被覆を求めるときは, 圧縮した外延をビット列に戻す.
+        boolean upward = context.getObjectLength() <= context.getAttributeLength();
+        if(upward && compressedExtents != null){
+            extents = new long[compressedExtents.length][];
+            for(int i=0;i<extents.length;i++){
+                extents[i] = context.newExtent();
+                compressedExtents[i].toWords(extents[i]);
+            }
+            compressedExtents = null;
+        }
+        ConceptIndex index = new ConceptIndex(upward ? extents : intents);
+        if(index.hasDuplicates()){
+            return null;
+        }
+
+        // 近傍をたどる向きの端(上向きなら最小, 下向きなら最大)の形式概念が無ければ,
+        // 全ての形式概念が揃っているとは言えない.
+        // 上に閉じた集合では最小の形式概念は無くてよいが, 最大の形式概念は必ずある.
+        long[] extreme;
+        if(upward){
+            long[] intent = BitVectors.full(context.getAttributeLength());
+            extreme = context.newExtent();
+            context.attributePolar(intent,extreme);
+        }else{
+            extreme = context.newIntent();
+            context.objectPolar(context.fullExtent(),extreme);
+        }
+        if(!(iceberg && upward) && index.indexOf(extreme) < 0){
+            return null;
+        }
+
+        // 上に閉じた集合で下の被覆を求めるときは, 集合に無い下位近傍を飛ばす.
+        // 外延が集合の中で最小の外延より小さくなる下位近傍は, 閉包を計算する前に飛ばせる.
+        boolean skipMissing = iceberg && !upward;
+        int minExtent = 0;
+        if(skipMissing){
+            minExtent = Integer.MAX_VALUE;
+            for(int i=0;i<intents.length;i++){
+                minExtent = Math.min(minExtent,compressedExtents != null
+                                     ? compressedExtents[i].cardinality()
+                                     : BitVectors.cardinality(extents[i]));
+            }
+        }
+        int[][] covers = new int[intents.length][];
+        CoverTask task = new CoverTask(extents,compressedExtents,intents,index,upward,skipMissing,minExtent,
+                                       covers,0,intents.length);
+        ForkJoinPool.commonPool().invoke(task);
+        if(task.missing){
+            return null;
+        }
+        if(upward){
+            return covers;
+        }
+
+        // 下の被覆を上の被覆に入れ替える.
+        int[] counts = new int[covers.length];
+        for(int[] lowers : covers){
+            for(int lower : lowers){
+                counts[lower]++;
+            }
+        }
+        int[][] uppers = new int[covers.length][];
+        for(int i=0;i<uppers.length;i++){
+            uppers[i] = new int[counts[i]];
+        }
+        Arrays.fill(counts,0);
+        for(int i=0;i<covers.length;i++){
+            for(int lower : covers[i]){
+                uppers[lower][counts[lower]++] = i;
+            }
+        }
+        return uppers;
+    }
+
+
+    /**
+     * Lindig のアルゴリズムの本体. 行と列を入れ替えれば双対なコンテクスト表でも使える.
+     * @param set       閉集合(上位近傍なら外延)
+     * @param polar     set の極集合(上位近傍なら内包)
+     * @param length    set の側の要素数
+     * @param rows      set の側の各要素が持つ, 反対側の要素のビット列
+     * @param columns   反対側の各要素を持つ, set の側の要素のビット列
+     * @param minPolar  近傍の極集合の要素数の下限. これより小さい近傍は閉包を計算せずに捨てる.
+     * @param sets      近傍の閉集合を追加するリスト
+     * @param polars    近傍の極集合を追加するリスト
+     * @return          計算した閉包の数
+     */
+    private static int neighbours(long[] set, long[] polar, int length,
+                                  long[][] rows, long[][] columns, int minPolar,
+                                  ArrayList<long[]> sets, ArrayList<long[]> polars){
+
+        // まだ近傍を生む可能性がある要素. 最初は set に含まれない全ての要素.
+        long[] min = BitVectors.full(length);
+        for(int w=0;w<min.length;w++){
+            min[w] &= ~set[w];
+        }
+
+        long[] candidatePolar = new long[polar.length];
+        long[] candidateSet = new long[set.length];
+        int closures = 0;
+
+        for(int g=BitVectors.nextSetBit(min,0);g>=0;g=BitVectors.nextSetBit(min,g+1)){
+
+            // (set ∪ {g})' = polar ∩ {g}' で, その極集合が閉包.
+            BitVectors.and(polar,rows[g],candidatePolar);
+
+            // 極集合が下限より小さければ, g を閉包に含む候補の極集合も全て小さいので,
+            // g を min から外さずに飛ばしても他の候補の判定は変わらない.
+            if(minPolar > 0 && BitVectors.cardinality(candidatePolar) < minPolar){
+                continue;
+            }
+            BitVectors.fill(candidateSet,length);
+            for(int m=BitVectors.nextSetBit(candidatePolar,0);m>=0;m=BitVectors.nextSetBit(candidatePolar,m+1)){
+                BitVectors.and(candidateSet,columns[m]);
+            }
+            closures++;
+
+            // 閉包で新しく増えた要素(g 以外)が min に残っていなければ近傍.
+            boolean minimal = true;
+            for(int w=0;w<min.length;w++){
+                long added = candidateSet[w] & ~set[w] & min[w];
+                if(w == (g >>> 6)){
+                    added &= ~(1L << g);
+                }
+                if(added != 0){
+                    minimal = false;
+                    break;
+                }
+            }
+
+            if(minimal){
+                sets.add(candidateSet.clone());
+                polars.add(candidatePolar.clone());
+            }else{
+                BitVectors.clear(min,g);
+            }
+        }
+        return closures;
+    }
+
+
+    /**
+     * 圧縮した外延を持つ形式概念の下位近傍を求める, Lindig のアルゴリズムの本体.
+     * 候補の外延の要素数は共通部分を作る前に数えられるので, 下限を下回る候補は作らずに捨てる.
+     * @param extent    外延
+     * @param intent    内包
+     * @param minExtent 近傍の外延の要素数の下限
+     * @param extents   近傍の外延を追加するリスト. 要らなければ null.
+     * @param intents   近傍の内包を追加するリスト
+     * @return          計算した閉包の数
+     */
+    private int neighbours(CompressedBitmap extent, long[] intent, int minExtent,
+                           ArrayList<CompressedBitmap> extents, ArrayList<long[]> intents){
+
+        // まだ近傍を生む可能性がある属性. 最初は内包に含まれない全ての属性.
+        long[] min = BitVectors.full(context.getAttributeLength());
+        for(int w=0;w<min.length;w++){
+            min[w] &= ~intent[w];
+        }
+
+        long[] candidateIntent = new long[intent.length];
+        int closures = 0;
+
+        for(int m=BitVectors.nextSetBit(min,0);m>=0;m=BitVectors.nextSetBit(min,m+1)){
+
+            // (内包 ∪ {m})' = 外延 ∩ {m}' で, その極集合が閉包.
+            CompressedBitmap column = context.getCompressedColumn(m);
+            if(minExtent > 0 && extent.andCardinality(column) < minExtent){
+                continue;
+            }
+            CompressedBitmap candidateExtent = extent.and(column);
+            context.objectPolar(candidateExtent,candidateIntent);
+            closures++;
+
+            // 閉包で新しく増えた属性(m 以外)が min に残っていなければ近傍.
+            boolean minimal = true;
+            for(int w=0;w<min.length;w++){
+                long added = candidateIntent[w] & ~intent[w] & min[w];
+                if(w == (m >>> 6)){
+                    added &= ~(1L << m);
+                }
+                if(added != 0){
+                    minimal = false;
+                    break;
+                }
+            }
+
+            if(minimal){
+                if(extents != null){
+                    extents.add(candidateExtent);
+                }
+                intents.add(candidateIntent.clone());
+            }else{
+                BitVectors.clear(min,m);
+            }
+        }
+        return closures;
+    }
+
+
+
+    ///////////////////
+    // Inner Classes //
+    ///////////////////
+
+    /**
+     * 一定範囲の形式概念の被覆を計算するタスク. 範囲が大きければ半分に分ける.
+     */
+    private class CoverTask extends RecursiveAction{
+
+        private static final long serialVersionUID = 1L;
+
+        long[][] extents; // 各形式概念の外延. 圧縮した外延を使うならば null.
+        CompressedBitmap[] compressedExtents; // 各形式概念の圧縮した外延. 無ければ null.
+        long[][] intents; // 各形式概念の内包.
+        ConceptIndex index; // 近傍を形式概念の番号に引く索引.
+        boolean upward; // 上の被覆を求めるならば真, 下の被覆ならば偽.
+        boolean skipMissing; // 索引にない近傍を飛ばすならば真, 失敗とするならば偽.
+        int minExtent; // 近傍の外延の要素数の下限. 下の被覆を求めるときだけ使う.
+        int[][] covers; // 結果を書き込む配列.
+        int from; // 範囲の始め.
+        int to; // 範囲の終わり(これを含まない).
+        volatile boolean missing = false; // 索引にない近傍があったら真.
+
+        CoverTask(long[][] extents, CompressedBitmap[] compressedExtents, long[][] intents,
+                  ConceptIndex index, boolean upward, boolean skipMissing, int minExtent,
+                  int[][] covers, int from, int to){
+            this.extents = extents;
+            this.compressedExtents = compressedExtents;
+            this.intents = intents;
+            this.index = index;
+            this.upward = upward;
+            this.skipMissing = skipMissing;
+            this.minExtent = minExtent;
+            this.covers = covers;
+            this.from = from;
+            this.to = to;
+        }
+
+        // @Override
+        protected void compute(){
+            if(to - from > THRESHOLD){
+                int middle = (from + to) >>> 1;
+                CoverTask left = new CoverTask(extents,compressedExtents,intents,index,upward,
+                                               skipMissing,minExtent,covers,from,middle);
+                CoverTask right = new CoverTask(extents,compressedExtents,intents,index,upward,
+                                                skipMissing,minExtent,covers,middle,to);
+                invokeAll(left,right);
+                missing = left.missing || right.missing;
+                return;
+            }
+
+            ArrayList<long[]> neighbourExtents = new ArrayList<>();
+            ArrayList<long[]> neighbourIntents = new ArrayList<>();
+            int closures = 0;
+            for(int i=from;i<to;i++){
+                neighbourExtents.clear();
+                neighbourIntents.clear();
+                if(upward){
+                    closures += neighbours(extents[i],intents[i],context.getObjectLength(),
+                                           context.objectRows,context.getAttributeColumns(),0,
+                                           neighbourExtents,neighbourIntents);
+                }else if(compressedExtents != null){
+                    closures += neighbours(compressedExtents[i],intents[i],minExtent,null,neighbourIntents);
+                }else{
+                    closures += neighbours(intents[i],extents[i],context.getAttributeLength(),
+                                           context.getAttributeColumns(),context.objectRows,minExtent,
+                                           neighbourIntents,neighbourExtents);
+                }
+
+                ArrayList<long[]> keys = upward ? neighbourExtents : neighbourIntents;
+                int[] cover = new int[keys.size()];
+                int length = 0;
+                for(int k=0;k<cover.length;k++){
+                    int neighbour = index.indexOf(keys.get(k));
+                    if(neighbour >= 0){
+                        cover[length++] = neighbour;
+                    }else if(!skipMissing){
+                        missing = true;
+                        return;
+                    }
+                }
+                covers[i] = length == cover.length ? cover : Arrays.copyOf(cover,length);
+            }
+            if(listener != null){
+                listener.closuresComputed(closures);
+            }
+        }
+    }
+
+
+    /**
+     * ビット列から形式概念の番号を引く, オープンアドレス法のハッシュ表.
+     */
+    static final class ConceptIndex{
+
+        long[][] keys; // 番号ごとのビット列.
+        int[] table; // 番号+1. 0 は空き.
+        boolean duplicates = false; // 同じビット列が複数あったら真.
+
+        ConceptIndex(long[][] keys){
+            this.keys = keys;
+            table = new int[Integer.highestOneBit(Math.max(1,keys.length) * 2 - 1) * 2];
+            for(int i=0;i<keys.length;i++){
+                int slot = find(keys[i]);
+                if(table[slot] != 0){
+                    duplicates = true;
+                }else{
+                    table[slot] = i+1;
+                }
+            }
+        }
+
+        /**
+         * 同じビット列が複数あったかを返すメソッド.
+         * @return 重複があれば真
+         */
+        boolean hasDuplicates(){
+            return duplicates;
+        }
+
+        /**
+         * ビット列の番号を返すメソッド.
+         * @param key ビット列
+         * @return    番号. 無ければ -1.
+         */
+        int indexOf(long[] key){
+            return table[find(key)] - 1;
+        }
+
+        /**
+         * ビット列が入っている, もしくは入るべき位置を返すメソッド.
+         * @param key ビット列
+         * @return    表の位置
+         */
+        private int find(long[] key){
+            int mask = table.length - 1;
+            int h = BitVectors.hash(key);
+            int slot = (h ^ (h >>> 16)) & mask;
+            while(table[slot] != 0 && !Arrays.equals(keys[table[slot]-1],key)){
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+    }
+}
@@ -1,119 +1,80 @@
 import java.util.HashSet;
-import java.util.TreeSet;
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.HashMap;
-import java.util.SortedSet;
-import java.util.NavigableSet;
-import java.util.Collections;
-import java.util.Comparator;
 
 /**
  * 形式概念解析で得られたタプルに対するハッセ図を作るクラス.
  * この場合, 包含関係が順序構造である.
+ * ハッセ図の構造は番号で引く配列だけの LatticeGraph で保持し,
+ * ノードの集合と有向エッジの集合は getNodes() や getArrows() で初めて必要になったときに作る.
  *
  * @author  uehashu
  * @version 1.0
  */
 public class FCAHasseDiagram{
 
-    HashSet<Node> nodes = new HashSet<>(); // ノードの集合.
-    HashMap<Node,HashSet<Node>> arrows = new HashMap<>(); // 有向エッジ. <to,froms>
+    LatticeGraph graph; // ハッセ図の構造.
+    ArrayList<Tupple> tupples; // 形式概念の番号ごとのタプル. 無ければ graph から作る.
+    HashSet<Node> nodes; // ノードの集合. 必要になってから作る.
+    HashMap<Node,HashSet<Node>> arrows; // 有向エッジ. <to,froms> 必要になってから作る.
 
     //////////////////
     // Constructors //
     //////////////////
 
     /**
-     * 有向エッジのコレクションも初期化しておく.
-     * ついでにハッセ図の構造も算出しとく.
+     * ハッセ図の構造も算出しとく.
+     * コンテクスト表は形式概念の集合から復元する.
      * @param tupples 形式概念解析で得られたタプル
      */
     public FCAHasseDiagram(ArrayList<Tupple> tupples){
-        for(Tupple tupple : tupples){
-            nodes.add(new Node(tupple));
-        }
-        for(Node node : nodes){
-            arrows.put(node,new HashSet<Node>());
-        }
-
-        calcHasseDiagram();
+        this(tupples,FormalContext.fromConcepts(tupples));
     }
 
 
+    /**
+     * 解析に使ったコンテクスト表を共有するコンストラクタ.
+     * @param tupples 形式概念解析で得られたタプル
+     * @param context 解析に使ったコンテクスト表
+     */
+    public FCAHasseDiagram(ArrayList<Tupple> tupples, FormalContext context){
+        this(tupples,context,null);
+    }
 
-    /////////////
-    // Methods //
-    /////////////
 
     /**
-     * ハッセ構造(ノードとエッジ)を計算するメソッド.
+     * 途中経過を知らせながらハッセ図を作るコンストラクタ.
+     * 知らされる内容は LatticeGraph と同じ.
+     * @param tupples  形式概念解析で得られたタプル
+     * @param context  解析に使ったコンテクスト表
+     * @param listener 途中経過を受け取るリスナ. null ならば何も知らせない.
      */
-    private void calcHasseDiagram(){
-
-        // ノードの集合を,  オブジェクト部分集合の要素数の降順でソートするためのコンパレータ.
-        Comparator<Node> comp = new Comparator<Node>(){
-                // @override
-                public int compare(Node n1, Node n2){
-                    if(n1.getTupple().getObjectSubsetCardinality() >
-                       n2.getTupple().getObjectSubsetCardinality()){
-                        return -1;
-                    }else if(n1.getTupple().getObjectSubsetCardinality() <
-                             n2.getTupple().getObjectSubsetCardinality()){
-                        return 1;
-                    }else{
-                        return 0;
-                    }
-                }
-            };
-
-        // ノードの集合を, オブジェクト部分集合の要素数の降順でソートする.
-        ArrayList<Node> sortedNodes = new ArrayList<>(nodes);
-        Collections.sort(sortedNodes,comp);
-
-        // 上の階層(オブジェクト部分集合の要素数が多い順)から見ていく.
-        for(Node povNode : sortedNodes){
-            // 注目ノードよりオブジェクト要素数が多いノードを,
-            // オブジェクト部分集合の要素数の昇順で取り出す.
-            // この取り出したノードが注目ノードの親集合の候補になる.
-            LinkedList<Node> candidateSupsetNodes = new LinkedList<>();
-            for(Node candidateNode : sortedNodes){
-                if(candidateNode.getTupple().getObjectSubsetCardinality() >
-                   povNode.getTupple().getObjectSubsetCardinality()){
-                    candidateSupsetNodes.addFirst(candidateNode);
-                }else{
-                    // 降順に並んでいるので, 取り出したノードのオブジェクト部分集合の数が
-                    // 注目ノードのオブジェクト部分集合の数以下になったとき, ループを抜ける.
-                    break;
-                }
-            }
+    public FCAHasseDiagram(ArrayList<Tupple> tupples, FormalContext context, AnalysisListener listener){
+        this.tupples = new ArrayList<>(tupples);
+        graph = new LatticeGraph(this.tupples,context,listener);
+    }
 
-            // 候補ノードでループ.
-            for(Node candidateNode : candidateSupsetNodes){
-                // 注目ノードが候補ノードの部分集合であるならば以下.
-                if(candidateNode.getTupple().getObjectSubset().containsAll
-                   (povNode.getTupple().getObjectSubset())){
-                    // 注目ノードの親集合コレクションが空である, もしくは
-                    // 取り出したノードが注目ノードの親集合に入っていないならば,
-                    // 有向エッジを引き, 取り出したノードおよびその親集合を
-                    // 注目ノードの親集合に加える.
-                    if(povNode.getSuperclasses().isEmpty() ||
-                       !povNode.getSuperclasses().contains(candidateNode)){
-                        arrows.get(povNode).add(candidateNode);
-                        povNode.getSuperclasses().add(candidateNode);
-                        povNode.getSuperclasses().addAll(candidateNode.getSuperclasses());
-                    }
-                }
-            }
-        }
+
+    /**
+     * ハッセ図の構造が分かっている場合に, それをそのまま使うコンストラクタ.
+     * @param graph ハッセ図の構造
+     */
+    public FCAHasseDiagram(LatticeGraph graph){
+        this.graph = graph;
     }
 
 
+
+    /////////////
+    // Methods //
+    /////////////
+
     /**
      * ノードの集合を返すメソッド.
      * @return ノードの集合
      */
     public HashSet<Node> getNodes(){
+        createNodes();
         return nodes;
     }
 
@@ -123,10 +84,68 @@ public class FCAHasseDiagram{
      * @return 有向エッジの集合
      */
     public HashMap<Node,HashSet<Node>> getArrows(){
+        createNodes();
         return arrows;
     }
 
 
+    /**
+     * ハッセ図の構造を返すメソッド.
+     * @return ハッセ図の構造
+     */
+    public LatticeGraph getGraph(){
+        return graph;
+    }
+
+
+    /**
+     * 解析に使ったコンテクスト表を返すメソッド.
+     * @return コンテクスト表
+     */
+    public FormalContext getContext(){
+        return graph.getContext();
+    }
+
+
+
+    /////////////////////
+    // Private Methods //
+    /////////////////////
+
+    /**
+     * LatticeGraph からノードの集合と有向エッジの集合を作るメソッド.
+     * 2回目以降は何もしない.
+     */
+    private synchronized void createNodes(){
+        if(nodes != null){
+            return;
+        }
+
+        FormalContext context = graph.getContext();
+        Node[] nodeArray = new Node[graph.size()];
+        for(int c=0;c<nodeArray.length;c++){
+            Tupple tupple = tupples == null ? graph.getTupple(c) : tupples.get(c);
+            long[] extent = context.newExtent();
+            graph.getExtent(c,extent);
+            nodeArray[c] = new Node(tupple,extent);
+        }
+
+        HashSet<Node> nodes = new HashSet<>();
+        HashMap<Node,HashSet<Node>> arrows = new HashMap<>();
+        for(int c=0;c<nodeArray.length;c++){
+            HashSet<Node> froms = new HashSet<>();
+            for(int k=0;k<graph.getUpperCoverCount(c);k++){
+                froms.add(nodeArray[graph.getUpperCover(c,k)]);
+            }
+            nodeArray[c].upperCovers = froms;
+            nodes.add(nodeArray[c]);
+            arrows.put(nodeArray[c],froms);
+        }
+        this.arrows = arrows;
+        this.nodes = nodes;
+    }
+
+
 
     //////////
     // Test //
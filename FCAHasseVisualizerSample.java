@@ -7,7 +7,9 @@ import edu.uci.ics.jung.algorithms.layout.StaticLayout;
 import edu.uci.ics.jung.visualization.BasicVisualizationServer;
 import edu.uci.ics.jung.visualization.decorators.ToStringLabeller;
 import java.awt.Dimension;
+import java.util.concurrent.ExecutionException;
 import javax.swing.JFrame;
+import javax.swing.SwingWorker;
 
 public class FCAHasseVisualizerSample{
 
@@ -62,10 +64,10 @@ public class FCAHasseVisualizerSample{
                                                 universeOfAttribute);
 
         // ハッセ図を計算.
-        FCAHasseDiagram fcahd = new FCAHasseDiagram(concepts);
+        final FCAHasseDiagram fcahd = new FCAHasseDiagram(concepts);
 
         // ノードの集合と有向エッジの集合を取得.
-        HashSet<Node> nodes = fcahd.getNodes();
+        final HashSet<Node> nodes = fcahd.getNodes();
         HashMap<Node,HashSet<Node>> arrows = fcahd.getArrows();
 
         // グラフの描画システムを作成
@@ -86,47 +88,14 @@ public class FCAHasseVisualizerSample{
             }
         }
 
-        // 手動レイアウト.
-        StaticLayout<Node,Integer> layout = new StaticLayout<>(graph);
+        // 手動レイアウト. 座標は LatticeLayout で計算してから設定する.
+        final StaticLayout<Node,Integer> layout = new StaticLayout<>(graph);
 
         // パネルのサイズ.
-        Dimension dim = new Dimension(600,600);
-
-        // ノードを綺麗に配置するための仕組み.
-        // まず, ノードのオブジェクト部分集合の要素数の最大値を取得する.
-        int maxObjectSize = 0;
-        for(Node node : nodes){
-            if(node.getTupple().getObjectSubset().size() > maxObjectSize){
-                maxObjectSize = node.getTupple().getObjectSubset().size();
-            }
-        }
-
-        // グラフをオブジェクト部分集合の要素数ごとに仕分ける.
-        ArrayList<ArrayList<Node>> dividedNodes = new ArrayList<>();
-        for(int i=maxObjectSize;i>=0;i--){
-            ArrayList<Node> sameSizeNodes = new ArrayList<>();
-            for(Node node : nodes){
-                if(node.getTupple().getObjectSubset().size() == i){
-                    sameSizeNodes.add(node);
-                }
-            }
-            if(!sameSizeNodes.isEmpty()){
-                dividedNodes.add(sameSizeNodes);
-            }
-        }
-
-        int bandY = (int)(dim.getHeight() / (dividedNodes.size()*2));
-        for(int i=0;i<dividedNodes.size();i++){
-            ArrayList<Node> sameSizeNodes = dividedNodes.get(i);
-            int bandX = (int)(dim.getWidth() / (sameSizeNodes.size()*2));
-            for(int j=0;j<sameSizeNodes.size();j++){
-                Node node = sameSizeNodes.get(j);
-                layout.setLocation(node, bandX*(2*j+1), bandY*(2*i+1));
-            }
-        }
+        final Dimension dim = new Dimension(600,600);
 
         // グラフを貼るパネル.
-        BasicVisualizationServer<Node,Integer> panel =
+        final BasicVisualizationServer<Node,Integer> panel =
             new BasicVisualizationServer<>(layout, dim);
 
         // Node の toString() をノード名として表示させる.
@@ -137,5 +106,34 @@ public class FCAHasseVisualizerSample{
         frame.getContentPane().add(panel);
         frame.pack();
         frame.setVisible(true);
+
+        // 大きなハッセ図では配置に時間がかかるので, イベントディスパッチスレッドの外で計算し,
+        // 終わったらパネルの大きさに合わせて座標を設定する.
+        new SwingWorker<LatticeLayout,Void>(){
+            // @Override
+            protected LatticeLayout doInBackground(){
+                LatticeLayout lattice = new LatticeLayout(fcahd);
+                lattice.calc();
+                return lattice;
+            }
+
+            // @Override
+            protected void done(){
+                LatticeLayout lattice;
+                try{
+                    lattice = get();
+                }catch(InterruptedException | ExecutionException e){
+                    throw new IllegalStateException(e);
+                }
+                double scaleX = dim.getWidth() / Math.max(1,lattice.getWidth());
+                double scaleY = dim.getHeight() / Math.max(1,lattice.getHeight());
+                LatticeGraph lg = fcahd.getGraph();
+                for(Node node : nodes){
+                    int c = lg.indexOf(node.getPackedExtent());
+                    layout.setLocation(node,lattice.getX(c) * scaleX,lattice.getY(c) * scaleY);
+                }
+                panel.repaint();
+            }
+        }.execute();
     }
 }
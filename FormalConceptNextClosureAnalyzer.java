@@ -0,0 +1,298 @@
+import java.util.TreeSet;
+import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Ganter の NextClosure アルゴリズムによって形式概念解析を行うクラス.
+ * オブジェクト部分集合も属性部分集合も long[] に詰め込んだビット列で扱い,
+ * 極作用素は FormalContext のワード単位の論理積だけで計算する.
+ * 内包(属性部分集合)を辞書式順序(lectic order)で1つずつ列挙するので,
+ * 今までに見つけた形式概念との比較が不要で, 形式概念1つあたりの計算量は
+ * 属性数とコンテクスト表の大きさにしか依存しない.
+ *
+ * 入力と出力は FormalConceptSparseAnalyzer と同じ形式なので, そのまま置き換えられる.
+ * 束全体を保持したくない場合は iterator() や stream() で1つずつ受け取る.
+ * setAnalysisListener() で途中経過を受け取れる.
+ *
+ * @author  uehashu
+ * @version 1.0
+ */
+public class FormalConceptNextClosureAnalyzer{
+
+    FormalContext context; // ビット列で保持したコンテクスト表.
+    AnalysisListener listener; // 途中経過を受け取るリスナ. 無ければ null.
+
+
+    //////////////////
+    // Constructors //
+    //////////////////
+
+    /**
+     * 与えられたデータをビット列のコンテクスト表に詰め直す.
+     * 各タプルは「オブジェクト部分集合の全要素が属性部分集合の全要素を持つ」ことを表す.
+     * @param data                対象データ
+     * @param universeOfObject    オブジェクトの全集合
+     * @param universeOfAttribute 属性の全集合
+     */
+    public FormalConceptNextClosureAnalyzer(TreeSet<Tupple> data,
+                                            HashSet<Integer> universeOfObject,
+                                            HashSet<Integer> universeOfAttribute){
+        this(new FormalContext(data,universeOfObject,universeOfAttribute));
+    }
+
+
+    /**
+     * @param context コンテクスト表
+     */
+    public FormalConceptNextClosureAnalyzer(FormalContext context){
+        this.context = context;
+    }
+
+
+
+    /////////////
+    // Methods //
+    /////////////
+
+    /**
+     * 途中経過を受け取るリスナを設定するメソッド.
+     * 形式概念を1つ見つけるごとに, 計算した閉包の数, 正準性判定で捨てた候補の数,
+     * 内包の要素数(探索の深さ)が知らされる.
+     * analizeInLecticOrder() では "enumerate" の段階も知らされる.
+     * @param listener リスナ. null ならば何も知らせない.
+     */
+    public void setAnalysisListener(AnalysisListener listener){
+        this.listener = listener;
+    }
+
+
+    /**
+     * 形式概念解析を行うメソッド.
+     * @return 解析結果. オブジェクト部分集合の要素数でソートされている.
+     */
+    public TreeSet<Tupple> analize(){
+        return new TreeSet<Tupple>(analizeInLecticOrder());
+    }
+
+
+    /**
+     * 形式概念解析を行い, 内包の辞書式順序のまま結果を返すメソッド.
+     * @return 解析結果. 内包の辞書式順序で並んでいる.
+     */
+    public ArrayList<Tupple> analizeInLecticOrder(){
+        AnalysisListener listener = this.listener;
+        if(listener != null){
+            listener.phaseStarted("enumerate");
+        }
+        ArrayList<Tupple> concepts = new ArrayList<>();
+        Iterator<Tupple> iterator = iterator();
+        while(iterator.hasNext()){
+            concepts.add(iterator.next());
+        }
+        if(listener != null){
+            listener.phaseFinished("enumerate");
+        }
+        return concepts;
+    }
+
+
+    /**
+     * 形式概念を内包の辞書式順序で1つずつ返すイテレータを返すメソッド.
+     * 次の形式概念は next() が呼ばれるたびに現在の形式概念から計算するので,
+     * 束全体を保持せず, 使用メモリはコンテクスト表の大きさにしか依存しない.
+     * @return イテレータ
+     */
+    public Iterator<Tupple> iterator(){
+        return new LecticIterator();
+    }
+
+
+    /**
+     * 形式概念を内包の辞書式順序で流すストリームを返すメソッド.
+     * iterator() と同じく束全体を保持しない. 逐次ストリームである.
+     * @return ストリーム
+     */
+    public Stream<Tupple> stream(){
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize
+                                    (iterator(),Spliterator.DISTINCT | Spliterator.ORDERED
+                                     | Spliterator.NONNULL | Spliterator.IMMUTABLE),false);
+    }
+
+
+    /**
+     * 形式概念解析を行うメソッド.
+     * @param data                対象データ
+     * @param universeOfObject    オブジェクトの全集合
+     * @param universeOfAttribute 属性の全集合
+     * @return                    解析結果
+     */
+    public static TreeSet<Tupple> analize(TreeSet<Tupple> data,
+                                          HashSet<Integer> universeOfObject,
+                                          HashSet<Integer> universeOfAttribute){
+        FormalConceptNextClosureAnalyzer fcnca =
+            new FormalConceptNextClosureAnalyzer(data,universeOfObject,universeOfAttribute);
+        return fcnca.analize();
+    }
+
+
+    /**
+     * 形式概念解析を行うメソッド.
+     * @param data                対象データ
+     * @param universeOfObject    オブジェクトの全集合
+     * @param universeOfAttribute 属性の全集合
+     * @return                    解析結果
+     */
+    public static ArrayList<Tupple> analize(ArrayList<Tupple> data,
+                                            HashSet<Integer> universeOfObject,
+                                            HashSet<Integer> universeOfAttribute){
+        return new ArrayList<Tupple>(FormalConceptNextClosureAnalyzer.analize
+                                     (new TreeSet<Tupple>(data),
+                                      universeOfObject,universeOfAttribute));
+    }
+
+
+
+    ///////////////////
+    // Inner Classes //
+    ///////////////////
+
+    /**
+     * NextClosure で次の形式概念を1つずつ計算するイテレータ.
+     */
+    private class LecticIterator implements Iterator<Tupple>{
+
+        long[] intent = context.newIntent(); // 現在の形式概念の内包.
+        long[] extent = context.newExtent(); // 現在の形式概念の外延.
+        long[] candidateIntent = context.newIntent();
+        long[] candidateExtent = context.newExtent();
+        boolean started = false; // 最初の形式概念を返したか.
+
+        // @Override
+        public boolean hasNext(){
+            // 全属性を内包に持つ形式概念が辞書式順序で最後の形式概念になる.
+            return !started || BitVectors.cardinality(intent) < context.getAttributeLength();
+        }
+
+        // @Override
+        public Tupple next(){
+            if(!hasNext()){
+                throw new NoSuchElementException();
+            }
+
+            // 最初の形式概念は空集合の閉包.
+            if(!started){
+                started = true;
+                context.closeIntent(intent,extent,intent);
+                report(1,0);
+                return context.toTupple(extent,intent);
+            }
+
+            // 番号の大きい属性から順に, 次の閉集合になれるかを調べる.
+            int closures = 0; // 計算した閉包の数.
+            for(int i=context.getAttributeLength()-1;i>=0;i--){
+                if(BitVectors.get(intent,i)){
+                    continue;
+                }
+
+                // 候補は (内包 ∩ {0,...,i-1}) ∪ {i} の閉包.
+                System.arraycopy(intent,0,candidateIntent,0,intent.length);
+                BitVectors.clearFrom(candidateIntent,i);
+                BitVectors.set(candidateIntent,i);
+                context.closeIntent(candidateIntent,candidateExtent,candidateIntent);
+                closures++;
+
+                // 閉包によって i 未満の属性が増えていなければ, それが次の閉集合.
+                if(BitVectors.equalsBelow(candidateIntent,intent,i)){
+                    long[] swap = intent;
+                    intent = candidateIntent;
+                    candidateIntent = swap;
+                    swap = extent;
+                    extent = candidateExtent;
+                    candidateExtent = swap;
+                    break;
+                }
+            }
+
+            report(closures,closures-1);
+            return context.toTupple(extent,intent);
+        }
+
+        /**
+         * 形式概念を1つ見つけたことをリスナに知らせるメソッド.
+         * @param closures   計算した閉包の数
+         * @param rejections 正準性判定で捨てた候補の数
+         */
+        private void report(int closures, int rejections){
+            AnalysisListener listener = FormalConceptNextClosureAnalyzer.this.listener;
+            if(listener != null){
+                listener.closuresComputed(closures);
+                listener.canonicityRejected(rejections);
+                listener.conceptsEmitted(1);
+                listener.depthReached(BitVectors.cardinality(intent));
+            }
+        }
+
+        // @Override
+        public void remove(){
+            throw new UnsupportedOperationException();
+        }
+    }
+
+
+
+    //////////
+    // Test //
+    //////////
+
+    public static void main(String args[]){
+
+        boolean t = true;
+        boolean f = false;
+        HashSet<Integer> universeOfObject = new HashSet<>(); // オブジェクトの全集合
+        HashSet<Integer> universeOfAttribute = new HashSet<>(); // 属性の全集合
+
+        boolean[][] contextTable =
+        {{t,t,t,f},
+        {f,t,t,t},
+        {f,t,t,t},
+        {t,f,f,t}};
+
+        // オブジェクトの全集合を準備.
+        for(int i=1;i<=contextTable.length;i++){
+            universeOfObject.add(i);
+        }
+
+        // 属性の全集合を準備.
+        for(int i=1;i<=contextTable[0].length;i++){
+            universeOfAttribute.add(i);
+        }
+
+        // 対象を格納するリスト.
+        TreeSet<Tupple> testData = new TreeSet<>();
+
+        // リストに対象を格納していく.
+        for(int i=0;i<contextTable[0].length;i++){
+            Tupple tupple = new Tupple(i+1);
+            for(int j=0;j<contextTable.length;j++){
+                if(contextTable[j][i]){
+                    tupple.getObjectSubset().add(j+1);
+                }
+            }
+            testData.add(tupple);
+        }
+
+        // 解析. 辞書式順序のまま表示する.
+        FormalConceptNextClosureAnalyzer fcnca =
+            new FormalConceptNextClosureAnalyzer(testData,universeOfObject,universeOfAttribute);
+        System.out.println("{attributes}  :  {objects}");
+        for(Tupple tupple : fcnca.analizeInLecticOrder()){
+            System.out.println(tupple.getAttributeSubset() + "  :  " + tupple.getObjectSubset());
+        }
+    }
+}
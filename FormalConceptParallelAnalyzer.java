@@ -0,0 +1,572 @@
+import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Close-by-One 系の手法(FCbO)を Fork/Join で並列化して形式概念解析を行うクラス.
+ * 探索木の各分岐(正準性判定を通った形式概念)を1つの ForkJoinTask として実行し,
+ * 空いたスレッドがワークスティーリングで分岐を取りに行く.
+ *
+ * 正準性判定に失敗したときの閉包を子に引き継ぐ(FCbO)ことで,
+ * 失敗すると分かっている閉包の計算を省いている.
+ * 結果は探索木を深さ優先でたどった順に並べるので,
+ * スレッド数によらず同じ順序の同じ結果が得られる.
+ *
+ * 入力は FormalConceptSimpleAnalyzer と同じコンテクスト表で,
+ * 出力のオブジェクト番号と属性番号は各 main() と同じく1から始まる.
+ * FormalContext を直接渡すこともできる.
+ * 束全体を保持したくない場合は stream() や iterator() で1つずつ受け取るか,
+ * analize(ConceptStore) でディスク上の記録に書き出す.
+ * setAnalysisListener() で途中経過を受け取れる.
+ * setMinimumSupport() で外延の小さい形式概念を部分木ごと刈り取れる(アイスバーグ概念束).
+ * コンテクスト表がまばら(FormalContext.isSparse())ならば, 外延を CompressedBitmap で持ち,
+ * 子の外延も圧縮したまま属性の列との共通部分で求める. このとき閉包のキャッシュは使わない.
+ *
+ * @author  uehashu
+ * @version 1.0
+ */
+public class FormalConceptParallelAnalyzer{
+
+    FormalContext context; // ビット列で保持したコンテクスト表.
+    ClosureCache cache; // 極作用素の前に置くキャッシュ. 無ければ null.
+    AnalysisListener listener; // 途中経過を受け取るリスナ. 無ければ null.
+    int minSupport = 0; // 外延の要素数の下限. これより小さい形式概念は求めない.
+
+
+    //////////////////
+    // Constructors //
+    //////////////////
+
+    /**
+     * @param contextTable コンテクスト表. [オブジェクト]x[属性]
+     */
+    public FormalConceptParallelAnalyzer(boolean[][] contextTable){
+        this(new FormalContext(contextTable));
+    }
+
+
+    /**
+     * @param context コンテクスト表
+     */
+    public FormalConceptParallelAnalyzer(FormalContext context){
+        this.context = context;
+    }
+
+
+
+    /////////////
+    // Methods //
+    /////////////
+
+    /**
+     * 極作用素の前に置くキャッシュを設定するメソッド.
+     * 正準性判定に失敗する分岐では他の分岐と同じ外延の閉包を求めることが多いので,
+     * 同じコンテクスト表で何度も解析するときなどに使う. 全スレッドで共有される.
+     * まばらなコンテクスト表では外延を圧縮して持つので使われない.
+     * @param cache キャッシュ. null ならばキャッシュを使わない.
+     */
+    public void setClosureCache(ClosureCache cache){
+        this.cache = cache;
+    }
+
+
+    /**
+     * 途中経過を受け取るリスナを設定するメソッド.
+     * 分岐ごとに, 計算した閉包の数, 正準性判定で捨てた候補の数, 見つけた形式概念の数,
+     * 分岐の深さが知らされる. analize() では "enumerate" と "collect" の段階も知らされる.
+     * リスナは全スレッドから呼ばれる.
+     * @param listener リスナ. null ならば何も知らせない.
+     */
+    public void setAnalysisListener(AnalysisListener listener){
+        this.listener = listener;
+    }
+
+
+    /**
+     * 外延の要素数の下限を設定するメソッド(アイスバーグ概念束).
+     * 子の外延は親の外延と属性の列の共通部分なので, 下限を下回った時点で
+     * 閉包を計算せずに部分木ごと探索をやめる.
+     * 結果は下限を満たす全ての形式概念で, 上限を含み上に閉じている.
+     * ハッセ図は LatticeGraph.iceberg() で作れる.
+     * @param minSupport 外延の要素数の下限. 0 ならば全ての形式概念を求める.
+     */
+    public void setMinimumSupport(int minSupport){
+        this.minSupport = minSupport;
+    }
+
+
+    /**
+     * 利用可能な全てのプロセッサを使って形式概念解析を行うメソッド.
+     * @return 解析結果. 探索木の深さ優先順で並んでいる.
+     */
+    public ArrayList<Tupple> analize(){
+        return analize(Runtime.getRuntime().availableProcessors());
+    }
+
+
+    /**
+     * スレッド数を指定して形式概念解析を行うメソッド.
+     * @param parallelism スレッド数
+     * @return            解析結果. 探索木の深さ優先順で並んでいる.
+     */
+    public ArrayList<Tupple> analize(int parallelism){
+
+        AnalysisListener listener = this.listener;
+        if(context.getObjectLength() < minSupport){
+            return new ArrayList<>();
+        }
+        if(listener != null){
+            listener.phaseStarted("enumerate");
+        }
+
+        Branch root = createRoot();
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try{
+            pool.invoke(root);
+            if(listener != null){
+                listener.phaseFinished("enumerate");
+            }
+        }finally{
+            pool.shutdown();
+        }
+
+        // 探索木を深さ優先でたどって結果を並べる.
+        if(listener != null){
+            listener.phaseStarted("collect");
+        }
+        ArrayList<Tupple> concepts = new ArrayList<>();
+        ArrayDeque<Branch> stack = new ArrayDeque<>();
+        stack.push(root);
+        while(!stack.isEmpty()){
+            Branch branch = stack.pop();
+            concepts.add(branch.toTupple());
+            for(int i=branch.children.length-1;i>=0;i--){
+                stack.push(branch.children[i]);
+            }
+        }
+        if(listener != null){
+            listener.phaseFinished("collect");
+        }
+
+        return concepts;
+    }
+
+
+    /**
+     * 形式概念を見つけた順に流すストリームを返すメソッド.
+     * 探索木を明示的なスタックで深さ優先にたどるので, 束全体を保持せず,
+     * 使用メモリは探索の深さ(と属性数)に比例する.
+     * 並列ストリームにすると, Spliterator がまだたどっていない分岐を分割して他のスレッドに渡す.
+     * 並列の場合, 流れてくる順序は決まらない.
+     * @param parallel 並列ストリームにするならば真
+     * @return         ストリーム
+     */
+    public Stream<Tupple> stream(boolean parallel){
+        if(context.getObjectLength() < minSupport){
+            return Stream.empty();
+        }
+        return StreamSupport.stream(new BranchSpliterator(createRoot()),parallel);
+    }
+
+
+    /**
+     * 形式概念を1つずつ返すイテレータを返すメソッド. 探索木の深さ優先順に並ぶ.
+     * 束全体を保持しないのは stream() と同じ.
+     * @return イテレータ
+     */
+    public Iterator<Tupple> iterator(){
+        if(context.getObjectLength() < minSupport){
+            return Collections.emptyIterator();
+        }
+        return Spliterators.iterator(new BranchSpliterator(createRoot()));
+    }
+
+
+    /**
+     * 形式概念を見つけた順にディスク上の記録に追記するメソッド.
+     * 探索木を1つのスレッドで深さ優先にたどり, ビット列のまま書き込むので,
+     * 束全体をヒープに置かずに済む. 順序は analize() と同じ.
+     * @param store 追記する記録. 同じコンテクスト表で作ったもの.
+     * @return      追記した形式概念の数
+     */
+    public int analize(ConceptStore store){
+
+        AnalysisListener listener = this.listener;
+        if(context.getObjectLength() < minSupport){
+            return 0;
+        }
+        if(listener != null){
+            listener.phaseStarted("enumerate");
+        }
+
+        int count = 0;
+        ArrayDeque<Branch> stack = new ArrayDeque<>();
+        stack.push(createRoot());
+        while(!stack.isEmpty()){
+            Branch branch = stack.pop();
+            store.append(branch.getExtent(),branch.intent);
+            count++;
+            Branch[] children = branch.expand();
+            for(int i=children.length-1;i>=0;i--){
+                stack.push(children[i]);
+            }
+        }
+
+        if(listener != null){
+            listener.phaseFinished("enumerate");
+        }
+        return count;
+    }
+
+
+    /**
+     * 利用可能な全てのプロセッサを使って形式概念解析を行うメソッド.
+     * @param contextTable コンテクスト表. [オブジェクト]x[属性]
+     * @return             解析結果
+     */
+    public static ArrayList<Tupple> analize(boolean[][] contextTable){
+        return new FormalConceptParallelAnalyzer(contextTable).analize();
+    }
+
+
+    /**
+     * スレッド数を指定して形式概念解析を行うメソッド.
+     * @param contextTable コンテクスト表. [オブジェクト]x[属性]
+     * @param parallelism  スレッド数
+     * @return             解析結果
+     */
+    public static ArrayList<Tupple> analize(boolean[][] contextTable, int parallelism){
+        return new FormalConceptParallelAnalyzer(contextTable).analize(parallelism);
+    }
+
+
+    /**
+     * 分岐の正準な子を求めるメソッド.
+     * 閉包によって追加した属性より小さい属性が増えなければ正準とする.
+     * 正準性判定に失敗した閉包は子に引き継ぎ, 子ではそれを使って閉包の計算を省く.
+     * FormalConceptPartitionedAnalyzer もこのメソッドで分岐を展開する.
+     * @param context          コンテクスト表
+     * @param cache            極作用素の前に置くキャッシュ. 無ければ null.
+     * @param minSupport       外延の要素数の下限
+     * @param extent           分岐の外延. 圧縮した外延を使うならば null.
+     * @param compressedExtent 分岐の圧縮した外延. 使わなければ null.
+     * @param intent           分岐の内包
+     * @param start            この番号以降の属性を追加していく
+     * @param failed           親で正準性判定に失敗した閉包. 属性ごと.
+     * @param children         正準な子を属性番号の昇順に受け取るもの
+     * @param counts           計算した閉包の数と正準性判定で捨てた候補の数を加える配列. 使わなければ null.
+     * @return                 追加できる属性が残っていなければ偽
+     */
+    static boolean expand(FormalContext context, ClosureCache cache, int minSupport,
+                          long[] extent, CompressedBitmap compressedExtent, long[] intent,
+                          int start, long[][] failed, Children children, int[] counts){
+
+        int attributeLength = context.getAttributeLength();
+        if(start >= attributeLength || BitVectors.cardinality(intent) == attributeLength){
+            return false;
+        }
+
+        // 子に引き継ぐ, 正準性判定に失敗した閉包.
+        long[][] childFailed = failed.clone();
+        int closures = 0; // 計算した閉包の数.
+        int rejections = 0; // 正準性判定で捨てた候補の数.
+
+        for(int j=start;j<attributeLength;j++){
+            if(BitVectors.get(intent,j)){
+                continue;
+            }
+
+            // 親で失敗した閉包の j 未満の部分が内包に含まれていなければ,
+            // この分岐でも正準性判定に失敗するので計算を省く.
+            if(failed[j] != null && !BitVectors.isSubsetBelow(failed[j],intent,j)){
+                rejections++;
+                continue;
+            }
+
+            // 外延が下限を下回れば, 子孫の外延も全て下回るので部分木ごと刈り取る.
+            long[] childExtent = null;
+            CompressedBitmap childCompressedExtent = null;
+            long[] childIntent = new long[intent.length];
+            if(compressedExtent != null){
+                CompressedBitmap column = context.getCompressedColumn(j);
+                if(minSupport > 0 && compressedExtent.andCardinality(column) < minSupport){
+                    continue;
+                }
+                childCompressedExtent = compressedExtent.and(column);
+                context.objectPolar(childCompressedExtent,childIntent);
+            }else{
+                childExtent = new long[extent.length];
+                BitVectors.and(extent,context.getAttributeColumn(j),childExtent);
+                if(minSupport > 0 && BitVectors.cardinality(childExtent) < minSupport){
+                    continue;
+                }
+                if(cache == null){
+                    context.objectPolar(childExtent,childIntent);
+                }else{
+                    cache.objectPolar(childExtent,childIntent);
+                }
+            }
+            closures++;
+
+            // 閉包によって j 未満の属性が増えていなければ正準.
+            if(BitVectors.equalsBelow(childIntent,intent,j)){
+                children.add(childExtent,childCompressedExtent,childIntent,j+1,childFailed);
+            }else{
+                childFailed[j] = childIntent;
+                rejections++;
+            }
+        }
+
+        if(counts != null){
+            counts[0] += closures;
+            counts[1] += rejections;
+        }
+        return true;
+    }
+
+
+
+    /////////////////////
+    // Private Methods //
+    /////////////////////
+
+    /**
+     * 探索木の根を作るメソッド. 根は全オブジェクトを外延に持つ形式概念.
+     * @return 根の分岐
+     */
+    private Branch createRoot(){
+        long[] extent = null;
+        CompressedBitmap compressedExtent = null;
+        long[] intent = context.newIntent();
+        if(context.isSparse()){
+            compressedExtent = CompressedBitmap.range(0,context.getObjectLength());
+            context.objectPolar(compressedExtent,intent);
+        }else{
+            extent = context.fullExtent();
+            context.objectPolar(extent,intent);
+        }
+        if(listener != null){
+            listener.closuresComputed(1);
+            listener.conceptsEmitted(1);
+        }
+        return new Branch(extent,compressedExtent,intent,0,0,new long[context.getAttributeLength()][]);
+    }
+
+
+
+    ///////////////////
+    // Inner Classes //
+    ///////////////////
+
+    /**
+     * expand() が求めた正準な子を受け取るインタフェース.
+     */
+    interface Children{
+
+        /**
+         * 正準な子を1つ受け取るメソッド.
+         * @param extent           子の外延. 圧縮した外延を使うならば null.
+         * @param compressedExtent 子の圧縮した外延. 使わなければ null.
+         * @param intent           子の内包
+         * @param start            子で追加していく属性の最初の番号
+         * @param failed           子に引き継ぐ, 正準性判定に失敗した閉包
+         */
+        void add(long[] extent, CompressedBitmap compressedExtent, long[] intent, int start, long[][] failed);
+    }
+
+
+    /**
+     * 探索木の1つの分岐を表すタスク.
+     * 実行が終わると, 正準性判定を通った子の分岐を children に保持する.
+     */
+    private class Branch extends RecursiveAction{
+
+        private static final long serialVersionUID = 1L;
+
+        long[] extent; // この分岐の形式概念の外延. 圧縮した外延を使うならば null.
+        CompressedBitmap compressedExtent; // まばらな表での, 圧縮した外延. 使わなければ null.
+        long[] intent; // この分岐の形式概念の内包.
+        int start; // この番号以降の属性を追加していく.
+        int depth; // 探索木の深さ. 根は0.
+        long[][] failed; // 親で正準性判定に失敗した閉包. 属性ごと.
+        Branch[] children = new Branch[0]; // 正準性判定を通った子の分岐.
+
+        Branch(long[] extent, CompressedBitmap compressedExtent, long[] intent,
+               int start, int depth, long[][] failed){
+            this.extent = extent;
+            this.compressedExtent = compressedExtent;
+            this.intent = intent;
+            this.start = start;
+            this.depth = depth;
+            this.failed = failed;
+        }
+
+        // @Override
+        protected void compute(){
+            children = expand();
+            invokeAll(children);
+        }
+
+        /**
+         * 正準性判定を通った子の分岐を計算するメソッド. 子はまだ実行しない.
+         * @return 子の分岐. 属性番号の昇順.
+         */
+        Branch[] expand(){
+
+            final ArrayList<Branch> branches = new ArrayList<>();
+            int[] counts = new int[2];
+            boolean expanded = FormalConceptParallelAnalyzer.expand
+                (context,cache,minSupport,extent,compressedExtent,intent,start,failed,new Children(){
+                        // @Override
+                        public void add(long[] childExtent, CompressedBitmap childCompressedExtent,
+                                        long[] childIntent, int childStart, long[][] childFailed){
+                            branches.add(new Branch(childExtent,childCompressedExtent,childIntent,
+                                                    childStart,depth+1,childFailed));
+                        }
+                    },counts);
+            failed = null;
+            if(!expanded){
+                return new Branch[0];
+            }
+
+            AnalysisListener listener = FormalConceptParallelAnalyzer.this.listener;
+            if(listener != null){
+                listener.closuresComputed(counts[0]);
+                listener.canonicityRejected(counts[1]);
+                listener.conceptsEmitted(branches.size());
+                listener.depthReached(depth);
+            }
+            return branches.toArray(new Branch[branches.size()]);
+        }
+
+        /**
+         * 外延をビット列で返すメソッド. 圧縮した外延ならばビット列に戻す.
+         * @return 外延
+         */
+        long[] getExtent(){
+            if(extent != null){
+                return extent;
+            }
+            long[] words = context.newExtent();
+            compressedExtent.toWords(words);
+            return words;
+        }
+
+        /**
+         * この分岐の形式概念をタプルに変換するメソッド.
+         * @return タプル
+         */
+        Tupple toTupple(){
+            return extent != null ? context.toTupple(extent,intent)
+                : context.toTupple(compressedExtent,intent);
+        }
+    }
+
+
+    /**
+     * 探索木を深さ優先でたどる Spliterator.
+     * スタックにはまだ返していない分岐だけを積むので, 深さ×属性数程度しか保持しない.
+     * 分割するときは, スタックの底の方(根に近く, 部分木が大きい分岐)を渡す.
+     */
+    private class BranchSpliterator implements Spliterator<Tupple>{
+
+        ArrayDeque<Branch> stack = new ArrayDeque<>(); // まだ返していない分岐.
+        Branch expanded; // 子を計算済みで, まだ返していない分岐. 無ければ null.
+
+        BranchSpliterator(Branch root){
+            stack.push(root);
+        }
+
+        BranchSpliterator(ArrayDeque<Branch> stack){
+            this.stack = stack;
+        }
+
+        // @Override
+        public boolean tryAdvance(Consumer<? super Tupple> action){
+            Branch branch = expanded;
+            expanded = null;
+            if(branch == null){
+                if(stack.isEmpty()){
+                    return false;
+                }
+                branch = stack.pop();
+                pushChildren(branch);
+            }
+            action.accept(branch.toTupple());
+            return true;
+        }
+
+        // @Override
+        public Spliterator<Tupple> trySplit(){
+
+            // 分岐が1つしかなければ, 先に子を計算しておいて子を分ける.
+            if(expanded == null && stack.size() == 1){
+                expanded = stack.pop();
+                pushChildren(expanded);
+            }
+            if(stack.size() < 2){
+                return null;
+            }
+
+            ArrayDeque<Branch> half = new ArrayDeque<>();
+            for(int i=stack.size()/2;i>0;i--){
+                half.push(stack.pollLast());
+            }
+            return new BranchSpliterator(half);
+        }
+
+        // @Override
+        public long estimateSize(){
+            return (stack.isEmpty() && expanded == null) ? 0 : Long.MAX_VALUE;
+        }
+
+        // @Override
+        public int characteristics(){
+            return Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.IMMUTABLE;
+        }
+
+        /**
+         * 子の分岐を, 属性番号の小さいものが上に来るようにスタックに積むメソッド.
+         * @param branch 親の分岐
+         */
+        private void pushChildren(Branch branch){
+            Branch[] children = branch.expand();
+            for(int i=children.length-1;i>=0;i--){
+                stack.push(children[i]);
+            }
+        }
+    }
+
+
+
+    //////////
+    // Test //
+    //////////
+
+    public static void main(String args[]){
+
+        boolean t = true;
+        boolean f = false;
+
+        boolean[][] contextTable =
+        {{t,t,t,f},
+        {f,t,t,t},
+        {f,t,t,t},
+        {t,f,f,t}};
+
+        // 解析. 探索木の深さ優先順で表示する.
+        System.out.println("{attributes}  :  {objects}");
+        for(Tupple tupple : FormalConceptParallelAnalyzer.analize(contextTable)){
+            System.out.println(tupple.getAttributeSubset() + "  :  " + tupple.getObjectSubset());
+        }
+    }
+}
@@ -0,0 +1,670 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * FCbO の探索木を独立した作業単位に分け, 別々の JVM (ワーカ) で形式概念解析を行うクラス.
+ * 1つの JVM に束が収まらない場合に使う.
+ *
+ * コーディネータは根から幅優先に探索木を展開し, 作業単位の数が目標に達したところで
+ * 展開をやめる. 展開した形式概念は head.shard に書き, 残った分岐(正準性判定を通った形式概念と
+ * 次に追加する属性番号)をそれぞれ1つの作業単位とする.
+ * 正準な探索木では各形式概念はただ1つの分岐の下にしか現れないので, 作業単位どうしは重ならない.
+ *
+ * やりとりは共有ディレクトリだけで行なう.
+ * <pre>
+ * context.bin    コンテクスト表
+ * units.bin      作業単位の一覧
+ * unit-i.claim   作業単位 i を取ったワーカの印. 作成が成功したワーカだけが i を計算する.
+ *                中身はワーカの名前で, 計算中のワーカは更新時刻を定期的に新しくする.
+ * unit-i.shard   作業単位 i の結果. 書き終えてから名前を変えるので, あれば完全.
+ * head.shard     コーディネータが展開した形式概念
+ * </pre>
+ * ワーカは java FormalConceptPartitionedAnalyzer worker ディレクトリ で起動し,
+ * 取れる作業単位が無くなるまで結果をシャードに流し込む.
+ * analize() は同じホストにワーカを起動するが, ディレクトリを共有していれば
+ * 他のホストで起動したワーカも作業単位を取りに来る.
+ * ローカルのワーカが全て終わった後, 残った作業単位と, 終了したワーカが取ったまま結果の無い
+ * 作業単位はコーディネータ自身が計算する. 他のホストのワーカが取った作業単位は,
+ * 印の更新が LEASE_MILLIS 止まるまでワーカが生きているとみなして結果を待つ.
+ * 作業単位どうしは重ならないので, 最後にシャードを順に読むだけで重複なくまとまる.
+ * analize(ConceptStore) はシャードをディスク上の記録に流し込むので, 束全体をヒープに置かない.
+ *
+ * シャードにはビット位置のまま外延と内包のビット列を書くので,
+ * 出力のオブジェクト番号と属性番号は元のコンテクスト表と同じになる.
+ * 作業単位の中では FCbO で失敗した閉包を引き継ぐが, 作業単位をまたいでは引き継がない.
+ *
+ * @author  uehashu
+ * @version 1.0
+ */
+public class FormalConceptPartitionedAnalyzer{
+
+    static final String CONTEXT_FILE = "context.bin"; // コンテクスト表のファイル名.
+    static final String UNITS_FILE = "units.bin"; // 作業単位の一覧のファイル名.
+    static final String HEAD_FILE = "head.shard"; // コーディネータが展開した形式概念のファイル名.
+    static final long HEARTBEAT_MILLIS = 10000; // 計算中のワーカが印の更新時刻を新しくする間隔.
+    static final long LEASE_MILLIS = 60000; // 印の更新がこれだけ止まったら, 取ったワーカは終了したとみなす.
+
+    FormalContext context; // ビット列で保持したコンテクスト表.
+    Path directory; // 共有ディレクトリ.
+    int workers = Runtime.getRuntime().availableProcessors(); // 起動するワーカの数.
+    int units = 0; // 作業単位の数の目標. 0 ならばワーカ数の8倍.
+    List<String> workerOptions = new ArrayList<>(); // ワーカの JVM オプション.
+
+
+    //////////////////
+    // Constructors //
+    //////////////////
+
+    /**
+     * @param contextTable コンテクスト表. [オブジェクト]x[属性]
+     * @param directory    共有ディレクトリ. 無ければ作る.
+     */
+    public FormalConceptPartitionedAnalyzer(boolean[][] contextTable, Path directory){
+        this(new FormalContext(contextTable),directory);
+    }
+
+
+    /**
+     * @param context   コンテクスト表
+     * @param directory 共有ディレクトリ. 無ければ作る.
+     */
+    public FormalConceptPartitionedAnalyzer(FormalContext context, Path directory){
+        this.context = context;
+        this.directory = directory;
+    }
+
+
+
+    /////////////
+    // Methods //
+    /////////////
+
+    /**
+     * 同じホストに起動するワーカの数を設定するメソッド.
+     * 0 ならばワーカを起動せず, 他のホストのワーカとコーディネータ自身で計算する.
+     * @param workers ワーカの数
+     */
+    public void setWorkers(int workers){
+        if(workers < 0){
+            throw new IllegalArgumentException("workers must not be negative: " + workers);
+        }
+        this.workers = workers;
+    }
+
+
+    /**
+     * 作業単位の数の目標を設定するメソッド.
+     * 多いほど負荷は均等になるが, コーディネータが展開する形式概念が増える.
+     * @param units 作業単位の数. 0 ならばワーカ数の8倍.
+     */
+    public void setUnits(int units){
+        if(units < 0){
+            throw new IllegalArgumentException("units must not be negative: " + units);
+        }
+        this.units = units;
+    }
+
+
+    /**
+     * ワーカの JVM オプションを設定するメソッド. 例えば "-Xmx8g".
+     * @param options JVM オプション
+     */
+    public void setWorkerOptions(List<String> options){
+        this.workerOptions = new ArrayList<>(options);
+    }
+
+
+    /**
+     * ワーカを起動して形式概念解析を行うメソッド. 結果は全てヒープに置く.
+     * @return 解析結果. 順序は決まらない.
+     * @exception IOException 共有ディレクトリの読み書きに失敗した場合や, ワーカが異常終了した場合
+     * @exception InterruptedException ワーカの終了を待つ間に割り込まれた場合
+     */
+    public ArrayList<Tupple> analize() throws IOException, InterruptedException{
+        compute();
+        return merge();
+    }
+
+
+    /**
+     * ワーカを起動して形式概念解析を行い, 結果をディスク上の記録に追記するメソッド.
+     * シャードを1つずつ流し込むので, 束全体をヒープに置かずに済む.
+     * @param store 追記する記録. 同じコンテクスト表で作ったもの.
+     * @return      追記した形式概念の数
+     * @exception IOException 共有ディレクトリの読み書きに失敗した場合や, ワーカが異常終了した場合
+     * @exception InterruptedException ワーカの終了を待つ間に割り込まれた場合
+     */
+    public long analize(ConceptStore store) throws IOException, InterruptedException{
+        compute();
+        return merge(store);
+    }
+
+
+    /**
+     * 共有ディレクトリにコンテクスト表と作業単位を書くメソッド.
+     * 以前の作業単位と結果は消す. この後ワーカを起動して merge() すれば analize() と同じになる.
+     * @return 作業単位の数
+     * @exception IOException 書き込みに失敗した場合
+     */
+    public int partition() throws IOException{
+
+        Files.createDirectories(directory);
+        try(DirectoryStream<Path> stream = Files.newDirectoryStream(directory,"unit-*")){
+            for(Path path : stream){
+                Files.delete(path);
+            }
+        }
+        writeContext(context,directory.resolve(CONTEXT_FILE));
+
+        int target = units > 0 ? units : Math.max(1,workers) * 8;
+        ArrayDeque<Branch> frontier = new ArrayDeque<>();
+        long[] rootExtent = context.fullExtent();
+        long[] rootIntent = context.newIntent();
+        context.objectPolar(rootExtent,rootIntent);
+        frontier.add(new Branch(rootExtent,rootIntent,0,new long[context.getAttributeLength()][]));
+
+        // 根に近い分岐から展開し, 展開した形式概念は head に書く.
+        Path head = directory.resolve(HEAD_FILE);
+        Path headTemp = directory.resolve(HEAD_FILE + ".tmp");
+        try(DataOutputStream out = openShard(headTemp)){
+            ArrayList<Branch> children = new ArrayList<>();
+            while(!frontier.isEmpty() && frontier.size() < target){
+                Branch branch = frontier.poll();
+                writeConcept(out,branch.extent,branch.intent);
+                children.clear();
+                expand(context,branch,children);
+                frontier.addAll(children);
+            }
+        }
+        Files.move(headTemp,head,StandardCopyOption.REPLACE_EXISTING,StandardCopyOption.ATOMIC_MOVE);
+
+        // 残った分岐を作業単位にする. 外延はワーカが内包から求め直す.
+        Path unitsTemp = directory.resolve(UNITS_FILE + ".tmp");
+        try(DataOutputStream out = openShard(unitsTemp)){
+            out.writeInt(frontier.size());
+            for(Branch branch : frontier){
+                out.writeInt(branch.start);
+                for(long word : branch.intent){
+                    out.writeLong(word);
+                }
+            }
+        }
+        Files.move(unitsTemp,directory.resolve(UNITS_FILE),
+                   StandardCopyOption.REPLACE_EXISTING,StandardCopyOption.ATOMIC_MOVE);
+        return frontier.size();
+    }
+
+
+    /**
+     * 共有ディレクトリの全てのシャードを読み, まとめるメソッド. 結果は全てヒープに置く.
+     * 結果の無い作業単位があれば例外を投げる.
+     * @return 解析結果
+     * @exception IOException 読み込みに失敗した場合や, 結果の無い作業単位がある場合
+     */
+    public ArrayList<Tupple> merge() throws IOException{
+        ArrayList<Tupple> concepts = new ArrayList<>();
+        merge(null,concepts);
+        return concepts;
+    }
+
+
+    /**
+     * 共有ディレクトリの全てのシャードを順に読み, ディスク上の記録に追記するメソッド.
+     * 作業単位どうしは重ならないので, 重複は除かない.
+     * 結果の無い作業単位があれば, 何も追記せずに例外を投げる.
+     * @param store 追記する記録. 同じコンテクスト表で作ったもの.
+     * @return      追記した形式概念の数
+     * @exception IOException 読み込みに失敗した場合や, 結果の無い作業単位がある場合
+     */
+    public long merge(ConceptStore store) throws IOException{
+        return merge(store,null);
+    }
+
+
+    /**
+     * 共有ディレクトリの作業単位を, 取れるものが無くなるまで計算するメソッド. ワーカの本体.
+     * 印にはこの JVM の名前(プロセス番号@ホスト名)を書く.
+     * @param directory 共有ディレクトリ
+     * @return          計算した作業単位の数
+     * @exception IOException 共有ディレクトリの読み書きに失敗した場合
+     */
+    public static int work(Path directory) throws IOException{
+        return work(directory,ManagementFactory.getRuntimeMXBean().getName());
+    }
+
+
+    /**
+     * 共有ディレクトリの作業単位を, 取れるものが無くなるまで計算するメソッド. ワーカの本体.
+     * @param directory 共有ディレクトリ
+     * @param owner     印に書くワーカの名前
+     * @return          計算した作業単位の数
+     * @exception IOException 共有ディレクトリの読み書きに失敗した場合
+     */
+    public static int work(Path directory, String owner) throws IOException{
+
+        FormalContext context = readContext(directory.resolve(CONTEXT_FILE));
+        ArrayList<Branch> units = readUnits(context,directory);
+        int done = 0;
+        ArrayDeque<Branch> stack = new ArrayDeque<>();
+        ArrayList<Branch> children = new ArrayList<>();
+        for(int i=0;i<units.size();i++){
+
+            // 印のファイルを作れたワーカだけが計算する.
+            Path claim = claim(directory,i);
+            try{
+                Files.createFile(claim);
+            }catch(FileAlreadyExistsException e){
+                continue;
+            }
+            Files.write(claim,owner.getBytes(StandardCharsets.UTF_8));
+
+            // 部分木を深さ優先でたどり, 見つけた順にシャードに流す.
+            // 生きていることを示すために, 時々印の更新時刻を新しくする.
+            Path temp = directory.resolve("unit-" + i + ".shard.tmp");
+            long heartbeat = System.currentTimeMillis();
+            try(DataOutputStream out = openShard(temp)){
+                stack.push(units.get(i));
+                while(!stack.isEmpty()){
+                    if(System.currentTimeMillis() - heartbeat > HEARTBEAT_MILLIS){
+                        heartbeat = System.currentTimeMillis();
+                        Files.setLastModifiedTime(claim,FileTime.fromMillis(heartbeat));
+                    }
+                    Branch branch = stack.pop();
+                    writeConcept(out,branch.extent,branch.intent);
+                    children.clear();
+                    expand(context,branch,children);
+                    for(int c=children.size()-1;c>=0;c--){
+                        stack.push(children.get(c));
+                    }
+                }
+            }
+            Files.move(temp,shard(directory,i),StandardCopyOption.REPLACE_EXISTING,StandardCopyOption.ATOMIC_MOVE);
+            done++;
+        }
+        return done;
+    }
+
+
+
+    /////////////////////
+    // Private Methods //
+    /////////////////////
+
+    /**
+     * 作業単位を書いてワーカを起動し, 全ての作業単位の結果がそろうまで待つメソッド.
+     * @exception IOException 共有ディレクトリの読み書きに失敗した場合や, ワーカが異常終了した場合
+     * @exception InterruptedException ワーカの終了を待つ間に割り込まれた場合
+     */
+    private void compute() throws IOException, InterruptedException{
+
+        int count = partition();
+
+        // ワーカを起動する. クラス名はパッケージに入れられた場合も動くように取る.
+        // ワーカの名前はこの JVM の名前に番号を付けたもので, 印から誰が取ったかが分かる.
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        String owner = ManagementFactory.getRuntimeMXBean().getName();
+        HashSet<String> exited = new HashSet<>();
+        ArrayList<Process> processes = new ArrayList<>();
+        for(int w=0;w<Math.min(workers,count);w++){
+            ArrayList<String> command = new ArrayList<>();
+            command.add(java);
+            command.addAll(workerOptions);
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            command.add(FormalConceptPartitionedAnalyzer.class.getName());
+            command.add("worker");
+            command.add(directory.toAbsolutePath().toString());
+            command.add(owner + "#" + w);
+            ProcessBuilder builder = new ProcessBuilder(command);
+            builder.redirectErrorStream(true);
+            builder.redirectOutput(directory.resolve("worker-" + w + ".log").toFile());
+            processes.add(builder.start());
+            exited.add(owner + "#" + w);
+        }
+        try{
+            for(Process process : processes){
+                process.waitFor();
+            }
+        }finally{
+            for(Process process : processes){
+                process.destroy();
+            }
+        }
+
+        // 起動に失敗したワーカがあっても残りの計算はできるが, 設定の誤りに気付けるように止める.
+        for(int w=0;w<processes.size();w++){
+            int status = processes.get(w).exitValue();
+            if(status != 0){
+                throw new IOException("worker " + w + " exited with status " + status
+                                      + ", see " + directory.resolve("worker-" + w + ".log"));
+            }
+        }
+
+        // 残った作業単位と, 終了したワーカが取ったまま結果の無い作業単位を計算する.
+        // 他のホストのワーカが計算中の作業単位は, 結果が出るか印の更新が止まるまで待つ.
+        work(directory,owner);
+        while(reclaim(count,exited)){
+            work(directory,owner);
+        }
+    }
+
+
+    /**
+     * 結果の無い作業単位のうち, 取ったワーカが終了したものの印を消すメソッド.
+     * 生きているワーカが計算中の作業単位しか残っていなければ, どれかの結果が出るか
+     * 印の更新が止まるまで待つ.
+     * @param count  作業単位の数
+     * @param exited 終了したことが分かっているワーカの名前
+     * @return       印を消した作業単位があれば真, 全ての作業単位に結果があれば偽
+     * @exception IOException 共有ディレクトリの読み書きに失敗した場合
+     * @exception InterruptedException 待つ間に割り込まれた場合
+     */
+    private boolean reclaim(int count, HashSet<String> exited) throws IOException, InterruptedException{
+        while(true){
+            boolean running = false;
+            for(int i=0;i<count;i++){
+                if(Files.exists(shard(directory,i))){
+                    continue;
+                }
+                Path claim = claim(directory,i);
+                try{
+                    String owner = new String(Files.readAllBytes(claim),StandardCharsets.UTF_8);
+                    long idle = System.currentTimeMillis() - Files.getLastModifiedTime(claim).toMillis();
+                    if(!exited.contains(owner) && idle < LEASE_MILLIS){
+                        running = true;
+                        continue;
+                    }
+                    Files.deleteIfExists(claim);
+                }catch(NoSuchFileException e){
+                    // 印を消した直後に, 別のワーカが取り直していてもよい.
+                }
+                return true;
+            }
+            if(!running){
+                return false;
+            }
+            Thread.sleep(HEARTBEAT_MILLIS / 10);
+        }
+    }
+
+
+    /**
+     * 共有ディレクトリの全てのシャードを順に読み, 記録かリストに加えるメソッド.
+     * @param store    追記する記録. 使わなければ null.
+     * @param concepts 形式概念を加えるリスト. 使わなければ null.
+     * @return         読んだ形式概念の数
+     * @exception IOException 読み込みに失敗した場合や, 結果の無い作業単位がある場合
+     */
+    private long merge(ConceptStore store, ArrayList<Tupple> concepts) throws IOException{
+
+        int count = readUnits(context,directory).size();
+        ArrayList<Path> shards = new ArrayList<>();
+        shards.add(directory.resolve(HEAD_FILE));
+        for(int i=0;i<count;i++){
+            Path shard = shard(directory,i);
+            if(!Files.exists(shard)){
+                throw new IOException("work unit " + i + " has no result in " + directory);
+            }
+            shards.add(shard);
+        }
+
+        long merged = 0;
+        int objectWords = context.getObjectWords();
+        int attributeWords = context.getAttributeWords();
+        if(objectWords + attributeWords == 0){
+            // 0x0 のコンテクスト表では, 記録の大きさが0なので件数が分からない.
+            // 形式概念は空の外延と空の内包の1つだけである.
+            if(store != null){
+                store.append(new long[0],new long[0]);
+            }
+            if(concepts != null){
+                concepts.add(context.toTupple(new long[0],new long[0]));
+            }
+            return 1;
+        }
+        for(Path shard : shards){
+            long records = Files.size(shard) / (8L * (objectWords + attributeWords));
+            try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(shard),1 << 16))){
+                for(long r=0;r<records;r++){
+                    long[] extent = readWords(in,objectWords);
+                    long[] intent = readWords(in,attributeWords);
+                    if(store != null){
+                        store.append(extent,intent);
+                    }
+                    if(concepts != null){
+                        concepts.add(context.toTupple(extent,intent));
+                    }
+                    merged++;
+                }
+            }
+        }
+        return merged;
+    }
+
+
+    /**
+     * 分岐の正準な子を求めるメソッド. FormalConceptParallelAnalyzer.expand() に任せる.
+     * @param context  コンテクスト表
+     * @param branch   分岐
+     * @param children 子を属性番号の昇順に加えるリスト
+     */
+    private static void expand(FormalContext context, Branch branch, final ArrayList<Branch> children){
+        FormalConceptParallelAnalyzer.expand
+            (context,null,0,branch.extent,null,branch.intent,branch.start,branch.failed,
+             new FormalConceptParallelAnalyzer.Children(){
+                 // @Override
+                 public void add(long[] extent, CompressedBitmap compressedExtent,
+                                 long[] intent, int start, long[][] failed){
+                     children.add(new Branch(extent,intent,start,failed));
+                 }
+             },null);
+    }
+
+
+    /**
+     * 作業単位の一覧を読むメソッド.
+     * @param context   コンテクスト表
+     * @param directory 共有ディレクトリ
+     * @return          作業単位の分岐. 外延は内包から求め直したもの.
+     * @exception IOException 読み込みに失敗した場合
+     */
+    private static ArrayList<Branch> readUnits(FormalContext context, Path directory) throws IOException{
+        ArrayList<Branch> units = new ArrayList<>();
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(directory.resolve(UNITS_FILE))))){
+            int count = in.readInt();
+            for(int i=0;i<count;i++){
+                int start = in.readInt();
+                long[] intent = readWords(in,context.getAttributeWords());
+                long[] extent = context.newExtent();
+                context.attributePolar(intent,extent);
+                units.add(new Branch(extent,intent,start,new long[context.getAttributeLength()][]));
+            }
+        }
+        return units;
+    }
+
+
+    /**
+     * コンテクスト表を書くメソッド. 番号の対応表と行方向のビット列を書く.
+     * @param context コンテクスト表
+     * @param path    ファイル
+     * @exception IOException 書き込みに失敗した場合
+     */
+    private static void writeContext(FormalContext context, Path path) throws IOException{
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try(DataOutputStream out = openShard(temp)){
+            out.writeInt(context.getObjectLength());
+            out.writeInt(context.getAttributeLength());
+            for(int g=0;g<context.getObjectLength();g++){
+                out.writeInt(context.getObject(g));
+            }
+            for(int m=0;m<context.getAttributeLength();m++){
+                out.writeInt(context.getAttribute(m));
+            }
+            for(int g=0;g<context.getObjectLength();g++){
+                for(long word : context.getObjectRow(g)){
+                    out.writeLong(word);
+                }
+            }
+        }
+        Files.move(temp,path,StandardCopyOption.REPLACE_EXISTING,StandardCopyOption.ATOMIC_MOVE);
+    }
+
+
+    /**
+     * writeContext() で書いたコンテクスト表を読むメソッド.
+     * @param path ファイル
+     * @return     コンテクスト表
+     * @exception IOException 読み込みに失敗した場合
+     */
+    private static FormalContext readContext(Path path) throws IOException{
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path),1 << 16))){
+            int objectLength = in.readInt();
+            int attributeLength = in.readInt();
+            int[] objects = new int[objectLength];
+            for(int g=0;g<objectLength;g++){
+                objects[g] = in.readInt();
+            }
+            int[] attributes = new int[attributeLength];
+            for(int m=0;m<attributeLength;m++){
+                attributes[m] = in.readInt();
+            }
+            long[][] rows = new long[objectLength][];
+            for(int g=0;g<objectLength;g++){
+                rows[g] = readWords(in,BitVectors.words(attributeLength));
+            }
+            return new FormalContext(objects,attributes,rows);
+        }
+    }
+
+
+    /**
+     * 書き込み用にファイルを開くメソッド.
+     * @param path ファイル
+     * @return     出力
+     * @exception IOException 開けなかった場合
+     */
+    private static DataOutputStream openShard(Path path) throws IOException{
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path),1 << 16));
+    }
+
+
+    /**
+     * 形式概念を1つシャードに書くメソッド.
+     * @param out    出力
+     * @param extent 外延
+     * @param intent 内包
+     * @exception IOException 書き込みに失敗した場合
+     */
+    private static void writeConcept(DataOutputStream out, long[] extent, long[] intent) throws IOException{
+        for(long word : extent){
+            out.writeLong(word);
+        }
+        for(long word : intent){
+            out.writeLong(word);
+        }
+    }
+
+
+    /**
+     * ビット列を読むメソッド.
+     * @param in    入力
+     * @param words ワード数
+     * @return      ビット列
+     * @exception IOException 読み込みに失敗した場合
+     */
+    private static long[] readWords(DataInputStream in, int words) throws IOException{
+        long[] vector = new long[words];
+        for(int w=0;w<words;w++){
+            vector[w] = in.readLong();
+        }
+        return vector;
+    }
+
+
+    /**
+     * 作業単位 i の印のファイルを返すメソッド.
+     */
+    private static Path claim(Path directory, int i){
+        return directory.resolve("unit-" + i + ".claim");
+    }
+
+
+    /**
+     * 作業単位 i の結果のファイルを返すメソッド.
+     */
+    private static Path shard(Path directory, int i){
+        return directory.resolve("unit-" + i + ".shard");
+    }
+
+
+
+    ///////////////////
+    // Inner Classes //
+    ///////////////////
+
+    /**
+     * 探索木のまだ展開していない分岐.
+     */
+    private static final class Branch{
+
+        long[] extent; // この分岐の形式概念の外延.
+        long[] intent; // この分岐の形式概念の内包.
+        int start; // この番号以降の属性を追加していく.
+        long[][] failed; // 親で正準性判定に失敗した閉包. 属性ごと.
+
+        Branch(long[] extent, long[] intent, int start, long[][] failed){
+            this.extent = extent;
+            this.intent = intent;
+            this.start = start;
+            this.failed = failed;
+        }
+    }
+
+
+
+    //////////
+    // Test //
+    //////////
+
+    public static void main(String args[]) throws IOException, InterruptedException{
+
+        // ワーカとして起動された場合.
+        if((args.length == 2 || args.length == 3) && args[0].equals("worker")){
+            int done = args.length == 3 ? work(Paths.get(args[1]),args[2]) : work(Paths.get(args[1]));
+            System.out.println(done + " work units done");
+            return;
+        }
+
+        // 乱数でコンテクスト表を作り, 2つのワーカで解析して FormalConceptParallelAnalyzer と比べる.
+        boolean[][] contextTable = FormalContext.randomTable(300,40,0.25,1);
+
+        Path directory = args.length > 0 ? Paths.get(args[0]) : Files.createTempDirectory("fca-shards");
+        FormalConceptPartitionedAnalyzer analyzer = new FormalConceptPartitionedAnalyzer(contextTable,directory);
+        analyzer.setWorkers(2);
+        long start = System.nanoTime();
+        ArrayList<Tupple> concepts = analyzer.analize();
+        long elapsed = System.nanoTime() - start;
+        int expected = FormalConceptParallelAnalyzer.analize(contextTable).size();
+        System.out.println(concepts.size() + " concepts (expected " + expected + ") in "
+                           + elapsed / 1000000 + " ms, shards in " + directory);
+    }
+}
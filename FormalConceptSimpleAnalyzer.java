@@ -9,6 +9,10 @@ import java.util.HashMap;
  * オブジェクトも属性も共に31個までしか使えない.
  * これは, 配列の最大数が int つまり 2^31 個であるためである.
  *
+ * それ以上の大きさのコンテクスト表には analizeClosedSets() を使う.
+ * こちらは部分集合番号を int の代わりに PackedBitSet で表し,
+ * 閉集合だけを NextClosure で辿るので, 全ての部分集合を調べる必要がない.
+ *
  * @author  uehashu
  * @version 1.0
  */
@@ -136,13 +140,34 @@ public class FormalConceptSimpleAnalyzer{
         // オブジェクトにおける全ての組み合わせを計算する.
         int objectCombinationLength = (1 << contextTable.length);
 
+        // 極作用素は, コンテクスト表を FormalContext に一度だけ詰め直してから計算する.
+        // オブジェクトも属性も31個までなので, 部分集合番号はそのまま1ワード目になる.
+        FormalContext context = new FormalContext(contextTable);
+        long[] extent = context.newExtent();
+        long[] intent = context.newIntent();
+        long[] dualExtent = context.newExtent();
+
         // オブジェクトの全ての組み合わせに対して, 双極集合を計算する.
         // 双極集合を表す番号が元のオブジェクト部分集合を表す番号と一致している場合,
         // 結果に格納する.
+        // 空集合とその極集合だけは getObjectPolarSet() と getAttributePolarSet() に任せ,
+        // 余分なビットを含む番号もそのまま扱う.
         int objectPolarSet,dualPolarSet;
         for(int i=0;i<objectCombinationLength;i++){
-            objectPolarSet = getObjectPolarSet(i,contextTable);
-            dualPolarSet = getAttributePolarSet(objectPolarSet,contextTable);
+            if(i == 0){
+                objectPolarSet = getObjectPolarSet(i,contextTable);
+                dualPolarSet = getAttributePolarSet(objectPolarSet,contextTable);
+            }else{
+                extent[0] = i;
+                context.objectPolar(extent,intent);
+                objectPolarSet = (int)intent[0];
+                if(objectPolarSet == 0){
+                    dualPolarSet = getAttributePolarSet(objectPolarSet,contextTable);
+                }else{
+                    context.attributePolar(intent,dualExtent);
+                    dualPolarSet = (int)dualExtent[0];
+                }
+            }
             if(i == dualPolarSet){
                 formalConcepts.put(i,objectPolarSet);
             }
@@ -152,6 +177,68 @@ public class FormalConceptSimpleAnalyzer{
     }
 
 
+    /**
+     * コンテクスト表から形式概念解析を行なうメソッド.
+     * analize() と違い, オブジェクト数にも属性数にも上限がない.
+     * オブジェクト部分集合を NextClosure で辞書式順序に辿り, 閉集合だけを訪れる.
+     * 極作用素は, コンテクスト表を FormalContext に一度だけ詰め直してから,
+     * ワード単位の論理積で計算する.
+     *
+     * @param contextTable コンテクスト表. [オブジェクト]x[属性]
+     * @return             オブジェクト部分集合から属性部分集合へのマップ
+     */
+    public static HashMap<PackedBitSet,PackedBitSet> analizeClosedSets(boolean[][] contextTable){
+
+        // コンテクスト表を行方向と列方向の両方でビット列にしておく.
+        FormalContext context = new FormalContext(contextTable);
+        int objectLength = context.getObjectLength();
+
+        // 結果を格納するマップ.
+        HashMap<PackedBitSet,PackedBitSet> formalConcepts = new HashMap<>();
+
+        long[] objectSet = context.newExtent();
+        long[] attributeSet = context.newIntent();
+        long[] candidateObjectSet = context.newExtent();
+        long[] candidateAttributeSet = context.newIntent();
+
+        // 最初の閉集合は空集合の双極集合.
+        context.closeExtent(objectSet,attributeSet,objectSet);
+        formalConcepts.put(new PackedBitSet(objectSet.clone()),new PackedBitSet(attributeSet.clone()));
+
+        // 全オブジェクトの集合が辞書式順序で最後の閉集合になる.
+        while(BitVectors.cardinality(objectSet) < objectLength){
+
+            // 番号の大きいオブジェクトから順に, 次の閉集合になれるかを調べる.
+            for(int i=objectLength-1;i>=0;i--){
+                if(BitVectors.get(objectSet,i)){
+                    continue;
+                }
+
+                // 候補は (オブジェクト部分集合 ∩ {0,...,i-1}) ∪ {i} の双極集合.
+                System.arraycopy(objectSet,0,candidateObjectSet,0,objectSet.length);
+                BitVectors.clearFrom(candidateObjectSet,i);
+                BitVectors.set(candidateObjectSet,i);
+                context.closeExtent(candidateObjectSet,candidateAttributeSet,candidateObjectSet);
+
+                // 双極集合によって i 未満のオブジェクトが増えていなければ, それが次の閉集合.
+                if(BitVectors.equalsBelow(candidateObjectSet,objectSet,i)){
+                    long[] swap = objectSet;
+                    objectSet = candidateObjectSet;
+                    candidateObjectSet = swap;
+                    swap = attributeSet;
+                    attributeSet = candidateAttributeSet;
+                    candidateAttributeSet = swap;
+                    break;
+                }
+            }
+
+            formalConcepts.put(new PackedBitSet(objectSet.clone()),new PackedBitSet(attributeSet.clone()));
+        }
+
+        return formalConcepts;
+    }
+
+
 
     /////////////////////
     // Private Methods //
@@ -249,5 +336,11 @@ public class FormalConceptSimpleAnalyzer{
             System.out.println();
 
         }
+
+        // 同じ表を, 大きさに上限のない版でも解析してみる.
+        HashMap<PackedBitSet,PackedBitSet> closedSets = analizeClosedSets(contextTable);
+        for(Map.Entry<PackedBitSet,PackedBitSet> map : closedSets.entrySet()){
+            System.out.println(map.getKey() + ":" + map.getValue());
+        }
     }
 }
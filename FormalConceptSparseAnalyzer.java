@@ -1,6 +1,7 @@
 import java.util.TreeSet;
 import java.util.HashSet;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * 形式概念解析を実装したクラス.
@@ -19,6 +20,11 @@ public class FormalConceptSparseAnalyzer{
     TreeSet<Tupple> deduplicatedTupples; // オブジェクト部分集合の重複を省いたデータ
     HashSet<Integer> universeOfObject; // オブジェクトの全集合
     HashSet<Integer> universeOfAttribute; // 属性の全集合
+    FormalContext context; // 重複を省いたデータから作った極作用素の索引. analize() で作る.
+    PackedBitSet dataAttributes; // 重複を省いたデータに現れる属性の集合.
+    long[] intent; // 極作用素の結果を書き込むビット列.
+    AnalysisListener listener; // 途中経過を受け取るリスナ. 無ければ null.
+    int minSupport = 0; // 外延の要素数の下限. これより小さい形式概念は求めない.
 
 
     //////////////////
@@ -45,12 +51,38 @@ public class FormalConceptSparseAnalyzer{
     // Methods //
     /////////////
 
+    /**
+     * 途中経過を受け取るリスナを設定するメソッド.
+     * "dedup" (重複する属性の統合), "enumerate", "sort" の段階と,
+     * 注目タプルごとに計算した閉包の数と見つけた形式概念の数が知らされる.
+     * @param listener リスナ. null ならば何も知らせない.
+     */
+    public void setAnalysisListener(AnalysisListener listener){
+        this.listener = listener;
+    }
+
+
+    /**
+     * 外延の要素数の下限を設定するメソッド(アイスバーグ概念束).
+     * 外延は共通部分を取るほど小さくなるので, 下限を下回ったタプルとの共通部分は計算しない.
+     * 下限を下回る属性も最初に取り除くので, 疎なデータでは解析がずっと速くなる.
+     * 結果は上限を含み, 下限を満たす全ての形式概念. 1以上ならば下限(外延が空)の形式概念は付与しない.
+     * ハッセ図は LatticeGraph.iceberg() で作れる.
+     * @param minSupport 外延の要素数の下限. 0 ならば全ての形式概念を求める.
+     */
+    public void setMinimumSupport(int minSupport){
+        this.minSupport = minSupport;
+    }
+
+
     /**
      * 形式概念解析を行うメソッド.
      * @return 解析結果
      */
     public TreeSet<Tupple> analize(){
 
+        AnalysisListener listener = this.listener;
+
         // 結果を格納するヤツ.
         HashSet<Tupple> tupples =  new HashSet<>();
 
@@ -67,8 +99,15 @@ public class FormalConceptSparseAnalyzer{
         // まず, 与えられたデータのオブジェクト部分集合に重複が存在しないか，
         //即ち同じオブジェクト部分集合を持つ属性が存在しないかを確認する.
         // 重複する属性は統合する.
+        // 外延の要素数の下限を下回る属性は, どの形式概念の内包にも現れないので取り除く.
         //HashSet<Tupple> deduplicatedTupples = new HashSet<>();
+        if(listener != null){
+            listener.phaseStarted("dedup");
+        }
         for(Tupple povTupple : data){
+            if(minSupport > 0 && povTupple.getObjectSubset().size() < minSupport){
+                continue;
+            }
             boolean dup = false;
             for(Tupple compTupple : deduplicatedTupples){
                 if(povTupple.getObjectSubset().equals(compTupple.getObjectSubset())){
@@ -82,6 +121,18 @@ public class FormalConceptSparseAnalyzer{
             }
         }
 
+        // 極作用素はビット列の索引で計算する. 索引は一度だけ作る.
+        context = new FormalContext(deduplicatedTupples,universeOfObject,universeOfAttribute);
+        dataAttributes = new PackedBitSet();
+        for(Tupple tupple : deduplicatedTupples){
+            dataAttributes.or(tupple.getAttributeBits());
+        }
+        intent = context.newIntent();
+        if(listener != null){
+            listener.phaseFinished("dedup");
+            listener.phaseStarted("enumerate");
+        }
+
         /*
         System.out.println("dedup.");
         for(Tupple povTupple : deduplicatedTupples){
@@ -105,31 +156,49 @@ public class FormalConceptSparseAnalyzer{
             // まずは, 注目タプルが形式概念であるかどうかを判定する.
             // 具体的には, オブジェクト部分集合とその双極集合を比較し,
             // 同一であれば形式概念と判定される.
-            if(povTupple.getObjectSubset().equals
-               (getAttributePolarSet(getObjectPolarSet(povTupple.getObjectSubset())))){
+            // オブジェクト部分集合が空ならば, データに現れる全ての属性を持つ形式概念とする.
+            HashSet<Integer> objectSubset = povTupple.getObjectSubset();
+            if(objectSubset.isEmpty()){
+                tempTupples.add(new Tupple(new PackedBitSet(),dataAttributes.copy()));
+            }else if(isClosed(objectSubset)){
                 tempTupples.add(new Tupple(povTupple.deepCopy().getObjectSubset(),
-                                           getObjectPolarSet(povTupple.getObjectSubset())));
+                                           getObjectPolarSet(objectSubset)));
             }
 
             // 次に, 今までの結果との共通部分なオブジェクト部分集合に対する極作用素も行う.
-            // 共通部分が空な場合は何もしない.
+            // 共通部分が空な場合や, 外延の要素数の下限を下回る場合は何もしない.
             for(Tupple pastTupple : tupples){
                 HashSet<Integer> intersection = intersectObject(povTupple,pastTupple);
-                if(!intersection.isEmpty()){
+                if(!intersection.isEmpty() && intersection.size() >= minSupport){
                     tempTupples.add(new Tupple(intersection,
                                                getObjectPolarSet(intersection)));
                 }
             }
 
             // 結果に格納.
+            int size = tupples.size();
+            if(listener != null){
+                listener.closuresComputed(size + 1);
+            }
             tupples.addAll(tempTupples);
+            if(listener != null){
+                listener.conceptsEmitted(tupples.size() - size);
+            }
+        }
+        if(listener != null){
+            listener.phaseFinished("enumerate");
+            listener.phaseStarted("sort");
         }
 
         // 概念束の上限の形式概念が持つオブジェクト集合が, オブジェクト全集合と
         // 一致しないならば, オブジェクト全集合かつ属性が空集合であるような形式概念を
-        // 概念束に付与する.
+        // 概念束に付与する. オブジェクト全集合が下限を下回るならば, 何も残らない.
+        if(universeOfObject.size() < minSupport){
+            tupples.clear();
+        }
         TreeSet<Tupple> treed = new TreeSet<>(tupples);
-        if(!treed.first().getObjectSubset().equals(universeOfObject)){
+        if(universeOfObject.size() >= minSupport
+           && (treed.isEmpty() || !treed.first().getObjectSubset().equals(universeOfObject))){
             Tupple top = new Tupple();
             top.addElementsToObject(universeOfObject);
             tupples.add(top);
@@ -137,8 +206,9 @@ public class FormalConceptSparseAnalyzer{
 
         // 同様に, 下限の形式概念が持つ属性集合が, 属性全集合と
         // 一致しないならば, オブジェクトが空集合かつ属性が全集合であるような形式概念を
-        // 概念束に付与する.
-        if(!treed.last().getAttributeSubset().equals(universeOfAttribute)){
+        // 概念束に付与する. 外延の要素数に下限があるときは付与しない.
+        if(minSupport == 0
+           && (treed.isEmpty() || !treed.last().getAttributeSubset().equals(universeOfAttribute))){
             Tupple bottom = new Tupple();
             bottom.addElementsToAttribute(universeOfAttribute);
             tupples.add(bottom);
@@ -146,7 +216,11 @@ public class FormalConceptSparseAnalyzer{
         
 
         // オブジェクト部分集合の要素数でソートしてから返す.
-        return new TreeSet<Tupple>(tupples);
+        TreeSet<Tupple> sorted = new TreeSet<Tupple>(tupples);
+        if(listener != null){
+            listener.phaseFinished("sort");
+        }
+        return sorted;
     }
 
 
@@ -182,6 +256,25 @@ public class FormalConceptSparseAnalyzer{
     }
 
 
+    /**
+     * 外延の要素数が下限以上の形式概念だけを求めるメソッド(アイスバーグ概念束).
+     * @param data                対象データ
+     * @param universeOfObject    オブジェクトの全集合
+     * @param universeOfAttribute 属性の全集合
+     * @param minSupport          外延の要素数の下限
+     * @return                    解析結果
+     */
+    public static ArrayList<Tupple> analize(ArrayList<Tupple> data,
+                                            HashSet<Integer> universeOfObject,
+                                            HashSet<Integer> universeOfAttribute,
+                                            int minSupport){
+        FormalConceptSparseAnalyzer fcsa =
+            new FormalConceptSparseAnalyzer(new TreeSet<Tupple>(data),universeOfObject,universeOfAttribute);
+        fcsa.setMinimumSupport(minSupport);
+        return new ArrayList<Tupple>(fcsa.analize());
+    }
+
+
     /**
      * オブジェクト部分集合の共通部分を返すメソッド.
      * @param a,b タプル
@@ -196,33 +289,27 @@ public class FormalConceptSparseAnalyzer{
 
     /**
      * オブジェクトに対し極作用素を適用させるメソッド.
+     * 空でないオブジェクト部分集合に使う. 空ならばデータに現れない属性まで含んでしまう.
      * @param objectSubset 極作用素の対象とするオブジェクト部分集合
      * @return             極作用結果. 属性部分集合.
      */
     private HashSet<Integer> getObjectPolarSet(HashSet<Integer> objectSubset){
-        HashSet<Integer> polar = new HashSet<>();
-        for(Tupple tupple : deduplicatedTupples){
-            if(tupple.getObjectSubset().containsAll(objectSubset)){
-                polar.addAll(tupple.deepCopy().getAttributeSubset());
-            }
-        }
-        return polar;
+        context.objectPolar(context.packObjects(Tupple.toBits(objectSubset)),intent);
+        return new PackedBitSetView(context.unpackAttributes(intent));
     }
 
 
     /**
-     * 属性に対し極作用素を適用させるメソッド.
-     * @param attributeSubset 極作用素の対象となる属性部分集合
-     * @return                極作用結果. オブジェクト部分集合.
+     * オブジェクト部分集合が双極集合と一致するかを返すメソッド.
+     * 空でないオブジェクト部分集合に使う.
+     * @param objectSubset オブジェクト部分集合
+     * @return             一致すれば真
      */
-    private HashSet<Integer> getAttributePolarSet(HashSet<Integer> attributeSubset){
-        HashSet<Integer> polar = new HashSet<>();
-        for(Tupple tupple : deduplicatedTupples){
-            if(tupple.getAttributeSubset().containsAll(attributeSubset)){
-                polar.addAll(tupple.deepCopy().getObjectSubset());
-            }
-        }
-        return polar;
+    private boolean isClosed(HashSet<Integer> objectSubset){
+        long[] extent = context.packObjects(Tupple.toBits(objectSubset));
+        long[] closure = context.newExtent();
+        context.closeExtent(extent,intent,closure);
+        return Arrays.equals(extent,closure);
     }
 
 
@@ -315,5 +402,18 @@ public class FormalConceptSparseAnalyzer{
             System.out.println("{" + attributes + "}  :  {" + objects + "}");
 
         }
+
+        // 外延が2つ以上のオブジェクトを持つ形式概念だけを求め, ハッセ図を作る.
+        ArrayList<Tupple> iceberg =
+            FormalConceptSparseAnalyzer.analize(testData,
+                                                universeOfObject,
+                                                universeOfAttribute,
+                                                2);
+        LatticeGraph graph =
+            LatticeGraph.iceberg(iceberg,
+                                 new FormalContext(testData,universeOfObject,universeOfAttribute),
+                                 null);
+        System.out.println("minimum support 2 : " + graph.size() + " concepts, "
+                           + graph.getEdgeCount() + " edges");
     }
 }
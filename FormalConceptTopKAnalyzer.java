@@ -0,0 +1,397 @@
+import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+/**
+ * 評価値の高い上位 k 個の形式概念だけを求めるクラス.
+ * 評価値は外延の要素数, 内包の要素数, その積(面積)から選ぶ.
+ *
+ * 探索は FormalConceptParallelAnalyzer と同じ FCbO の探索木を深さ優先でたどり,
+ * 見つけた形式概念は大きさ k の優先度付きキューに入れる.
+ * 子の外延は親の外延と属性の列の共通部分で, 子孫の内包に加わり得るのは
+ * 子の属性番号以降の属性だけなので, 閉包を計算する前に部分木の評価値の上限が分かる.
+ * キューが埋まった後は, 上限が k 番目の評価値を超えない部分木を閉包を計算せずに刈り取る.
+ * 上限の高い子から先にたどるので, k 番目の評価値は早く上がる.
+ *
+ * 結果は評価値の降順に並ぶ. k 番目と同じ評価値の形式概念が他にもある場合は,
+ * 先に見つけたものが残る. 出力のオブジェクト番号と属性番号は各 main() と同じく1から始まる.
+ * コンテクスト表がまばらならば外延を CompressedBitmap で持ち, 上限の計算に使う外延の要素数は
+ * 共通部分を作る前に数える.
+ *
+ * @author  uehashu
+ * @version 1.0
+ */
+public class FormalConceptTopKAnalyzer{
+
+    /**
+     * 形式概念の評価値.
+     */
+    public enum Score{
+        /** 外延の要素数. */
+        EXTENT,
+        /** 内包の要素数. */
+        INTENT,
+        /** 外延の要素数と内包の要素数の積. */
+        AREA
+    }
+
+    FormalContext context; // ビット列で保持したコンテクスト表.
+    int k; // 求める形式概念の数.
+    Score score; // 評価値の種類.
+    AnalysisListener listener; // 途中経過を受け取るリスナ. 無ければ null.
+
+
+    //////////////////
+    // Constructors //
+    //////////////////
+
+    /**
+     * @param contextTable コンテクスト表. [オブジェクト]x[属性]
+     * @param k            求める形式概念の数
+     * @param score        評価値の種類
+     */
+    public FormalConceptTopKAnalyzer(boolean[][] contextTable, int k, Score score){
+        this(new FormalContext(contextTable),k,score);
+    }
+
+
+    /**
+     * @param context コンテクスト表
+     * @param k       求める形式概念の数
+     * @param score   評価値の種類
+     */
+    public FormalConceptTopKAnalyzer(FormalContext context, int k, Score score){
+        this.context = context;
+        this.k = k;
+        this.score = score;
+    }
+
+
+
+    /////////////
+    // Methods //
+    /////////////
+
+    /**
+     * 途中経過を受け取るリスナを設定するメソッド.
+     * 分岐ごとに, 計算した閉包の数, 正準性判定で捨てた候補の数, キューに入れた形式概念の数,
+     * 分岐の深さが知らされる. "enumerate" の段階も知らされる.
+     * @param listener リスナ. null ならば何も知らせない.
+     */
+    public void setAnalysisListener(AnalysisListener listener){
+        this.listener = listener;
+    }
+
+
+    /**
+     * 上位 k 個の形式概念を求めるメソッド.
+     * @return 解析結果. 評価値の降順で並んでいる.
+     */
+    public ArrayList<Tupple> analize(){
+
+        ArrayList<Tupple> concepts = new ArrayList<>();
+        if(k <= 0){
+            return concepts;
+        }
+
+        AnalysisListener listener = this.listener;
+        if(listener != null){
+            listener.phaseStarted("enumerate");
+        }
+
+        PriorityQueue<Candidate> queue = new PriorityQueue<>(k);
+        int attributeLength = context.getAttributeLength();
+
+        // 根は全オブジェクトを外延に持つ形式概念.
+        boolean sparse = context.isSparse();
+        long[] rootExtent = null;
+        CompressedBitmap rootCompressedExtent = null;
+        long[] rootIntent = context.newIntent();
+        if(sparse){
+            rootCompressedExtent = CompressedBitmap.range(0,context.getObjectLength());
+            context.objectPolar(rootCompressedExtent,rootIntent);
+        }else{
+            rootExtent = context.fullExtent();
+            context.objectPolar(rootExtent,rootIntent);
+        }
+        int serial = 0;
+        offer(queue,new Candidate(evaluate(context.getObjectLength(),BitVectors.cardinality(rootIntent)),
+                                  serial++,rootExtent,rootCompressedExtent,rootIntent));
+        if(listener != null){
+            listener.closuresComputed(1);
+            listener.conceptsEmitted(1);
+        }
+
+        ArrayDeque<Frame> stack = new ArrayDeque<>();
+        stack.push(new Frame(rootExtent,rootCompressedExtent,rootIntent,0,0,
+                             new long[attributeLength][],Long.MAX_VALUE));
+        ArrayList<Frame> children = new ArrayList<>();
+
+        while(!stack.isEmpty()){
+            Frame frame = stack.pop();
+
+            // 積んだ後に k 番目の評価値が上がっていれば, ここで刈り取る.
+            if(queue.size() == k && frame.bound <= queue.peek().score){
+                continue;
+            }
+            if(frame.start >= attributeLength || BitVectors.cardinality(frame.intent) == attributeLength){
+                continue;
+            }
+
+            long[] extent = frame.extent;
+            CompressedBitmap compressedExtent = frame.compressedExtent;
+            long[] intent = frame.intent;
+            int intentCardinality = BitVectors.cardinality(intent);
+            int free = freeAttributes(intent,frame.start); // j 以降で内包に無い属性の数.
+            long[][] childFailed = frame.failed.clone();
+            int closures = 0;
+            int rejections = 0;
+            int emitted = 0;
+            children.clear();
+
+            for(int j=frame.start;j<attributeLength;j++){
+                if(BitVectors.get(intent,j)){
+                    continue;
+                }
+                int remaining = free--;
+
+                // 親で失敗した閉包の j 未満の部分が内包に含まれていなければ正準でない.
+                if(frame.failed[j] != null && !BitVectors.isSubsetBelow(frame.failed[j],intent,j)){
+                    rejections++;
+                    continue;
+                }
+
+                // 部分木の評価値の上限が k 番目を超えなければ, 閉包を計算せずに刈り取る.
+                long[] childExtent = null;
+                CompressedBitmap childCompressedExtent = null;
+                CompressedBitmap column = null;
+                int extentCardinality;
+                if(sparse){
+                    column = context.getCompressedColumn(j);
+                    extentCardinality = compressedExtent.andCardinality(column);
+                }else{
+                    childExtent = new long[extent.length];
+                    BitVectors.and(extent,context.getAttributeColumn(j),childExtent);
+                    extentCardinality = BitVectors.cardinality(childExtent);
+                }
+                if(queue.size() == k
+                   && evaluate(extentCardinality,intentCardinality + remaining) <= queue.peek().score){
+                    continue;
+                }
+
+                long[] childIntent = new long[intent.length];
+                if(sparse){
+                    childCompressedExtent = compressedExtent.and(column);
+                    context.objectPolar(childCompressedExtent,childIntent);
+                }else{
+                    context.objectPolar(childExtent,childIntent);
+                }
+                closures++;
+
+                // 閉包によって j 未満の属性が増えていなければ正準.
+                if(!BitVectors.equalsBelow(childIntent,intent,j)){
+                    childFailed[j] = childIntent;
+                    rejections++;
+                    continue;
+                }
+
+                int childIntentCardinality = BitVectors.cardinality(childIntent);
+                if(offer(queue,new Candidate(evaluate(extentCardinality,childIntentCardinality),
+                                             serial++,childExtent,childCompressedExtent,childIntent))){
+                    emitted++;
+                }
+                long bound = evaluate(extentCardinality,
+                                      childIntentCardinality + freeAttributes(childIntent,j+1));
+                children.add(new Frame(childExtent,childCompressedExtent,childIntent,
+                                       j+1,frame.depth+1,childFailed,bound));
+            }
+
+            if(listener != null){
+                listener.closuresComputed(closures);
+                listener.canonicityRejected(rejections);
+                listener.conceptsEmitted(emitted);
+                listener.depthReached(frame.depth);
+            }
+
+            // 上限の高い子が先に取り出されるように積む. 上限が同じならば属性番号の順.
+            Collections.sort(children,new Comparator<Frame>(){
+                    // @Override
+                    public int compare(Frame a, Frame b){
+                        return Long.compare(b.bound,a.bound);
+                    }
+                });
+            for(int i=children.size()-1;i>=0;i--){
+                stack.push(children.get(i));
+            }
+        }
+
+        if(listener != null){
+            listener.phaseFinished("enumerate");
+        }
+
+        // 評価値の降順, 同じならば見つけた順に並べる.
+        ArrayList<Candidate> candidates = new ArrayList<>(queue);
+        Collections.sort(candidates,Collections.reverseOrder());
+        for(Candidate candidate : candidates){
+            concepts.add(candidate.extent != null
+                         ? context.toTupple(candidate.extent,candidate.intent)
+                         : context.toTupple(candidate.compressedExtent,candidate.intent));
+        }
+        return concepts;
+    }
+
+
+    /**
+     * 上位 k 個の形式概念を求めるメソッド.
+     * @param contextTable コンテクスト表. [オブジェクト]x[属性]
+     * @param k            求める形式概念の数
+     * @param score        評価値の種類
+     * @return             解析結果. 評価値の降順で並んでいる.
+     */
+    public static ArrayList<Tupple> analize(boolean[][] contextTable, int k, Score score){
+        return new FormalConceptTopKAnalyzer(contextTable,k,score).analize();
+    }
+
+
+
+    /////////////////////
+    // Private Methods //
+    /////////////////////
+
+    /**
+     * 外延と内包の要素数から評価値を計算するメソッド.
+     * どちらの要素数についても単調なので, 要素数の上限を渡せば評価値の上限になる.
+     * @param extentCardinality 外延の要素数
+     * @param intentCardinality 内包の要素数
+     * @return                  評価値
+     */
+    private long evaluate(int extentCardinality, int intentCardinality){
+        switch(score){
+        case EXTENT:
+            return extentCardinality;
+        case INTENT:
+            return intentCardinality;
+        default:
+            return (long)extentCardinality * intentCardinality;
+        }
+    }
+
+
+    /**
+     * from 以降の属性のうち, 内包に含まれないものの数を返すメソッド.
+     * @param intent 内包
+     * @param from   始めの属性
+     * @return       属性の数
+     */
+    private int freeAttributes(long[] intent, int from){
+        int count = 0;
+        for(int m=from;m<context.getAttributeLength();m++){
+            if(!BitVectors.get(intent,m)){
+                count++;
+            }
+        }
+        return count;
+    }
+
+
+    /**
+     * 候補をキューに入れるメソッド. キューが埋まっていれば, k 番目より良い場合だけ入れ替える.
+     * @param queue     キュー. 先頭が k 番目.
+     * @param candidate 候補
+     * @return          入れたならば真
+     */
+    private boolean offer(PriorityQueue<Candidate> queue, Candidate candidate){
+        if(queue.size() < k){
+            queue.add(candidate);
+            return true;
+        }
+        if(candidate.score > queue.peek().score){
+            queue.poll();
+            queue.add(candidate);
+            return true;
+        }
+        return false;
+    }
+
+
+
+    ///////////////////
+    // Inner Classes //
+    ///////////////////
+
+    /**
+     * キューに入れる形式概念. 評価値が低いもの, 同じならば後に見つけたものほど小さい.
+     */
+    private static final class Candidate implements Comparable<Candidate>{
+
+        long score; // 評価値.
+        int serial; // 見つけた順番.
+        long[] extent; // 外延. 圧縮した外延を使うならば null.
+        CompressedBitmap compressedExtent; // 圧縮した外延. 使わなければ null.
+        long[] intent; // 内包.
+
+        Candidate(long score, int serial, long[] extent, CompressedBitmap compressedExtent, long[] intent){
+            this.score = score;
+            this.serial = serial;
+            this.extent = extent;
+            this.compressedExtent = compressedExtent;
+            this.intent = intent;
+        }
+
+        // @Override
+        public int compareTo(Candidate other){
+            if(score != other.score){
+                return Long.compare(score,other.score);
+            }
+            return Integer.compare(other.serial,serial);
+        }
+    }
+
+
+    /**
+     * 探索木のまだ展開していない分岐.
+     */
+    private static final class Frame{
+
+        long[] extent; // この分岐の形式概念の外延. 圧縮した外延を使うならば null.
+        CompressedBitmap compressedExtent; // この分岐の圧縮した外延. 使わなければ null.
+        long[] intent; // この分岐の形式概念の内包.
+        int start; // この番号以降の属性を追加していく.
+        int depth; // 探索木の深さ. 根は0.
+        long[][] failed; // 親で正準性判定に失敗した閉包. 属性ごと.
+        long bound; // 子孫の評価値の上限.
+
+        Frame(long[] extent, CompressedBitmap compressedExtent, long[] intent,
+              int start, int depth, long[][] failed, long bound){
+            this.extent = extent;
+            this.compressedExtent = compressedExtent;
+            this.intent = intent;
+            this.start = start;
+            this.depth = depth;
+            this.failed = failed;
+            this.bound = bound;
+        }
+    }
+
+
+
+    //////////
+    // Test //
+    //////////
+
+    public static void main(String args[]){
+
+        // 乱数でコンテクスト表を作る.
+        boolean[][] contextTable = FormalContext.randomTable(200,30,0.3,1);
+
+        // 面積の大きい上位10個を表示する.
+        System.out.println("area  :  {attributes}  :  number of objects");
+        for(Tupple tupple : FormalConceptTopKAnalyzer.analize(contextTable,10,Score.AREA)){
+            int objects = tupple.getObjectSubset().size();
+            int area = objects * tupple.getAttributeSubset().size();
+            System.out.println(area + "  :  " + tupple.getAttributeSubset() + "  :  " + objects);
+        }
+    }
+}
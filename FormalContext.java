@@ -0,0 +1,631 @@
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Random;
+
+/**
+ * コンテクスト表をビット列で保持し, 極作用素を提供するクラス.
+ * 各オブジェクトが持つ属性(行)と各属性を持つオブジェクト(列)の両方を
+ * long[] のビット列として一度だけ作っておき, 各解析クラスやハッセ図で共有する.
+ *
+ * オブジェクトと属性は内部では 0 から始まる番号(ビット位置)で扱い,
+ * Tupple に変換するときだけ元の番号(ラベル)に戻す.
+ * 極作用素は呼び出し側が用意したビット列に結果を書き込むので, 途中でオブジェクトを生成しない.
+ *
+ * オブジェクトが多く, 表がまばら(isSparse())な場合は, 列を CompressedBitmap で持ち,
+ * 全オブジェクト分の long[] の列は getAttributeColumn() で初めて必要になったときに作る.
+ * 解析クラスやハッセ図はこれを見て, 外延を CompressedBitmap で持つかどうかを決める.
+ *
+ * @author  uehashu
+ * @version 1.0
+ */
+public class FormalContext{
+
+    static final int SPARSE_OBJECTS = 4096; // まばらとみなすオブジェクト数の下限.
+    static final int SPARSE_DENSITY = 64; // 1 の割合がこの逆数以下ならばまばらとみなす.
+
+    int[] objects; // オブジェクト番号. ビット位置からオブジェクトへの対応表.
+    int[] attributes; // 属性番号. ビット位置から属性への対応表.
+    long[][] objectRows; // 各オブジェクトが持つ属性のビット列.
+    volatile long[][] attributeColumns; // 各属性を持つオブジェクトのビット列. まばらならば必要になってから作る.
+    CompressedBitmap[] compressedColumns; // 各属性を持つオブジェクトの圧縮した集合. まばらでなければ null.
+
+
+    //////////////////
+    // Constructors //
+    //////////////////
+
+    /**
+     * コンテクスト表から作る. オブジェクト番号と属性番号は各 main() と同じく1から始まる.
+     * @param contextTable コンテクスト表. [オブジェクト]x[属性]
+     */
+    public FormalContext(boolean[][] contextTable){
+        this(sequence(contextTable.length),
+             sequence(contextTable.length == 0 ? 0 : contextTable[0].length),
+             packRows(contextTable));
+    }
+
+
+    /**
+     * タプルのリストから作る.
+     * 各タプルは「オブジェクト部分集合の全要素が属性部分集合の全要素を持つ」ことを表す.
+     * @param data                対象データ
+     * @param universeOfObject    オブジェクトの全集合
+     * @param universeOfAttribute 属性の全集合
+     */
+    public FormalContext(Collection<Tupple> data,
+                         HashSet<Integer> universeOfObject,
+                         HashSet<Integer> universeOfAttribute){
+        this(collectLabels(data,universeOfObject,true),
+             collectLabels(data,universeOfAttribute,false),
+             null);
+        for(Tupple tupple : data){
+            PackedBitSet objectBits = tupple.getObjectBits();
+            PackedBitSet attributeBits = tupple.getAttributeBits();
+            for(int obj=objectBits.nextSetBit(0);obj>=0;obj=objectBits.nextSetBit(obj+1)){
+                int g = Arrays.binarySearch(objects,obj);
+                for(int attr=attributeBits.nextSetBit(0);attr>=0;attr=attributeBits.nextSetBit(attr+1)){
+                    int m = Arrays.binarySearch(attributes,attr);
+                    BitVectors.set(objectRows[g],m);
+                }
+            }
+        }
+        buildColumns();
+    }
+
+
+    /**
+     * 行方向のビット列から作る. 列方向のビット列はここで作る.
+     * objectRows が null の場合は空のコンテクスト表になる.
+     * @param objects    オブジェクト番号. 昇順であること.
+     * @param attributes 属性番号. 昇順であること.
+     * @param objectRows 各オブジェクトが持つ属性のビット列. コピーされない.
+     */
+    FormalContext(int[] objects, int[] attributes, long[][] objectRows){
+        this.objects = objects;
+        this.attributes = attributes;
+        this.objectRows = objectRows != null ? objectRows
+            : new long[objects.length][BitVectors.words(attributes.length)];
+        buildColumns();
+    }
+
+
+
+    /////////////
+    // Methods //
+    /////////////
+
+    /**
+     * 乱数でコンテクスト表を作るメソッド. 各クラスの main() で試すときに使う.
+     * @param objects    オブジェクト数
+     * @param attributes 属性数
+     * @param density    各接続関係がある確率
+     * @param seed       乱数の種
+     * @return           コンテクスト表. [オブジェクト]x[属性]
+     */
+    public static boolean[][] randomTable(int objects, int attributes, double density, long seed){
+        Random random = new Random(seed);
+        boolean[][] contextTable = new boolean[objects][attributes];
+        for(boolean[] row : contextTable){
+            for(int m=0;m<row.length;m++){
+                row[m] = random.nextDouble() < density;
+            }
+        }
+        return contextTable;
+    }
+
+
+    /**
+     * 形式概念の集合から, それを生み出したコンテクスト表を復元するメソッド.
+     * オブジェクト g の行は, g を外延に含む形式概念の内包の和集合(つまり g')になる.
+     * @param concepts 形式概念の集合
+     * @return         コンテクスト表
+     */
+    public static FormalContext fromConcepts(Collection<Tupple> concepts){
+        PackedBitSet objectBits = new PackedBitSet();
+        PackedBitSet attributeBits = new PackedBitSet();
+        for(Tupple concept : concepts){
+            objectBits.or(concept.getObjectBits());
+            attributeBits.or(concept.getAttributeBits());
+        }
+        FormalContext context = new FormalContext(toArray(objectBits),toArray(attributeBits),null);
+        for(Tupple concept : concepts){
+            long[] intent = context.packAttributes(concept.getAttributeBits());
+            PackedBitSet extent = concept.getObjectBits();
+            for(int obj=extent.nextSetBit(0);obj>=0;obj=extent.nextSetBit(obj+1)){
+                long[] row = context.objectRows[Arrays.binarySearch(context.objects,obj)];
+                for(int w=0;w<row.length;w++){
+                    row[w] |= intent[w];
+                }
+            }
+        }
+        return new FormalContext(context.objects,context.attributes,context.objectRows);
+    }
+
+
+    /**
+     * オブジェクト数を返すメソッド.
+     * @return オブジェクト数
+     */
+    public int getObjectLength(){
+        return objects.length;
+    }
+
+
+    /**
+     * 属性数を返すメソッド.
+     * @return 属性数
+     */
+    public int getAttributeLength(){
+        return attributes.length;
+    }
+
+
+    /**
+     * オブジェクト部分集合のビット列のワード数を返すメソッド.
+     * @return ワード数
+     */
+    public int getObjectWords(){
+        return BitVectors.words(objects.length);
+    }
+
+
+    /**
+     * 属性部分集合のビット列のワード数を返すメソッド.
+     * @return ワード数
+     */
+    public int getAttributeWords(){
+        return BitVectors.words(attributes.length);
+    }
+
+
+    /**
+     * 表がまばらかを返すメソッド.
+     * オブジェクトが SPARSE_OBJECTS 個以上あり, 1 の割合が 1/SPARSE_DENSITY 以下ならばまばらとする.
+     * @return まばらならば真. このとき列は CompressedBitmap で持つ.
+     */
+    public boolean isSparse(){
+        return compressedColumns != null;
+    }
+
+
+    /**
+     * オブジェクトが持つ属性のビット列を返すメソッド. 書き換えないこと.
+     * @param g オブジェクトのビット位置
+     * @return  属性のビット列
+     */
+    long[] getObjectRow(int g){
+        return objectRows[g];
+    }
+
+
+    /**
+     * 属性を持つオブジェクトのビット列を返すメソッド. 書き換えないこと.
+     * @param m 属性のビット位置
+     * @return  オブジェクトのビット列
+     */
+    long[] getAttributeColumn(int m){
+        return getAttributeColumns()[m];
+    }
+
+
+    /**
+     * 全ての属性の列を返すメソッド. まばらな表では初めて呼ばれたときに作る. 書き換えないこと.
+     * @return 各属性を持つオブジェクトのビット列
+     */
+    long[][] getAttributeColumns(){
+        long[][] columns = attributeColumns;
+        if(columns == null){
+            synchronized(this){
+                columns = attributeColumns;
+                if(columns == null){
+                    columns = transpose();
+                    attributeColumns = columns;
+                }
+            }
+        }
+        return columns;
+    }
+
+
+    /**
+     * 属性を持つオブジェクトの圧縮した集合を返すメソッド. 書き換えないこと.
+     * まばらでない表では, その都度ビット列から作る.
+     * @param m 属性のビット位置
+     * @return  オブジェクトのビット位置の集合
+     */
+    public CompressedBitmap getCompressedColumn(int m){
+        if(compressedColumns != null){
+            return compressedColumns[m];
+        }
+        return CompressedBitmap.fromWords(getAttributeColumn(m));
+    }
+
+
+    /**
+     * 空のオブジェクト部分集合を作るメソッド.
+     * @return オブジェクト部分集合のビット列
+     */
+    public long[] newExtent(){
+        return new long[getObjectWords()];
+    }
+
+
+    /**
+     * 空の属性部分集合を作るメソッド.
+     * @return 属性部分集合のビット列
+     */
+    public long[] newIntent(){
+        return new long[getAttributeWords()];
+    }
+
+
+    /**
+     * オブジェクトの全集合を作るメソッド.
+     * @return オブジェクト部分集合のビット列
+     */
+    public long[] fullExtent(){
+        return BitVectors.full(objects.length);
+    }
+
+
+    /**
+     * オブジェクト部分集合に極作用素を適用させるメソッド. X' を計算する.
+     * @param extent オブジェクト部分集合
+     * @param intent 結果の属性部分集合を書き込むビット列
+     */
+    public void objectPolar(long[] extent, long[] intent){
+        BitVectors.fill(intent,attributes.length);
+        for(int g=BitVectors.nextSetBit(extent,0);g>=0;g=BitVectors.nextSetBit(extent,g+1)){
+            BitVectors.and(intent,objectRows[g]);
+        }
+    }
+
+
+    /**
+     * 圧縮したオブジェクト部分集合に極作用素を適用させるメソッド. X' を計算する.
+     * @param extent オブジェクトのビット位置の集合
+     * @param intent 結果の属性部分集合を書き込むビット列
+     */
+    public void objectPolar(CompressedBitmap extent, long[] intent){
+        BitVectors.fill(intent,attributes.length);
+        for(int g=extent.nextSetBit(0);g>=0;g=extent.nextSetBit(g+1)){
+            BitVectors.and(intent,objectRows[g]);
+        }
+    }
+
+
+    /**
+     * 属性部分集合に極作用素を適用させるメソッド. Y' を計算する.
+     * まばらな表では圧縮した列の共通部分を取ってから書き出す.
+     * @param intent 属性部分集合
+     * @param extent 結果のオブジェクト部分集合を書き込むビット列
+     */
+    public void attributePolar(long[] intent, long[] extent){
+        if(compressedColumns != null){
+            attributePolar(intent).toWords(extent);
+            return;
+        }
+        long[][] columns = attributeColumns;
+        BitVectors.fill(extent,objects.length);
+        for(int m=BitVectors.nextSetBit(intent,0);m>=0;m=BitVectors.nextSetBit(intent,m+1)){
+            BitVectors.and(extent,columns[m]);
+        }
+    }
+
+
+    /**
+     * 属性部分集合に極作用素を適用させ, 結果を圧縮した集合で返すメソッド. Y' を計算する.
+     * @param intent 属性部分集合
+     * @return       オブジェクトのビット位置の集合
+     */
+    public CompressedBitmap attributePolar(long[] intent){
+        CompressedBitmap extent = null;
+        for(int m=BitVectors.nextSetBit(intent,0);m>=0;m=BitVectors.nextSetBit(intent,m+1)){
+            CompressedBitmap column = getCompressedColumn(m);
+            extent = extent == null ? column : extent.and(column);
+        }
+        return extent != null ? extent : CompressedBitmap.range(0,objects.length);
+    }
+
+
+    /**
+     * オブジェクト部分集合の閉包 X'' を計算するメソッド.
+     * extent と closure は同じ配列でもよい.
+     * @param extent  オブジェクト部分集合
+     * @param intent  X' を書き込むビット列
+     * @param closure X'' を書き込むビット列
+     */
+    public void closeExtent(long[] extent, long[] intent, long[] closure){
+        objectPolar(extent,intent);
+        attributePolar(intent,closure);
+    }
+
+
+    /**
+     * 属性部分集合の閉包 Y'' を計算するメソッド.
+     * intent と closure は同じ配列でもよい.
+     * @param intent  属性部分集合
+     * @param extent  Y' を書き込むビット列
+     * @param closure Y'' を書き込むビット列
+     */
+    public void closeIntent(long[] intent, long[] extent, long[] closure){
+        attributePolar(intent,extent);
+        objectPolar(extent,closure);
+    }
+
+
+    /**
+     * オブジェクト番号を返すメソッド.
+     * @param g オブジェクトのビット位置
+     * @return  オブジェクト番号
+     */
+    public int getObject(int g){
+        return objects[g];
+    }
+
+
+    /**
+     * 属性番号を返すメソッド.
+     * @param m 属性のビット位置
+     * @return  属性番号
+     */
+    public int getAttribute(int m){
+        return attributes[m];
+    }
+
+
+    /**
+     * オブジェクト番号の集合をビット列に詰め直すメソッド. 知らない番号は無視する.
+     * @param objectBits オブジェクト番号の集合
+     * @return           オブジェクト部分集合のビット列
+     */
+    public long[] packObjects(PackedBitSet objectBits){
+        return pack(objectBits,objects);
+    }
+
+
+    /**
+     * オブジェクト番号の集合を圧縮した集合に詰め直すメソッド. 知らない番号は無視する.
+     * @param objectBits オブジェクト番号の集合
+     * @return           オブジェクトのビット位置の集合
+     */
+    public CompressedBitmap compressObjects(PackedBitSet objectBits){
+        CompressedBitmap extent = new CompressedBitmap();
+        for(int obj=objectBits.nextSetBit(0);obj>=0;obj=objectBits.nextSetBit(obj+1)){
+            int g = Arrays.binarySearch(objects,obj);
+            if(g >= 0){
+                extent.add(g);
+            }
+        }
+        return extent.runOptimize();
+    }
+
+
+    /**
+     * 属性番号の集合をビット列に詰め直すメソッド. 知らない番号は無視する.
+     * @param attributeBits 属性番号の集合
+     * @return              属性部分集合のビット列
+     */
+    public long[] packAttributes(PackedBitSet attributeBits){
+        return pack(attributeBits,attributes);
+    }
+
+
+    /**
+     * オブジェクト部分集合のビット列を, オブジェクト番号の集合に戻すメソッド.
+     * @param extent オブジェクト部分集合のビット列
+     * @return       オブジェクト番号の集合
+     */
+    public PackedBitSet unpackObjects(long[] extent){
+        return unpack(extent,objects);
+    }
+
+
+    /**
+     * 圧縮したオブジェクト部分集合を, オブジェクト番号の集合に戻すメソッド.
+     * @param extent オブジェクトのビット位置の集合
+     * @return       オブジェクト番号の集合
+     */
+    public PackedBitSet unpackObjects(CompressedBitmap extent){
+        PackedBitSet bits = new PackedBitSet(objects.length == 0 ? 0 : objects[objects.length-1]+1);
+        for(int g=extent.nextSetBit(0);g>=0;g=extent.nextSetBit(g+1)){
+            bits.add(objects[g]);
+        }
+        return bits;
+    }
+
+
+    /**
+     * 属性部分集合のビット列を, 属性番号の集合に戻すメソッド.
+     * @param intent 属性部分集合のビット列
+     * @return       属性番号の集合
+     */
+    public PackedBitSet unpackAttributes(long[] intent){
+        return unpack(intent,attributes);
+    }
+
+
+    /**
+     * ビット列の組をタプルに変換するメソッド.
+     * @param extent 外延
+     * @param intent 内包
+     * @return       タプル
+     */
+    public Tupple toTupple(long[] extent, long[] intent){
+        return new Tupple(unpackObjects(extent),unpackAttributes(intent));
+    }
+
+
+    /**
+     * 圧縮した外延と内包の組をタプルに変換するメソッド.
+     * @param extent 外延
+     * @param intent 内包
+     * @return       タプル
+     */
+    public Tupple toTupple(CompressedBitmap extent, long[] intent){
+        return new Tupple(unpackObjects(extent),unpackAttributes(intent));
+    }
+
+
+
+    /////////////////////
+    // Private Methods //
+    /////////////////////
+
+    /**
+     * 列を作るメソッド. まばらならば圧縮した列だけを作り, そうでなければ行を転置する.
+     */
+    private void buildColumns(){
+        long ones = 0;
+        for(long[] row : objectRows){
+            ones += BitVectors.cardinality(row);
+        }
+        if(objects.length < SPARSE_OBJECTS
+           || ones * SPARSE_DENSITY > (long)objects.length * attributes.length){
+            compressedColumns = null;
+            attributeColumns = transpose();
+            return;
+        }
+
+        // オブジェクトの昇順に加えるので, どの列にも末尾への追加になる.
+        attributeColumns = null;
+        compressedColumns = new CompressedBitmap[attributes.length];
+        for(int m=0;m<attributes.length;m++){
+            compressedColumns[m] = new CompressedBitmap();
+        }
+        for(int g=0;g<objects.length;g++){
+            long[] row = objectRows[g];
+            for(int m=BitVectors.nextSetBit(row,0);m>=0;m=BitVectors.nextSetBit(row,m+1)){
+                compressedColumns[m].add(g);
+            }
+        }
+        for(CompressedBitmap column : compressedColumns){
+            column.runOptimize();
+        }
+    }
+
+
+    /**
+     * 行を転置して, 全オブジェクト分のビット列の列を作るメソッド.
+     * @return 各属性を持つオブジェクトのビット列
+     */
+    private long[][] transpose(){
+        long[][] columns = new long[attributes.length][BitVectors.words(objects.length)];
+
+        // 連続する64個のオブジェクトは列の同じワードに入る.
+        for(int g=0;g<objects.length;g++){
+            long[] row = objectRows[g];
+            int word = g >>> 6;
+            long bit = 1L << g;
+            for(int w=0;w<row.length;w++){
+                long bits = row[w];
+                while(bits != 0){
+                    columns[(w << 6) + Long.numberOfTrailingZeros(bits)][word] |= bit;
+                    bits &= bits - 1;
+                }
+            }
+        }
+        return columns;
+    }
+
+
+    /**
+     * 番号の集合をビット位置のビット列に詰め直すメソッド.
+     * @param bits   番号の集合
+     * @param labels ビット位置から番号への対応表
+     * @return       ビット列
+     */
+    private static long[] pack(PackedBitSet bits, int[] labels){
+        long[] packed = BitVectors.create(labels.length);
+        for(int label=bits.nextSetBit(0);label>=0;label=bits.nextSetBit(label+1)){
+            int index = Arrays.binarySearch(labels,label);
+            if(index >= 0){
+                BitVectors.set(packed,index);
+            }
+        }
+        return packed;
+    }
+
+
+    /**
+     * ビット位置のビット列を番号の集合に戻すメソッド.
+     * @param packed ビット列
+     * @param labels ビット位置から番号への対応表
+     * @return       番号の集合
+     */
+    private static PackedBitSet unpack(long[] packed, int[] labels){
+        PackedBitSet bits = new PackedBitSet(labels.length == 0 ? 0 : labels[labels.length-1]+1);
+        for(int i=BitVectors.nextSetBit(packed,0);i>=0;i=BitVectors.nextSetBit(packed,i+1)){
+            bits.add(labels[i]);
+        }
+        return bits;
+    }
+
+
+    /**
+     * コンテクスト表を行方向のビット列に詰め込むメソッド.
+     * @param contextTable コンテクスト表. [オブジェクト]x[属性]
+     * @return             各オブジェクトが持つ属性のビット列
+     */
+    private static long[][] packRows(boolean[][] contextTable){
+        long[][] rows = new long[contextTable.length][];
+        for(int g=0;g<contextTable.length;g++){
+            rows[g] = BitVectors.create(contextTable[g].length);
+            for(int m=0;m<contextTable[g].length;m++){
+                if(contextTable[g][m]){
+                    BitVectors.set(rows[g],m);
+                }
+            }
+        }
+        return rows;
+    }
+
+
+    /**
+     * 全集合とデータに現れる番号を昇順に並べるメソッド.
+     * @param data     対象データ
+     * @param universe 全集合
+     * @param object   オブジェクトを集めるならば真, 属性を集めるならば偽
+     * @return         昇順に並べた番号
+     */
+    private static int[] collectLabels(Collection<Tupple> data, HashSet<Integer> universe, boolean object){
+        PackedBitSet labels = new PackedBitSet();
+        for(Integer label : universe){
+            labels.add(label.intValue());
+        }
+        for(Tupple tupple : data){
+            labels.or(object ? tupple.getObjectBits() : tupple.getAttributeBits());
+        }
+        return toArray(labels);
+    }
+
+
+    /**
+     * 番号の集合を昇順の配列にするメソッド.
+     * @param bits 番号の集合
+     * @return     昇順に並べた番号
+     */
+    private static int[] toArray(PackedBitSet bits){
+        int[] array = new int[bits.cardinality()];
+        int index = 0;
+        for(int i=bits.nextSetBit(0);i>=0;i=bits.nextSetBit(i+1)){
+            array[index++] = i;
+        }
+        return array;
+    }
+
+
+    /**
+     * 1 から length までの番号を返すメソッド.
+     * @param length 個数
+     * @return       番号の配列
+     */
+    private static int[] sequence(int length){
+        int[] array = new int[length];
+        for(int i=0;i<length;i++){
+            array[i] = i+1;
+        }
+        return array;
+    }
+}
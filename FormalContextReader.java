@@ -0,0 +1,877 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * ファイルからコンテクスト表を読み込んで FormalContext を作るクラス.
+ * 次の3つの形式に対応する.
+ * <ul>
+ * <li>Burmeister 形式(.cxt). オブジェクト番号と属性番号は1から始まる.
+ *     オブジェクト名と属性名は getObjectNames() などで受け取れる.</li>
+ * <li>FIMI 形式(.dat). 1行が1つのトランザクション(オブジェクト)で,
+ *     空白で区切った属性番号を並べたもの. オブジェクト番号は行番号(1から).</li>
+ * <li>接続関係の CSV 形式(.csv). 1行に「オブジェクト番号,属性番号」を1組書いたもの.
+ *     区切りはカンマ, セミコロン, タブ, 空白のどれでもよく, 数字で始まらない1行目は見出しとして読み飛ばす.</li>
+ * </ul>
+ *
+ * ファイルは FileChannel から固定長のバッファに読み込みながらバイト単位で解釈し,
+ * 行ごとの String や Integer を作らない.
+ * FIMI 形式と CSV 形式はファイルを2回読む. 1回目で行数と現れた番号を数え,
+ * 2回目で接続関係をコンテクスト表のビット列に直接詰める.
+ * 接続関係を途中で貯めておかないので, 使用メモリはできあがるビット列と番号の表の分だけで済む.
+ * FIMI 形式は行の境目でファイルをいくつかの範囲に区切り, 範囲ごとに並列に読む.
+ *
+ * @author  uehashu
+ * @version 1.0
+ */
+public class FormalContextReader{
+
+    private static final int BUFFER_SIZE = 1 << 20; // 読み込みバッファの大きさ.
+    private static final long CHUNK_SIZE = 16L << 20; // 並列に読む範囲の大きさの下限.
+    private static final int MAX_VALUE = 999999999; // 読める番号の最大値.
+    private static final int MAX_TABLE = 1 << 24; // ビット列で覚える番号の上限.
+    private static final int MAX_ARRAY = Integer.MAX_VALUE - 8; // 配列の長さの上限.
+
+    String[] objectNames = new String[0]; // 直前に読んだ .cxt のオブジェクト名.
+    String[] attributeNames = new String[0]; // 直前に読んだ .cxt の属性名.
+
+
+    /////////////
+    // Methods //
+    /////////////
+
+    /**
+     * 拡張子から形式を判断してコンテクスト表を読み込むメソッド.
+     * .cxt は Burmeister 形式, .csv は CSV 形式, それ以外は FIMI 形式とみなす.
+     * @param path ファイル
+     * @return     コンテクスト表
+     * @exception IOException 読み込みに失敗した場合や, 形式が正しくない場合
+     */
+    public FormalContext read(Path path) throws IOException{
+        String name = path.getFileName().toString().toLowerCase();
+        if(name.endsWith(".cxt")){
+            return readCxt(path);
+        }else if(name.endsWith(".csv")){
+            return readCsv(path);
+        }else{
+            return readFimi(path);
+        }
+    }
+
+
+    /**
+     * Burmeister 形式(.cxt)のファイルを読み込むメソッド.
+     * <pre>
+     * B
+     * (名前. 空行でもよい)
+     * オブジェクト数
+     * 属性数
+     * (空行)
+     * オブジェクト名をオブジェクト数だけ
+     * 属性名を属性数だけ
+     * 'X' と '.' からなる行をオブジェクト数だけ
+     * </pre>
+     * @param path ファイル
+     * @return     コンテクスト表
+     * @exception IOException 読み込みに失敗した場合や, 形式が正しくない場合
+     */
+    public FormalContext readCxt(Path path) throws IOException{
+        try(Input in = new Input(path)){
+            String header = in.readLine();
+            if(header == null || !header.trim().equals("B")){
+                throw in.error("not a Burmeister context");
+            }
+
+            // 名前の行は数字でなければ読み飛ばす.
+            String line = in.readNonEmptyLine();
+            if(line != null && !isNumber(line)){
+                line = in.readNonEmptyLine();
+            }
+            int objectLength = parseCount(in,line);
+            int attributeLength = parseCount(in,in.readNonEmptyLine());
+
+            objectNames = new String[objectLength];
+            for(int g=0;g<objectLength;g++){
+                objectNames[g] = in.readNameLine(g == 0);
+            }
+            attributeNames = new String[attributeLength];
+            for(int m=0;m<attributeLength;m++){
+                attributeNames[m] = in.readNameLine(m == 0 && objectLength == 0);
+            }
+
+            // 接続関係の行. 'X' か 'x' が接続を表す.
+            long[][] rows = new long[objectLength][BitVectors.words(attributeLength)];
+            for(int g=0;g<objectLength;g++){
+                int c = in.read();
+                while(c == '\n' || c == '\r'){
+                    c = in.read();
+                }
+                int m = 0;
+                while(c >= 0 && c != '\n' && c != '\r'){
+                    if(c == 'X' || c == 'x'){
+                        if(m >= attributeLength){
+                            throw in.error("too many columns");
+                        }
+                        BitVectors.set(rows[g],m);
+                        m++;
+                    }else if(c == '.'){
+                        m++;
+                    }
+                    c = in.read();
+                }
+                in.line++;
+                if(m != attributeLength){
+                    throw in.error("expected " + attributeLength + " columns but found " + m);
+                }
+            }
+            return new FormalContext(sequence(objectLength),sequence(attributeLength),rows);
+        }
+    }
+
+
+    /**
+     * FIMI 形式(.dat)のファイルを読み込むメソッド.
+     * 属性番号はファイルに書かれた非負整数をそのまま使う.
+     * @param path ファイル
+     * @return     コンテクスト表
+     * @exception IOException 読み込みに失敗した場合や, 形式が正しくない場合
+     */
+    public FormalContext readFimi(Path path) throws IOException{
+        Chunk[] chunks = split(path);
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+
+        // 1回目. 範囲ごとに行数と属性番号を数えて足し合わせる.
+        pool.invoke(new FimiTask(path,chunks,null,null,0,chunks.length));
+        Labels attributes = new Labels();
+        long rowLength = 0;
+        long line = 1;
+        for(Chunk chunk : chunks){
+            if(chunk.error != null){
+                // 正しい行番号を付けるために, ファイルの頭から区切らずに読み直して同じ誤りを見つける.
+                try(Input in = new Input(path)){
+                    parseFimi(in,new Labels(),null,0,0);
+                }
+                throw chunk.error;
+            }
+            attributes.addAll(chunk.labels);
+            chunk.labels = null;
+            chunk.firstRow = (int)rowLength;
+            chunk.firstLine = line;
+            rowLength += chunk.rowLength;
+            line += chunk.lineLength;
+            if(rowLength > MAX_ARRAY){
+                throw new IOException(path + ": too many transactions");
+            }
+        }
+
+        // 2回目. 範囲ごとに自分の行のビット列を作って詰める.
+        long[][] rows = new long[(int)rowLength][];
+        attributes.freeze();
+        pool.invoke(new FimiTask(path,chunks,attributes,rows,0,chunks.length));
+        for(Chunk chunk : chunks){
+            if(chunk.error != null){
+                throw chunk.error;
+            }
+        }
+        return new FormalContext(sequence(rows.length),attributes.distinct,rows);
+    }
+
+
+    /**
+     * 接続関係の CSV 形式(.csv)のファイルを読み込むメソッド.
+     * オブジェクト番号と属性番号はファイルに書かれた非負整数をそのまま使う.
+     * @param path ファイル
+     * @return     コンテクスト表
+     * @exception IOException 読み込みに失敗した場合や, 形式が正しくない場合
+     */
+    public FormalContext readCsv(Path path) throws IOException{
+        Labels objects = new Labels();
+        Labels attributes = new Labels();
+        try(Input in = new Input(path)){
+            parseCsv(in,objects,attributes,null);
+        }
+
+        long[][] rows = new long[objects.freeze().length][BitVectors.words(attributes.freeze().length)];
+        try(Input in = new Input(path)){
+            parseCsv(in,objects,attributes,rows);
+        }
+        return new FormalContext(objects.distinct,attributes.distinct,rows);
+    }
+
+
+    /**
+     * 直前に読んだ .cxt のオブジェクト名を返すメソッド. i 番目がオブジェクト番号 i+1 の名前.
+     * @return オブジェクト名
+     */
+    public String[] getObjectNames(){
+        return objectNames;
+    }
+
+
+    /**
+     * 直前に読んだ .cxt の属性名を返すメソッド. i 番目が属性番号 i+1 の名前.
+     * @return 属性名
+     */
+    public String[] getAttributeNames(){
+        return attributeNames;
+    }
+
+
+    /**
+     * 拡張子から形式を判断してコンテクスト表を読み込むメソッド.
+     * @param fileName ファイル名
+     * @return         コンテクスト表
+     * @exception IOException 読み込みに失敗した場合や, 形式が正しくない場合
+     */
+    public static FormalContext load(String fileName) throws IOException{
+        return new FormalContextReader().read(Paths.get(fileName));
+    }
+
+
+
+    /////////////////////
+    // Private Methods //
+    /////////////////////
+
+    /**
+     * FIMI 形式のファイルの範囲を1回読むメソッド.
+     * rows が null ならば現れた属性番号を attributes に集め, そうでなければ rows に接続関係を詰める.
+     * @param in         入力
+     * @param attributes 属性番号. rows を渡すときは freeze() したもの.
+     * @param rows       接続関係を詰めるビット列. [オブジェクト][属性]. 数えるだけならば null.
+     * @param firstRow   範囲の最初のトランザクションの番号(0から)
+     * @param rowEnd     範囲のトランザクションの番号の終わり(これを含まない). 数えるだけならば使わない.
+     * @return           範囲のトランザクションの数
+     * @exception IOException 読み込みに失敗した場合や, 形式が正しくない場合
+     */
+    private static int parseFimi(Input in, Labels attributes, long[][] rows, int firstRow, int rowEnd)
+        throws IOException{
+
+        // バッファ単位で1バイトずつ見ていく. 数の途中でバッファが切れてもよいように,
+        // 読みかけの数は value に持ち越す.
+        int value = -1; // 読みかけの数. 数の外ならば -1.
+        int g = firstRow; // 今のトランザクションの番号(0から).
+        boolean lineIsEmpty = true;
+        do{
+            byte[] bytes = in.bytes;
+            for(int i=in.position;i<in.limit;i++){
+                int c = bytes[i];
+                if(c >= '0' && c <= '9'){
+                    if(value < 0){
+                        value = 0;
+                    }else if(value > MAX_VALUE / 10){
+                        throw in.error("number too large");
+                    }
+                    value = value * 10 + (c - '0');
+                    continue;
+                }
+                if(value >= 0){
+                    put(in,attributes,rows,g,rowEnd,value);
+                    value = -1;
+                    lineIsEmpty = false;
+                }
+                if(c == '\n'){
+                    g = nextRow(in,g);
+                    in.line++;
+                    lineIsEmpty = true;
+                }else if(c != ' ' && c != '\t' && c != '\r' && c != ','){
+                    throw in.error("unexpected character '" + (char)(c & 0xff) + "'");
+                }
+            }
+            in.position = in.limit;
+        }while(in.fill());
+
+        if(value >= 0){
+            put(in,attributes,rows,g,rowEnd,value);
+            lineIsEmpty = false;
+        }
+        if(!lineIsEmpty){
+            g = nextRow(in,g);
+        }
+        return g - firstRow;
+    }
+
+
+    /**
+     * CSV 形式のファイルを1回読むメソッド.
+     * rows が null ならば現れた番号を objects と attributes に集め, そうでなければ rows に接続関係を詰める.
+     * @param in         入力
+     * @param objects    オブジェクト番号. rows を渡すときは freeze() したもの.
+     * @param attributes 属性番号. rows を渡すときは freeze() したもの.
+     * @param rows       接続関係を詰めるビット列. [オブジェクト][属性]. 数えるだけならば null.
+     * @exception IOException 読み込みに失敗した場合や, 形式が正しくない場合
+     */
+    private static void parseCsv(Input in, Labels objects, Labels attributes, long[][] rows) throws IOException{
+
+        // 数字で始まらない1行目は見出し. 数字ならば読んだ1バイトを戻す.
+        int c = in.read();
+        if(c >= '0' && c <= '9'){
+            in.position--;
+        }else if(c >= 0){
+            while(c >= 0 && c != '\n'){
+                c = in.read();
+            }
+            in.line++;
+        }
+
+        int value = -1; // 読みかけの数. 数の外ならば -1.
+        int first = -1; // 行の1つ目の数. まだ無ければ -1.
+        boolean second = false; // 行の2つ目の数を読んだならば真.
+        do{
+            byte[] bytes = in.bytes;
+            for(int i=in.position;i<in.limit;i++){
+                c = bytes[i];
+                if(c >= '0' && c <= '9'){
+                    if(value < 0){
+                        if(second){
+                            throw in.error("more than two values");
+                        }
+                        value = 0;
+                    }else if(value > MAX_VALUE / 10){
+                        throw in.error("number too large");
+                    }
+                    value = value * 10 + (c - '0');
+                    continue;
+                }
+                if(value >= 0){
+                    if(first < 0){
+                        first = value;
+                    }else{
+                        put(in,objects,attributes,rows,first,value);
+                        second = true;
+                    }
+                    value = -1;
+                }
+                if(c == '\n'){
+                    if(first >= 0 && !second){
+                        throw in.error("expected object and attribute");
+                    }
+                    in.line++;
+                    first = -1;
+                    second = false;
+                }else if(c != ',' && c != ';' && c != ' ' && c != '\t' && c != '\r'){
+                    throw in.error("unexpected character '" + (char)(c & 0xff) + "'");
+                }
+            }
+            in.position = in.limit;
+        }while(in.fill());
+
+        if(value >= 0){
+            if(first < 0 || second){
+                throw in.error(second ? "more than two values" : "expected object and attribute");
+            }
+            put(in,objects,attributes,rows,first,value);
+        }else if(first >= 0 && !second){
+            throw in.error("expected object and attribute");
+        }
+    }
+
+
+    /**
+     * FIMI 形式の属性番号を1つ, 集めるか g 番目の行に詰めるメソッド.
+     * @param in         入力
+     * @param attributes 属性番号
+     * @param rows       ビット列. 集めるだけならば null.
+     * @param g          行
+     * @param rowEnd     範囲の行の終わり(これを含まない)
+     * @param label      属性番号
+     * @exception IOException 2回目に読んだときにファイルが変わっていた場合
+     */
+    private static void put(Input in, Labels attributes, long[][] rows, int g, int rowEnd, int label)
+        throws IOException{
+        if(rows == null){
+            attributes.add(label);
+            return;
+        }
+        int m = attributes.position(label);
+        if(g >= rowEnd || m < 0){
+            throw in.error("file changed while reading");
+        }
+        rows[g][m >>> 6] |= 1L << m;
+    }
+
+
+    /**
+     * CSV 形式の接続関係を1組, 集めるかビット列に詰めるメソッド.
+     * @param in              入力
+     * @param objects         オブジェクト番号
+     * @param attributes      属性番号
+     * @param rows            ビット列. 集めるだけならば null.
+     * @param objectLabel     オブジェクト番号
+     * @param attributeLabel  属性番号
+     * @exception IOException 2回目に読んだときにファイルが変わっていた場合
+     */
+    private static void put(Input in, Labels objects, Labels attributes, long[][] rows,
+                            int objectLabel, int attributeLabel) throws IOException{
+        if(rows == null){
+            objects.add(objectLabel);
+            attributes.add(attributeLabel);
+            return;
+        }
+        int g = objects.position(objectLabel);
+        int m = attributes.position(attributeLabel);
+        if(g < 0 || m < 0){
+            throw in.error("file changed while reading");
+        }
+        rows[g][m >>> 6] |= 1L << m;
+    }
+
+
+    /**
+     * トランザクションの数を1つ進めるメソッド.
+     * @param in 入力
+     * @param g  今の数
+     * @return   次の数
+     * @exception IOException 配列に収まらないほど多い場合
+     */
+    private static int nextRow(Input in, int g) throws IOException{
+        if(g == MAX_ARRAY){
+            throw in.error("too many transactions");
+        }
+        return g + 1;
+    }
+
+
+    /**
+     * ファイルを行の境目で並列に読む範囲に区切るメソッド.
+     * 範囲は CHUNK_SIZE 以上で, 数は並列度の4倍までとする.
+     * @param path ファイル
+     * @return     範囲
+     * @exception IOException 読み込みに失敗した場合
+     */
+    private static Chunk[] split(Path path) throws IOException{
+        try(FileChannel channel = FileChannel.open(path,StandardOpenOption.READ)){
+            long size = channel.size();
+            int count = (int)Math.max(1,Math.min(size / CHUNK_SIZE,4L * ForkJoinPool.getCommonPoolParallelism()));
+            Chunk[] chunks = new Chunk[count];
+            ByteBuffer buffer = ByteBuffer.allocate(4096);
+            long start = 0;
+            int length = 0;
+            for(int k=1;k<=count;k++){
+                long end = size;
+                if(k < count){
+                    // 区切りの候補から次の改行の後ろまで進める.
+                    end = Math.max(start,size / count * k);
+                    boolean found = false;
+                    while(!found && end < size){
+                        buffer.clear();
+                        int n = channel.read(buffer,end);
+                        for(int i=0;i<n && !found;i++){
+                            found = buffer.get(i) == '\n';
+                            end++;
+                        }
+                    }
+                }
+                if(end > start || k == count){
+                    chunks[length++] = new Chunk(start,end);
+                    start = end;
+                }
+            }
+            return Arrays.copyOf(chunks,length);
+        }
+    }
+
+
+    /**
+     * .cxt のオブジェクト数や属性数を読むメソッド.
+     * @param in   入力
+     * @param line 行
+     * @return     個数
+     * @exception IOException 数でない場合
+     */
+    private static int parseCount(Input in, String line) throws IOException{
+        if(line == null || !isNumber(line)){
+            throw in.error("expected a number but found " + (line == null ? "end of file" : "'" + line + "'"));
+        }
+        return Integer.parseInt(line.trim());
+    }
+
+
+    /**
+     * 文字列が非負整数かを返すメソッド.
+     * @param line 文字列
+     * @return     非負整数ならば真
+     */
+    private static boolean isNumber(String line){
+        String trimmed = line.trim();
+        if(trimmed.isEmpty() || trimmed.length() > 9){
+            return false;
+        }
+        for(int i=0;i<trimmed.length();i++){
+            if(trimmed.charAt(i) < '0' || trimmed.charAt(i) > '9'){
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * 1 から length までの番号を返すメソッド.
+     * @param length 個数
+     * @return       番号の配列
+     */
+    private static int[] sequence(int length){
+        int[] array = new int[length];
+        for(int i=0;i<length;i++){
+            array[i] = i+1;
+        }
+        return array;
+    }
+
+
+
+    ///////////////////
+    // Inner Classes //
+    ///////////////////
+
+    /**
+     * FileChannel から固定長のバッファに読み込みながら1バイトずつ返す入力.
+     */
+    private static final class Input implements AutoCloseable{
+
+        FileChannel channel; // ファイル.
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE); // 読み込みバッファ.
+        byte[] bytes = buffer.array(); // バッファの中身.
+        int position = 0; // 次に返すバイトの位置.
+        int limit = 0; // バッファに読み込んだバイト数.
+        long line = 1; // 今読んでいる行番号. エラーメッセージに使う.
+        Path path; // ファイル名. エラーメッセージに使う.
+        long offset; // 次にバッファに読み込む位置.
+        long end; // 読む範囲の終わり(これを含まない).
+
+        Input(Path path) throws IOException{
+            this(path,0,Long.MAX_VALUE);
+        }
+
+        /**
+         * ファイルの一部の範囲だけを読む入力を作る.
+         * @param path  ファイル
+         * @param start 範囲の始め
+         * @param end   範囲の終わり(これを含まない)
+         */
+        Input(Path path, long start, long end) throws IOException{
+            this.path = path;
+            this.offset = start;
+            this.end = end;
+            channel = FileChannel.open(path,StandardOpenOption.READ);
+        }
+
+        /**
+         * 次の1バイトを返すメソッド.
+         * @return 0 から 255. ファイルの終わりならば -1.
+         */
+        int read() throws IOException{
+            if(position == limit && !fill()){
+                return -1;
+            }
+            return bytes[position++] & 0xff;
+        }
+
+        /**
+         * 1行を文字列として読むメソッド. .cxt の見出しの部分にだけ使う.
+         * @return 行. 改行は含まない. ファイルの終わりならば null.
+         */
+        String readLine() throws IOException{
+            int c = read();
+            if(c < 0){
+                return null;
+            }
+            byte[] chars = new byte[64];
+            int length = 0;
+            while(c >= 0 && c != '\n'){
+                if(c != '\r'){
+                    if(length == chars.length){
+                        chars = Arrays.copyOf(chars,length * 2);
+                    }
+                    chars[length++] = (byte)c;
+                }
+                c = read();
+            }
+            line++;
+            return new String(chars,0,length,StandardCharsets.UTF_8);
+        }
+
+        /**
+         * 空行を読み飛ばして1行を読むメソッド.
+         * @return 行. ファイルの終わりならば null.
+         */
+        String readNonEmptyLine() throws IOException{
+            String text = readLine();
+            while(text != null && text.trim().isEmpty()){
+                text = readLine();
+            }
+            return text;
+        }
+
+        /**
+         * .cxt のオブジェクト名や属性名を読むメソッド.
+         * 数の後の空行だけは読み飛ばし, それ以外の空行は空の名前とする.
+         * @param first 最初の名前ならば真
+         * @return      名前
+         */
+        String readNameLine(boolean first) throws IOException{
+            String text = first ? readNonEmptyLine() : readLine();
+            if(text == null){
+                throw error("unexpected end of file");
+            }
+            return text;
+        }
+
+        /**
+         * 行番号を付けた例外を作るメソッド.
+         * @param message メッセージ
+         * @return        例外
+         */
+        IOException error(String message){
+            return new IOException(path + ":" + line + ": " + message);
+        }
+
+        /**
+         * バッファに続きを読み込むメソッド. バッファに残っていたバイトは捨てる.
+         * @return 読み込めたら真, ファイルの終わりならば偽
+         */
+        boolean fill() throws IOException{
+            if(offset >= end){
+                return false;
+            }
+            buffer.clear();
+            buffer.limit((int)Math.min(buffer.capacity(),end - offset));
+            int n;
+            do{
+                n = channel.read(buffer,offset);
+            }while(n == 0);
+            if(n < 0){
+                return false;
+            }
+            offset += n;
+            position = 0;
+            limit = n;
+            return true;
+        }
+
+        // @Override
+        public void close() throws IOException{
+            channel.close();
+        }
+    }
+
+
+    /**
+     * FIMI 形式のファイルを並列に読むときの1つの範囲. 範囲の始めは行の始めになっている.
+     */
+    private static final class Chunk{
+
+        long start; // 範囲の始め.
+        long end; // 範囲の終わり(これを含まない).
+        Labels labels = new Labels(); // 1回目に範囲で集めた属性番号.
+        int rowLength; // 範囲のトランザクションの数.
+        long lineLength; // 範囲の行数.
+        int firstRow; // 範囲の最初のトランザクションの番号(0から).
+        long firstLine; // 範囲の最初の行番号. エラーメッセージに使う.
+        IOException error; // 読み込みに失敗した場合の例外.
+
+        Chunk(long start, long end){
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+
+    /**
+     * FIMI 形式のファイルの範囲を読むタスク. 範囲が2つ以上あれば半分に分ける.
+     * rows が null ならば1回目(数えるだけ), そうでなければ2回目(ビット列に詰める).
+     */
+    private static final class FimiTask extends RecursiveAction{
+
+        private static final long serialVersionUID = 1L;
+
+        Path path; // ファイル.
+        Chunk[] chunks; // 全ての範囲.
+        Labels attributes; // freeze() した属性番号. 1回目は null.
+        long[][] rows; // 接続関係を詰めるビット列. 1回目は null.
+        int from; // 受け持つ範囲の始め.
+        int to; // 受け持つ範囲の終わり(これを含まない).
+
+        FimiTask(Path path, Chunk[] chunks, Labels attributes, long[][] rows, int from, int to){
+            this.path = path;
+            this.chunks = chunks;
+            this.attributes = attributes;
+            this.rows = rows;
+            this.from = from;
+            this.to = to;
+        }
+
+        // @Override
+        protected void compute(){
+            if(to - from > 1){
+                int middle = (from + to) >>> 1;
+                invokeAll(new FimiTask(path,chunks,attributes,rows,from,middle),
+                          new FimiTask(path,chunks,attributes,rows,middle,to));
+                return;
+            }
+
+            Chunk chunk = chunks[from];
+            try(Input in = new Input(path,chunk.start,chunk.end)){
+                if(rows == null){
+                    chunk.rowLength = parseFimi(in,chunk.labels,null,0,0);
+                    chunk.lineLength = in.line - 1;
+                    return;
+                }
+                int rowEnd = chunk.firstRow + chunk.rowLength;
+                int words = BitVectors.words(attributes.distinct.length);
+                for(int g=chunk.firstRow;g<rowEnd;g++){
+                    rows[g] = new long[words];
+                }
+                in.line = chunk.firstLine;
+                if(parseFimi(in,attributes,rows,chunk.firstRow,rowEnd) != chunk.rowLength){
+                    throw in.error("file changed while reading");
+                }
+            }catch(IOException e){
+                chunk.error = e;
+            }
+        }
+    }
+
+
+    /**
+     * 現れた番号を重複なく集め, 番号からビット位置を引けるようにするもの.
+     * MAX_TABLE 未満の番号はビット列で, それ以上の番号は整列した int の配列で覚える.
+     * 集め終わったら freeze() を呼び, その後は position() でビット位置を引く.
+     */
+    private static final class Labels{
+
+        long[] seen = new long[16]; // MAX_TABLE 未満の番号のビット列.
+        int[] ranks; // seen の各語より前にある番号の数.
+        int[] large = new int[16]; // MAX_TABLE 以上の番号. あふれるたびに整列して重複を除く.
+        int largeSize = 0; // large の値の数.
+        int[] distinct; // 昇順に並べた番号. ビット位置から番号への対応表.
+
+        void add(int label){
+            if(label < MAX_TABLE){
+                int w = label >>> 6;
+                if(w >= seen.length){
+                    seen = Arrays.copyOf(seen,Math.min(Math.max(w+1,seen.length*2),MAX_TABLE >>> 6));
+                }
+                seen[w] |= 1L << label;
+                return;
+            }
+            if(largeSize == large.length){
+                compact();
+                if(largeSize > large.length / 2){
+                    // 番号は MAX_VALUE 以下なので, 重複を除けば配列の上限の半分に収まる.
+                    large = Arrays.copyOf(large,(int)Math.min(2L * large.length,MAX_ARRAY));
+                }
+            }
+            large[largeSize++] = label;
+        }
+
+        /**
+         * 別の範囲で集めた番号を加えるメソッド.
+         * @param other 集めた番号
+         */
+        void addAll(Labels other){
+            if(other.seen.length > seen.length){
+                seen = Arrays.copyOf(seen,other.seen.length);
+            }
+            for(int w=0;w<other.seen.length;w++){
+                seen[w] |= other.seen[w];
+            }
+            for(int i=0;i<other.largeSize;i++){
+                add(other.large[i]);
+            }
+        }
+
+        /**
+         * 集め終わった番号を昇順に並べるメソッド.
+         * @return 昇順に並べた番号
+         */
+        int[] freeze(){
+            compact();
+            ranks = new int[seen.length];
+            int small = 0;
+            for(int w=0;w<seen.length;w++){
+                ranks[w] = small;
+                small += Long.bitCount(seen[w]);
+            }
+            distinct = new int[small + largeSize];
+            int index = 0;
+            for(int label=BitVectors.nextSetBit(seen,0);label>=0;label=BitVectors.nextSetBit(seen,label+1)){
+                distinct[index++] = label;
+            }
+            System.arraycopy(large,0,distinct,small,largeSize);
+            return distinct;
+        }
+
+        /**
+         * 番号のビット位置を返すメソッド. freeze() の後で呼ぶ.
+         * @param label 番号
+         * @return      ビット位置. 集めた番号に無ければ -1.
+         */
+        int position(int label){
+            if(label < MAX_TABLE){
+                int w = label >>> 6;
+                if(w >= seen.length || (seen[w] & (1L << label)) == 0){
+                    return -1;
+                }
+                return ranks[w] + Long.bitCount(seen[w] & ((1L << label) - 1));
+            }
+            int i = Arrays.binarySearch(large,0,largeSize,label);
+            return i < 0 ? -1 : distinct.length - largeSize + i;
+        }
+
+        private void compact(){
+            Arrays.sort(large,0,largeSize);
+            int length = 0;
+            for(int i=0;i<largeSize;i++){
+                if(length == 0 || large[length-1] != large[i]){
+                    large[length++] = large[i];
+                }
+            }
+            largeSize = length;
+        }
+    }
+
+
+
+    //////////
+    // Test //
+    //////////
+
+    public static void main(String args[]) throws IOException{
+
+        // 引数のファイルを読み込んで解析する. 引数が無ければ小さな .cxt を作って読む.
+        Path path;
+        if(args.length > 0){
+            path = Paths.get(args[0]);
+        }else{
+            path = Files.createTempFile("context",".cxt");
+            path.toFile().deleteOnExit();
+            String cxt = "B\n\n5\n4\n\ng1\ng2\ng3\ng4\ng5\nm1\nm2\nm3\nm4\n"
+                + ".XXX\nX.XX\nX.X.\nX.X.\nX...\n";
+            Files.write(path,cxt.getBytes(StandardCharsets.UTF_8));
+        }
+
+        long start = System.nanoTime();
+        FormalContext context = new FormalContextReader().read(path);
+        long elapsed = System.nanoTime() - start;
+        System.out.println(context.getObjectLength() + " objects, "
+                           + context.getAttributeLength() + " attributes, read in "
+                           + elapsed / 1000000 + " ms");
+
+        if(context.getObjectLength() <= 64){
+            System.out.println("{attributes}  :  {objects}");
+            for(Tupple tupple : new FormalConceptNextClosureAnalyzer(context).analizeInLecticOrder()){
+                System.out.println(tupple.getAttributeSubset() + "  :  " + tupple.getObjectSubset());
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+import java.util.HashSet;
+
+/**
+ * 属性の含意 (前提 → 結論) を表すオブジェクトクラス.
+ * 前提の属性を全て持つオブジェクトは, 結論の属性も全て持つことを表す.
+ * 前提と結論の実体は Tupple と同じく PackedBitSet で, 属性番号で持つ.
+ *
+ * @author  uehashu
+ * @version 1.0
+ */
+public class Implication{
+
+    PackedBitSet premiseBits; // 前提の属性集合.
+    PackedBitSet conclusionBits; // 結論の属性集合. 前提の属性は含まない.
+    int support; // 前提の属性を全て持つオブジェクトの数.
+
+
+    //////////////////
+    // Constructors //
+    //////////////////
+
+    /**
+     * ビット列をそのまま使うコンストラクタ. ビット列はコピーされないことに注意する.
+     * @param premiseBits    前提の属性集合
+     * @param conclusionBits 結論の属性集合
+     * @param support        前提の属性を全て持つオブジェクトの数
+     */
+    public Implication(PackedBitSet premiseBits, PackedBitSet conclusionBits, int support){
+        this.premiseBits = premiseBits;
+        this.conclusionBits = conclusionBits;
+        this.support = support;
+    }
+
+
+
+    /////////////
+    // Methods //
+    /////////////
+
+    /**
+     * 前提の属性集合を返すメソッド.
+     * 返されるコレクションへの変更はこの含意に反映される.
+     * @return 前提の属性集合
+     */
+    public HashSet<Integer> getPremise(){
+        return new PackedBitSetView(premiseBits);
+    }
+
+
+    /**
+     * 結論の属性集合を返すメソッド.
+     * 返されるコレクションへの変更はこの含意に反映される.
+     * @return 結論の属性集合
+     */
+    public HashSet<Integer> getConclusion(){
+        return new PackedBitSetView(conclusionBits);
+    }
+
+
+    /**
+     * 前提の属性集合のビット列を返すメソッド.
+     * @return ビット列
+     */
+    public PackedBitSet getPremiseBits(){
+        return premiseBits;
+    }
+
+
+    /**
+     * 結論の属性集合のビット列を返すメソッド.
+     * @return ビット列
+     */
+    public PackedBitSet getConclusionBits(){
+        return conclusionBits;
+    }
+
+
+    /**
+     * 前提の属性を全て持つオブジェクトの数を返すメソッド.
+     * @return オブジェクトの数
+     */
+    public int getSupport(){
+        return support;
+    }
+
+
+    /**
+     * 含意を文字列で返すメソッド.
+     * @return "前提 -> 結論" の形の文字列
+     */
+    // @Override
+    public String toString(){
+        return premiseBits + " -> " + conclusionBits;
+    }
+}
@@ -0,0 +1,296 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * コンテクスト表の属性の含意の基底 (Duquenne-Guigues 基底, stem base) を計算するクラス.
+ * 基底の前提は擬内包 (pseudo-intent) で, 全ての含意はこの基底から導ける.
+ * 含まれる含意の数は, そのような基底の中で最小になる.
+ *
+ * Ganter のアルゴリズムで, 基底の含意について閉じた属性集合 (内包と擬内包) を
+ * NextClosure で辞書式順序に列挙し, 内包でないものを前提として含意を追加する.
+ * 含意による閉包は LinClosure のように, 前提ごとに足りない属性の数を数えておくことで
+ * 含意の大きさの和に比例する時間で求める.
+ * 概念束は保持せず, 使用メモリは基底の大きさと属性数に比例する.
+ *
+ * 属性番号は FormalConceptParallelAnalyzer などと同じく, コンテクスト表から作ったならば1から始まる.
+ *
+ * @author  uehashu
+ * @version 1.0
+ */
+public class ImplicationBasis{
+
+    FormalContext context; // ビット列で保持したコンテクスト表.
+    int[][] premises = new int[16][]; // 各含意の前提. 属性のビット位置.
+    int[][] conclusions = new int[16][]; // 各含意の結論. 前提の属性は含まない.
+    int count = 0; // 含意の数.
+    int[][] uses; // 属性ごとに, その属性を前提に含む含意の番号.
+    int[] useCounts; // 属性ごとの uses の長さ.
+    int[] counters = new int[16]; // 閉包の計算中, 各含意の前提で足りない属性の数.
+    int[] ready = new int[16]; // 前提が揃って, まだ適用していない含意.
+    int[] queue; // 閉包に加えて, まだ含意の数え直しをしていない属性.
+    ArrayList<Implication> basis; // 計算した基底. まだ計算していなければ null.
+
+
+    //////////////////
+    // Constructors //
+    //////////////////
+
+    /**
+     * @param contextTable コンテクスト表. [オブジェクト]x[属性]
+     */
+    public ImplicationBasis(boolean[][] contextTable){
+        this(new FormalContext(contextTable));
+    }
+
+
+    /**
+     * @param context コンテクスト表
+     */
+    public ImplicationBasis(FormalContext context){
+        this.context = context;
+    }
+
+
+
+    /////////////
+    // Methods //
+    /////////////
+
+    /**
+     * 基底を計算するメソッド. 前提は辞書式順序で並ぶ.
+     * @return 基底の含意. 結論は前提の閉包から前提を除いたもの.
+     */
+    public ArrayList<Implication> calc(){
+
+        int attributeLength = context.getAttributeLength();
+        premises = new int[16][];
+        conclusions = new int[16][];
+        count = 0;
+        uses = new int[attributeLength][];
+        useCounts = new int[attributeLength];
+        queue = new int[attributeLength];
+        basis = new ArrayList<>();
+
+        // 含意が無いときの空集合の閉包は空集合.
+        long[] intent = context.newIntent();
+        long[] extent = context.newExtent();
+        long[] closure = context.newIntent();
+        long[] candidate = context.newIntent();
+        while(true){
+
+            // 閉じていなければ擬内包なので, 閉包を結論とする含意を加える.
+            context.closeIntent(intent,extent,closure);
+            if(!Arrays.equals(intent,closure)){
+                add(intent,closure,BitVectors.cardinality(extent));
+            }
+            if(BitVectors.cardinality(intent) == attributeLength || !next(intent,candidate)){
+                break;
+            }
+        }
+        return basis;
+    }
+
+
+    /**
+     * 属性集合を基底の含意で閉じるメソッド. 結果はコンテクスト表での閉包と同じになる.
+     * まだ基底を計算していなければ先に計算する.
+     * @param attributes 属性番号の集合. 知らない番号は無視する.
+     * @return           閉包. 属性番号の集合.
+     */
+    public PackedBitSet close(PackedBitSet attributes){
+        if(basis == null){
+            calc();
+        }
+        long[] set = context.packAttributes(attributes);
+        close(set,0,set,false);
+        return context.unpackAttributes(set);
+    }
+
+
+    /**
+     * 基底を計算するメソッド.
+     * @param contextTable コンテクスト表. [オブジェクト]x[属性]
+     * @return             基底の含意
+     */
+    public static ArrayList<Implication> calc(boolean[][] contextTable){
+        return new ImplicationBasis(contextTable).calc();
+    }
+
+
+
+    /////////////////////
+    // Private Methods //
+    /////////////////////
+
+    /**
+     * 今の含意について閉じた, 辞書式順序で次の属性集合を求めるメソッド (NextClosure).
+     * @param intent    今の属性集合. 次の属性集合に書き換える.
+     * @param candidate 作業用のビット列
+     * @return          次があれば真
+     */
+    private boolean next(long[] intent, long[] candidate){
+        for(int i=context.getAttributeLength()-1;i>=0;i--){
+
+            // intent には i 未満の属性だけを残していく.
+            if(BitVectors.get(intent,i)){
+                BitVectors.clear(intent,i);
+                continue;
+            }
+            System.arraycopy(intent,0,candidate,0,intent.length);
+            BitVectors.set(candidate,i);
+            if(close(candidate,i,intent,true)){
+                System.arraycopy(candidate,0,intent,0,intent.length);
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * 属性集合を含意で閉じるメソッド (LinClosure).
+     * 含意ごとに前提で足りない属性の数を数えておき, 属性を加えるたびに
+     * その属性を前提に含む含意だけを数え直す.
+     * strict ならば前提が集合と等しい含意は適用しない(擬閉包の計算に使う).
+     * limit 未満で base に無い属性が加わったら, そこで計算をやめる.
+     * @param set    閉じる属性集合. 閉包に書き換える.
+     * @param limit  これ未満の属性が加わったら失敗とする. 0 ならば失敗しない.
+     * @param base   limit 未満の属性で, 加わってもよいもの
+     * @param strict 前提が集合より真に小さい含意だけを適用するならば真
+     * @return       最後まで閉じたならば真
+     */
+    private boolean close(long[] set, int limit, long[] base, boolean strict){
+        int size = 0;
+        int queueLength = 0;
+        int readyLength = 0;
+        for(int k=0;k<count;k++){
+            counters[k] = premises[k].length;
+            if(counters[k] == 0){
+                ready[readyLength++] = k;
+            }
+        }
+        for(int m=BitVectors.nextSetBit(set,0);m>=0;m=BitVectors.nextSetBit(set,m+1)){
+            queue[queueLength++] = m;
+            size++;
+        }
+
+        while(true){
+
+            // 加わった属性を前提に含む含意を数え直す.
+            while(queueLength > 0){
+                int m = queue[--queueLength];
+                int[] indices = uses[m];
+                for(int u=0;u<useCounts[m];u++){
+                    if(--counters[indices[u]] == 0){
+                        ready[readyLength++] = indices[u];
+                    }
+                }
+            }
+
+            // 前提が揃った含意を適用する. strict で前提が集合と等しいものは残しておく.
+            int kept = 0;
+            for(int r=0;r<readyLength;r++){
+                int k = ready[r];
+                if(strict && premises[k].length >= size){
+                    ready[kept++] = k;
+                    continue;
+                }
+                for(int m : conclusions[k]){
+                    if(!BitVectors.get(set,m)){
+                        if(m < limit && !BitVectors.get(base,m)){
+                            return false;
+                        }
+                        BitVectors.set(set,m);
+                        queue[queueLength++] = m;
+                        size++;
+                    }
+                }
+            }
+            readyLength = kept;
+            if(queueLength == 0){
+                return true;
+            }
+        }
+    }
+
+
+    /**
+     * 含意を基底に加えるメソッド.
+     * @param premise 前提. 擬内包.
+     * @param closure 前提の閉包
+     * @param support 前提の属性を全て持つオブジェクトの数
+     */
+    private void add(long[] premise, long[] closure, int support){
+        long[] conclusion = closure.clone();
+        for(int w=0;w<conclusion.length;w++){
+            conclusion[w] &= ~premise[w];
+        }
+
+        if(count == premises.length){
+            premises = Arrays.copyOf(premises,count*2);
+            conclusions = Arrays.copyOf(conclusions,count*2);
+            counters = new int[count*2];
+            ready = new int[count*2];
+        }
+        premises[count] = positions(premise);
+        conclusions[count] = positions(conclusion);
+        for(int m : premises[count]){
+            if(uses[m] == null){
+                uses[m] = new int[4];
+            }else if(useCounts[m] == uses[m].length){
+                uses[m] = Arrays.copyOf(uses[m],useCounts[m]*2);
+            }
+            uses[m][useCounts[m]++] = count;
+        }
+        count++;
+
+        basis.add(new Implication(context.unpackAttributes(premise),
+                                  context.unpackAttributes(conclusion),
+                                  support));
+    }
+
+
+    /**
+     * ビット列の立っている位置を並べるメソッド.
+     * @param vector ビット列
+     * @return       位置の配列
+     */
+    private static int[] positions(long[] vector){
+        int[] positions = new int[BitVectors.cardinality(vector)];
+        int i = 0;
+        for(int m=BitVectors.nextSetBit(vector,0);m>=0;m=BitVectors.nextSetBit(vector,m+1)){
+            positions[i++] = m;
+        }
+        return positions;
+    }
+
+
+
+    //////////
+    // Test //
+    //////////
+
+    public static void main(String args[]){
+
+        boolean t = true;
+        boolean f = false;
+
+        boolean[][] contextTable =
+        {{t,t,t,f},
+        {f,t,t,t},
+        {f,t,t,t},
+        {t,f,f,t}};
+
+        // 基底を表示する.
+        ImplicationBasis implicationBasis = new ImplicationBasis(contextTable);
+        System.out.println("{premise} -> {conclusion}  :  support");
+        for(Implication implication : implicationBasis.calc()){
+            System.out.println(implication + "  :  " + implication.getSupport());
+        }
+
+        // 基底で属性 1 の閉包を求める.
+        PackedBitSet attributes = new PackedBitSet();
+        attributes.add(1);
+        System.out.println("closure of " + attributes + " = " + implicationBasis.close(attributes));
+    }
+}
@@ -0,0 +1,385 @@
+import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+
+/**
+ * オブジェクトを1つずつ追加しながら概念束を更新していくクラス.
+ * AddIntent アルゴリズム(van der Merwe, Obiedkov, Kourie)によって,
+ * 新しいオブジェクトの属性部分集合から必要な形式概念だけを作り,
+ * ハッセ図の被覆関係もその場で張り替える.
+ * 追加にかかる時間は, 束のうち変化する部分の大きさで決まり, 束全体の大きさにはよらない.
+ *
+ * 属性の全集合は最初に決めておく必要がある.
+ *
+ * @author  uehashu
+ * @version 1.0
+ */
+public class IncrementalLattice{
+
+    PackedBitSet universeOfAttribute; // 属性の全集合.
+    ArrayList<Concept> concepts = new ArrayList<>(); // 形式概念の集合.
+    Concept bottom; // 最小の形式概念. 内包は属性の全集合.
+    HashMap<Integer,PackedBitSet> rows = new HashMap<>(); // 追加したオブジェクトが持つ属性.
+    int visitStamp = 0; // 上位の形式概念をたどるときの訪問済みの印.
+
+
+    //////////////////
+    // Constructors //
+    //////////////////
+
+    /**
+     * 属性番号が1から attributeLength までの束を作る.
+     * @param attributeLength 属性数
+     */
+    public IncrementalLattice(int attributeLength){
+        this(sequence(attributeLength));
+    }
+
+
+    /**
+     * @param universeOfAttribute 属性の全集合
+     */
+    public IncrementalLattice(HashSet<Integer> universeOfAttribute){
+        this.universeOfAttribute = new PackedBitSet();
+        for(Integer attribute : universeOfAttribute){
+            this.universeOfAttribute.add(attribute.intValue());
+        }
+        bottom = new Concept(new PackedBitSet(),this.universeOfAttribute.copy());
+        concepts.add(bottom);
+    }
+
+
+
+    /////////////
+    // Methods //
+    /////////////
+
+    /**
+     * コンテクスト表の1行をオブジェクトとして追加するメソッド.
+     * オブジェクト番号はこれまでに追加したオブジェクト数+1, 属性番号は列番号+1 とする.
+     * @param row オブジェクトが持つ属性. [属性]
+     * @return    追加したオブジェクトのオブジェクト概念
+     */
+    public Tupple addObject(boolean[] row){
+        PackedBitSet attributeBits = new PackedBitSet(row.length+1);
+        for(int m=0;m<row.length;m++){
+            if(row[m]){
+                attributeBits.add(m+1);
+            }
+        }
+        return addObject(rows.size()+1,attributeBits);
+    }
+
+
+    /**
+     * オブジェクトを追加するメソッド.
+     * @param object          オブジェクト番号
+     * @param attributeSubset オブジェクトが持つ属性
+     * @return                追加したオブジェクトのオブジェクト概念
+     */
+    public Tupple addObject(int object, HashSet<Integer> attributeSubset){
+        PackedBitSet attributeBits = new PackedBitSet();
+        for(Integer attribute : attributeSubset){
+            attributeBits.add(attribute.intValue());
+        }
+        return addObject(object,attributeBits);
+    }
+
+
+    /**
+     * オブジェクトを追加するメソッド.
+     * @param object        オブジェクト番号
+     * @param attributeBits オブジェクトが持つ属性
+     * @return              追加したオブジェクトのオブジェクト概念
+     */
+    public Tupple addObject(int object, PackedBitSet attributeBits){
+        if(rows.containsKey(object)){
+            throw new IllegalArgumentException("object " + object + " is already in the lattice");
+        }
+        if(!attributeBits.isSubsetOf(universeOfAttribute)){
+            throw new IllegalArgumentException("unknown attributes: "
+                                               + attributeBits.copy().andNot(universeOfAttribute));
+        }
+        rows.put(object,attributeBits.copy());
+
+        // オブジェクトの内包を持つ形式概念を作り(既にあればそれを使い),
+        // その形式概念とそれより上の全ての形式概念の外延にオブジェクトを加える.
+        Concept objectConcept = addIntent(attributeBits,bottom);
+        visitStamp++;
+        ArrayDeque<Concept> queue = new ArrayDeque<>();
+        objectConcept.visited = visitStamp;
+        queue.add(objectConcept);
+        while(!queue.isEmpty()){
+            Concept concept = queue.poll();
+            concept.extent.add(object);
+            for(Concept parent : concept.parents){
+                if(parent.visited != visitStamp){
+                    parent.visited = visitStamp;
+                    queue.add(parent);
+                }
+            }
+        }
+
+        return new Tupple(objectConcept.extent.copy(),objectConcept.intent.copy());
+    }
+
+
+    /**
+     * 形式概念の数を返すメソッド.
+     * @return 形式概念の数
+     */
+    public int size(){
+        return concepts.size();
+    }
+
+
+    /**
+     * 形式概念の集合を返すメソッド. 返したタプルは束の更新の影響を受けない.
+     * @return 形式概念の集合
+     */
+    public ArrayList<Tupple> getConcepts(){
+        ArrayList<Tupple> tupples = new ArrayList<>(concepts.size());
+        for(Concept concept : concepts){
+            tupples.add(new Tupple(concept.extent.copy(),concept.intent.copy()));
+        }
+        return tupples;
+    }
+
+
+    /**
+     * これまでに追加したオブジェクトからなるコンテクスト表を返すメソッド.
+     * @return コンテクスト表
+     */
+    public FormalContext getContext(){
+        int[] objects = new int[rows.size()];
+        int index = 0;
+        for(Integer object : rows.keySet()){
+            objects[index++] = object.intValue();
+        }
+        Arrays.sort(objects);
+
+        int[] attributes = new int[universeOfAttribute.cardinality()];
+        index = 0;
+        for(int m=universeOfAttribute.nextSetBit(0);m>=0;m=universeOfAttribute.nextSetBit(m+1)){
+            attributes[index++] = m;
+        }
+
+        FormalContext context = new FormalContext(objects,attributes,null);
+        long[][] objectRows = new long[objects.length][];
+        for(int g=0;g<objects.length;g++){
+            objectRows[g] = context.packAttributes(rows.get(objects[g]));
+        }
+        return new FormalContext(objects,attributes,objectRows);
+    }
+
+
+    /**
+     * 現在の束のハッセ図を返すメソッド. 被覆関係は計算し直さずにそのまま使う.
+     * @return ハッセ図
+     */
+    public FCAHasseDiagram toHasseDiagram(){
+        return new FCAHasseDiagram(toLatticeGraph());
+    }
+
+
+    /**
+     * 現在の束を, 番号で引く配列だけのハッセ図として返すメソッド.
+     * 被覆関係は計算し直さずにそのまま使う.
+     * @return ハッセ図の構造
+     */
+    public LatticeGraph toLatticeGraph(){
+        FormalContext context = getContext();
+        HashMap<Concept,Integer> ids = new HashMap<>();
+        long[][] extents = new long[concepts.size()][];
+        long[][] intents = new long[concepts.size()][];
+        for(int c=0;c<concepts.size();c++){
+            Concept concept = concepts.get(c);
+            ids.put(concept,c);
+            extents[c] = context.packObjects(concept.extent);
+            intents[c] = context.packAttributes(concept.intent);
+        }
+        int[][] upperCovers = new int[concepts.size()][];
+        for(int c=0;c<concepts.size();c++){
+            ArrayList<Concept> parents = concepts.get(c).parents;
+            upperCovers[c] = new int[parents.size()];
+            for(int k=0;k<parents.size();k++){
+                upperCovers[c][k] = ids.get(parents.get(k));
+            }
+        }
+        return new LatticeGraph(context,extents,intents,upperCovers);
+    }
+
+
+
+    /////////////////////
+    // Private Methods //
+    /////////////////////
+
+    /**
+     * 内包が intent である形式概念を, 必要なら作って返すメソッド(AddIntent).
+     * @param intent    内包
+     * @param generator 探索を始める形式概念. この形式概念の内包は intent を含むこと.
+     * @return          内包が intent である形式概念
+     */
+    private Concept addIntent(PackedBitSet intent, Concept generator){
+
+        generator = getMaximalConcept(intent,generator);
+        if(generator.intent.equals(intent)){
+            return generator;
+        }
+
+        // 新しい形式概念の親になる形式概念を集める.
+        ArrayList<Concept> newParents = new ArrayList<>();
+        for(Concept candidate : new ArrayList<>(generator.parents)){
+            if(!candidate.intent.isSubsetOf(intent)){
+                candidate = addIntent(candidate.intent.copy().and(intent),candidate);
+            }
+
+            boolean addParent = true;
+            Iterator<Concept> iterator = newParents.iterator();
+            while(iterator.hasNext()){
+                Concept parent = iterator.next();
+                if(candidate.intent.isSubsetOf(parent.intent)){
+                    addParent = false;
+                    break;
+                }else if(parent.intent.isSubsetOf(candidate.intent)){
+                    iterator.remove();
+                }
+            }
+            if(addParent){
+                newParents.add(candidate);
+            }
+        }
+
+        // 新しい形式概念を generator とその親の間に挿入する.
+        Concept newConcept = new Concept(generator.extent.copy(),intent.copy());
+        concepts.add(newConcept);
+        for(Concept parent : newParents){
+            unlink(parent,generator);
+            link(parent,newConcept);
+        }
+        link(newConcept,generator);
+
+        return newConcept;
+    }
+
+
+    /**
+     * generator から親をたどり, 内包が intent を含む最大の形式概念を返すメソッド.
+     * @param intent    内包
+     * @param generator 探索を始める形式概念
+     * @return          内包が intent を含む最大の形式概念
+     */
+    private Concept getMaximalConcept(PackedBitSet intent, Concept generator){
+        boolean parentIsMaximal = true;
+        while(parentIsMaximal){
+            parentIsMaximal = false;
+            for(Concept parent : generator.parents){
+                if(intent.isSubsetOf(parent.intent)){
+                    generator = parent;
+                    parentIsMaximal = true;
+                    break;
+                }
+            }
+        }
+        return generator;
+    }
+
+
+    /**
+     * 被覆関係を張るメソッド.
+     * @param parent 上の形式概念
+     * @param child  下の形式概念
+     */
+    private static void link(Concept parent, Concept child){
+        parent.children.add(child);
+        child.parents.add(parent);
+    }
+
+
+    /**
+     * 被覆関係を外すメソッド. 無ければ何もしない.
+     * @param parent 上の形式概念
+     * @param child  下の形式概念
+     */
+    private static void unlink(Concept parent, Concept child){
+        parent.children.remove(child);
+        child.parents.remove(parent);
+    }
+
+
+    /**
+     * 1 から length までの番号の集合を返すメソッド.
+     * @param length 個数
+     * @return       番号の集合
+     */
+    private static HashSet<Integer> sequence(int length){
+        HashSet<Integer> set = new HashSet<>();
+        for(int i=1;i<=length;i++){
+            set.add(i);
+        }
+        return set;
+    }
+
+
+
+    ///////////////////
+    // Inner Classes //
+    ///////////////////
+
+    /**
+     * 束の中の形式概念. 上下の被覆関係を持つ.
+     */
+    private static class Concept{
+
+        PackedBitSet extent; // 外延.
+        PackedBitSet intent; // 内包.
+        ArrayList<Concept> parents = new ArrayList<>(2); // 上の被覆(外延が大きい方).
+        ArrayList<Concept> children = new ArrayList<>(2); // 下の被覆(外延が小さい方).
+        int visited; // 訪問済みの印.
+
+        Concept(PackedBitSet extent, PackedBitSet intent){
+            this.extent = extent;
+            this.intent = intent;
+        }
+    }
+
+
+
+    //////////
+    // Test //
+    //////////
+
+    public static void main(String args[]){
+
+        boolean t = true;
+        boolean f = false;
+
+        boolean[][] contextTable =
+            {{f,t,t,t},
+             {t,f,t,t},
+             {t,f,t,f},
+             {t,f,t,f},
+             {t,f,f,f}};
+
+        // 1行ずつ追加しながら, 形式概念の数の変化を見る.
+        IncrementalLattice lattice = new IncrementalLattice(contextTable[0].length);
+        for(boolean[] row : contextTable){
+            Tupple objectConcept = lattice.addObject(row);
+            System.out.println("add " + objectConcept.getAttributeSubset()
+                               + " -> " + lattice.size() + " concepts");
+        }
+
+        // ハッセ図の有向エッジを表示.
+        FCAHasseDiagram fcahd = lattice.toHasseDiagram();
+        for(Node to : fcahd.getArrows().keySet()){
+            for(Node from : fcahd.getArrows().get(to)){
+                System.out.println(from.getTupple().getObjectSubset() + " -> "
+                                   + to.getTupple().getObjectSubset());
+            }
+        }
+    }
+}
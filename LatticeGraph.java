@@ -0,0 +1,606 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * 概念束のハッセ図を, 形式概念の番号で引く配列だけで保持するクラス.
+ * 被覆関係は CSR(compressed sparse row)形式で, 上の被覆と下の被覆の両方を持つ.
+ * 外延と内包は全ての形式概念の分を1本の long[] に詰めて並べる.
+ *
+ * 形式概念1つあたりのオブジェクトは作らないので, ノードやエッジごとに
+ * HashSet や HashMap のエントリを作る FCAHasseDiagram よりずっと小さく,
+ * 被覆関係をたどるときにもオブジェクトを生成しない.
+ * 形式概念の番号は 0 から size()-1 まで.
+ * 外延の要素数に下限を設けたアイスバーグ概念束のハッセ図は iceberg() で作る.
+ * コンテクスト表がまばら(FormalContext.isSparse())ならば, 外延は全オブジェクト分のビット列ではなく
+ * 形式概念ごとの CompressedBitmap で持ち, 被覆関係の計算にもそのまま渡す.
+ *
+ * @author  uehashu
+ * @version 1.0
+ */
+public class LatticeGraph{
+
+    FormalContext context; // 解析に使ったコンテクスト表.
+    int size; // 形式概念の数.
+    int objectWords; // 外延1つあたりのワード数.
+    int attributeWords; // 内包1つあたりのワード数.
+    long[] extents; // 全ての形式概念の外延. 形式概念 c の外延は c*objectWords から. まばらならば null.
+    CompressedBitmap[] compressedExtents; // まばらな表での, 全ての形式概念の圧縮した外延. 使わなければ null.
+    long[] intents; // 全ての形式概念の内包. 形式概念 c の内包は c*attributeWords から.
+    int[] upperStarts; // 形式概念 c の上の被覆は uppers[upperStarts[c]] から uppers[upperStarts[c+1]-1].
+    int[] uppers; // 上の被覆の番号.
+    int[] lowerStarts; // 形式概念 c の下の被覆は lowers[lowerStarts[c]] から lowers[lowerStarts[c+1]-1].
+    int[] lowers; // 下の被覆の番号.
+    volatile FCACoverCalculator.ConceptIndex index; // 外延(まばらならば内包)から番号を引く索引. 必要になってから作る.
+
+
+    //////////////////
+    // Constructors //
+    //////////////////
+
+    /**
+     * 形式概念の集合からハッセ図を作る. 番号はリストの順.
+     * 被覆関係は FCACoverCalculator で求め, 形式概念が揃っていない場合は包含関係の比較で求める.
+     * @param tupples 形式概念解析で得られたタプル
+     * @param context 解析に使ったコンテクスト表
+     */
+    public LatticeGraph(ArrayList<Tupple> tupples, FormalContext context){
+        this(tupples,context,null);
+    }
+
+
+    /**
+     * 途中経過を知らせながら, 形式概念の集合からハッセ図を作る.
+     * "covers" (Lindig のアルゴリズム), "inclusion" (包含関係の比較), "graph" (配列の作成)
+     * の段階と, 被覆関係の計算で求めた閉包の数が知らされる.
+     * @param tupples  形式概念解析で得られたタプル
+     * @param context  解析に使ったコンテクスト表
+     * @param listener 途中経過を受け取るリスナ. null ならば何も知らせない.
+     */
+    public LatticeGraph(ArrayList<Tupple> tupples, FormalContext context, AnalysisListener listener){
+        this(tupples,context,listener,false);
+    }
+
+
+    /**
+     * 形式概念の集合からハッセ図を作る本体.
+     * @param tupples  形式概念解析で得られたタプル
+     * @param context  解析に使ったコンテクスト表
+     * @param listener 途中経過を受け取るリスナ. null ならば何も知らせない.
+     * @param iceberg  上に閉じた一部の形式概念だけならば真
+     */
+    private LatticeGraph(ArrayList<Tupple> tupples, FormalContext context, AnalysisListener listener,
+                         boolean iceberg){
+        this.context = context;
+        boolean sparse = context.isSparse();
+        long[][] extentArray = sparse ? null : new long[tupples.size()][];
+        CompressedBitmap[] compressedArray = sparse ? new CompressedBitmap[tupples.size()] : null;
+        long[][] intentArray = new long[tupples.size()][];
+        for(int i=0;i<tupples.size();i++){
+            if(sparse){
+                compressedArray[i] = context.compressObjects(tupples.get(i).getObjectBits());
+            }else{
+                extentArray[i] = context.packObjects(tupples.get(i).getObjectBits());
+            }
+            intentArray[i] = context.packAttributes(tupples.get(i).getAttributeBits());
+        }
+
+        if(listener != null){
+            listener.phaseStarted("covers");
+        }
+        FCACoverCalculator calculator = new FCACoverCalculator(context);
+        calculator.setAnalysisListener(listener);
+        int[][] upperCovers;
+        if(sparse){
+            upperCovers = iceberg
+                ? calculator.calcIcebergUpperCovers(compressedArray,intentArray)
+                : calculator.calcUpperCovers(compressedArray,intentArray);
+        }else{
+            upperCovers = iceberg
+                ? calculator.calcIcebergUpperCovers(extentArray,intentArray)
+                : calculator.calcUpperCovers(extentArray,intentArray);
+        }
+        if(listener != null){
+            listener.phaseFinished("covers");
+        }
+
+        if(upperCovers == null){
+            if(listener != null){
+                listener.phaseStarted("inclusion");
+            }
+            upperCovers = calcUpperCoversByInclusion(extentArray,compressedArray);
+            if(listener != null){
+                listener.phaseFinished("inclusion");
+            }
+        }
+
+        if(listener != null){
+            listener.phaseStarted("graph");
+        }
+        build(extentArray,compressedArray,intentArray,upperCovers);
+        if(listener != null){
+            listener.phaseFinished("graph");
+        }
+    }
+
+
+    /**
+     * 被覆関係が分かっている場合に, それをそのまま使うコンストラクタ.
+     * @param context     解析に使ったコンテクスト表
+     * @param extents     各形式概念の外延. FormalContext のビット位置で詰めたもの.
+     * @param intents     各形式概念の内包. FormalContext のビット位置で詰めたもの.
+     * @param upperCovers 各形式概念の上の被覆の番号
+     */
+    LatticeGraph(FormalContext context, long[][] extents, long[][] intents, int[][] upperCovers){
+        this.context = context;
+        build(extents,null,intents,upperCovers);
+    }
+
+
+
+    /////////////
+    // Methods //
+    /////////////
+
+    /**
+     * アイスバーグ概念束(外延の要素数が下限以上の形式概念の集合)のハッセ図を作るメソッド.
+     * 集合は上に閉じている(ある形式概念を含めば, それより上の形式概念も全て含む)必要があり,
+     * setMinimumSupport() を設定した解析クラスの結果はこれを満たす.
+     * 最小の形式概念が無くても, 被覆関係を FCACoverCalculator で求められる.
+     * @param tupples  外延の要素数が下限以上の形式概念
+     * @param context  解析に使ったコンテクスト表
+     * @param listener 途中経過を受け取るリスナ. null ならば何も知らせない.
+     * @return         ハッセ図
+     */
+    public static LatticeGraph iceberg(ArrayList<Tupple> tupples, FormalContext context,
+                                       AnalysisListener listener){
+        return new LatticeGraph(tupples,context,listener,true);
+    }
+
+
+    /**
+     * 形式概念の数を返すメソッド.
+     * @return 形式概念の数
+     */
+    public int size(){
+        return size;
+    }
+
+
+    /**
+     * 被覆関係(エッジ)の数を返すメソッド.
+     * @return エッジの数
+     */
+    public int getEdgeCount(){
+        return uppers.length;
+    }
+
+
+    /**
+     * 解析に使ったコンテクスト表を返すメソッド.
+     * @return コンテクスト表
+     */
+    public FormalContext getContext(){
+        return context;
+    }
+
+
+    /**
+     * 上の被覆(外延が大きい方の隣接する形式概念)の数を返すメソッド.
+     * @param concept 形式概念の番号
+     * @return        上の被覆の数
+     */
+    public int getUpperCoverCount(int concept){
+        return upperStarts[concept+1] - upperStarts[concept];
+    }
+
+
+    /**
+     * k 番目の上の被覆を返すメソッド.
+     * @param concept 形式概念の番号
+     * @param k       0 から getUpperCoverCount(concept)-1 まで
+     * @return        上の被覆の番号
+     */
+    public int getUpperCover(int concept, int k){
+        return uppers[upperStarts[concept] + k];
+    }
+
+
+    /**
+     * 下の被覆(外延が小さい方の隣接する形式概念)の数を返すメソッド.
+     * @param concept 形式概念の番号
+     * @return        下の被覆の数
+     */
+    public int getLowerCoverCount(int concept){
+        return lowerStarts[concept+1] - lowerStarts[concept];
+    }
+
+
+    /**
+     * k 番目の下の被覆を返すメソッド.
+     * @param concept 形式概念の番号
+     * @param k       0 から getLowerCoverCount(concept)-1 まで
+     * @return        下の被覆の番号
+     */
+    public int getLowerCover(int concept, int k){
+        return lowers[lowerStarts[concept] + k];
+    }
+
+
+    /**
+     * 最大の形式概念(上の被覆を持たない形式概念)を返すメソッド.
+     * @return 形式概念の番号. 形式概念が無ければ -1.
+     */
+    public int getTop(){
+        for(int c=0;c<size;c++){
+            if(upperStarts[c] == upperStarts[c+1]){
+                return c;
+            }
+        }
+        return -1;
+    }
+
+
+    /**
+     * 最小の形式概念(下の被覆を持たない形式概念)を返すメソッド.
+     * @return 形式概念の番号. 形式概念が無ければ -1.
+     */
+    public int getBottom(){
+        for(int c=0;c<size;c++){
+            if(lowerStarts[c] == lowerStarts[c+1]){
+                return c;
+            }
+        }
+        return -1;
+    }
+
+
+    /**
+     * 外延を呼び出し側のビット列に書き込むメソッド.
+     * @param concept 形式概念の番号
+     * @param extent  書き込むビット列. 長さは FormalContext.newExtent() と同じ.
+     */
+    public void getExtent(int concept, long[] extent){
+        if(compressedExtents != null){
+            compressedExtents[concept].toWords(extent);
+            return;
+        }
+        System.arraycopy(extents,concept*objectWords,extent,0,objectWords);
+    }
+
+
+    /**
+     * 外延を圧縮した集合で返すメソッド. まばらな表ならば保持しているものを返すので, 書き換えないこと.
+     * @param concept 形式概念の番号
+     * @return        オブジェクトのビット位置の集合
+     */
+    public CompressedBitmap getCompressedExtent(int concept){
+        if(compressedExtents != null){
+            return compressedExtents[concept];
+        }
+        return CompressedBitmap.fromWords(Arrays.copyOfRange(extents,concept*objectWords,(concept+1)*objectWords));
+    }
+
+
+    /**
+     * 内包を呼び出し側のビット列に書き込むメソッド.
+     * @param concept 形式概念の番号
+     * @param intent  書き込むビット列. 長さは FormalContext.newIntent() と同じ.
+     */
+    public void getIntent(int concept, long[] intent){
+        System.arraycopy(intents,concept*attributeWords,intent,0,attributeWords);
+    }
+
+
+    /**
+     * 外延の要素数を返すメソッド.
+     * @param concept 形式概念の番号
+     * @return        外延の要素数
+     */
+    public int getExtentCardinality(int concept){
+        if(compressedExtents != null){
+            return compressedExtents[concept].cardinality();
+        }
+        return cardinality(extents,concept*objectWords,objectWords);
+    }
+
+
+    /**
+     * 内包の要素数を返すメソッド.
+     * @param concept 形式概念の番号
+     * @return        内包の要素数
+     */
+    public int getIntentCardinality(int concept){
+        return cardinality(intents,concept*attributeWords,attributeWords);
+    }
+
+
+    /**
+     * 外延がオブジェクトを含むかを返すメソッド.
+     * @param concept 形式概念の番号
+     * @param g       オブジェクトのビット位置
+     * @return        含めば真
+     */
+    public boolean extentContains(int concept, int g){
+        if(compressedExtents != null){
+            return compressedExtents[concept].contains(g);
+        }
+        return (extents[concept*objectWords + (g >>> 6)] & (1L << g)) != 0;
+    }
+
+
+    /**
+     * 内包が属性を含むかを返すメソッド.
+     * @param concept 形式概念の番号
+     * @param m       属性のビット位置
+     * @return        含めば真
+     */
+    public boolean intentContains(int concept, int m){
+        return (intents[concept*attributeWords + (m >>> 6)] & (1L << m)) != 0;
+    }
+
+
+    /**
+     * 形式概念 a が形式概念 b 以下(a の外延が b の外延に含まれる)かを返すメソッド.
+     * @param a 形式概念の番号
+     * @param b 形式概念の番号
+     * @return  a ≦ b ならば真
+     */
+    public boolean isLessOrEqual(int a, int b){
+        if(compressedExtents != null){
+            return compressedExtents[a].isSubsetOf(compressedExtents[b]);
+        }
+        int offsetA = a*objectWords;
+        int offsetB = b*objectWords;
+        for(int w=0;w<objectWords;w++){
+            if((extents[offsetA+w] & ~extents[offsetB+w]) != 0){
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * 外延から形式概念の番号を引くメソッド. 初めて呼ばれたときに索引を作る.
+     * まばらな表では, 外延の極集合を内包の索引で引いてから外延が等しいかを確かめる.
+     * 複数のスレッドから呼んでよい. 索引を同時に作ることはあるが, どれか1つが残る.
+     * @param extent 外延. FormalContext のビット位置で詰めたもの.
+     * @return       形式概念の番号. 無ければ -1.
+     */
+    public int indexOf(long[] extent){
+        FCACoverCalculator.ConceptIndex index = this.index;
+        if(index == null){
+            long[][] keys = new long[size][];
+            for(int c=0;c<size;c++){
+                keys[c] = compressedExtents != null
+                    ? Arrays.copyOfRange(intents,c*attributeWords,(c+1)*attributeWords)
+                    : Arrays.copyOfRange(extents,c*objectWords,(c+1)*objectWords);
+            }
+            index = new FCACoverCalculator.ConceptIndex(keys);
+            this.index = index;
+        }
+        if(compressedExtents == null){
+            return index.indexOf(extent);
+        }
+        long[] intent = context.newIntent();
+        context.objectPolar(extent,intent);
+        int concept = index.indexOf(intent);
+        if(concept < 0 || !compressedExtents[concept].equals(CompressedBitmap.fromWords(extent))){
+            return -1;
+        }
+        return concept;
+    }
+
+
+    /**
+     * 形式概念をタプルとして返すメソッド. 番号はコンテクスト表のものに戻す.
+     * @param concept 形式概念の番号
+     * @return        タプル
+     */
+    public Tupple getTupple(int concept){
+        if(compressedExtents != null){
+            long[] intent = context.newIntent();
+            getIntent(concept,intent);
+            return context.toTupple(compressedExtents[concept],intent);
+        }
+        long[] extent = context.newExtent();
+        long[] intent = context.newIntent();
+        getExtent(concept,extent);
+        getIntent(concept,intent);
+        return context.toTupple(extent,intent);
+    }
+
+
+    /**
+     * おおよその使用メモリを返すメソッド.
+     * @return バイト数
+     */
+    public long getByteSize(){
+        long extentBytes = 0;
+        if(compressedExtents != null){
+            for(CompressedBitmap extent : compressedExtents){
+                extentBytes += extent.getByteSize();
+            }
+        }else{
+            extentBytes = 8L * extents.length;
+        }
+        return extentBytes + 8L * intents.length
+            + 4L * (upperStarts.length + uppers.length + lowerStarts.length + lowers.length);
+    }
+
+
+
+    /////////////////////
+    // Private Methods //
+    /////////////////////
+
+    /**
+     * 外延と内包を詰め, 上の被覆から両方向の CSR 配列を作るメソッド.
+     * まばらな表では外延を圧縮した集合のまま持つ. ビット列で渡されたならばここで圧縮する.
+     * @param extentArray     各形式概念の外延. 圧縮した外延を渡すならば null.
+     * @param compressedArray 各形式概念の圧縮した外延. ビット列で渡すならば null.
+     * @param intentArray     各形式概念の内包
+     * @param upperCovers     各形式概念の上の被覆の番号
+     */
+    private void build(long[][] extentArray, CompressedBitmap[] compressedArray,
+                       long[][] intentArray, int[][] upperCovers){
+        size = intentArray.length;
+        objectWords = context.getObjectWords();
+        attributeWords = context.getAttributeWords();
+
+        if(context.isSparse()){
+            if(compressedArray == null){
+                compressedArray = new CompressedBitmap[size];
+                for(int c=0;c<size;c++){
+                    compressedArray[c] = CompressedBitmap.fromWords(extentArray[c]).runOptimize();
+                }
+            }
+            compressedExtents = compressedArray;
+        }else{
+            extents = new long[size*objectWords];
+            for(int c=0;c<size;c++){
+                System.arraycopy(extentArray[c],0,extents,c*objectWords,objectWords);
+            }
+        }
+        intents = new long[size*attributeWords];
+        for(int c=0;c<size;c++){
+            System.arraycopy(intentArray[c],0,intents,c*attributeWords,attributeWords);
+        }
+
+        // 上の被覆をそのまま並べる.
+        upperStarts = new int[size+1];
+        for(int c=0;c<size;c++){
+            upperStarts[c+1] = upperStarts[c] + upperCovers[c].length;
+        }
+        uppers = new int[upperStarts[size]];
+        for(int c=0;c<size;c++){
+            System.arraycopy(upperCovers[c],0,uppers,upperStarts[c],upperCovers[c].length);
+        }
+
+        // 向きを入れ替えて下の被覆を並べる.
+        lowerStarts = new int[size+1];
+        for(int upper : uppers){
+            lowerStarts[upper+1]++;
+        }
+        for(int c=0;c<size;c++){
+            lowerStarts[c+1] += lowerStarts[c];
+        }
+        lowers = new int[uppers.length];
+        int[] filled = new int[size];
+        for(int c=0;c<size;c++){
+            for(int k=upperStarts[c];k<upperStarts[c+1];k++){
+                int upper = uppers[k];
+                lowers[lowerStarts[upper] + filled[upper]++] = c;
+            }
+        }
+    }
+
+
+    /**
+     * 上の被覆を, 全ての形式概念の組の包含関係を比べて計算するメソッド.
+     * 外延の要素数の降順に見ていき, 上にある形式概念の集合をビット列で持つ.
+     * 形式概念の数の2乗に比例する時間がかかる.
+     * @param extentArray     各形式概念の外延. 圧縮した外延を渡すならば null.
+     * @param compressedArray 各形式概念の圧縮した外延. ビット列で渡すならば null.
+     * @return                各形式概念の上の被覆の番号
+     */
+    private static int[][] calcUpperCoversByInclusion(long[][] extentArray,
+                                                      CompressedBitmap[] compressedArray){
+        int size = extentArray != null ? extentArray.length : compressedArray.length;
+
+        // 外延の要素数の降順に並べる.
+        final int[] cardinalities = new int[size];
+        Integer[] order = new Integer[size];
+        for(int c=0;c<size;c++){
+            cardinalities[c] = extentArray != null
+                ? BitVectors.cardinality(extentArray[c]) : compressedArray[c].cardinality();
+            order[c] = c;
+        }
+        Arrays.sort(order,new Comparator<Integer>(){
+                // @Override
+                public int compare(Integer a, Integer b){
+                    return Integer.compare(cardinalities[b],cardinalities[a]);
+                }
+            });
+
+        int[][] upperCovers = new int[size][];
+        long[][] above = new long[size][]; // 各形式概念より上にある形式概念の番号.
+        int[] covers = new int[size];
+        for(int i=0;i<size;i++){
+            int c = order[i];
+            above[c] = BitVectors.create(size);
+            int coverLength = 0;
+
+            // 外延の要素数が多いものを, 要素数の昇順に見ていく.
+            for(int j=i-1;j>=0;j--){
+                int candidate = order[j];
+                if(cardinalities[candidate] <= cardinalities[c]
+                   || BitVectors.get(above[c],candidate)
+                   || (extentArray != null
+                       ? !BitVectors.isSubset(extentArray[c],extentArray[candidate])
+                       : !compressedArray[c].isSubsetOf(compressedArray[candidate]))){
+                    continue;
+                }
+                covers[coverLength++] = candidate;
+                BitVectors.set(above[c],candidate);
+                for(int w=0;w<above[c].length;w++){
+                    above[c][w] |= above[candidate][w];
+                }
+            }
+            upperCovers[c] = Arrays.copyOf(covers,coverLength);
+        }
+        return upperCovers;
+    }
+
+
+    /**
+     * 詰めたビット列の一部の要素数を数えるメソッド.
+     * @param pool   ビット列を並べた配列
+     * @param offset 始めのワード
+     * @param words  ワード数
+     * @return       要素数
+     */
+    private static int cardinality(long[] pool, int offset, int words){
+        int count = 0;
+        for(int w=offset;w<offset+words;w++){
+            count += Long.bitCount(pool[w]);
+        }
+        return count;
+    }
+
+
+
+    //////////
+    // Test //
+    //////////
+
+    public static void main(String args[]){
+
+        boolean t = true;
+        boolean f = false;
+
+        boolean[][] contextTable =
+            {{f,t,t,t},
+             {t,f,t,t},
+             {t,f,t,f},
+             {t,f,t,f},
+             {t,f,f,f}};
+
+        // 解析して, コンテクスト表を共有したままハッセ図を作る.
+        FormalContext context = new FormalContext(contextTable);
+        LatticeGraph graph =
+            new LatticeGraph(new FormalConceptParallelAnalyzer(context).analize(),context);
+
+        // 各形式概念の下の被覆を表示.
+        System.out.println(graph.size() + " concepts, " + graph.getEdgeCount() + " edges, "
+                           + graph.getByteSize() + " bytes");
+        for(int c=0;c<graph.size();c++){
+            for(int k=0;k<graph.getLowerCoverCount(c);k++){
+                int lower = graph.getLowerCover(c,k);
+                System.out.println(graph.getTupple(lower).getObjectSubset() + " -> "
+                                   + graph.getTupple(c).getObjectSubset());
+            }
+        }
+    }
+}
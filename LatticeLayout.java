@@ -0,0 +1,603 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * ハッセ図を階層に分けて配置する(Sugiyama 法)クラス.
+ * 座標は形式概念の番号で引く配列に持ち, 描画には依存しない.
+ *
+ * 配置は次の3段階で行なう.
+ * <ul>
+ * <li>外延の要素数の降順に階層を割り当てる. 上の被覆は必ず外延が大きいので, 辺は常に下向きになる.
+ *     要素数ごとに数えるだけなので, 形式概念の数とオブジェクト数に比例する時間で済む.</li>
+ * <li>上から下, 下から上と交互に掃き, 各ノードを隣接するノードの位置の重心(または中央値)で
+ *     並べ替えて辺の交差を減らす. 階層の中の各ノードの値は独立なので Fork/Join で並列に求める.
+ *     位置は階層の幅で割った 0 から 1 の値で比べるので, 階層をまたぐ長い辺もそのまま扱う.</li>
+ * <li>並びを保ったまま, 各ノードを隣接するノードの横座標の平均に寄せる.
+ *     左右から1回ずつ間隔を詰めて平均を取るので, 階層の大きさに比例する時間で済む.</li>
+ * </ul>
+ * 1回の掃きは辺の数と, 階層ごとの並べ替えの分の時間しかかからない.
+ * 長い辺に仮のノードは置かないので, 交差の数は厳密な Sugiyama 法より多くなることがある.
+ *
+ * relayout() で, 形式概念が増えたハッセ図を前の配置を引き継いで配置し直せる.
+ * 内包が同じ形式概念は前の横位置から始め, 掃く回数を減らすので, 全体の形が大きく変わらない.
+ * 時間がかかるので, Swing から使うときは SwingWorker などでイベントディスパッチスレッドの外で計算すること.
+ *
+ * @author  uehashu
+ * @version 1.0
+ */
+public class LatticeLayout{
+
+    /**
+     * 交差を減らすときに, 隣接するノードの位置からノードの値を決める方法.
+     */
+    public enum Method{
+        /** 隣接するノードの位置の平均. */
+        BARYCENTER,
+        /** 隣接するノードの位置の中央値. */
+        MEDIAN
+    }
+
+    private static final int THRESHOLD = 1024; // これより少ないノードは分割せずに計算する.
+    private static final int INCREMENTAL_SWEEPS = 2; // 配置し直すときの掃く回数の上限.
+    private static final int REFINEMENTS = 2; // 横座標を隣接するノードに寄せる回数.
+    private static final int UPPER = 0; // 上の被覆の位置から値を決める.
+    private static final int LOWER = 1; // 下の被覆の位置から値を決める.
+    private static final int COORDINATE = 2; // 隣接する全てのノードの横座標から値を決める.
+
+    LatticeGraph graph; // 配置するハッセ図.
+    Method method = Method.BARYCENTER; // ノードの値の決め方.
+    int sweeps = 8; // 交差を減らすために掃く回数.
+    double horizontalSpacing = 40; // 同じ階層のノードの間隔.
+    double verticalSpacing = 80; // 階層の間隔.
+    AnalysisListener listener; // 途中経過を受け取るリスナ. 無ければ null.
+    double[] seeds; // 前の配置から引き継いだ横位置(0 から 1). 無ければ null, 新しい形式概念は NaN.
+    int layerCount; // 階層の数.
+    int[] layers; // 各形式概念の階層. 一番上が0.
+    int[] layerStarts; // 階層 l のノードは order[layerStarts[l]] から order[layerStarts[l+1]-1].
+    int[] order; // 階層ごとに左から並べた形式概念の番号.
+    int[] positions; // 各形式概念の階層の中での位置.
+    double[] keys; // 並べ替えや座標に使う各形式概念の値. 作業用.
+    double[] xs; // 各形式概念の横座標. 計算するまで null.
+    double[] ys; // 各形式概念の縦座標. 計算するまで null.
+    double width; // 全体の幅.
+    double height; // 全体の高さ.
+
+
+    //////////////////
+    // Constructors //
+    //////////////////
+
+    /**
+     * @param graph ハッセ図
+     */
+    public LatticeLayout(LatticeGraph graph){
+        this.graph = graph;
+    }
+
+
+    /**
+     * @param diagram ハッセ図
+     */
+    public LatticeLayout(FCAHasseDiagram diagram){
+        this(diagram.getGraph());
+    }
+
+
+
+    /////////////
+    // Methods //
+    /////////////
+
+    /**
+     * 交差を減らすときのノードの値の決め方を設定するメソッド.
+     * 中央値は外れたところにある隣接ノードに引っ張られにくいが, 少し遅い.
+     * @param method 決め方
+     */
+    public void setMethod(Method method){
+        if(method == null){
+            throw new IllegalArgumentException("method must not be null");
+        }
+        this.method = method;
+    }
+
+
+    /**
+     * 交差を減らすために掃く回数を設定するメソッド. 上から下と下から上をそれぞれ1回と数える.
+     * @param sweeps 回数. 0 ならば外延の要素数で階層に分けるだけ.
+     */
+    public void setSweeps(int sweeps){
+        if(sweeps < 0){
+            throw new IllegalArgumentException("sweeps must not be negative: " + sweeps);
+        }
+        this.sweeps = sweeps;
+    }
+
+
+    /**
+     * ノードの間隔を設定するメソッド.
+     * @param horizontal 同じ階層のノードの間隔
+     * @param vertical   階層の間隔
+     */
+    public void setSpacing(double horizontal, double vertical){
+        if(!(horizontal > 0 && vertical > 0)){
+            throw new IllegalArgumentException("spacing must be positive: " + horizontal + ", " + vertical);
+        }
+        this.horizontalSpacing = horizontal;
+        this.verticalSpacing = vertical;
+    }
+
+
+    /**
+     * 途中経過を受け取るリスナを設定するメソッド.
+     * calc() で "layering", "ordering", "coordinates" の段階が知らされる.
+     * @param listener リスナ. null ならば何も知らせない.
+     */
+    public void setAnalysisListener(AnalysisListener listener){
+        this.listener = listener;
+    }
+
+
+    /**
+     * 全ての形式概念の座標を計算するメソッド.
+     * 計算した結果は getX() などで取り出す.
+     */
+    public void calc(){
+
+        AnalysisListener listener = this.listener;
+        if(listener != null){
+            listener.phaseStarted("layering");
+        }
+        assignLayers();
+        keys = new double[graph.size()];
+        if(seeds != null){
+            for(int l=0;l<layerCount;l++){
+                seedLayer(l);
+            }
+        }
+        if(listener != null){
+            listener.phaseFinished("layering");
+            listener.phaseStarted("ordering");
+        }
+
+        // 上から下へは上の被覆, 下から上へは下の被覆の位置で並べ替える.
+        for(int s=0;s<sweeps;s++){
+            if(s % 2 == 0){
+                for(int l=1;l<layerCount;l++){
+                    computeKeys(l,UPPER);
+                    sortLayer(l);
+                }
+            }else{
+                for(int l=layerCount-2;l>=0;l--){
+                    computeKeys(l,LOWER);
+                    sortLayer(l);
+                }
+            }
+        }
+        if(listener != null){
+            listener.phaseFinished("ordering");
+            listener.phaseStarted("coordinates");
+        }
+        assignCoordinates();
+        if(listener != null){
+            listener.phaseFinished("coordinates");
+        }
+    }
+
+
+    /**
+     * 形式概念が増えたり減ったりしたハッセ図を, この配置を引き継いで配置し直すメソッド.
+     * 内包(属性番号の集合)が同じ形式概念はこの配置での横位置から並べ始め,
+     * 新しい形式概念は上の被覆の位置の平均から始める.
+     * 掃く回数は INCREMENTAL_SWEEPS 回までにするので, 全体の形はあまり変わらない.
+     * @param graph 新しいハッセ図
+     * @return      計算済みの新しい配置
+     */
+    public LatticeLayout relayout(LatticeGraph graph){
+        if(xs == null){
+            throw new IllegalStateException("layout has not been calculated");
+        }
+        LatticeLayout layout = new LatticeLayout(graph);
+        layout.method = method;
+        layout.sweeps = Math.min(sweeps,INCREMENTAL_SWEEPS);
+        layout.horizontalSpacing = horizontalSpacing;
+        layout.verticalSpacing = verticalSpacing;
+        layout.listener = listener;
+
+        // オブジェクトが増えても内包は変わらないので, 内包で前の形式概念と対応付ける.
+        FormalContext previousContext = this.graph.getContext();
+        HashMap<PackedBitSet,Integer> previous = new HashMap<>();
+        long[] intent = previousContext.newIntent();
+        for(int c=0;c<this.graph.size();c++){
+            this.graph.getIntent(c,intent);
+            previous.put(previousContext.unpackAttributes(intent),c);
+        }
+        FormalContext context = graph.getContext();
+        layout.seeds = new double[graph.size()];
+        intent = context.newIntent();
+        for(int c=0;c<graph.size();c++){
+            graph.getIntent(c,intent);
+            Integer c0 = previous.get(context.unpackAttributes(intent));
+            layout.seeds[c] = c0 == null ? Double.NaN : xs[c0] / width;
+        }
+        layout.calc();
+        return layout;
+    }
+
+
+    /**
+     * 横座標を返すメソッド. 左端のノードが horizontalSpacing/2 になる.
+     * @param concept 形式概念の番号
+     * @return        横座標
+     */
+    public double getX(int concept){
+        return xs[concept];
+    }
+
+
+    /**
+     * 縦座標を返すメソッド. 一番上の階層が verticalSpacing/2 になる.
+     * @param concept 形式概念の番号
+     * @return        縦座標
+     */
+    public double getY(int concept){
+        return ys[concept];
+    }
+
+
+    /**
+     * 階層を返すメソッド. 一番上(全オブジェクトを外延に持つ形式概念)が0.
+     * @param concept 形式概念の番号
+     * @return        階層
+     */
+    public int getLayer(int concept){
+        return layers[concept];
+    }
+
+
+    /**
+     * 階層の中での位置を返すメソッド. 左端が0.
+     * @param concept 形式概念の番号
+     * @return        位置
+     */
+    public int getPosition(int concept){
+        return positions[concept];
+    }
+
+
+    /**
+     * 階層の数を返すメソッド.
+     * @return 階層の数
+     */
+    public int getLayerCount(){
+        return layerCount;
+    }
+
+
+    /**
+     * 階層のノードの数を返すメソッド.
+     * @param layer 階層
+     * @return      ノードの数
+     */
+    public int getLayerSize(int layer){
+        return layerStarts[layer+1] - layerStarts[layer];
+    }
+
+
+    /**
+     * 階層の中の位置にある形式概念を返すメソッド. 位置の昇順に横座標も昇順になる.
+     * @param layer    階層
+     * @param position 位置
+     * @return         形式概念の番号
+     */
+    public int getConcept(int layer, int position){
+        return order[layerStarts[layer] + position];
+    }
+
+
+    /**
+     * 全体の幅を返すメソッド.
+     * @return 幅
+     */
+    public double getWidth(){
+        return width;
+    }
+
+
+    /**
+     * 全体の高さを返すメソッド.
+     * @return 高さ
+     */
+    public double getHeight(){
+        return height;
+    }
+
+
+
+    /////////////////////
+    // Private Methods //
+    /////////////////////
+
+    /**
+     * 外延の要素数の降順に階層を割り当てるメソッド. 同じ階層の中は形式概念の番号順に並べる.
+     */
+    private void assignLayers(){
+        int size = graph.size();
+        int objectLength = graph.getContext().getObjectLength();
+        int[] cardinalities = new int[size];
+        int[] counts = new int[objectLength+1];
+        for(int c=0;c<size;c++){
+            cardinalities[c] = graph.getExtentCardinality(c);
+            counts[cardinalities[c]]++;
+        }
+
+        // 要素数から階層への対応表. 要素数の降順に, 形式概念がある要素数だけ階層にする.
+        layerCount = 0;
+        for(int count : counts){
+            if(count > 0){
+                layerCount++;
+            }
+        }
+        int[] layerOf = new int[objectLength+1];
+        layerStarts = new int[layerCount+1];
+        int l = 0;
+        for(int cardinality=objectLength;cardinality>=0;cardinality--){
+            if(counts[cardinality] > 0){
+                layerOf[cardinality] = l;
+                layerStarts[l+1] = layerStarts[l] + counts[cardinality];
+                l++;
+            }
+        }
+
+        layers = new int[size];
+        order = new int[size];
+        positions = new int[size];
+        int[] filled = new int[layerCount];
+        for(int c=0;c<size;c++){
+            l = layerOf[cardinalities[c]];
+            layers[c] = l;
+            positions[c] = filled[l];
+            order[layerStarts[l] + filled[l]++] = c;
+        }
+    }
+
+
+    /**
+     * 前の配置から引き継いだ横位置で階層を並べるメソッド.
+     * 新しい形式概念は, 先に並べた上の被覆の値の平均にする.
+     * @param layer 階層
+     */
+    private void seedLayer(int layer){
+        for(int i=layerStarts[layer];i<layerStarts[layer+1];i++){
+            int c = order[i];
+            double key = seeds[c];
+            if(Double.isNaN(key)){
+                int count = graph.getUpperCoverCount(c);
+                key = 0.5;
+                if(count > 0){
+                    key = 0;
+                    for(int k=0;k<count;k++){
+                        key += keys[graph.getUpperCover(c,k)];
+                    }
+                    key /= count;
+                }
+            }
+            keys[c] = key;
+        }
+        sortLayer(layer);
+    }
+
+
+    /**
+     * 階層の各ノードの値を計算するメソッド. ノードが多ければ Fork/Join で分けて計算する.
+     * @param layer 階層
+     * @param mode  UPPER, LOWER, COORDINATE のどれか
+     */
+    private void computeKeys(int layer, int mode){
+        KeyTask task = new KeyTask(layerStarts[layer],layerStarts[layer+1],mode);
+        if(task.to - task.from > THRESHOLD){
+            ForkJoinPool.commonPool().invoke(task);
+        }else{
+            task.compute();
+        }
+    }
+
+
+    /**
+     * 階層を keys の昇順に並べ替えるメソッド. 値が同じならば今の位置の順.
+     * 値は 0 以上なので, float のビット列を上位に, 今の位置を下位に詰めた long を整列する.
+     * @param layer 階層
+     */
+    private void sortLayer(int layer){
+        int from = layerStarts[layer];
+        int length = layerStarts[layer+1] - from;
+        long[] packed = new long[length];
+        for(int i=0;i<length;i++){
+            int c = order[from+i];
+            packed[i] = ((long)Float.floatToIntBits((float)keys[c]) << 32) | positions[c];
+        }
+        Arrays.parallelSort(packed);
+
+        int[] sorted = new int[length];
+        for(int i=0;i<length;i++){
+            sorted[i] = order[from + (int)packed[i]];
+        }
+        for(int i=0;i<length;i++){
+            order[from+i] = sorted[i];
+            positions[sorted[i]] = i;
+        }
+    }
+
+
+    /**
+     * 並びから座標を決めるメソッド.
+     * 各階層を中央揃えで等間隔に置いてから, 隣接するノードの横座標の平均に寄せる.
+     */
+    private void assignCoordinates(){
+        int size = graph.size();
+        xs = new double[size];
+        ys = new double[size];
+        for(int l=0;l<layerCount;l++){
+            int from = layerStarts[l];
+            double center = (layerStarts[l+1] - from - 1) / 2.0;
+            for(int i=from;i<layerStarts[l+1];i++){
+                xs[order[i]] = (i - from - center) * horizontalSpacing;
+                ys[order[i]] = (l + 0.5) * verticalSpacing;
+            }
+        }
+
+        // 同じ階層のノードの間には辺が無いので, 階層ごとに値を計算してすぐ反映してよい.
+        for(int r=0;r<REFINEMENTS;r++){
+            for(int l=0;l<layerCount;l++){
+                computeKeys(l,COORDINATE);
+                placeLayer(l);
+            }
+        }
+
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for(int c=0;c<size;c++){
+            min = Math.min(min,xs[c]);
+            max = Math.max(max,xs[c]);
+        }
+        double shift = size == 0 ? 0 : horizontalSpacing / 2 - min;
+        for(int c=0;c<size;c++){
+            xs[c] += shift;
+        }
+        width = size == 0 ? 0 : max - min + horizontalSpacing;
+        height = layerCount * verticalSpacing;
+    }
+
+
+    /**
+     * 階層のノードを, 並びと間隔を保ったまま keys の横座標に寄せるメソッド.
+     * 左から詰めたものと右から詰めたものはどちらも間隔を満たすので, その平均も満たす.
+     * @param layer 階層
+     */
+    private void placeLayer(int layer){
+        int from = layerStarts[layer];
+        int length = layerStarts[layer+1] - from;
+        double[] forward = new double[length];
+        double[] backward = new double[length];
+        for(int i=0;i<length;i++){
+            double key = keys[order[from+i]];
+            forward[i] = i == 0 ? key : Math.max(key,forward[i-1] + horizontalSpacing);
+        }
+        for(int i=length-1;i>=0;i--){
+            double key = keys[order[from+i]];
+            backward[i] = i == length-1 ? key : Math.min(key,backward[i+1] - horizontalSpacing);
+        }
+        for(int i=0;i<length;i++){
+            xs[order[from+i]] = (forward[i] + backward[i]) / 2;
+        }
+    }
+
+
+
+    ///////////////////
+    // Inner Classes //
+    ///////////////////
+
+    /**
+     * 並びの一定範囲のノードの値を計算するタスク. 範囲が大きければ半分に分ける.
+     */
+    private class KeyTask extends RecursiveAction{
+
+        private static final long serialVersionUID = 1L;
+
+        int from; // order での範囲の始め.
+        int to; // order での範囲の終わり(これを含まない).
+        int mode; // UPPER, LOWER, COORDINATE のどれか.
+
+        KeyTask(int from, int to, int mode){
+            this.from = from;
+            this.to = to;
+            this.mode = mode;
+        }
+
+        // @Override
+        protected void compute(){
+            if(to - from > THRESHOLD){
+                int middle = (from + to) >>> 1;
+                invokeAll(new KeyTask(from,middle,mode),new KeyTask(middle,to,mode));
+                return;
+            }
+
+            double[] values = new double[16];
+            for(int i=from;i<to;i++){
+                int c = order[i];
+
+                // 隣接するノードの位置. 階層の幅で割って, 大きさの違う階層でも比べられるようにする.
+                int upperCount = mode == LOWER ? 0 : graph.getUpperCoverCount(c);
+                int lowerCount = mode == UPPER ? 0 : graph.getLowerCoverCount(c);
+                int count = upperCount + lowerCount;
+                if(count == 0){
+                    keys[c] = mode == COORDINATE ? xs[c] : normalized(c);
+                    continue;
+                }
+                if(values.length < count){
+                    values = new double[Math.max(count,values.length*2)];
+                }
+                for(int k=0;k<upperCount;k++){
+                    int neighbour = graph.getUpperCover(c,k);
+                    values[k] = mode == COORDINATE ? xs[neighbour] : normalized(neighbour);
+                }
+                for(int k=0;k<lowerCount;k++){
+                    int neighbour = graph.getLowerCover(c,k);
+                    values[upperCount+k] = mode == COORDINATE ? xs[neighbour] : normalized(neighbour);
+                }
+
+                if(method == Method.MEDIAN && mode != COORDINATE){
+                    Arrays.sort(values,0,count);
+                    keys[c] = count % 2 == 1 ? values[count/2]
+                        : (values[count/2-1] + values[count/2]) / 2;
+                }else{
+                    double sum = 0;
+                    for(int k=0;k<count;k++){
+                        sum += values[k];
+                    }
+                    keys[c] = sum / count;
+                }
+            }
+        }
+
+        /**
+         * 階層の中での位置を, 階層の幅で割った 0 から 1 の値にするメソッド.
+         * @param c 形式概念の番号
+         * @return  位置
+         */
+        private double normalized(int c){
+            int layer = layers[c];
+            return (positions[c] + 0.5) / (layerStarts[layer+1] - layerStarts[layer]);
+        }
+    }
+
+
+
+    //////////
+    // Test //
+    //////////
+
+    public static void main(String args[]){
+
+        // 乱数でコンテクスト表を作る.
+        boolean[][] contextTable = FormalContext.randomTable(400,40,0.2,1);
+
+        FormalContext context = new FormalContext(contextTable);
+        ArrayList<Tupple> concepts = new FormalConceptParallelAnalyzer(context).analize();
+        LatticeGraph graph = new LatticeGraph(concepts,context);
+
+        long start = System.nanoTime();
+        LatticeLayout layout = new LatticeLayout(graph);
+        layout.calc();
+        System.out.println(graph.size() + " concepts, " + layout.getLayerCount() + " layers, "
+                           + (System.nanoTime() - start) / 1000000 + " ms, "
+                           + (int)layout.getWidth() + " x " + (int)layout.getHeight());
+        for(int c=0;c<5;c++){
+            System.out.println(graph.getTupple(c).getAttributeBits()
+                               + " : (" + (int)layout.getX(c) + ", " + (int)layout.getY(c) + ")");
+        }
+    }
+}
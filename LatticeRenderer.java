@@ -0,0 +1,822 @@
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import javax.imageio.ImageIO;
+
+/**
+ * LatticeLayout で配置したハッセ図を, 画面を使わずに SVG や PNG のタイルに書き出すクラス.
+ * ノードや辺のオブジェクトを作らず, LatticeGraph と LatticeLayout の配列から
+ * 1つずつ書き出すので, SVG ならば使用メモリは形式概念あたり1ビットで済む.
+ * PNG ではこれにタイル1枚分と, 描く辺あたり8バイトの振り分け表と, 今の行を通る辺の表が加わる.
+ * JUNG のグラフに写す必要がないので, 画面の無いサーバでも大きな束を書き出せる.
+ *
+ * 詳細度は縮尺に合わせて次のように落とす.
+ * <ul>
+ * <li>同じ階層で, 左隣に描いたノードとの間隔が setMinimumNodeSpacing() より狭いノードは描かない.
+ *     そのノードにつながる辺とラベルも描かない.</li>
+ * <li>ラベルは両隣に描いたノードとの間隔に収まる文字数で切り, 切ったら末尾を "…" にする.
+ *     2文字も入らなければ描かない.</li>
+ * </ul>
+ * PNG は最初に描く辺を上端の通るタイルの行で1度だけ振り分けておき, 行ごとに
+ * その行を通る辺をタイルの列に振り分けてから1枚ずつ描くので,
+ * 何も描かないタイルは書き出さない. 文字の幅は書体によらずフォントの大きさの0.6倍とみなす.
+ *
+ * @author  uehashu
+ * @version 1.0
+ */
+public class LatticeRenderer{
+
+    /**
+     * ノードのラベルに書く内容.
+     */
+    public enum Label{
+        /** ラベルを書かない. */
+        NONE,
+        /** 内包の属性番号. */
+        INTENT,
+        /** 外延のオブジェクト番号. */
+        EXTENT,
+        /** 外延と内包の要素数. "外延/内包" の形. */
+        SIZE
+    }
+
+    private static final double CHAR_WIDTH = 0.6; // フォントの大きさに対する1文字の幅.
+    private static final String ELLIPSIS = "…"; // 切ったラベルの末尾.
+
+    LatticeGraph graph; // 書き出すハッセ図.
+    LatticeLayout layout; // 計算済みの配置.
+    double scale = 1; // 配置の座標に掛ける倍率.
+    double nodeRadius = 4; // ノードの半径(ピクセル).
+    double fontSize = 10; // ラベルのフォントの大きさ(ピクセル).
+    int maxLabelLength = 32; // ラベルの文字数の上限.
+    double minNodeSpacing = 1; // 同じ階層で描くノードの間隔の下限(ピクセル).
+    int tileSize = 512; // PNG のタイルの一辺(ピクセル).
+    Label label = Label.INTENT; // ラベルに書く内容.
+    long[] visible; // 描くノードの集合. 書き出すたびに作る.
+    long[] intent; // ラベルを作るための作業用のビット列.
+    long[] extent; // ラベルを作るための作業用のビット列.
+
+
+    //////////////////
+    // Constructors //
+    //////////////////
+
+    /**
+     * @param graph  ハッセ図
+     * @param layout graph を calc() で配置したもの
+     */
+    public LatticeRenderer(LatticeGraph graph, LatticeLayout layout){
+        if(layout.xs == null || layout.graph.size() != graph.size()){
+            throw new IllegalArgumentException("layout has not been calculated for the graph");
+        }
+        this.graph = graph;
+        this.layout = layout;
+    }
+
+
+
+    /////////////
+    // Methods //
+    /////////////
+
+    /**
+     * 配置の座標に掛ける倍率を設定するメソッド. 画像の大きさは配置の幅と高さにこれを掛けたもの.
+     * @param scale 倍率
+     */
+    public void setScale(double scale){
+        if(!(scale > 0)){
+            throw new IllegalArgumentException("scale must be positive: " + scale);
+        }
+        this.scale = scale;
+    }
+
+
+    /**
+     * ノードの半径を設定するメソッド.
+     * @param nodeRadius 半径(ピクセル)
+     */
+    public void setNodeRadius(double nodeRadius){
+        if(!(nodeRadius > 0)){
+            throw new IllegalArgumentException("node radius must be positive: " + nodeRadius);
+        }
+        this.nodeRadius = nodeRadius;
+    }
+
+
+    /**
+     * ラベルのフォントの大きさを設定するメソッド.
+     * @param fontSize 大きさ(ピクセル)
+     */
+    public void setFontSize(double fontSize){
+        if(!(fontSize > 0)){
+            throw new IllegalArgumentException("font size must be positive: " + fontSize);
+        }
+        this.fontSize = fontSize;
+    }
+
+
+    /**
+     * ラベルの文字数の上限を設定するメソッド. 長いラベルはこの文字数で切る.
+     * @param maxLabelLength 文字数. 2 以上.
+     */
+    public void setMaxLabelLength(int maxLabelLength){
+        if(maxLabelLength < 2){
+            throw new IllegalArgumentException("max label length must be at least 2: " + maxLabelLength);
+        }
+        this.maxLabelLength = maxLabelLength;
+    }
+
+
+    /**
+     * 同じ階層で描くノードの間隔の下限を設定するメソッド. これより詰まったノードは描かない.
+     * @param minNodeSpacing 間隔(ピクセル). 0 ならば全てのノードを描く.
+     */
+    public void setMinimumNodeSpacing(double minNodeSpacing){
+        if(!(minNodeSpacing >= 0)){
+            throw new IllegalArgumentException("spacing must not be negative: " + minNodeSpacing);
+        }
+        this.minNodeSpacing = minNodeSpacing;
+    }
+
+
+    /**
+     * PNG のタイルの一辺を設定するメソッド.
+     * @param tileSize 一辺(ピクセル)
+     */
+    public void setTileSize(int tileSize){
+        if(tileSize <= 0){
+            throw new IllegalArgumentException("tile size must be positive: " + tileSize);
+        }
+        this.tileSize = tileSize;
+    }
+
+
+    /**
+     * ラベルに書く内容を設定するメソッド.
+     * @param label 内容
+     */
+    public void setLabel(Label label){
+        if(label == null){
+            throw new IllegalArgumentException("label must not be null");
+        }
+        this.label = label;
+    }
+
+
+    /**
+     * 画像の幅を返すメソッド.
+     * @return 幅(ピクセル)
+     */
+    public int getWidth(){
+        return (int)Math.ceil(layout.getWidth() * scale);
+    }
+
+
+    /**
+     * 画像の高さを返すメソッド.
+     * @return 高さ(ピクセル)
+     */
+    public int getHeight(){
+        return (int)Math.ceil(layout.getHeight() * scale);
+    }
+
+
+    /**
+     * SVG をファイルに書き出すメソッド.
+     * @param path 書き出すファイル
+     * @throws IOException 書き込めなかった場合
+     */
+    public void writeSvg(Path path) throws IOException{
+        try(Writer writer = Files.newBufferedWriter(path,StandardCharsets.UTF_8)){
+            writeSvg(writer);
+        }
+    }
+
+
+    /**
+     * SVG を書き出すメソッド. 辺, ノード, ラベルの順に1つずつ書くので, 文書全体を保持しない.
+     * writer は閉じない.
+     * @param writer 書き出す先. バッファ付きであること.
+     * @throws IOException 書き込めなかった場合
+     */
+    public void writeSvg(Writer writer) throws IOException{
+        prepare();
+        SvgSink sink = new SvgSink(writer);
+        writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        writer.write("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"" + getWidth()
+                     + "\" height=\"" + getHeight() + "\" viewBox=\"0 0 " + getWidth() + " " + getHeight() + "\">\n");
+
+        writer.write("<g stroke=\"#999999\" stroke-width=\"1\">\n");
+        for(int c=0;c<graph.size();c++){
+            if(!BitVectors.get(visible,c)){
+                continue;
+            }
+            for(int k=0;k<graph.getUpperCoverCount(c);k++){
+                int upper = graph.getUpperCover(c,k);
+                if(BitVectors.get(visible,upper)){
+                    sink.edge(x(upper),y(upper),x(c),y(c));
+                }
+            }
+        }
+        writer.write("</g>\n");
+
+        writer.write("<g fill=\"#3366cc\">\n");
+        drawNodes(sink,Double.NEGATIVE_INFINITY,Double.NEGATIVE_INFINITY,
+                  Double.POSITIVE_INFINITY,Double.POSITIVE_INFINITY);
+        writer.write("</g>\n");
+
+        if(label != Label.NONE){
+            writer.write("<g font-family=\"sans-serif\" font-size=\"" + fontSize + "\" text-anchor=\"middle\">\n");
+            drawLabels(sink,Double.NEGATIVE_INFINITY,Double.NEGATIVE_INFINITY,
+                       Double.POSITIVE_INFINITY,Double.POSITIVE_INFINITY);
+            writer.write("</g>\n");
+        }
+        writer.write("</svg>\n");
+        writer.flush();
+    }
+
+
+    /**
+     * PNG のタイルに分けて書き出すメソッド.
+     * タイルは directory に "tile-行-列.png" の名前で書き, 何も描かないタイルは書き出さない.
+     * @param directory 書き出すディレクトリ. 無ければ作る.
+     * @return          書き出したタイルの数
+     * @throws IOException 書き込めなかった場合
+     */
+    public int writeTiles(Path directory) throws IOException{
+        prepare();
+        Files.createDirectories(directory);
+        int rows = (getHeight() + tileSize - 1) / tileSize;
+        int columns = (getWidth() + tileSize - 1) / tileSize;
+        int written = 0;
+        BufferedImage image = new BufferedImage(tileSize,tileSize,BufferedImage.TYPE_INT_RGB);
+
+        // 描く辺を, 上端が通るタイルの行ごとに1度だけ振り分けておく.
+        int[] rowStarts = new int[rows+1];
+        long[] byRow = bucketRows(rows,rowStarts);
+        long[] active = new long[16]; // 今の行を通るかもしれない辺.
+        int activeLength = 0;
+
+        for(int row=0;row<rows;row++){
+            double top = (double)row * tileSize;
+            double bottom = top + tileSize;
+
+            // 前の行までに始まった辺のうち, この行より上で終わったものを除き, この行で始まる辺を加える.
+            int kept = 0;
+            for(int e=0;e<activeLength;e++){
+                if(y((int)(active[e] >>> 32)) >= top){
+                    active[kept++] = active[e];
+                }
+            }
+            activeLength = kept;
+            int added = rowStarts[row+1] - rowStarts[row];
+            if(activeLength + added > active.length){
+                active = Arrays.copyOf(active,Math.max(activeLength + added,active.length * 2));
+            }
+            System.arraycopy(byRow,rowStarts[row],active,activeLength,added);
+            activeLength += added;
+
+            // この行を通る辺を, 行の中で通るタイルの列ごとに振り分ける.
+            int[] starts = new int[columns+1];
+            bucketColumns(active,activeLength,top,bottom,columns,starts,null);
+            for(int col=0;col<columns;col++){
+                starts[col+1] += starts[col];
+            }
+            long[] entries = new long[starts[columns]];
+            bucketColumns(active,activeLength,top,bottom,columns,starts.clone(),entries);
+
+            for(int col=0;col<columns;col++){
+                double left = (double)col * tileSize;
+                Graphics2D g = image.createGraphics();
+                try{
+                    g.setColor(Color.WHITE);
+                    g.fillRect(0,0,tileSize,tileSize);
+                    g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,RenderingHints.VALUE_ANTIALIAS_ON);
+                    g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING,RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+                    g.translate(-left,-top);
+                    TileSink sink = new TileSink(g,left,top);
+
+                    g.setColor(Color.GRAY);
+                    g.setStroke(new BasicStroke(1f));
+                    for(int e=starts[col];e<starts[col+1];e++){
+                        int lower = (int)(entries[e] >>> 32);
+                        int upper = (int)entries[e];
+                        sink.edge(x(upper),y(upper),x(lower),y(lower));
+                    }
+                    g.setColor(new Color(0x3366cc));
+                    drawNodes(sink,left,top,left + tileSize,bottom);
+                    if(label != Label.NONE){
+                        g.setColor(Color.BLACK);
+                        g.setFont(new Font(Font.SANS_SERIF,Font.PLAIN,(int)Math.round(fontSize)));
+                        drawLabels(sink,left,top,left + tileSize,bottom);
+                    }
+                    if(sink.drawn){
+                        ImageIO.write(image,"png",directory.resolve("tile-" + row + "-" + col + ".png").toFile());
+                        written++;
+                    }
+                }finally{
+                    g.dispose();
+                }
+            }
+        }
+        return written;
+    }
+
+
+
+    /////////////////////
+    // Private Methods //
+    /////////////////////
+
+    /**
+     * 描くノードを決めるメソッド. 階層ごとに左から見て, 左隣に描いたノードと
+     * 十分に離れているものだけを描く.
+     */
+    private void prepare(){
+        visible = BitVectors.create(graph.size());
+        intent = graph.getContext().newIntent();
+        extent = graph.getContext().newExtent();
+        for(int l=0;l<layout.getLayerCount();l++){
+            double last = Double.NEGATIVE_INFINITY;
+            for(int p=0;p<layout.getLayerSize(l);p++){
+                int c = layout.getConcept(l,p);
+                if(x(c) - last >= minNodeSpacing){
+                    BitVectors.set(visible,c);
+                    last = x(c);
+                }
+            }
+        }
+    }
+
+
+    /**
+     * 範囲に入るノードを描くメソッド.
+     * @param sink   描く先
+     * @param minX   範囲の左端
+     * @param minY   範囲の上端
+     * @param maxX   範囲の右端
+     * @param maxY   範囲の下端
+     * @throws IOException 書き込めなかった場合
+     */
+    private void drawNodes(Sink sink, double minX, double minY, double maxX, double maxY) throws IOException{
+        for(int l=0;l<layout.getLayerCount();l++){
+            double y = layerY(l);
+            if(y + nodeRadius < minY || y - nodeRadius > maxY){
+                continue;
+            }
+            for(int p=firstPosition(l,minX - nodeRadius);p<layout.getLayerSize(l);p++){
+                int c = layout.getConcept(l,p);
+                if(x(c) - nodeRadius > maxX){
+                    break;
+                }
+                if(BitVectors.get(visible,c)){
+                    sink.node(x(c),y);
+                }
+            }
+        }
+    }
+
+
+    /**
+     * 範囲に入るラベルを描くメソッド. ラベルはノードの下に, 両隣に描いたノードとの間隔に収まるように切って描く.
+     * @param sink   描く先
+     * @param minX   範囲の左端
+     * @param minY   範囲の上端
+     * @param maxX   範囲の右端
+     * @param maxY   範囲の下端
+     * @throws IOException 書き込めなかった場合
+     */
+    private void drawLabels(Sink sink, double minX, double minY, double maxX, double maxY) throws IOException{
+        double charWidth = fontSize * CHAR_WIDTH;
+        double reach = maxLabelLength * charWidth / 2; // ラベルの中心から端までの最大の幅.
+        for(int l=0;l<layout.getLayerCount();l++){
+            double baseline = layerY(l) + nodeRadius + fontSize;
+            if(baseline < minY || baseline - fontSize > maxY){
+                continue;
+            }
+            int size = layout.getLayerSize(l);
+            for(int p=firstPosition(l,minX - reach);p<size;p++){
+                int c = layout.getConcept(l,p);
+                if(x(c) - reach > maxX){
+                    break;
+                }
+                if(!BitVectors.get(visible,c)){
+                    continue;
+                }
+
+                // 両隣に描いたノードとの間隔のうち狭い方に収まる文字数.
+                double room = Double.POSITIVE_INFINITY;
+                for(int q=p-1;q>=0;q--){
+                    int neighbour = layout.getConcept(l,q);
+                    if(BitVectors.get(visible,neighbour)){
+                        room = x(c) - x(neighbour);
+                        break;
+                    }
+                }
+                for(int q=p+1;q<size;q++){
+                    int neighbour = layout.getConcept(l,q);
+                    if(BitVectors.get(visible,neighbour)){
+                        room = Math.min(room,x(neighbour) - x(c));
+                        break;
+                    }
+                }
+                int maxChars = (int)Math.min(maxLabelLength,Math.floor(room / charWidth));
+                if(maxChars < 2){
+                    continue;
+                }
+                String text = labelOf(c,maxChars);
+                if(!text.isEmpty()){
+                    sink.label(x(c),baseline,text);
+                }
+            }
+        }
+    }
+
+
+    /**
+     * 両端を描く辺を, 上端が通るタイルの行ごとに振り分けるメソッド.
+     * @param rows      行の数
+     * @param rowStarts 行 r の辺が返り値の rowStarts[r] から rowStarts[r+1]-1 に入るように書き込む配列
+     * @return          振り分けた辺. (下の形式概念 &lt;&lt; 32) | 上の形式概念.
+     */
+    private long[] bucketRows(int rows, int[] rowStarts){
+
+        // 1回目は行ごとの数を数え, 2回目に書き込む.
+        long[] edges = null;
+        int[] next = null;
+        for(int pass=0;pass<2;pass++){
+            for(int c=0;c<graph.size();c++){
+                if(!BitVectors.get(visible,c)){
+                    continue;
+                }
+                for(int k=0;k<graph.getUpperCoverCount(c);k++){
+                    int upper = graph.getUpperCover(c,k);
+                    if(!BitVectors.get(visible,upper)){
+                        continue;
+                    }
+                    int row = Math.min(rows-1,Math.max(0,(int)Math.floor(y(upper) / tileSize)));
+                    if(edges == null){
+                        rowStarts[row+1]++;
+                    }else{
+                        edges[next[row]++] = ((long)c << 32) | upper;
+                    }
+                }
+            }
+            if(edges == null){
+                for(int r=0;r<rows;r++){
+                    rowStarts[r+1] += rowStarts[r];
+                }
+                edges = new long[rowStarts[rows]];
+                next = rowStarts.clone();
+            }
+        }
+        return edges;
+    }
+
+
+    /**
+     * タイルの行を通る辺を, 行の中で通るタイルの列に振り分けるメソッド.
+     * entries が null ならば列ごとの数を数えるだけ.
+     * @param edges       行を通るかもしれない辺. (下の形式概念 &lt;&lt; 32) | 上の形式概念.
+     * @param edgeLength  edges の辺の数
+     * @param top         行の上端
+     * @param bottom      行の下端
+     * @param columns     列の数
+     * @param starts      entries が null ならば列ごとの数を数える配列(添字は列+1),
+     *                    そうでなければ列ごとの次の書き込み位置
+     * @param entries     振り分けた辺
+     */
+    private void bucketColumns(long[] edges, int edgeLength, double top, double bottom,
+                               int columns, int[] starts, long[] entries){
+        for(int e=0;e<edgeLength;e++){
+            int c = (int)(edges[e] >>> 32);
+            int upper = (int)edges[e];
+            double yLower = y(c);
+            double yUpper = y(upper);
+            if(yLower < top || yUpper > bottom){
+                continue;
+            }
+
+            // 辺のうち行に入る部分の横の範囲から, 通る列を求める.
+            double from = Math.max(yUpper,top);
+            double to = Math.min(yLower,bottom);
+            double slope = (x(c) - x(upper)) / (yLower - yUpper);
+            double x1 = x(upper) + slope * (from - yUpper);
+            double x2 = x(upper) + slope * (to - yUpper);
+            int first = Math.max(0,(int)Math.floor((Math.min(x1,x2) - 1) / tileSize));
+            int last = Math.min(columns-1,(int)Math.floor((Math.max(x1,x2) + 1) / tileSize));
+            for(int col=first;col<=last;col++){
+                if(entries == null){
+                    starts[col+1]++;
+                }else{
+                    entries[starts[col]++] = edges[e];
+                }
+            }
+        }
+    }
+
+
+    /**
+     * 横座標が x 以上になる最初の位置を二分探索で求めるメソッド.
+     * @param layer 階層
+     * @param x     横座標(ピクセル)
+     * @return      位置. 無ければ階層の大きさ.
+     */
+    private int firstPosition(int layer, double x){
+        int lo = 0;
+        int hi = layout.getLayerSize(layer);
+        while(lo < hi){
+            int middle = (lo + hi) >>> 1;
+            if(x(layout.getConcept(layer,middle)) < x){
+                lo = middle + 1;
+            }else{
+                hi = middle;
+            }
+        }
+        return lo;
+    }
+
+
+    /**
+     * ラベルの文字列を作るメソッド. 上限を超えたところで作るのをやめ, 末尾を "…" にする.
+     * @param c        形式概念の番号
+     * @param maxChars 文字数の上限
+     * @return         ラベル
+     */
+    private String labelOf(int c, int maxChars){
+        FormalContext context = graph.getContext();
+        StringBuilder builder = new StringBuilder();
+        switch(label){
+        case SIZE:
+            builder.append(graph.getExtentCardinality(c)).append('/').append(graph.getIntentCardinality(c));
+            break;
+        case INTENT:
+            graph.getIntent(c,intent);
+            for(int m=BitVectors.nextSetBit(intent,0);m>=0 && builder.length()<=maxChars;m=BitVectors.nextSetBit(intent,m+1)){
+                if(builder.length() > 0){
+                    builder.append(',');
+                }
+                builder.append(context.getAttribute(m));
+            }
+            break;
+        default:
+            if(graph.compressedExtents != null){
+                CompressedBitmap compressed = graph.compressedExtents[c];
+                for(int g=compressed.nextSetBit(0);g>=0 && builder.length()<=maxChars;g=compressed.nextSetBit(g+1)){
+                    if(builder.length() > 0){
+                        builder.append(',');
+                    }
+                    builder.append(context.getObject(g));
+                }
+            }else{
+                graph.getExtent(c,extent);
+                for(int g=BitVectors.nextSetBit(extent,0);g>=0 && builder.length()<=maxChars;g=BitVectors.nextSetBit(extent,g+1)){
+                    if(builder.length() > 0){
+                        builder.append(',');
+                    }
+                    builder.append(context.getObject(g));
+                }
+            }
+            break;
+        }
+        if(builder.length() > maxChars){
+            builder.setLength(maxChars - 1);
+            builder.append(ELLIPSIS);
+        }
+        return builder.toString();
+    }
+
+
+    /**
+     * 形式概念の横座標(ピクセル)を返すメソッド.
+     * @param c 形式概念の番号
+     * @return  横座標
+     */
+    private double x(int c){
+        return layout.getX(c) * scale;
+    }
+
+
+    /**
+     * 形式概念の縦座標(ピクセル)を返すメソッド.
+     * @param c 形式概念の番号
+     * @return  縦座標
+     */
+    private double y(int c){
+        return layout.getY(c) * scale;
+    }
+
+
+    /**
+     * 階層の縦座標(ピクセル)を返すメソッド.
+     * @param layer 階層
+     * @return      縦座標
+     */
+    private double layerY(int layer){
+        return y(layout.getConcept(layer,0));
+    }
+
+
+
+    ///////////////////
+    // Inner Classes //
+    ///////////////////
+
+    /**
+     * 辺, ノード, ラベルを描く先.
+     */
+    private abstract static class Sink{
+
+        /** 上の形式概念 (x1,y1) から下の形式概念 (x2,y2) への辺を描く. */
+        abstract void edge(double x1, double y1, double x2, double y2) throws IOException;
+
+        /** ノードを描く. */
+        abstract void node(double x, double y) throws IOException;
+
+        /** ラベルを, 中心の横座標とベースラインの縦座標を指定して描く. */
+        abstract void label(double x, double y, String text) throws IOException;
+    }
+
+
+    /**
+     * SVG の要素として書き出す Sink. 座標は小数第1位までにする.
+     */
+    private class SvgSink extends Sink{
+
+        Writer writer; // 書き出す先.
+        StringBuilder line = new StringBuilder(); // 1要素分の文字列. 使い回す.
+
+        SvgSink(Writer writer){
+            this.writer = writer;
+        }
+
+        // @Override
+        void edge(double x1, double y1, double x2, double y2) throws IOException{
+            line.setLength(0);
+            line.append("<line x1=\"");
+            number(x1).append("\" y1=\"");
+            number(y1).append("\" x2=\"");
+            number(x2).append("\" y2=\"");
+            number(y2).append("\"/>\n");
+            writer.append(line);
+        }
+
+        // @Override
+        void node(double x, double y) throws IOException{
+            line.setLength(0);
+            line.append("<circle cx=\"");
+            number(x).append("\" cy=\"");
+            number(y).append("\" r=\"");
+            number(nodeRadius).append("\"/>\n");
+            writer.append(line);
+        }
+
+        // @Override
+        void label(double x, double y, String text) throws IOException{
+            line.setLength(0);
+            line.append("<text x=\"");
+            number(x).append("\" y=\"");
+            number(y).append("\">");
+            for(int i=0;i<text.length();i++){
+                char ch = text.charAt(i);
+                if(ch == '&'){
+                    line.append("&amp;");
+                }else if(ch == '<'){
+                    line.append("&lt;");
+                }else if(ch == '>'){
+                    line.append("&gt;");
+                }else{
+                    line.append(ch);
+                }
+            }
+            line.append("</text>\n");
+            writer.append(line);
+        }
+
+        /**
+         * 数値を小数第1位までで書き足すメソッド. String.format() より速い.
+         * @param value 数値
+         * @return      line
+         */
+        private StringBuilder number(double value){
+            long tenths = Math.round(value * 10);
+            if(tenths < 0){
+                line.append('-');
+                tenths = -tenths;
+            }
+            line.append(tenths / 10);
+            if(tenths % 10 != 0){
+                line.append('.').append(tenths % 10);
+            }
+            return line;
+        }
+    }
+
+
+    /**
+     * タイルの画像に描く Sink. 何か描いたかを覚えておく.
+     * 辺はタイルの中の部分だけに切ってから描く. アンチエイリアスをかけると,
+     * タイルの外にはみ出す長い線分をそのまま渡すよりも桁違いに速い.
+     */
+    private class TileSink extends Sink{
+
+        Graphics2D g; // 描く先. 平行移動してある.
+        double minX; // タイルの左端. 線の太さの分だけ広げる.
+        double minY; // タイルの上端.
+        double maxX; // タイルの右端.
+        double maxY; // タイルの下端.
+        Line2D.Double line = new Line2D.Double(); // 使い回す線分.
+        Ellipse2D.Double circle = new Ellipse2D.Double(); // 使い回す円.
+        boolean drawn = false; // 何か描いたら真.
+
+        TileSink(Graphics2D g, double left, double top){
+            this.g = g;
+            this.minX = left - 1;
+            this.minY = top - 1;
+            this.maxX = left + tileSize + 1;
+            this.maxY = top + tileSize + 1;
+        }
+
+        // @Override
+        void edge(double x1, double y1, double x2, double y2){
+
+            // Liang-Barsky 法で線分をタイルに切る.
+            double dx = x2 - x1;
+            double dy = y2 - y1;
+            double[] p = {-dx,dx,-dy,dy};
+            double[] q = {x1 - minX,maxX - x1,y1 - minY,maxY - y1};
+            double from = 0;
+            double to = 1;
+            for(int i=0;i<4;i++){
+                if(p[i] == 0){
+                    if(q[i] < 0){
+                        return;
+                    }
+                }else if(p[i] < 0){
+                    from = Math.max(from,q[i] / p[i]);
+                }else{
+                    to = Math.min(to,q[i] / p[i]);
+                }
+            }
+            if(from > to){
+                return;
+            }
+            line.setLine(x1 + from * dx,y1 + from * dy,x1 + to * dx,y1 + to * dy);
+            g.draw(line);
+            drawn = true;
+        }
+
+        // @Override
+        void node(double x, double y){
+            circle.setFrame(x - nodeRadius,y - nodeRadius,2 * nodeRadius,2 * nodeRadius);
+            g.fill(circle);
+            drawn = true;
+        }
+
+        // @Override
+        void label(double x, double y, String text){
+            float width = (float)(text.length() * fontSize * CHAR_WIDTH);
+            g.drawString(text,(float)x - width / 2,(float)y);
+            drawn = true;
+        }
+    }
+
+
+
+    //////////
+    // Test //
+    //////////
+
+    public static void main(String args[]) throws IOException{
+
+        // 乱数でコンテクスト表を作って配置する.
+        boolean[][] contextTable = FormalContext.randomTable(200,20,0.25,1);
+        FormalContext context = new FormalContext(contextTable);
+        LatticeGraph graph = new LatticeGraph(new FormalConceptParallelAnalyzer(context).analize(),context);
+        LatticeLayout layout = new LatticeLayout(graph);
+        layout.calc();
+
+        // SVG と, 縮小した PNG のタイルに書き出す.
+        Path directory = Files.createTempDirectory("lattice");
+        LatticeRenderer renderer = new LatticeRenderer(graph,layout);
+        renderer.setMaxLabelLength(12);
+        renderer.writeSvg(directory.resolve("lattice.svg"));
+        renderer.setScale(0.25);
+        renderer.setLabel(Label.SIZE);
+        int tiles = renderer.writeTiles(directory.resolve("tiles"));
+        System.out.println(graph.size() + " concepts -> " + directory + " ("
+                           + Files.size(directory.resolve("lattice.svg")) + " bytes of SVG, "
+                           + tiles + " tiles of " + renderer.getWidth() + " x " + renderer.getHeight() + ")");
+    }
+}
@@ -1,4 +1,5 @@
 import java.util.HashSet;
+import java.util.LinkedList;
 
 /**
  * 形式概念解析で得られたタプルに対するハッセ図のノードを表すクラス.
@@ -7,13 +8,23 @@ import java.util.HashSet;
 public class Node{
 
     Tupple tupple; // このノードが持つタプル.
+    long[] packedExtent; // コンテクスト表のビット位置で詰め直したオブジェクト部分集合.
     int layer; // このノードの階層番号. タプルが持つオブジェクト集合の要素数に等しい.
-    HashSet<Node> superclasses; // このノードの親集合の集合.
+    HashSet<Node> upperCovers; // このノードの直接の親集合. ハッセ図が設定する.
+    HashSet<Node> superclasses; // このノードの親集合の集合. 必要になってから求める.
 
     Node(Tupple tupple){
+        this(tupple,null);
+    }
+
+    /**
+     * @param tupple       タプル
+     * @param packedExtent FormalContext のビット位置で詰め直したオブジェクト部分集合
+     */
+    Node(Tupple tupple, long[] packedExtent){
         this.tupple = tupple;
+        this.packedExtent = packedExtent;
         layer = tupple.getObjectSubsetCardinality();
-        superclasses = new HashSet<>();
     }
 
     /**
@@ -24,6 +35,22 @@ public class Node{
         return tupple;
     }
 
+    /**
+     * このノードが持つタプルのオブジェクト部分集合を返すメソッド.
+     * @return オブジェクト部分集合のビット列
+     */
+    PackedBitSet getExtent(){
+        return tupple.getObjectBits();
+    }
+
+    /**
+     * FormalContext のビット位置で詰め直したオブジェクト部分集合を返すメソッド.
+     * @return オブジェクト部分集合のビット列. 無い場合は null.
+     */
+    long[] getPackedExtent(){
+        return packedExtent;
+    }
+
     /**
      * 階層番号を返すメソッド.
      * @return 階層番号
@@ -34,9 +61,22 @@ public class Node{
 
     /**
      * このノードの親集合の集合を返すメソッド.
+     * 直接の親集合が設定されていれば, 初めて呼ばれたときにそれをたどって求める.
      * @return 親集合の集合
      */
     HashSet<Node> getSuperclasses(){
+        if(superclasses == null){
+            superclasses = new HashSet<>();
+            if(upperCovers != null){
+                LinkedList<Node> queue = new LinkedList<>(upperCovers);
+                while(!queue.isEmpty()){
+                    Node node = queue.poll();
+                    if(superclasses.add(node) && node.upperCovers != null){
+                        queue.addAll(node.upperCovers);
+                    }
+                }
+            }
+        }
         return superclasses;
     }
 
@@ -65,9 +105,9 @@ public class Node{
     // @override
     public String toString(){
         String str = new String();
-        str += tupple.getObjectSubset().toString();
+        str += tupple.getObjectBits().toString();
         str += ":";
-        str += tupple.getAttributeSubset().toString();
+        str += tupple.getAttributeBits().toString();
         str += "\n";
         return str;
     }
@@ -0,0 +1,317 @@
+import java.util.Arrays;
+
+/**
+ * 非負整数の集合を long[] のビット列で表すクラス.
+ * 整数 i は words[i/64] の (i%64) ビット目に対応する.
+ * 共通部分, 部分集合判定, 比較などは全てワード単位で行ない,
+ * ハッシュ値の計算やコピーでも要素ごとのオブジェクトを作らない.
+ *
+ * HashSet<Integer> として扱いたい場合は PackedBitSetView を使う.
+ *
+ * @author  uehashu
+ * @version 1.0
+ */
+public class PackedBitSet{
+
+    private static final long[] EMPTY = new long[0];
+
+    long[] words; // ビット列.
+    int cardinality; // 要素数. 分からないときは -1.
+
+
+    //////////////////
+    // Constructors //
+    //////////////////
+
+    public PackedBitSet(){
+        words = EMPTY;
+        cardinality = 0;
+    }
+
+
+    /**
+     * @param capacity 最初から格納できるようにしておく整数の上限(これ未満)
+     */
+    public PackedBitSet(int capacity){
+        words = BitVectors.create(capacity);
+        cardinality = 0;
+    }
+
+
+    /**
+     * ビット列をそのまま使うコンストラクタ. 配列はコピーされないことに注意する.
+     * @param words ビット列
+     */
+    PackedBitSet(long[] words){
+        this.words = words;
+        cardinality = -1;
+    }
+
+
+
+    /////////////
+    // Methods //
+    /////////////
+
+    /**
+     * 要素を追加するメソッド.
+     * @param i 追加する整数. 非負であること.
+     * @return  要素が増えたならば真
+     */
+    public boolean add(int i){
+        if(i < 0){
+            throw new IndexOutOfBoundsException("i < 0: " + i);
+        }
+        ensureCapacity(i+1);
+        long mask = 1L << i;
+        if((words[i >>> 6] & mask) != 0){
+            return false;
+        }
+        words[i >>> 6] |= mask;
+        if(cardinality >= 0){
+            cardinality++;
+        }
+        return true;
+    }
+
+
+    /**
+     * 要素を取り除くメソッド.
+     * @param i 取り除く整数
+     * @return  要素が減ったならば真
+     */
+    public boolean remove(int i){
+        if(!contains(i)){
+            return false;
+        }
+        words[i >>> 6] &= ~(1L << i);
+        if(cardinality >= 0){
+            cardinality--;
+        }
+        return true;
+    }
+
+
+    /**
+     * 要素が含まれているかを返すメソッド.
+     * @param i 整数
+     * @return  含まれていれば真
+     */
+    public boolean contains(int i){
+        return i >= 0 && (i >>> 6) < words.length && BitVectors.get(words,i);
+    }
+
+
+    /**
+     * 要素数を返すメソッド.
+     * @return 要素数
+     */
+    public int cardinality(){
+        if(cardinality < 0){
+            cardinality = BitVectors.cardinality(words);
+        }
+        return cardinality;
+    }
+
+
+    /**
+     * 空集合であるかを返すメソッド.
+     * @return 空集合ならば真
+     */
+    public boolean isEmpty(){
+        return cardinality == 0 || BitVectors.isEmpty(words);
+    }
+
+
+    /**
+     * 全ての要素を取り除くメソッド.
+     */
+    public void clear(){
+        Arrays.fill(words,0L);
+        cardinality = 0;
+    }
+
+
+    /**
+     * from 以降で最初の要素を返すメソッド.
+     * @param from 探索を始める整数
+     * @return     見つからなければ -1
+     */
+    public int nextSetBit(int from){
+        return BitVectors.nextSetBit(words,from);
+    }
+
+
+    /**
+     * この集合を other との共通部分で置き換えるメソッド.
+     * @param other 相手の集合
+     * @return      この集合
+     */
+    public PackedBitSet and(PackedBitSet other){
+        int common = Math.min(words.length,other.words.length);
+        for(int i=0;i<common;i++){
+            words[i] &= other.words[i];
+        }
+        for(int i=common;i<words.length;i++){
+            words[i] = 0L;
+        }
+        cardinality = -1;
+        return this;
+    }
+
+
+    /**
+     * この集合を other との和集合で置き換えるメソッド.
+     * @param other 相手の集合
+     * @return      この集合
+     */
+    public PackedBitSet or(PackedBitSet other){
+        ensureCapacity(other.words.length << 6);
+        for(int i=0;i<other.words.length;i++){
+            words[i] |= other.words[i];
+        }
+        cardinality = -1;
+        return this;
+    }
+
+
+    /**
+     * この集合から other の要素を取り除くメソッド.
+     * @param other 相手の集合
+     * @return      この集合
+     */
+    public PackedBitSet andNot(PackedBitSet other){
+        int common = Math.min(words.length,other.words.length);
+        for(int i=0;i<common;i++){
+            words[i] &= ~other.words[i];
+        }
+        cardinality = -1;
+        return this;
+    }
+
+
+    /**
+     * この集合が other の部分集合であるかを返すメソッド.
+     * @param other 相手の集合
+     * @return      部分集合ならば真
+     */
+    public boolean isSubsetOf(PackedBitSet other){
+        int common = Math.min(words.length,other.words.length);
+        for(int i=0;i<common;i++){
+            if((words[i] & ~other.words[i]) != 0){
+                return false;
+            }
+        }
+        for(int i=common;i<words.length;i++){
+            if(words[i] != 0){
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * 共通部分が空でないかを返すメソッド.
+     * @param other 相手の集合
+     * @return      共通の要素があれば真
+     */
+    public boolean intersects(PackedBitSet other){
+        int common = Math.min(words.length,other.words.length);
+        for(int i=0;i<common;i++){
+            if((words[i] & other.words[i]) != 0){
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * コピーを返すメソッド. ビット列の配列を1つ複製するだけなので安い.
+     * @return コピー
+     */
+    public PackedBitSet copy(){
+        PackedBitSet copy = new PackedBitSet(words.clone());
+        copy.cardinality = cardinality;
+        return copy;
+    }
+
+
+    /**
+     * 比較用. 後ろに続く0のワードは無視する.
+     * @param o 比較対象
+     * @return  同じ要素を持つとき, 真を返す.
+     */
+    // @Override
+    public boolean equals(Object o){
+        if(this == o){
+            return true;
+        }
+        if(!(o instanceof PackedBitSet)){
+            return false;
+        }
+        long[] a = words;
+        long[] b = ((PackedBitSet)o).words;
+        if(a.length > b.length){
+            long[] swap = a;
+            a = b;
+            b = swap;
+        }
+        for(int i=0;i<a.length;i++){
+            if(a[i] != b[i]){
+                return false;
+            }
+        }
+        for(int i=a.length;i<b.length;i++){
+            if(b[i] != 0){
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * 比較用. 後ろに続く0のワードは無視する. オブジェクトを生成しない.
+     * @return ハッシュ
+     */
+    // @Override
+    public int hashCode(){
+        return BitVectors.hash(words);
+    }
+
+
+    /**
+     * HashSet と同じ形式の文字列を返すメソッド.
+     * @return "[1, 2, 3]" のような文字列
+     */
+    // @Override
+    public String toString(){
+        StringBuilder builder = new StringBuilder("[");
+        for(int i=nextSetBit(0);i>=0;i=nextSetBit(i+1)){
+            if(builder.length() > 1){
+                builder.append(", ");
+            }
+            builder.append(i);
+        }
+        return builder.append(']').toString();
+    }
+
+
+
+    /////////////////////
+    // Private Methods //
+    /////////////////////
+
+    /**
+     * size 未満の整数を格納できるようにビット列を伸ばすメソッド.
+     * @param size 格納したい整数の上限(これ未満)
+     */
+    private void ensureCapacity(int size){
+        int required = BitVectors.words(size);
+        if(words.length < required){
+            words = Arrays.copyOf(words,Math.max(required,words.length*2));
+        }
+    }
+}
@@ -0,0 +1,258 @@
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+
+/**
+ * PackedBitSet を HashSet<Integer> として見せるためのアダプタクラス.
+ * Tupple.getObjectSubset() などの従来のアクセサが HashSet<Integer> を返すので,
+ * それを使っている既存のコードがそのまま動くようにするために用意している.
+ * 中身は PackedBitSet なので, 変更はそのまま元のビット列に反映される.
+ *
+ * 相手も PackedBitSetView の場合, containsAll や addAll などはワード単位で計算する.
+ *
+ * @author  uehashu
+ * @version 1.0
+ */
+public class PackedBitSetView extends HashSet<Integer>{
+
+    private static final long serialVersionUID = 1L;
+
+    transient PackedBitSet bits; // 実体のビット列.
+
+
+    //////////////////
+    // Constructors //
+    //////////////////
+
+    public PackedBitSetView(){
+        this(new PackedBitSet());
+    }
+
+
+    /**
+     * @param bits 実体のビット列. コピーされないことに注意する.
+     */
+    public PackedBitSetView(PackedBitSet bits){
+        super(0);
+        this.bits = bits;
+    }
+
+
+
+    /////////////
+    // Methods //
+    /////////////
+
+    /**
+     * 実体のビット列を返すメソッド.
+     * @return ビット列
+     */
+    public PackedBitSet getBits(){
+        return bits;
+    }
+
+
+    // @Override
+    public int size(){
+        return bits.cardinality();
+    }
+
+
+    // @Override
+    public boolean isEmpty(){
+        return bits.isEmpty();
+    }
+
+
+    // @Override
+    public boolean contains(Object o){
+        return (o instanceof Integer) && bits.contains(((Integer)o).intValue());
+    }
+
+
+    // @Override
+    public boolean add(Integer e){
+        return bits.add(e.intValue());
+    }
+
+
+    // @Override
+    public boolean remove(Object o){
+        return (o instanceof Integer) && bits.remove(((Integer)o).intValue());
+    }
+
+
+    // @Override
+    public void clear(){
+        bits.clear();
+    }
+
+
+    // @Override
+    public boolean containsAll(Collection<?> c){
+        if(c instanceof PackedBitSetView){
+            return ((PackedBitSetView)c).bits.isSubsetOf(bits);
+        }
+        return super.containsAll(c);
+    }
+
+
+    // @Override
+    public boolean addAll(Collection<? extends Integer> c){
+        if(c instanceof PackedBitSetView){
+            int before = bits.cardinality();
+            bits.or(((PackedBitSetView)c).bits);
+            return bits.cardinality() != before;
+        }
+        return super.addAll(c);
+    }
+
+
+    // @Override
+    public boolean retainAll(Collection<?> c){
+        if(c instanceof PackedBitSetView){
+            int before = bits.cardinality();
+            bits.and(((PackedBitSetView)c).bits);
+            return bits.cardinality() != before;
+        }
+        return super.retainAll(c);
+    }
+
+
+    // @Override
+    public boolean removeAll(Collection<?> c){
+        if(c instanceof PackedBitSetView){
+            int before = bits.cardinality();
+            bits.andNot(((PackedBitSetView)c).bits);
+            return bits.cardinality() != before;
+        }
+        return super.removeAll(c);
+    }
+
+
+    // @Override
+    public boolean equals(Object o){
+        if(o instanceof PackedBitSetView){
+            return bits.equals(((PackedBitSetView)o).bits);
+        }
+        return super.equals(o);
+    }
+
+
+    // @Override
+    public int hashCode(){
+        // Set の規約に従い, 要素のハッシュ値の和を返す.
+        int hash = 0;
+        for(int i=bits.nextSetBit(0);i>=0;i=bits.nextSetBit(i+1)){
+            hash += i;
+        }
+        return hash;
+    }
+
+
+    /**
+     * ビット列ごと複製したビューを返すメソッド.
+     * @return 複製
+     */
+    // @Override
+    public Object clone(){
+        return new PackedBitSetView(bits.copy());
+    }
+
+
+    /**
+     * 要素を昇順にたどるイテレータを返すメソッド. remove() にも対応している.
+     * @return イテレータ
+     */
+    // @Override
+    public Iterator<Integer> iterator(){
+        return new Iterator<Integer>(){
+            int next = bits.nextSetBit(0);
+            int last = -1;
+
+            // @Override
+            public boolean hasNext(){
+                return next >= 0;
+            }
+
+            // @Override
+            public Integer next(){
+                if(next < 0){
+                    throw new NoSuchElementException();
+                }
+                last = next;
+                next = bits.nextSetBit(next+1);
+                return last;
+            }
+
+            // @Override
+            public void remove(){
+                if(last < 0){
+                    throw new IllegalStateException();
+                }
+                bits.remove(last);
+                last = -1;
+            }
+        };
+    }
+
+
+    /**
+     * 要素を昇順に並べた配列を返すメソッド.
+     * 新しい JDK の HashSet.toArray() は中のハッシュ表を直接読むので, 上書きしておく.
+     * @return 配列
+     */
+    // @Override
+    public Object[] toArray(){
+        return toArray(new Object[0]);
+    }
+
+
+    /**
+     * 要素を昇順に並べた配列を返すメソッド.
+     * @param a 格納する配列. 足りなければ同じ型の配列を新しく作る.
+     * @return  配列
+     */
+    // @Override
+    @SuppressWarnings("unchecked")
+    public <T> T[] toArray(T[] a){
+        int size = size();
+        if(a.length < size){
+            a = (T[])Array.newInstance(a.getClass().getComponentType(),size);
+        }
+        int i = 0;
+        for(int e=bits.nextSetBit(0);e>=0;e=bits.nextSetBit(e+1)){
+            a[i++] = (T)Integer.valueOf(e);
+        }
+        if(a.length > size){
+            a[size] = null;
+        }
+        return a;
+    }
+
+
+    // @Override
+    public Spliterator<Integer> spliterator(){
+        return Spliterators.spliterator(this,Spliterator.DISTINCT | Spliterator.SORTED
+                                        | Spliterator.ORDERED | Spliterator.NONNULL);
+    }
+
+
+    // @Override
+    public String toString(){
+        return bits.toString();
+    }
+
+
+    /**
+     * シリアライズするときは普通の HashSet に置き換える.
+     * @return 同じ要素を持つ HashSet
+     */
+    private Object writeReplace(){
+        return new HashSet<Integer>(this);
+    }
+}
@@ -5,6 +5,9 @@ import java.util.HashSet;
  * 演算するとき, オブジェクト集合の数が多い方から比較していくと早いはずなので,
  * そういうふうにソートするように Comparator を実装しておく.
  *
+ * 各部分集合の実体は PackedBitSet で, getObjectSubset() などが返す HashSet は
+ * それを包んだ PackedBitSetView である.
+ *
  * @author  uehashu
  * @version 1.0
  *
@@ -13,26 +16,38 @@ import java.util.HashSet;
 public class Tupple implements Comparable<Tupple>{
 
 
-    HashSet<Integer> objectSubset; // オブジェクト部分集合を格納するコレクション.
-    HashSet<Integer> attributeSubset; // 属性部分集合を格納するコレクション.
+    PackedBitSet objectBits; // オブジェクト部分集合を格納するビット列.
+    PackedBitSet attributeBits; // 属性部分集合を格納するビット列.
+    PackedBitSetView objectSubset; // オブジェクト部分集合を HashSet として見せるビュー.
+    PackedBitSetView attributeSubset; // 属性部分集合を HashSet として見せるビュー.
 
     //////////////////
     // Constructors //
     //////////////////
 
     public Tupple(){
-        objectSubset = new HashSet<>();
-        attributeSubset = new HashSet<>();
+        this(new PackedBitSet(),new PackedBitSet());
     }
 
 
     /**
+     * PackedBitSetView が渡された場合はそのビット列を共有し, そうでなければコピーする.
      * @param objectSubset    オブジェクト部分集合
      * @param attributeSubset 属性部分集合
      */
     public Tupple(HashSet<Integer> objectSubset, HashSet<Integer> attributeSubset){
-        this.objectSubset = objectSubset;
-        this.attributeSubset = attributeSubset;
+        this(toBits(objectSubset),toBits(attributeSubset));
+    }
+
+
+    /**
+     * ビット列をそのまま使うコンストラクタ. ビット列はコピーされないことに注意する.
+     * @param objectBits    オブジェクト部分集合
+     * @param attributeBits 属性部分集合
+     */
+    public Tupple(PackedBitSet objectBits, PackedBitSet attributeBits){
+        this.objectBits = objectBits;
+        this.attributeBits = attributeBits;
     }
 
 
@@ -42,9 +57,8 @@ public class Tupple implements Comparable<Tupple>{
      * @param attributeSubset 属性部分集合
      */
     public Tupple(Integer obj, HashSet<Integer> attributeSubset){
-        this.objectSubset = new HashSet<>();
-        objectSubset.add(obj);
-        this.attributeSubset = attributeSubset;
+        this(new PackedBitSet(),toBits(attributeSubset));
+        objectBits.add(obj.intValue());
     }
 
 
@@ -54,10 +68,7 @@ public class Tupple implements Comparable<Tupple>{
      * @param attribute 属性
      */
     public Tupple(Integer obj, Integer attribute){
-        this.objectSubset = new HashSet<>();
-        this.attributeSubset = new HashSet<>();
-        objectSubset.add(obj);
-        attributeSubset.add(attribute);
+        this(obj.intValue(),attribute.intValue());
     }
 
 
@@ -67,7 +78,9 @@ public class Tupple implements Comparable<Tupple>{
      * @param attribute 属性
      */
     public Tupple(int obj, int attribute){
-        this((new Integer(obj)),(new Integer(attribute)));
+        this();
+        objectBits.add(obj);
+        attributeBits.add(attribute);
     }
 
 
@@ -77,7 +90,7 @@ public class Tupple implements Comparable<Tupple>{
      */
     public Tupple(int attribute){
         this();
-        attributeSubset.add(new Integer(attribute));
+        attributeBits.add(attribute);
     }
 
 
@@ -91,7 +104,7 @@ public class Tupple implements Comparable<Tupple>{
      * @return 属性部分集合の要素数
      */
     public int getAttributeSubsetCardinality(){
-        return attributeSubset.size();
+        return attributeBits.cardinality();
     }
 
 
@@ -100,7 +113,7 @@ public class Tupple implements Comparable<Tupple>{
      * @return オブジェクト部分集合の要素数
      */
     public int getObjectSubsetCardinality(){
-        return objectSubset.size();
+        return objectBits.cardinality();
     }
 
 
@@ -126,7 +139,7 @@ public class Tupple implements Comparable<Tupple>{
      * @param obj 追加するオブジェクト
      */
     public void addElementToObject(Integer obj){
-        objectSubset.add(obj);
+        objectBits.add(obj.intValue());
     }
 
 
@@ -135,7 +148,7 @@ public class Tupple implements Comparable<Tupple>{
      * @param objectSubset 追加するオブジェクト部分集合
      */
     public void addElementsToObject(HashSet<Integer> objectSubset){
-        this.objectSubset.addAll(objectSubset);
+        getObjectSubset().addAll(objectSubset);
     }
 
 
@@ -144,7 +157,7 @@ public class Tupple implements Comparable<Tupple>{
      * @param attr 追加する属性
      */
     public void addElementToAttribute(Integer attr){
-        attributeSubset.add(attr);
+        attributeBits.add(attr.intValue());
     }
 
 
@@ -153,28 +166,54 @@ public class Tupple implements Comparable<Tupple>{
      * @param attributeSubset 追加する属性部分集合
      */
     public void addElementsToAttribute(HashSet<Integer> attributeSubset){
-        this.attributeSubset.addAll(attributeSubset);
+        getAttributeSubset().addAll(attributeSubset);
     }
 
 
     /**
      * オブジェクト部分集合を返すメソッド.
+     * 返されるコレクションへの変更はこのタプルに反映される.
      * @return オブジェクトが格納されたコレクション
      */
     public HashSet<Integer> getObjectSubset(){
+        if(objectSubset == null){
+            objectSubset = new PackedBitSetView(objectBits);
+        }
         return objectSubset;
     }
 
 
     /**
      * 属性部分集合を返すメソッド.
+     * 返されるコレクションへの変更はこのタプルに反映される.
      * @return 属性が格納されたコレクション
      */
     public HashSet<Integer> getAttributeSubset(){
+        if(attributeSubset == null){
+            attributeSubset = new PackedBitSetView(attributeBits);
+        }
         return attributeSubset;
     }
 
 
+    /**
+     * オブジェクト部分集合のビット列を返すメソッド.
+     * @return オブジェクト部分集合のビット列
+     */
+    public PackedBitSet getObjectBits(){
+        return objectBits;
+    }
+
+
+    /**
+     * 属性部分集合のビット列を返すメソッド.
+     * @return 属性部分集合のビット列
+     */
+    public PackedBitSet getAttributeBits(){
+        return attributeBits;
+    }
+
+
     /**
      * 比較用. 重複削除の際に利用される. 特に気にしなくて良い.
      * @param t 比較対象
@@ -182,8 +221,8 @@ public class Tupple implements Comparable<Tupple>{
      */
     // @Override
     public boolean equals(Object t){
-        if(this.objectSubset.equals(((Tupple)t).getObjectSubset()) &&
-           this.attributeSubset.equals(((Tupple)t).getAttributeSubset())){
+        if(this.objectBits.equals(((Tupple)t).getObjectBits()) &&
+           this.attributeBits.equals(((Tupple)t).getAttributeBits())){
             return true;
         }else{
             return false;
@@ -197,32 +236,16 @@ public class Tupple implements Comparable<Tupple>{
      */
     // @Override
     public int hashCode(){
-        String str = new String();
-        for(Integer obj : objectSubset){
-            str += obj.toString();
-        }
-        for(Integer attribute : attributeSubset){
-            str += attribute.toString();
-        }
-        return str.hashCode();
+        return 31 * objectBits.hashCode() + attributeBits.hashCode();
     }
 
 
     /**
-     * ディープコピーを返すメソッド.
+     * ディープコピーを返すメソッド. ビット列の配列を複製するだけなので安い.
      * @return ディープコピー
      */
     public Tupple deepCopy(){
-        HashSet<Integer> objectSubset = new HashSet<>();
-        HashSet<Integer> attributeSubset = new HashSet<>();
-
-        for(Integer obj : this.getObjectSubset()){
-            objectSubset.add(new Integer(obj.intValue()));
-        }
-        for(Integer attribute : this.getAttributeSubset()){
-            attributeSubset.add(new Integer(attribute.intValue()));
-        }
-        return new Tupple(objectSubset,attributeSubset);
+        return new Tupple(objectBits.copy(),attributeBits.copy());
     }
 
 
@@ -234,4 +257,27 @@ public class Tupple implements Comparable<Tupple>{
     public static Tupple deepCopy(Tupple original){
         return original.deepCopy();
     }
+
+
+
+    /////////////////////
+    // Private Methods //
+    /////////////////////
+
+    /**
+     * コレクションをビット列に変換するメソッド.
+     * PackedBitSetView の場合はそのビット列をそのまま返す.
+     * @param subset 部分集合
+     * @return       ビット列
+     */
+    static PackedBitSet toBits(HashSet<Integer> subset){
+        if(subset instanceof PackedBitSetView){
+            return ((PackedBitSetView)subset).getBits();
+        }
+        PackedBitSet bits = new PackedBitSet();
+        for(Integer element : subset){
+            bits.add(element.intValue());
+        }
+        return bits;
+    }
 }
@@ -0,0 +1,41 @@
+#!/bin/sh
+# 2つのコミットでベンチマークを測って比べる.
+#
+#   bench/compare.sh <基準のコミット> <比較するコミット> [JMH の引数...]
+#
+# 各コミットを git worktree で取り出し, 今の作業ツリーの build.xml と bench/src で測る.
+# ベンチマーククラスは1つずつコンパイルし, そのコミットでコンパイルできないものは飛ばす.
+# 飛ばしたベンチマークは比較の表で new か removed になる.
+# 結果は build/bench/<コミット>.csv に残る.
+set -e
+
+if [ $# -lt 2 ]; then
+    echo "usage: $0 <baseline-commit> <commit> [jmh args...]" >&2
+    exit 1
+fi
+
+BASELINE=$1
+TARGET=$2
+shift 2
+ARGS=${*:--prof gc}
+
+ROOT=$(cd "$(dirname "$0")/.." && pwd)
+WORK=$(mktemp -d)
+trap 'git -C "$ROOT" worktree remove --force "$WORK/tree" 2>/dev/null; rm -rf "$WORK"' EXIT
+mkdir -p "$ROOT/build/bench"
+
+for COMMIT in "$BASELINE" "$TARGET"; do
+    NAME=$(git -C "$ROOT" rev-parse --short "$COMMIT")
+    git -C "$ROOT" worktree add --detach "$WORK/tree" "$COMMIT" >/dev/null
+    ant -f "$ROOT/build.xml" \
+        -Dbench.src="$WORK/tree" \
+        -Dbench.result="$ROOT/build/bench/$NAME.csv" \
+        -Dbench.args="$ARGS" \
+        bench
+    git -C "$ROOT" worktree remove --force "$WORK/tree"
+done
+
+ant -f "$ROOT/build.xml" \
+    -Dbench.baseline="$ROOT/build/bench/$(git -C "$ROOT" rev-parse --short "$BASELINE").csv" \
+    -Dbench.result="$ROOT/build/bench/$(git -C "$ROOT" rev-parse --short "$TARGET").csv" \
+    bench-compare
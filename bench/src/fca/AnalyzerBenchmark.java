@@ -0,0 +1,52 @@
+package fca;
+
+import java.util.HashMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 形式概念を全て列挙する時間を, 最初のコミットからある解析クラスで測るベンチマーク.
+ * bench/compare.sh で基準のコミットと比べられるように, 最初のコミットにある API だけを使う.
+ * 後から加えた解析クラスは ClosedSetAnalyzerBenchmark で測る.
+ * FormalConceptSimpleAnalyzer.analize(int 版)はオブジェクトの全ての部分集合を調べるので,
+ * オブジェクト数が MAX_SIMPLE_OBJECTS を超えるコンテクスト表では失敗させる.
+ *
+ * @author  uehashu
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class AnalyzerBenchmark extends ContextState{
+
+    private static final int MAX_SIMPLE_OBJECTS = 24; // int 版の単純な解析を測る最大のオブジェクト数.
+
+
+    /////////////
+    // Methods //
+    /////////////
+
+    @Benchmark
+    public HashMap<Integer,Integer> simple(){
+        if(contextTable.length > MAX_SIMPLE_OBJECTS){
+            throw new UnsupportedOperationException("too many objects for the int analyzer: "
+                                                    + contextTable.length);
+        }
+        return FormalConceptSimpleAnalyzer.analize(contextTable);
+    }
+
+    @Benchmark
+    public TreeSet<Tupple> sparse(){
+        return FormalConceptSparseAnalyzer.analize(new TreeSet<Tupple>(attributeTupples),
+                                                   universeOfObject,universeOfAttribute);
+    }
+}
@@ -0,0 +1,144 @@
+package fca;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * JMH の CSV 形式の結果ファイルを2つ比べて表にするプログラム.
+ * ベンチマーク名とパラメータが同じ行どうしを並べ, スコアの変化率を表示する.
+ * 変化が両方の誤差(99.9% 信頼区間)の和より大きければ印を付ける.
+ * -prof gc を付けて測った場合は gc.alloc.rate.norm などの行も同じように比べる.
+ *
+ * 使い方: java fca.BenchmarkCompare 基準.csv 比較.csv
+ *
+ * @author  uehashu
+ * @version 1.0
+ */
+public class BenchmarkCompare{
+
+
+    /////////////
+    // Methods //
+    /////////////
+
+    /**
+     * 結果ファイルを読み込むメソッド.
+     * @param fileName 結果ファイル
+     * @return         ベンチマーク名とパラメータから [スコア, 誤差, 単位] へのマップ
+     * @exception IOException 読み込みに失敗した場合
+     */
+    public static LinkedHashMap<String,String[]> read(String fileName) throws IOException{
+        List<String> lines = Files.readAllLines(Paths.get(fileName),StandardCharsets.UTF_8);
+        LinkedHashMap<String,String[]> results = new LinkedHashMap<>();
+        if(lines.isEmpty()){
+            return results;
+        }
+
+        ArrayList<String> header = split(lines.get(0));
+        int score = header.indexOf("Score");
+        int unit = header.indexOf("Unit");
+        int error = score + 1;
+        for(int i=1;i<lines.size();i++){
+            ArrayList<String> fields = split(lines.get(i));
+            if(fields.size() < header.size()){
+                continue;
+            }
+            StringBuilder key = new StringBuilder(fields.get(0));
+            for(int j=unit+1;j<header.size();j++){
+                key.append(' ').append(header.get(j).replace("Param: ","")).append('=').append(fields.get(j));
+            }
+            results.put(key.toString(),new String[]{fields.get(score),fields.get(error),fields.get(unit)});
+        }
+        return results;
+    }
+
+
+
+    /////////////////////
+    // Private Methods //
+    /////////////////////
+
+    /**
+     * CSV の1行を区切るメソッド. ダブルクォートで囲まれた値の中のカンマは区切りにしない.
+     * @param line 行
+     * @return     値のリスト
+     */
+    private static ArrayList<String> split(String line){
+        ArrayList<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for(int i=0;i<line.length();i++){
+            char c = line.charAt(i);
+            if(c == '"'){
+                quoted = !quoted;
+            }else if(c == ',' && !quoted){
+                fields.add(field.toString());
+                field.setLength(0);
+            }else{
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+
+    /**
+     * 数値を読むメソッド. 読めなければ NaN.
+     * @param text 文字列
+     * @return     数値
+     */
+    private static double parse(String text){
+        try{
+            return Double.parseDouble(text.trim());
+        }catch(NumberFormatException e){
+            return Double.NaN;
+        }
+    }
+
+
+
+    //////////
+    // Test //
+    //////////
+
+    public static void main(String args[]) throws IOException{
+
+        if(args.length != 2){
+            System.err.println("usage: java fca.BenchmarkCompare baseline.csv result.csv");
+            System.exit(1);
+        }
+
+        LinkedHashMap<String,String[]> baseline = read(args[0]);
+        LinkedHashMap<String,String[]> result = read(args[1]);
+
+        System.out.printf("%-70s %14s %14s %9s  %s%n","Benchmark","Baseline","Result","Change","Unit");
+        for(String key : result.keySet()){
+            String[] after = result.get(key);
+            String[] before = baseline.get(key);
+            if(before == null){
+                System.out.printf("%-70s %14s %14.3f %9s  %s%n",key,"-",parse(after[0]),"new",after[2]);
+                continue;
+            }
+            double scoreBefore = parse(before[0]);
+            double scoreAfter = parse(after[0]);
+            double change = (scoreAfter - scoreBefore) / scoreBefore * 100;
+            double error = parse(before[1]) + parse(after[1]);
+
+            // 誤差の和より大きく変化したものに印を付ける. 誤差が分からなければ付けない.
+            String mark = Math.abs(scoreAfter - scoreBefore) > error ? " *" : "";
+            System.out.printf("%-70s %14.3f %14.3f %+8.1f%%  %s%s%n",
+                              key,scoreBefore,scoreAfter,change,after[2],mark);
+        }
+        for(String key : baseline.keySet()){
+            if(!result.containsKey(key)){
+                System.out.printf("%-70s %14.3f %14s %9s  %s%n",key,parse(baseline.get(key)[0]),"-","removed",baseline.get(key)[2]);
+            }
+        }
+    }
+}
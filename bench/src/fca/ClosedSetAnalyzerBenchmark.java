@@ -0,0 +1,66 @@
+package fca;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 形式概念を全て列挙する時間を, 閉集合だけを辿る解析クラスごとに測るベンチマーク.
+ * 最初のコミットにある解析クラスは AnalyzerBenchmark で測る.
+ *
+ * @author  uehashu
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ClosedSetAnalyzerBenchmark extends ContextState{
+
+    FormalContext context; // ビット列で保持したコンテクスト表.
+
+
+    /////////////
+    // Methods //
+    /////////////
+
+    @Setup(Level.Trial)
+    public void setUpFormalContext(){
+        context = new FormalContext(contextTable);
+    }
+
+    @Benchmark
+    public HashMap<PackedBitSet,PackedBitSet> simpleClosedSets(){
+        return FormalConceptSimpleAnalyzer.analizeClosedSets(contextTable);
+    }
+
+    @Benchmark
+    public ArrayList<Tupple> nextClosure(){
+        return new FormalConceptNextClosureAnalyzer(context).analizeInLecticOrder();
+    }
+
+    @Benchmark
+    public ArrayList<Tupple> parallelSingleThread(){
+        return new FormalConceptParallelAnalyzer(context).analize(1);
+    }
+
+    @Benchmark
+    public ArrayList<Tupple> parallel(){
+        return new FormalConceptParallelAnalyzer(context).analize();
+    }
+
+    @Benchmark
+    public long parallelStream(){
+        return new FormalConceptParallelAnalyzer(context).stream(true).count();
+    }
+}
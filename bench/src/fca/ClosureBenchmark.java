@@ -0,0 +1,72 @@
+package fca;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * オブジェクト部分集合1つの閉包 X'' を求める時間を測るベンチマーク.
+ * 乱数で作った SAMPLES 個のオブジェクト部分集合を順に閉じる.
+ *
+ * @author  uehashu
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ClosureBenchmark extends ContextState{
+
+    private static final int SAMPLES = 1024; // 閉じるオブジェクト部分集合の数. 2の冪.
+
+    FormalContext context; // ビット列で保持したコンテクスト表.
+    long[][] extents; // 閉じるオブジェクト部分集合.
+    long[] intent; // X' を書き込むビット列.
+    long[] closure; // X'' を書き込むビット列.
+    ClosureCache cache; // 極作用素のキャッシュ.
+    int next = 0; // 次に閉じる部分集合.
+
+
+    /////////////
+    // Methods //
+    /////////////
+
+    @Setup(Level.Trial)
+    public void setUpSamples(){
+        context = new FormalContext(contextTable);
+        Random random = new Random(seed);
+        extents = new long[SAMPLES][];
+        for(int i=0;i<SAMPLES;i++){
+            extents[i] = context.newExtent();
+            for(int g=0;g<context.getObjectLength();g++){
+                if(random.nextInt(4) == 0){
+                    BitVectors.set(extents[i],g);
+                }
+            }
+        }
+        intent = context.newIntent();
+        closure = context.newExtent();
+        cache = new ClosureCache(context,64L << 20);
+    }
+
+    @Benchmark
+    public long[] packed(){
+        context.closeExtent(extents[next++ & (SAMPLES-1)],intent,closure);
+        return closure;
+    }
+
+    @Benchmark
+    public long[] cached(){
+        cache.closeExtent(extents[next++ & (SAMPLES-1)],intent,closure);
+        return closure;
+    }
+}
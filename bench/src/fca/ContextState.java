@@ -0,0 +1,228 @@
+package fca;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.TreeSet;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * ベンチマークで使うコンテクスト表を用意する状態クラス. 各ベンチマーククラスはこれを継承する.
+ * dataset が "synthetic" ならば objects, attributes, density, seed から乱数で作り,
+ * "livingBeings" や "planets" ならば古典的な小さいコンテクスト表を使う.
+ * "file:パス" ならば FIMI 形式(.dat)のファイルから読み込む.
+ *
+ * bench/compare.sh は基準のコミットのソースでもベンチマークをコンパイルするので,
+ * このクラスは最初のコミットからある boolean[][] と Tupple と HashSet だけを使う.
+ * FormalContext などが要るベンチマーククラスは, それぞれの @Setup で作る.
+ *
+ * @author  uehashu
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+public class ContextState{
+
+    @Param({"synthetic"})
+    public String dataset; // コンテクスト表の種類.
+
+    @Param({"20"})
+    public int objects; // オブジェクト数. synthetic のときだけ使う.
+
+    @Param({"16"})
+    public int attributes; // 属性数. synthetic のときだけ使う.
+
+    @Param({"0.3"})
+    public double density; // 接続関係の密度. synthetic のときだけ使う.
+
+    @Param({"1"})
+    public long seed; // 乱数の種. synthetic のときだけ使う.
+
+    boolean[][] contextTable; // コンテクスト表. [オブジェクト]x[属性]
+    ArrayList<Tupple> attributeTupples; // 属性ごとのタプル. FormalConceptSparseAnalyzer の入力.
+    HashSet<Integer> universeOfObject; // オブジェクトの全集合.
+    HashSet<Integer> universeOfAttribute; // 属性の全集合.
+
+
+    /////////////
+    // Methods //
+    /////////////
+
+    /**
+     * コンテクスト表を用意するメソッド.
+     * @exception IOException ファイルからの読み込みに失敗した場合
+     */
+    @Setup(Level.Trial)
+    public void setUpContext() throws IOException{
+        contextTable = createTable(dataset,objects,attributes,density,seed);
+
+        universeOfObject = new HashSet<>();
+        for(int i=1;i<=contextTable.length;i++){
+            universeOfObject.add(i);
+        }
+        int attributeLength = contextTable.length == 0 ? 0 : contextTable[0].length;
+        universeOfAttribute = new HashSet<>();
+        for(int i=1;i<=attributeLength;i++){
+            universeOfAttribute.add(i);
+        }
+
+        // 各 main() と同じく, 属性ごとにそれを持つオブジェクトを集めたタプルを作る.
+        attributeTupples = new ArrayList<>();
+        for(int m=0;m<attributeLength;m++){
+            Tupple tupple = new Tupple(m+1);
+            for(int g=0;g<contextTable.length;g++){
+                if(contextTable[g][m]){
+                    tupple.getObjectSubset().add(g+1);
+                }
+            }
+            attributeTupples.add(tupple);
+        }
+    }
+
+
+    /**
+     * コンテクスト表を作るメソッド.
+     * @param dataset    コンテクスト表の種類
+     * @param objects    オブジェクト数
+     * @param attributes 属性数
+     * @param density    接続関係の密度
+     * @param seed       乱数の種
+     * @return           コンテクスト表. [オブジェクト]x[属性]
+     * @exception IOException ファイルからの読み込みに失敗した場合
+     */
+    public static boolean[][] createTable(String dataset, int objects, int attributes,
+                                          double density, long seed) throws IOException{
+        if(dataset.equals("synthetic")){
+            return synthetic(objects,attributes,density,seed);
+        }else if(dataset.equals("livingBeings")){
+            return parse(LIVING_BEINGS);
+        }else if(dataset.equals("planets")){
+            return parse(PLANETS);
+        }else if(dataset.startsWith("file:")){
+            return readFimi(dataset.substring(5));
+        }
+        throw new IllegalArgumentException("unknown dataset: " + dataset);
+    }
+
+
+    /**
+     * 乱数でコンテクスト表を作るメソッド.
+     * @param objects    オブジェクト数
+     * @param attributes 属性数
+     * @param density    各接続関係がある確率
+     * @param seed       乱数の種
+     * @return           コンテクスト表
+     */
+    public static boolean[][] synthetic(int objects, int attributes, double density, long seed){
+        Random random = new Random(seed);
+        boolean[][] table = new boolean[objects][attributes];
+        for(int g=0;g<objects;g++){
+            for(int m=0;m<attributes;m++){
+                table[g][m] = random.nextDouble() < density;
+            }
+        }
+        return table;
+    }
+
+
+    /**
+     * FIMI 形式のファイルからコンテクスト表を読み込むメソッド.
+     * 1行が1つのオブジェクトで, 空白で区切った属性番号を並べたもの.
+     * 属性は現れた番号を小さい順に並べた列になる.
+     * @param fileName ファイル
+     * @return         コンテクスト表. [オブジェクト]x[属性]
+     * @exception IOException 読み込みに失敗した場合や, 番号でない値があった場合
+     */
+    public static boolean[][] readFimi(String fileName) throws IOException{
+        ArrayList<int[]> rows = new ArrayList<>();
+        TreeSet<Integer> labels = new TreeSet<>();
+        try(BufferedReader reader = Files.newBufferedReader(Paths.get(fileName),StandardCharsets.UTF_8)){
+            for(String line=reader.readLine();line!=null;line=reader.readLine()){
+                String trimmed = line.trim();
+                String[] fields = trimmed.isEmpty() ? new String[0] : trimmed.split("\\s+");
+                int[] row = new int[fields.length];
+                for(int i=0;i<fields.length;i++){
+                    try{
+                        row[i] = Integer.parseInt(fields[i]);
+                    }catch(NumberFormatException e){
+                        throw new IOException("not an attribute number at line " + (rows.size()+1)
+                                              + ": " + fields[i]);
+                    }
+                    labels.add(row[i]);
+                }
+                rows.add(row);
+            }
+        }
+
+        HashMap<Integer,Integer> columns = new HashMap<>();
+        for(Integer label : labels){
+            columns.put(label,columns.size());
+        }
+        boolean[][] table = new boolean[rows.size()][labels.size()];
+        for(int g=0;g<table.length;g++){
+            for(int label : rows.get(g)){
+                table[g][columns.get(label)] = true;
+            }
+        }
+        return table;
+    }
+
+
+
+    /////////////////////
+    // Private Methods //
+    /////////////////////
+
+    /**
+     * 'X' と '.' の行からコンテクスト表を作るメソッド.
+     * @param rows 行
+     * @return     コンテクスト表
+     */
+    private static boolean[][] parse(String[] rows){
+        boolean[][] table = new boolean[rows.length][];
+        for(int g=0;g<rows.length;g++){
+            table[g] = new boolean[rows[g].length()];
+            for(int m=0;m<rows[g].length();m++){
+                table[g][m] = rows[g].charAt(m) == 'X';
+            }
+        }
+        return table;
+    }
+
+
+    // Ganter, Wille "Formal Concept Analysis" の生物と水の例.
+    // オブジェクト: ヒル, ブリーム, カエル, イヌ, 藻, アシ, マメ, トウモロコシ
+    // 属性: 水が必要, 水中に住む, 陸上に住む, 葉緑素を持つ, 双子葉, 単子葉, 動ける, 手足がある, 授乳する
+    private static final String[] LIVING_BEINGS =
+        {"XX....X..",
+         "XX....XX.",
+         "XXX...XX.",
+         "X.X...XXX",
+         "XX.X.X...",
+         "XXXX.X...",
+         "X.XXX....",
+         "X.XX.X..."};
+
+    // 太陽系の惑星の例.
+    // オブジェクト: 水星, 金星, 地球, 火星, 木星, 土星, 天王星, 海王星, 冥王星
+    // 属性: 小さい, 中くらい, 大きい, 太陽に近い, 太陽から遠い, 衛星がある, 衛星がない
+    private static final String[] PLANETS =
+        {"X..X..X",
+         "X..X..X",
+         "X..X.X.",
+         "X..X.X.",
+         "..X.XX.",
+         "..X.XX.",
+         ".X..XX.",
+         ".X..XX.",
+         "X...XX."};
+}
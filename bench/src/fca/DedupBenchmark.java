@@ -0,0 +1,68 @@
+package fca;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 解析結果の重複を取り除く時間を測るベンチマーク.
+ * 全ての形式概念を, 中身は同じで別のオブジェクトのタプルと2回ずつ並べたリストを,
+ * FormalConceptSparseAnalyzer が使う TreeSet と, HashSet に入れる.
+ *
+ * @author  uehashu
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class DedupBenchmark extends ContextState{
+
+    FormalContext context; // ビット列で保持したコンテクスト表.
+    ArrayList<Tupple> duplicated; // 全ての形式概念を2回ずつ並べたリスト.
+
+
+    /////////////
+    // Methods //
+    /////////////
+
+    @Setup(Level.Trial)
+    public void setUpConcepts(){
+        context = new FormalContext(contextTable);
+        duplicated = new ArrayList<>();
+        for(Tupple concept : new FormalConceptParallelAnalyzer(context).analize(1)){
+            duplicated.add(concept);
+            duplicated.add(concept.deepCopy());
+        }
+    }
+
+    @Benchmark
+    public HashSet<Tupple> hashSet(){
+        return new HashSet<>(duplicated);
+    }
+
+    @Benchmark
+    public TreeSet<Tupple> treeSet(){
+        return new TreeSet<>(duplicated);
+    }
+
+    @Benchmark
+    public HashSet<PackedBitSet> extents(){
+        HashSet<PackedBitSet> extents = new HashSet<>();
+        for(Tupple tupple : duplicated){
+            extents.add(tupple.getObjectBits());
+        }
+        return extents;
+    }
+}
@@ -0,0 +1,80 @@
+package fca;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 形式概念の集合からハッセ図を作る時間を測るベンチマーク.
+ *
+ * @author  uehashu
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class HasseBenchmark extends ContextState{
+
+    FormalContext context; // ビット列で保持したコンテクスト表.
+    ArrayList<Tupple> concepts; // 全ての形式概念.
+    long[][] extents; // 各形式概念の外延.
+    long[][] intents; // 各形式概念の内包.
+
+
+    /////////////
+    // Methods //
+    /////////////
+
+    @Setup(Level.Trial)
+    public void setUpConcepts(){
+        context = new FormalContext(contextTable);
+        concepts = new FormalConceptParallelAnalyzer(context).analize(1);
+        extents = new long[concepts.size()][];
+        intents = new long[concepts.size()][];
+        for(int i=0;i<concepts.size();i++){
+            extents[i] = context.packObjects(concepts.get(i).getObjectBits());
+            intents[i] = context.packAttributes(concepts.get(i).getAttributeBits());
+        }
+    }
+
+    @Benchmark
+    public int[][] covers(){
+        return new FCACoverCalculator(context).calcUpperCovers(extents,intents);
+    }
+
+    @Benchmark
+    public LatticeGraph latticeGraph(){
+        return new LatticeGraph(concepts,context);
+    }
+
+    @Benchmark
+    public HashMap<Node,HashSet<Node>> hasseDiagram(){
+        return new FCAHasseDiagram(concepts,context).getArrows();
+    }
+
+    @Benchmark
+    public HashMap<Node,HashSet<Node>> hasseDiagramWithoutContext(){
+        return new FCAHasseDiagram(concepts).getArrows();
+    }
+
+    @Benchmark
+    public LatticeGraph incremental(){
+        IncrementalLattice lattice = new IncrementalLattice(contextTable.length == 0 ? 0 : contextTable[0].length);
+        for(boolean[] row : contextTable){
+            lattice.addObject(row);
+        }
+        return lattice.toLatticeGraph();
+    }
+}